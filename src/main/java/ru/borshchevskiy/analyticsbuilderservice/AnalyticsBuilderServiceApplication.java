@@ -2,8 +2,10 @@ package ru.borshchevskiy.analyticsbuilderservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class AnalyticsBuilderServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,56 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import java.util.List;
+
+/**
+ * Breakdowns collected by {@link VacancyAnalyticsCube} in addition to per-query analytics data.
+ * @param dimensional whether breakdown by area, experience and employment is collected.
+ * @param currencyBreakdown whether breakdown by salary currency is collected.
+ * @param employerCapacity number of employers monitored per query, employer breakdown is not collected
+ *                         if not positive.
+ * @param distinctCounts whether sketches of distinct vacancy and employer ids of each query are collected.
+ * @param skills names of skills, indexed as by {@link SkillMatcher}, skill breakdown is not collected if empty.
+ */
+public record CubeOptions(boolean dimensional,
+                          boolean currencyBreakdown,
+                          int employerCapacity,
+                          boolean distinctCounts,
+                          List<String> skills) {
+
+    /**
+     * Options of cube collecting per-query analytics data only.
+     */
+    public static final CubeOptions NONE = new CubeOptions(false, false, 0, false, List.of());
+
+    public CubeOptions {
+        skills = List.copyOf(skills);
+    }
+
+    public boolean collectsEmployers() {
+        return employerCapacity > 0;
+    }
+
+    public boolean collectsSkills() {
+        return !skills.isEmpty();
+    }
+
+    public CubeOptions withDimensional() {
+        return new CubeOptions(true, currencyBreakdown, employerCapacity, distinctCounts, skills);
+    }
+
+    public CubeOptions withCurrencyBreakdown() {
+        return new CubeOptions(dimensional, true, employerCapacity, distinctCounts, skills);
+    }
+
+    public CubeOptions withEmployerCapacity(int employerCapacity) {
+        return new CubeOptions(dimensional, currencyBreakdown, employerCapacity, distinctCounts, skills);
+    }
+
+    public CubeOptions withDistinctCounts() {
+        return new CubeOptions(dimensional, currencyBreakdown, employerCapacity, true, skills);
+    }
+
+    public CubeOptions withSkills(List<String> skills) {
+        return new CubeOptions(dimensional, currencyBreakdown, employerCapacity, distinctCounts, skills);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary interning values of single analytics cube dimension into compact integer ids.
+ * <p>
+ * Ids are assigned sequentially starting from 1, id {@value #ALL} is reserved for all values of dimension
+ * in rolled up cube cells.
+ */
+public class DimensionDictionary {
+
+    public static final int ALL = 0;
+
+    private final String dimension;
+    private final int capacity;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * @param dimension name of dimension, used in error messages and persisted dimension labels.
+     * @param capacity maximum number of distinct values.
+     */
+    public DimensionDictionary(String dimension, int capacity) {
+        this.dimension = dimension;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Method returns id of specified value, assigning new id if value is met for the first time.
+     * @param value dimension value.
+     * @return id of value.
+     * @throws IllegalStateException if dictionary already holds maximum number of values.
+     */
+    public int intern(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        return ids.computeIfAbsent(value, key -> {
+            synchronized (values) {
+                if (values.size() >= capacity) {
+                    throw new IllegalStateException("Dimension " + dimension + " has more than "
+                            + capacity + " distinct values");
+                }
+                values.add(key);
+                return values.size();
+            }
+        });
+    }
+
+    /**
+     * Method interns value the same way {@link #intern(String)} does it and remembers human-readable name of it.
+     * @param value dimension value.
+     * @param name name of value, ignored if <code>null</code>.
+     * @return id of value.
+     */
+    public int intern(String value, String name) {
+        int id = intern(value);
+        if (name != null) {
+            names.putIfAbsent(value, name);
+        }
+        return id;
+    }
+
+    /**
+     * Method returns value of specified id.
+     * @param id id previously returned by {@link #intern(String)}.
+     * @return dimension value.
+     */
+    public String valueOf(int id) {
+        synchronized (values) {
+            return values.get(id - 1);
+        }
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return map of dimension value to its human-readable name, for values which have names.
+     */
+    public Map<String, String> getNames() {
+        return names;
+    }
+}
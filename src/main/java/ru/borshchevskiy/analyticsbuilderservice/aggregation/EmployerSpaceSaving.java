@@ -0,0 +1,231 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving summary of employers of single query, approximating employers with the most vacancies
+ * in fixed memory, regardless of number of distinct employers met.
+ * <p>
+ * Summary monitors at most <code>capacity</code> employers. Vacancy of monitored employer increments its counter.
+ * Vacancy of employer not monitored, once all counters are taken, replaces employer with the smallest count:
+ * new employer inherits that count, increased by one, and the inherited part is remembered as error of its count.
+ * Count of every monitored employer overestimates its true count by at most its error, and every employer with
+ * more than <code>n / capacity</code> of <code>n</code> vacancies is guaranteed to be monitored.
+ * Counters are kept in binary min-heap, so each vacancy is accounted in <code>O(log capacity)</code> time.
+ * <p>
+ * Salaries are summed only for vacancies seen while employer is monitored, so average salary of employer
+ * is exact over those vacancies.
+ * <p>
+ * Summaries filled with separate parts of vacancies can be merged, and merged summary keeps the same guarantees
+ * over all vacancies of both parts. Since Space-Saving depends on order vacancies arrive in, merged counters are not
+ * identical to counters of summary filled with the same vacancies one by one: monitored heavy hitters are the same,
+ * but their counts and errors may differ within errors of both summaries, and employers of the long tail
+ * may be replaced by others.
+ */
+public class EmployerSpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Integer> positions;
+    private final String[] employerIds;
+    private final String[] employerNames;
+    private final boolean[] accredited;
+    private final long[] counts;
+    private final long[] errors;
+    private final long[] salarySums;
+    private final long[] observedCounts;
+    private int size;
+
+    /**
+     * @param capacity maximum number of employers monitored.
+     */
+    public EmployerSpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.positions = new HashMap<>(capacity * 2);
+        this.employerIds = new String[capacity];
+        this.employerNames = new String[capacity];
+        this.accredited = new boolean[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.salarySums = new long[capacity];
+        this.observedCounts = new long[capacity];
+    }
+
+    /**
+     * Method accounts single vacancy of specified employer.
+     * @param employerId id of employer.
+     * @param employerName name of employer, may be <code>null</code>.
+     * @param employerAccredited whether employer is accredited IT company.
+     * @param salary salary of vacancy.
+     */
+    public void add(String employerId, String employerName, boolean employerAccredited, long salary) {
+        Integer position = positions.get(employerId);
+        if (position != null) {
+            counts[position]++;
+            salarySums[position] += salary;
+            observedCounts[position]++;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            set(size, employerId, employerName, employerAccredited, 1, 0, salary, 1);
+            positions.put(employerId, size);
+            siftUp(size++);
+            return;
+        }
+        long minCount = counts[0];
+        positions.remove(employerIds[0]);
+        set(0, employerId, employerName, employerAccredited, minCount + 1, minCount, salary, 1);
+        positions.put(employerId, 0);
+        siftDown(0);
+    }
+
+    /**
+     * Method merges other summary of the same capacity into this one. Employer monitored by only one of summaries
+     * is assumed to have, in the other one, as many vacancies as the smallest counter of the other one
+     * if it is full, which keeps counts overestimated by at most their errors.
+     * @param other summary to be merged.
+     * @return this summary.
+     */
+    public EmployerSpaceSaving merge(EmployerSpaceSaving other) {
+        long thisMin = size == capacity ? counts[0] : 0;
+        long otherMin = other.size == other.capacity ? other.counts[0] : 0;
+        Map<String, Counter> mine = new HashMap<>();
+        counters().forEach(counter -> mine.put(counter.employerId(), counter));
+        Map<String, Counter> merged = new HashMap<>();
+        for (Counter counter : other.counters()) {
+            Counter own = mine.remove(counter.employerId());
+            merged.put(counter.employerId(), own == null
+                    ? counter.plus(thisMin)
+                    : new Counter(own.employerId(), own.employerName() != null ? own.employerName()
+                    : counter.employerName(), own.accredited() || counter.accredited(),
+                    own.count() + counter.count(), own.error() + counter.error(),
+                    own.salarySum() + counter.salarySum(), own.observedCount() + counter.observedCount()));
+        }
+        mine.forEach((employerId, counter) -> merged.put(employerId, counter.plus(otherMin)));
+        List<Counter> kept = merged.values().stream()
+                .sorted(Comparator.comparingLong(Counter::count).reversed())
+                .limit(capacity)
+                .toList();
+        positions.clear();
+        size = 0;
+        for (Counter counter : kept) {
+            set(size, counter.employerId(), counter.employerName(), counter.accredited(), counter.count(),
+                    counter.error(), counter.salarySum(), counter.observedCount());
+            positions.put(counter.employerId(), size);
+            siftUp(size++);
+        }
+        return this;
+    }
+
+    /**
+     * @return counters of all monitored employers, in no particular order.
+     */
+    public List<Counter> counters() {
+        List<Counter> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter(employerIds[i], employerNames[i], accredited[i], counts[i], errors[i],
+                    salarySums[i], observedCounts[i]));
+        }
+        return counters;
+    }
+
+    private void set(int position, String employerId, String employerName, boolean employerAccredited,
+                     long count, long error, long salarySum, long observedCount) {
+        employerIds[position] = employerId;
+        employerNames[position] = employerName;
+        accredited[position] = employerAccredited;
+        counts[position] = count;
+        errors[position] = error;
+        salarySums[position] = salarySum;
+        observedCounts[position] = observedCount;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        String employerId = employerIds[first];
+        employerIds[first] = employerIds[second];
+        employerIds[second] = employerId;
+        String employerName = employerNames[first];
+        employerNames[first] = employerNames[second];
+        employerNames[second] = employerName;
+        boolean employerAccredited = accredited[first];
+        accredited[first] = accredited[second];
+        accredited[second] = employerAccredited;
+        swap(counts, first, second);
+        swap(errors, first, second);
+        swap(salarySums, first, second);
+        swap(observedCounts, first, second);
+        positions.put(employerIds[first], first);
+        positions.put(employerIds[second], second);
+    }
+
+    private static void swap(long[] values, int first, int second) {
+        long value = values[first];
+        values[first] = values[second];
+        values[second] = value;
+    }
+
+    /**
+     * Counter of single monitored employer.
+     * @param employerId id of employer.
+     * @param employerName name of employer.
+     * @param accredited whether employer is accredited IT company.
+     * @param count estimated number of vacancies, not less than true number.
+     * @param error maximum overestimation of <code>count</code>.
+     * @param salarySum sum of salaries of vacancies seen while employer was monitored.
+     * @param observedCount number of vacancies seen while employer was monitored.
+     */
+    public record Counter(String employerId,
+                          String employerName,
+                          boolean accredited,
+                          long count,
+                          long error,
+                          long salarySum,
+                          long observedCount) {
+
+        /**
+         * @return average salary of vacancies seen while employer was monitored.
+         */
+        public double averageSalary() {
+            return (double) salarySum / observedCount;
+        }
+
+        Counter plus(long unseenCount) {
+            return new Counter(employerId, employerName, accredited, count + unseenCount, error + unseenCount,
+                    salarySum, observedCount);
+        }
+    }
+}
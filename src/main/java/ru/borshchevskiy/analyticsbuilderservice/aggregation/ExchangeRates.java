@@ -0,0 +1,113 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of exchange rates of salary currencies to base currency.
+ * <p>
+ * Snapshot is taken once per build, so reload of rates never affects build in progress, and conversion
+ * of vacancy salary is a single array access and multiplication, with no lookup of rates per vacancy.
+ */
+public final class ExchangeRates {
+
+    private final Currency baseCurrency;
+    private final double[] factors;
+    private final Set<Currency> currencies;
+    private final Map<String, Currency> currenciesByName;
+    private final Instant loadedAt;
+
+    private ExchangeRates(Currency baseCurrency, double[] factors, Set<Currency> currencies, Instant loadedAt) {
+        this.baseCurrency = baseCurrency;
+        this.factors = factors;
+        this.currencies = currencies;
+        this.currenciesByName = new HashMap<>();
+        currencies.forEach(currency -> currenciesByName.put(currency.name(), currency));
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * Method creates snapshot from rates expressed, as hh.ru does it, in units of currency per one RUR.
+     * Rate of RUR is 1 unless specified otherwise. Currencies without positive rate are not convertible.
+     * @param baseCurrency currency salaries are converted to.
+     * @param ratesPerRur map of currency to amount of that currency per one RUR.
+     * @param loadedAt time rates were loaded.
+     * @return new snapshot.
+     * @throws IllegalArgumentException if rate of base currency is unknown.
+     */
+    public static ExchangeRates of(Currency baseCurrency, Map<Currency, Double> ratesPerRur, Instant loadedAt) {
+        double baseRate = baseCurrency == Currency.RUR ? ratesPerRur.getOrDefault(Currency.RUR, 1d)
+                : ratesPerRur.getOrDefault(baseCurrency, 0d);
+        if (!(baseRate > 0)) {
+            throw new IllegalArgumentException("Exchange rate of base currency " + baseCurrency + " is unknown");
+        }
+        double[] factors = new double[Currency.values().length];
+        Set<Currency> currencies = EnumSet.of(baseCurrency);
+        factors[baseCurrency.ordinal()] = 1;
+        ratesPerRur.forEach((currency, rate) -> {
+            if (currency != baseCurrency && rate != null && rate > 0) {
+                factors[currency.ordinal()] = baseRate / rate;
+                currencies.add(currency);
+            }
+        });
+        if (baseCurrency != Currency.RUR && !ratesPerRur.containsKey(Currency.RUR)) {
+            factors[Currency.RUR.ordinal()] = baseRate;
+            currencies.add(Currency.RUR);
+        }
+        return new ExchangeRates(baseCurrency, factors, Collections.unmodifiableSet(currencies), loadedAt);
+    }
+
+    /**
+     * Method creates snapshot in which only salaries in base currency are known.
+     * @param baseCurrency currency of salaries.
+     * @return new snapshot.
+     */
+    public static ExchangeRates baseOnly(Currency baseCurrency) {
+        double[] factors = new double[Currency.values().length];
+        factors[baseCurrency.ordinal()] = 1;
+        return new ExchangeRates(baseCurrency, factors, Collections.unmodifiableSet(EnumSet.of(baseCurrency)),
+                Instant.EPOCH);
+    }
+
+    /**
+     * Method converts salary to base currency.
+     * @param salary salary in specified currency.
+     * @param currency currency of salary, must be one of {@link #getCurrencies()}.
+     * @return salary in base currency, rounded to the nearest integer.
+     */
+    public long toBase(long salary, Currency currency) {
+        double factor = factors[currency.ordinal()];
+        return factor == 1 ? salary : Math.round(salary * factor);
+    }
+
+    /**
+     * Method looks convertible currency up by its name, as stored in vacancy salary.
+     * @param name name of currency, may be <code>null</code>.
+     * @return currency of specified name, or <code>null</code> if there is no such currency
+     * or it is not convertible to base currency.
+     */
+    public Currency currencyOf(String name) {
+        return name == null ? null : currenciesByName.get(name);
+    }
+
+    public Currency getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * @return currencies convertible to base currency, including base currency itself.
+     */
+    public Set<Currency> getCurrencies() {
+        return currencies;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+}
@@ -0,0 +1,129 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import lombok.EqualsAndHashCode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mergeable HyperLogLog sketch estimating number of distinct ids with fixed memory footprint.
+ * <p>
+ * Each id is hashed to 64 bits once. The first {@link #PRECISION} bits of hash select one of {@link #REGISTER_COUNT}
+ * registers, and register keeps the maximum position of the first set bit among the remaining bits of all hashes
+ * it was selected by. Number of distinct ids is estimated from harmonic mean of registers with relative standard
+ * error of {@link #RELATIVE_ERROR}, regardless of number of ids added. Adding the same id again does not change
+ * sketch, so sketches of overlapping sets of ids, e.g. of vacancies of consecutive days, are merged
+ * by taking maximum of each register, which gives sketch of union of these sets.
+ */
+@EqualsAndHashCode
+public class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTER_COUNT = 1 << PRECISION;
+    public static final double RELATIVE_ERROR = 1.04 / Math.sqrt(REGISTER_COUNT);
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    /**
+     * Method calculates 64-bit hash of id, as expected by {@link #addHash(long)}.
+     * Hash is calculated once per id, so that the same id can be added to several sketches at no extra cost.
+     * @param id id to be hashed.
+     * @return hash of id.
+     */
+    public static long hash(String id) {
+        // FNV-1a over UTF-16 chars, finalized by murmur3 mix to spread bits of short ids
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public void add(String id) {
+        addHash(hash(id));
+    }
+
+    /**
+     * @param hash hash of id, as returned by {@link #hash(String)}.
+     */
+    public void addHash(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Guard bit bounds rank when all remaining bits are zero
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+        }
+    }
+
+    /**
+     * Method merges other sketch into this one.
+     * @param other sketch to be merged.
+     * @return this sketch.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Method estimates number of distinct ids added to sketch. Small cardinalities, where many registers are
+     * still empty, are estimated by linear counting of empty registers.
+     * @return estimated number of distinct ids.
+     */
+    public long estimate() {
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && emptyRegisters > 0) {
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Method serializes sketch as format version followed by all registers.
+     * @return serialized sketch.
+     */
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(1 + REGISTER_COUNT)
+                .put(FORMAT_VERSION)
+                .put(registers)
+                .array();
+    }
+
+    /**
+     * Method restores sketch serialized by {@link #toBytes()}.
+     * @param bytes serialized sketch, <code>null</code> is treated as empty sketch.
+     * @return restored sketch.
+     * @throws IllegalArgumentException if sketch was serialized in unknown format.
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes != null) {
+            if (bytes.length != 1 + REGISTER_COUNT || bytes[0] != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown format of HyperLogLog sketch of " + bytes.length
+                        + " bytes");
+            }
+            System.arraycopy(bytes, 1, sketch.registers, 0, REGISTER_COUNT);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+/**
+ * Sums of per-query analytics data over fixed number of the latest days, slid by one day at a time.
+ * <p>
+ * Window is advanced from window of the previous day by adding analytics data of the new day and subtracting
+ * analytics data of the day leaving window, so that advancing it takes constant time regardless of its length.
+ * Sums are kept exact, salaries are summed as whole numbers, so that windows slid over any number of days
+ * do not drift from windows summed from scratch. Days query has no analytics data on are not counted.
+ * @param vacancyCount sum of vacancy counts of all days of window.
+ * @param salarySum sum of salaries of vacancies of all days of window.
+ * @param days number of days of window query has analytics data on.
+ */
+public record RollingWindow(long vacancyCount, long salarySum, int days) {
+
+    public static final RollingWindow EMPTY = new RollingWindow(0, 0, 0);
+
+    /**
+     * @param dayVacancyCount vacancy count of day entering window.
+     * @param daySalarySum salary sum of day entering window.
+     * @return window including specified day.
+     */
+    public RollingWindow plus(long dayVacancyCount, long daySalarySum) {
+        return new RollingWindow(vacancyCount + dayVacancyCount, salarySum + daySalarySum, days + 1);
+    }
+
+    /**
+     * @param dayVacancyCount vacancy count of day leaving window.
+     * @param daySalarySum salary sum of day leaving window.
+     * @return window excluding specified day.
+     */
+    public RollingWindow minus(long dayVacancyCount, long daySalarySum) {
+        return new RollingWindow(vacancyCount - dayVacancyCount, salarySum - daySalarySum, days - 1);
+    }
+
+    /**
+     * @return average daily vacancy count over days of window query has analytics data on,
+     * <code>null</code> if there are no such days.
+     */
+    public Double averageVacancyCount() {
+        return days == 0 ? null : (double) vacancyCount / days;
+    }
+
+    /**
+     * @return average salary of all vacancies of window, <code>null</code> if there are no vacancies.
+     */
+    public Double averageSalary() {
+        return vacancyCount == 0 ? null : (double) salarySum / vacancyCount;
+    }
+}
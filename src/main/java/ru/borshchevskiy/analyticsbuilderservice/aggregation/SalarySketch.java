@@ -0,0 +1,163 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import lombok.EqualsAndHashCode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Mergeable quantile sketch of vacancy salaries with fixed memory footprint.
+ * <p>
+ * Salaries are counted in logarithmic buckets, each bucket holding values within {@link #RELATIVE_ACCURACY}
+ * relative distance of its representative value, so that every quantile is estimated with that relative accuracy
+ * regardless of number of salaries counted. Salaries outside of [{@link #MIN_SALARY}, {@link #MAX_SALARY}] range
+ * are counted in the first or the last bucket.
+ * <p>
+ * Since sketch holds only bucket counts, sketches are merged by adding counts and salaries are removed
+ * by subtracting them, which gives the same result in any order of accumulation.
+ */
+@EqualsAndHashCode
+public class SalarySketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    public static final long MIN_SALARY = 1_000;
+    public static final long MAX_SALARY = 100_000_000;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    public static final double LOG_GAMMA = Math.log(GAMMA);
+    public static final int MIN_INDEX = (int) Math.ceil(Math.log(MIN_SALARY) / LOG_GAMMA);
+    public static final int BUCKET_COUNT = (int) Math.ceil(Math.log(MAX_SALARY) / LOG_GAMMA) - MIN_INDEX + 1;
+
+    private final int[] counts = new int[BUCKET_COUNT];
+
+    private long totalCount;
+
+    /**
+     * Method calculates index of bucket holding specified salary.
+     * @param salary salary of vacancy.
+     * @return bucket index from 0 to {@link #BUCKET_COUNT} exclusive.
+     */
+    public static int bucketOf(long salary) {
+        long clamped = Math.min(Math.max(salary, MIN_SALARY), MAX_SALARY);
+        return (int) Math.ceil(Math.log(clamped) / LOG_GAMMA) - MIN_INDEX;
+    }
+
+    public void add(long salary) {
+        addToBucket(bucketOf(salary), 1);
+    }
+
+    public void subtract(long salary) {
+        addToBucket(bucketOf(salary), -1);
+    }
+
+    /**
+     * Method adds specified number of salaries to bucket, negative number removes salaries from bucket.
+     * @param bucket bucket index, as returned by {@link #bucketOf(long)}.
+     * @param count number of salaries.
+     */
+    public void addToBucket(int bucket, long count) {
+        counts[bucket] += (int) count;
+        totalCount += count;
+    }
+
+    /**
+     * Method merges other sketch into this one.
+     * @param other sketch to be merged.
+     * @return this sketch.
+     */
+    public SalarySketch merge(SalarySketch other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        return this;
+    }
+
+    /**
+     * Method creates sketch which, being merged, subtracts salaries of this sketch.
+     * @return new sketch with negated counts.
+     */
+    public SalarySketch negated() {
+        SalarySketch negated = new SalarySketch();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            negated.counts[i] = -counts[i];
+        }
+        negated.totalCount = -totalCount;
+        return negated;
+    }
+
+    /**
+     * Method estimates salary at specified quantile by nearest-rank method. Estimated salary is representative value
+     * of bucket holding salary of that rank, rounded to whole number.
+     * @param quantile quantile from 0 to 1.
+     * @return estimated salary, or <code>null</code> if sketch holds no salaries.
+     */
+    public Double quantile(double quantile) {
+        if (totalCount <= 0) {
+            return null;
+        }
+        // Nearest-rank method: zero-based rank of the smallest salary with at least quantile of salaries not above it
+        long rank = Math.max(0, (long) Math.ceil(quantile * totalCount) - 1);
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulativeCount += counts[i];
+            if (cumulativeCount > rank) {
+                return (double) Math.round(2 * Math.pow(GAMMA, i + MIN_INDEX) / (GAMMA + 1));
+            }
+        }
+        return (double) MAX_SALARY;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Method creates sketch from bucket counts kept outside of sketch.
+     * @param buckets array of {@link #BUCKET_COUNT} bucket counts.
+     * @return new sketch holding copy of counts.
+     */
+    public static SalarySketch fromBuckets(int[] buckets) {
+        SalarySketch sketch = new SalarySketch();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            sketch.counts[i] = buckets[i];
+            sketch.totalCount += buckets[i];
+        }
+        return sketch;
+    }
+
+    /**
+     * Method serializes non-empty buckets of sketch as sequence of (bucket index, count) pairs.
+     * @return serialized sketch.
+     */
+    public byte[] toBytes() {
+        int nonEmptyBuckets = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                nonEmptyBuckets++;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(nonEmptyBuckets * 2 * Integer.BYTES);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                buffer.putInt(i).putInt(counts[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Method restores sketch serialized by {@link #toBytes()}.
+     * @param bytes serialized sketch, <code>null</code> is treated as empty sketch.
+     * @return restored sketch.
+     */
+    public static SalarySketch fromBytes(byte[] bytes) {
+        SalarySketch sketch = new SalarySketch();
+        if (bytes != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.remaining() >= 2 * Integer.BYTES) {
+                sketch.addToBucket(buffer.getInt(), buffer.getInt());
+            }
+        }
+        return sketch;
+    }
+}
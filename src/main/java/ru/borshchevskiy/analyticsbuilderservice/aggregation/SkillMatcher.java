@@ -0,0 +1,178 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Case-insensitive matcher of skills mentioned in vacancy text, finding all skills of dictionary in single pass.
+ * <p>
+ * Each skill is matched by its name and by any of its aliases. All terms are compiled into trie once,
+ * so that text is scanned once regardless of number of terms, instead of once per term. Chars met in terms
+ * are mapped to dense classes, all other chars share one class, and children of each trie node are held
+ * in flat transition table. Transitions hold offsets of child nodes in the table, inverted if any term ends
+ * at child node, so that each step of trie walk costs two array reads and only such nodes are checked for terms.
+ * <p>
+ * Term is matched only as a whole word: term starting or ending with letter or digit is not matched
+ * next to another letter or digit, so that "Java" is not found in "JavaScript", while "C++" is found in "C++17".
+ * Hence term starting with letter or digit may only start where word starts, and trie is walked only from
+ * first char of each word and from each char which is neither letter nor digit, if any term starts with that char.
+ * The rest of chars cost one array read each, even though letters of Cyrillic terms are met in almost every word
+ * of Russian text.
+ * Matcher is immutable and may be shared between threads.
+ */
+public class SkillMatcher {
+
+    private static final boolean[] WORD_CHARS = wordChars();
+    private static final int WORD = 1;
+    private static final int TERM_START = 2;
+
+    private final List<String> skills;
+    private final char[] charClasses = new char[Character.MAX_VALUE + 1];
+    private final byte[] charFlags = new byte[Character.MAX_VALUE + 1];
+    private final int classBits;
+    private final int[] transitions;
+    private final int[][] nodeSkills;
+    private final boolean[] nodeWordEnds;
+
+    /**
+     * @param dictionary map of skill name to its aliases, skill is also matched by its name.
+     */
+    public SkillMatcher(Map<String, List<String>> dictionary) {
+        this.skills = List.copyOf(dictionary.keySet());
+        List<String> terms = new ArrayList<>();
+        List<Integer> skillsOfTerms = new ArrayList<>();
+        for (int skill = 0; skill < skills.size(); skill++) {
+            Set<String> skillTerms = new LinkedHashSet<>();
+            skillTerms.add(normalize(skills.get(skill)));
+            for (String alias : dictionary.getOrDefault(skills.get(skill), List.of())) {
+                skillTerms.add(normalize(alias));
+            }
+            skillTerms.remove("");
+            for (String term : skillTerms) {
+                terms.add(term);
+                skillsOfTerms.add(skill);
+            }
+        }
+        int classes = 1;
+        for (String term : terms) {
+            for (char c : term.toCharArray()) {
+                if (charClasses[c] == 0) {
+                    charClasses[c] = (char) classes;
+                    charClasses[Character.toUpperCase(c)] = (char) classes;
+                    classes++;
+                }
+            }
+        }
+        // Rows of transition table are aligned to power of two, so that node is found by offset with shift
+        this.classBits = 32 - Integer.numberOfLeadingZeros(classes - 1);
+
+        // Root is never a child, so 0 in transition table means there is no child
+        int maxNodes = 1 + terms.stream().mapToInt(String::length).sum();
+        int[] trie = new int[maxNodes << classBits];
+        int[][] skillsOfNodes = new int[maxNodes][];
+        boolean[] wordEnds = new boolean[maxNodes];
+        int nodes = 1;
+        for (int term = 0; term < terms.size(); term++) {
+            String text = terms.get(term);
+            int node = 0;
+            for (char c : text.toCharArray()) {
+                int index = (node << classBits) + charClasses[c];
+                if (trie[index] == 0) {
+                    trie[index] = nodes++;
+                }
+                node = trie[index];
+            }
+            // All terms ending at the same node are the same text
+            skillsOfNodes[node] = append(skillsOfNodes[node], skillsOfTerms.get(term));
+            wordEnds[node] = WORD_CHARS[text.charAt(text.length() - 1)];
+        }
+        this.transitions = new int[nodes << classBits];
+        for (int index = 0; index < transitions.length; index++) {
+            int child = trie[index];
+            if (child != 0) {
+                transitions[index] = skillsOfNodes[child] == null ? child << classBits : ~(child << classBits);
+            }
+        }
+        this.nodeSkills = Arrays.copyOf(skillsOfNodes, nodes);
+        this.nodeWordEnds = Arrays.copyOf(wordEnds, nodes);
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            charFlags[c] = (byte) ((WORD_CHARS[c] ? WORD : 0) | (transitions[charClasses[c]] != 0 ? TERM_START : 0));
+        }
+    }
+
+    /**
+     * @return names of all skills of dictionary, skill index is position of its name.
+     */
+    public List<String> getSkills() {
+        return skills;
+    }
+
+    /**
+     * Method finds all skills mentioned in text.
+     * @param text text to be scanned, may be <code>null</code>.
+     * @param found set indices of found skills are added to.
+     */
+    public void match(String text, SkillSet found) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int previous = 0;
+        for (int start = 0; start < length; start++) {
+            int flags = charFlags[text.charAt(start)];
+            // Single branch per char, taken only where term may start and previous char does not continue word
+            if ((flags & ~((flags & previous & WORD) << 1) & TERM_START) != 0) {
+                matchFrom(text, start, found);
+            }
+            previous = flags;
+        }
+    }
+
+    /**
+     * Method walks trie from specified position of text and adds skills of all terms starting there.
+     */
+    private void matchFrom(String text, int start, SkillSet found) {
+        int offset = 0;
+        for (int i = start; i < text.length(); i++) {
+            offset = transitions[offset + charClasses[text.charAt(i)]];
+            if (offset == 0) {
+                return;
+            }
+            if (offset < 0) {
+                offset = ~offset;
+                int node = offset >>> classBits;
+                if (!nodeWordEnds[node] || i + 1 == text.length() || !WORD_CHARS[text.charAt(i + 1)]) {
+                    for (int skill : nodeSkills[node]) {
+                        found.add(skill);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String normalize(String term) {
+        return term.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] append(int[] skills, int skill) {
+        if (skills == null) {
+            return new int[]{skill};
+        }
+        int[] result = Arrays.copyOf(skills, skills.length + 1);
+        result[skills.length] = skill;
+        return result;
+    }
+
+    private static boolean[] wordChars() {
+        boolean[] wordChars = new boolean[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            wordChars[c] = Character.isLetterOrDigit((char) c);
+        }
+        return wordChars;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * Reusable set of skills found in single vacancy, indexed as by {@link SkillMatcher}.
+ * <p>
+ * Indices of skills are kept in order they are added, so that skills of vacancy are iterated without
+ * scanning all skills of dictionary, and set is cleared in time proportional to number of skills it holds.
+ * Set is not thread-safe, each worker of aggregation uses its own set for all its vacancies.
+ */
+public class SkillSet {
+
+    private final boolean[] contained;
+    private final int[] skills;
+    private int size;
+
+    /**
+     * @param skillCount number of skills of dictionary.
+     */
+    public SkillSet(int skillCount) {
+        this.contained = new boolean[skillCount];
+        this.skills = new int[skillCount];
+    }
+
+    /**
+     * Method adds skill to set, unless set already holds it.
+     * @param skill index of skill.
+     */
+    public void add(int skill) {
+        if (!contained[skill]) {
+            contained[skill] = true;
+            skills[size++] = skill;
+        }
+    }
+
+    /**
+     * @param skill index of skill.
+     * @return whether set holds skill.
+     */
+    public boolean contains(int skill) {
+        return contained[skill];
+    }
+
+    /**
+     * @param index position of skill in order skills were added, from 0 to {@link #size()} exclusive.
+     * @return index of skill.
+     */
+    public int get(int index) {
+        return skills[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            contained[skills[i]] = false;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return indices of all skills of set in ascending order.
+     */
+    public int[] toSortedArray() {
+        int[] sorted = Arrays.copyOf(skills, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
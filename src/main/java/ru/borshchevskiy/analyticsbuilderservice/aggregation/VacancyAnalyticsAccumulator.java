@@ -0,0 +1,137 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Mutable per-query accumulator of vacancy analytics data.
+ * <p>
+ * Holds vacancy count, salary sum and {@link SalarySketch} of salaries, and is updated in place,
+ * so folding a vacancy into it creates no garbage and its size does not depend on number of vacancies.
+ * Salaries are summed as <code>long</code>, which makes accumulation and merging exact and associative.
+ * <p>
+ * Accumulator built by {@link VacancyAnalyticsCube} collecting distinct counts also holds {@link HyperLogLog}
+ * sketches of ids of its vacancies and of their employers. Sketches are <code>null</code> otherwise,
+ * and missing sketch of merged accumulator is treated as empty one.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class VacancyAnalyticsAccumulator {
+
+    private long vacancyCount;
+
+    private long salarySum;
+
+    @ToString.Exclude
+    private final SalarySketch salarySketch;
+
+    @ToString.Exclude
+    private HyperLogLog vacancyIds;
+
+    @ToString.Exclude
+    private HyperLogLog employerIds;
+
+    public VacancyAnalyticsAccumulator() {
+        this(0, 0, new SalarySketch());
+    }
+
+    /**
+     * Creates accumulator with specified count and sum of salaries, but without their distribution.
+     */
+    public VacancyAnalyticsAccumulator(long vacancyCount, long salarySum) {
+        this(vacancyCount, salarySum, new SalarySketch());
+    }
+
+    public VacancyAnalyticsAccumulator(long vacancyCount, long salarySum, SalarySketch salarySketch) {
+        this(vacancyCount, salarySum, salarySketch, null, null);
+    }
+
+    public VacancyAnalyticsAccumulator(long vacancyCount,
+                                       long salarySum,
+                                       SalarySketch salarySketch,
+                                       HyperLogLog vacancyIds,
+                                       HyperLogLog employerIds) {
+        this.vacancyCount = vacancyCount;
+        this.salarySum = salarySum;
+        this.salarySketch = salarySketch;
+        this.vacancyIds = vacancyIds;
+        this.employerIds = employerIds;
+    }
+
+    /**
+     * Method accumulates single vacancy with specified salary.
+     * @param salary salary of vacancy.
+     */
+    public void add(long salary) {
+        vacancyCount++;
+        salarySum += salary;
+        salarySketch.add(salary);
+    }
+
+    /**
+     * Method removes single vacancy with specified salary, previously accumulated by {@link #add(long)}.
+     * @param salary salary of vacancy.
+     */
+    public void subtract(long salary) {
+        vacancyCount--;
+        salarySum -= salary;
+        salarySketch.subtract(salary);
+    }
+
+    /**
+     * Method accumulates group of vacancies whose salaries fall into the same bucket of {@link SalarySketch}.
+     * @param salaryBucket sketch bucket index of salaries.
+     * @param vacancyCount number of vacancies.
+     * @param salarySum sum of salaries of vacancies.
+     */
+    public void addBucket(int salaryBucket, long vacancyCount, long salarySum) {
+        this.vacancyCount += vacancyCount;
+        this.salarySum += salarySum;
+        salarySketch.addToBucket(salaryBucket, vacancyCount);
+    }
+
+    /**
+     * Method merges other accumulator into this one.
+     * @param other accumulator to be merged.
+     * @return this accumulator.
+     */
+    public VacancyAnalyticsAccumulator merge(VacancyAnalyticsAccumulator other) {
+        vacancyCount += other.vacancyCount;
+        salarySum += other.salarySum;
+        salarySketch.merge(other.salarySketch);
+        vacancyIds = mergeSketch(vacancyIds, other.vacancyIds);
+        employerIds = mergeSketch(employerIds, other.employerIds);
+        return this;
+    }
+
+    /**
+     * Method creates accumulator which, being merged, subtracts vacancies of this accumulator.
+     * Since ids cannot be removed from {@link HyperLogLog}, negated accumulator holds no id sketches.
+     * @return new accumulator with negated values.
+     */
+    public VacancyAnalyticsAccumulator negated() {
+        return new VacancyAnalyticsAccumulator(-vacancyCount, -salarySum, salarySketch.negated());
+    }
+
+    public double getAverageSalary() {
+        return (double) salarySum / vacancyCount;
+    }
+
+    /**
+     * Method estimates salary at specified percentile of accumulated vacancies.
+     * @param quantile quantile from 0 to 1.
+     * @return estimated salary, or <code>null</code> if salary distribution is unknown.
+     */
+    public Double getSalaryPercentile(double quantile) {
+        return salarySketch.quantile(quantile);
+    }
+
+    private static HyperLogLog mergeSketch(HyperLogLog sketch, HyperLogLog other) {
+        if (other == null) {
+            return sketch;
+        }
+        return (sketch != null ? sketch : new HyperLogLog()).merge(other);
+    }
+}
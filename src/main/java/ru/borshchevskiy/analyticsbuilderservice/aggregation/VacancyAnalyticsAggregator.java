@@ -0,0 +1,135 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Folds vacancies into per-query {@link VacancyAnalyticsAccumulator}s.
+ */
+@Component
+public class VacancyAnalyticsAggregator {
+
+    private final AnalyticsBuilderProperties properties;
+    private final ForkJoinPool analyticsAggregationPool;
+
+    public VacancyAnalyticsAggregator(AnalyticsBuilderProperties properties, ForkJoinPool analyticsAggregationPool) {
+        this.properties = properties;
+        this.analyticsAggregationPool = analyticsAggregationPool;
+    }
+
+    /**
+     * Method folds vacancies into map of query to accumulated analytics data.
+     * <p>
+     * In {@link AnalyticsBuilderProperties.AggregationMode#SEQUENTIAL} mode vacancies are folded one by one
+     * on the calling thread. In {@link AnalyticsBuilderProperties.AggregationMode#PARALLEL} mode vacancies are
+     * split between workers of aggregation pool, each worker folds its part into its own partial map, and
+     * partial maps are then merged. Since merging of accumulators is associative, both modes give
+     * identical results. The only exception is {@link EmployerSpaceSaving} summary, whose merged counters
+     * differ from sequential ones within their errors.
+     * @param vacancies vacancies to be aggregated.
+     * @param accumulator function folding single vacancy into map of query to accumulator,
+     *                    most commonly delegating to {@link #accumulate(Map, Set, SalaryEntity)}.
+     * @return map of query to accumulated analytics data.
+     * @param <T> type of vacancy read model.
+     */
+    public <T> Map<String, VacancyAnalyticsAccumulator> aggregate(
+            Stream<T> vacancies,
+            BiConsumer<Map<String, VacancyAnalyticsAccumulator>, T> accumulator) {
+        return aggregate(vacancies, HashMap::new, accumulator, this::merge);
+    }
+
+    /**
+     * Method folds vacancies into mutable result container, sequentially or in parallel the same way
+     * {@link #aggregate(Stream, BiConsumer)} does it.
+     * @param vacancies vacancies to be aggregated.
+     * @param supplier function creating empty container, called once per each worker.
+     * @param accumulator function folding single vacancy into container.
+     * @param combiner function merging second container into the first one.
+     * @return container holding all vacancies.
+     * @param <T> type of vacancy read model.
+     * @param <R> type of result container.
+     */
+    public <T, R> R aggregate(Stream<T> vacancies,
+                              Supplier<R> supplier,
+                              BiConsumer<R, T> accumulator,
+                              BiConsumer<R, R> combiner) {
+        return switch (properties.getAggregationMode()) {
+            case SEQUENTIAL -> vacancies.sequential()
+                    .collect(supplier, accumulator, combiner);
+            case PARALLEL -> analyticsAggregationPool.submit(() -> vacancies.parallel()
+                            .collect(supplier, accumulator, combiner))
+                    .join();
+        };
+    }
+
+    /**
+     * Method accumulates single vacancy, defined by its queries and salary,
+     * into accumulator of every query this vacancy relates to. Accumulators are updated in place.
+     * @param perQueryAccumulators map of query to accumulated analytics data.
+     * @param queries queries vacancy relates to.
+     * @param salary salary specified in vacancy.
+     */
+    public void accumulate(Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators,
+                           Set<String> queries,
+                           SalaryEntity salary) {
+        long vacancySalary = calculateVacancySalary(salary);
+        for (String query : queries) {
+            perQueryAccumulators.computeIfAbsent(query, key -> new VacancyAnalyticsAccumulator()).add(vacancySalary);
+        }
+    }
+
+    /**
+     * Method merges partial map of query to accumulator into another one.
+     * @param target map to be updated.
+     * @param partial map to be merged into <code>target</code>.
+     */
+    public void merge(Map<String, VacancyAnalyticsAccumulator> target,
+                      Map<String, VacancyAnalyticsAccumulator> partial) {
+        partial.forEach((query, accumulator) -> target.merge(query, accumulator, VacancyAnalyticsAccumulator::merge));
+    }
+
+    /**
+     * Method checks whether vacancy is counted in analytics of salaries in specified currency.
+     * Archived vacancies and vacancies without salary in that currency contribute nothing.
+     * @param vacancy vacancy to be checked.
+     * @param currency salary currency analytics is built of.
+     * @return <code>true</code> if vacancy is counted.
+     */
+    public static boolean contributes(VacancySalaryProjection vacancy, Currency currency) {
+        return !Boolean.TRUE.equals(vacancy.getArchived())
+                && vacancy.getQuery() != null
+                && vacancy.getSalaryEntity() != null
+                && currency.name().equals(vacancy.getSalaryEntity().getCurrency())
+                && (vacancy.getSalaryEntity().getFrom() != null || vacancy.getSalaryEntity().getTo() != null);
+    }
+
+    /**
+     * Method calculates average salary for single vacancy.
+     * If both upper and lower salary limits are specified - calculates average value.
+     * If either upper or lower limit is specified - just takes this value as salary.
+     * @param salary Salary entity specified in vacancy.
+     * @return long value of average salary calculated.
+     */
+    public static long calculateVacancySalary(SalaryEntity salary) {
+        Integer from = salary.getFrom();
+        Integer to = salary.getTo();
+        if (from != null && to != null) {
+            return (from + to) / 2;
+        } else if (from == null) {
+            return to;
+        } else {
+            return from;
+        }
+    }
+}
@@ -0,0 +1,568 @@
+package ru.borshchevskiy.analyticsbuilderservice.aggregation;
+
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCubeRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCurrencyRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsDimension;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerAccreditationRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsSkillRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.AreaEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmployerEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmploymentEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.ExperienceEntity;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mutable analytics cube of vacancies, filled in single pass over vacancy collection.
+ * <p>
+ * Each query is interned into dense integer id by query {@link DimensionDictionary} once per vacancy it is met in,
+ * and the id is used for all further updates. For each query cube holds vacancy count, salary sum and
+ * {@link SalarySketch} bucket counts in primitive arrays indexed by query id, so folding a vacancy into cube
+ * neither hashes query strings more than once nor allocates per-query objects, and bucket of salary is calculated
+ * once per vacancy rather than once per query. Full {@link VacancyAnalyticsAccumulator}s are created only when
+ * aggregation is finished, see {@link #getPerQueryAccumulators()}. Breakdowns collected by cube in addition
+ * to per-query analytics data are set by {@link CubeOptions}. If cube is dimensional, it additionally holds
+ * vacancy count and salary sum of each (query, area, experience, employment) combination met. Dimension values
+ * are interned into integer ids by {@link DimensionDictionary}s shared between all partial cubes of the same build,
+ * and four ids are packed into single <code>long</code> cell key, so memory taken by cell does not depend
+ * on length of dimension values.
+ * <p>
+ * Coarser levels, where any of area, experience and employment is replaced by {@link #ALL_VALUES},
+ * are computed from the finest cells by {@link #rollUp(LocalDate)}.
+ * <p>
+ * If cube collects currency breakdown, it also holds vacancy count, salary sum in original currency
+ * and salary sum in base currency of each (query, currency) combination met.
+ * <p>
+ * If cube collects employer breakdown, it also holds {@link EmployerSpaceSaving} summary of employers of each query,
+ * so that memory taken by query does not depend on number of its distinct employers, and vacancy count and salary
+ * sum of accredited and non-accredited IT employers of each query.
+ * <p>
+ * If cube collects distinct counts, it also holds {@link HyperLogLog} sketches of vacancy ids and of employer ids
+ * of each query, passed to accumulators of queries. Ids are hashed once per vacancy rather than once per query.
+ * <p>
+ * If cube collects skill breakdown, it also holds vacancy count and salary sum of vacancies of each query
+ * mentioning each skill, so that salary of vacancies mentioning skill can be compared to salary of the others.
+ */
+public class VacancyAnalyticsCube {
+
+    public static final String ALL_VALUES = "*";
+    public static final String UNKNOWN_VALUE = "unknown";
+
+    private static final int EMPLOYMENT_BITS = 12;
+    private static final int EXPERIENCE_BITS = 12;
+    private static final int AREA_BITS = 18;
+    private static final int QUERY_BITS = 64 - AREA_BITS - EXPERIENCE_BITS - EMPLOYMENT_BITS;
+
+    private static final int EXPERIENCE_SHIFT = EMPLOYMENT_BITS;
+    private static final int AREA_SHIFT = EXPERIENCE_SHIFT + EXPERIENCE_BITS;
+    private static final int QUERY_SHIFT = AREA_SHIFT + AREA_BITS;
+    private static final int CURRENCY_BITS = 8;
+    private static final int INITIAL_QUERY_CAPACITY = 64;
+
+    private final CubeOptions options;
+    private final boolean dimensional;
+    private final boolean currencyBreakdown;
+    private final int employerCapacity;
+    private final boolean distinctCounts;
+    private final List<String> skills;
+    private final DimensionDictionary queries;
+    private final DimensionDictionary areas;
+    private final DimensionDictionary experiences;
+    private final DimensionDictionary employments;
+
+    private long[] queryVacancyCounts = new long[INITIAL_QUERY_CAPACITY];
+    private long[] querySalarySums = new long[INITIAL_QUERY_CAPACITY];
+    private int[][] querySalaryBuckets = new int[INITIAL_QUERY_CAPACITY][];
+    private EmployerSpaceSaving[] queryEmployers = new EmployerSpaceSaving[INITIAL_QUERY_CAPACITY];
+    private long[][] queryAccreditation = new long[INITIAL_QUERY_CAPACITY][];
+    private HyperLogLog[] queryVacancyIds = new HyperLogLog[INITIAL_QUERY_CAPACITY];
+    private HyperLogLog[] queryEmployerIds = new HyperLogLog[INITIAL_QUERY_CAPACITY];
+    private long[][] querySkills = new long[INITIAL_QUERY_CAPACITY][];
+    private final Map<Long, long[]> cells = new HashMap<>();
+    private final Map<Long, long[]> currencyCells = new HashMap<>();
+    private long vacancyCount;
+    private long filteredOutCount;
+
+    /**
+     * Creates empty cube with new dimension dictionaries.
+     * @param options breakdowns collected by cube.
+     */
+    public VacancyAnalyticsCube(CubeOptions options) {
+        this(options,
+                new DimensionDictionary("query", (1 << QUERY_BITS) - 1),
+                new DimensionDictionary("area", (1 << AREA_BITS) - 1),
+                new DimensionDictionary("experience", (1 << EXPERIENCE_BITS) - 1),
+                new DimensionDictionary("employment", (1 << EMPLOYMENT_BITS) - 1));
+    }
+
+    private VacancyAnalyticsCube(CubeOptions options,
+                                 DimensionDictionary queries,
+                                 DimensionDictionary areas,
+                                 DimensionDictionary experiences,
+                                 DimensionDictionary employments) {
+        this.options = options;
+        this.dimensional = options.dimensional();
+        this.currencyBreakdown = options.currencyBreakdown();
+        this.employerCapacity = options.employerCapacity();
+        this.distinctCounts = options.distinctCounts();
+        this.skills = options.skills();
+        this.queries = queries;
+        this.areas = areas;
+        this.experiences = experiences;
+        this.employments = employments;
+    }
+
+    /**
+     * Method creates empty cube sharing dimension dictionaries with this one, so that both cubes can be merged.
+     * @return new empty cube.
+     */
+    public VacancyAnalyticsCube emptyCopy() {
+        return new VacancyAnalyticsCube(options, queries, areas, experiences, employments);
+    }
+
+    /**
+     * @return breakdowns collected by cube.
+     */
+    public CubeOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Method accumulates single vacancy into cube. Salary in original currency is accumulated into currency
+     * breakdown, and salary in base currency into employer breakdown of every query this vacancy relates to,
+     * if cube collects these breakdowns. Vacancy without employer id is not accounted in employer summaries,
+     * vacancy without accredited employer is accounted as vacancy of non-accredited one.
+     * Vacancy and employer ids are added to distinct counts of every query, if cube collects them,
+     * and vacancy is accounted in skill breakdown of every query for each skill it mentions.
+     * @param vacancyId id of vacancy, may be <code>null</code>.
+     * @param vacancyQueries queries vacancy relates to.
+     * @param area area of vacancy, may be <code>null</code>.
+     * @param experience required experience of vacancy, may be <code>null</code>.
+     * @param employment employment type of vacancy, may be <code>null</code>.
+     * @param employer employer of vacancy, may be <code>null</code>.
+     * @param vacancySkills indices of skills vacancy mentions, may be <code>null</code>, not retained by cube.
+     * @param currency currency of salary, <code>null</code> if vacancy is not accumulated into currency breakdown.
+     * @param salary salary of vacancy in its currency.
+     * @param baseSalary salary of vacancy converted to base currency.
+     */
+    public void add(String vacancyId,
+                    Set<String> vacancyQueries,
+                    AreaEntity area,
+                    ExperienceEntity experience,
+                    EmploymentEntity employment,
+                    EmployerEntity employer,
+                    SkillSet vacancySkills,
+                    Currency currency,
+                    long salary,
+                    long baseSalary) {
+        vacancyCount++;
+        int salaryBucket = SalarySketch.bucketOf(baseSalary);
+        long dimensionsKey = dimensional ? pack(0,
+                area == null ? areas.intern(UNKNOWN_VALUE) : areas.intern(idOrUnknown(area.getId()), area.getName()),
+                experience == null ? experiences.intern(UNKNOWN_VALUE)
+                        : experiences.intern(idOrUnknown(experience.getId()), experience.getName()),
+                employment == null ? employments.intern(UNKNOWN_VALUE)
+                        : employments.intern(idOrUnknown(employment.getId()), employment.getName())) : 0;
+        boolean collectCurrency = currencyBreakdown && currency != null;
+        boolean collectEmployers = employerCapacity > 0;
+        boolean accredited = employer != null && Boolean.TRUE.equals(employer.getAccreditedItEmployer());
+        int accreditationOffset = accredited ? 0 : 2;
+        boolean collectVacancyId = distinctCounts && vacancyId != null;
+        boolean collectEmployerId = distinctCounts && employer != null && employer.getId() != null;
+        long vacancyIdHash = collectVacancyId ? HyperLogLog.hash(vacancyId) : 0;
+        long employerIdHash = collectEmployerId ? HyperLogLog.hash(employer.getId()) : 0;
+        boolean collectSkills = !skills.isEmpty() && vacancySkills != null && !vacancySkills.isEmpty();
+        for (String query : vacancyQueries) {
+            int queryId = queries.intern(query);
+            ensureQueryCapacity(queryId);
+            queryVacancyCounts[queryId]++;
+            querySalarySums[queryId] += baseSalary;
+            salaryBucketsOf(queryId)[salaryBucket]++;
+            if (dimensional) {
+                long[] cell = cells.computeIfAbsent(dimensionsKey | ((long) queryId << QUERY_SHIFT),
+                        key -> new long[2]);
+                cell[0]++;
+                cell[1] += baseSalary;
+            }
+            if (collectCurrency) {
+                long[] cell = currencyCells.computeIfAbsent(((long) queryId << CURRENCY_BITS) | currency.ordinal(),
+                        key -> new long[3]);
+                cell[0]++;
+                cell[1] += salary;
+                cell[2] += baseSalary;
+            }
+            if (collectEmployers) {
+                if (employer != null && employer.getId() != null) {
+                    employersOf(queryId).add(employer.getId(), employer.getName(), accredited, baseSalary);
+                }
+                long[] accreditation = accreditationOf(queryId);
+                accreditation[accreditationOffset]++;
+                accreditation[accreditationOffset + 1] += baseSalary;
+            }
+            if (collectVacancyId) {
+                queryVacancyIds[queryId] = addHash(queryVacancyIds[queryId], vacancyIdHash);
+            }
+            if (collectEmployerId) {
+                queryEmployerIds[queryId] = addHash(queryEmployerIds[queryId], employerIdHash);
+            }
+            if (collectSkills) {
+                long[] skillCells = skillsOf(queryId);
+                for (int i = 0; i < vacancySkills.size(); i++) {
+                    int skill = vacancySkills.get(i);
+                    skillCells[2 * skill]++;
+                    skillCells[2 * skill + 1] += baseSalary;
+                }
+            }
+        }
+    }
+
+    /**
+     * Method accounts vacancy skipped by analytics, e.g. because of currency of its salary.
+     */
+    public void addFilteredOut() {
+        filteredOutCount++;
+    }
+
+    /**
+     * Method merges other cube, sharing dimension dictionaries with this one, into this cube.
+     * @param other cube to be merged.
+     */
+    public void merge(VacancyAnalyticsCube other) {
+        vacancyCount += other.vacancyCount;
+        filteredOutCount += other.filteredOutCount;
+        ensureQueryCapacity(other.queryVacancyCounts.length - 1);
+        for (int queryId = 0; queryId < other.queryVacancyCounts.length; queryId++) {
+            if (other.querySalaryBuckets[queryId] == null) {
+                continue;
+            }
+            queryVacancyCounts[queryId] += other.queryVacancyCounts[queryId];
+            querySalarySums[queryId] += other.querySalarySums[queryId];
+            int[] salaryBuckets = salaryBucketsOf(queryId);
+            int[] otherSalaryBuckets = other.querySalaryBuckets[queryId];
+            for (int i = 0; i < SalarySketch.BUCKET_COUNT; i++) {
+                salaryBuckets[i] += otherSalaryBuckets[i];
+            }
+            if (other.queryEmployers[queryId] != null) {
+                employersOf(queryId).merge(other.queryEmployers[queryId]);
+            }
+            if (other.queryAccreditation[queryId] != null) {
+                mergeCell(accreditationOf(queryId), other.queryAccreditation[queryId]);
+            }
+            queryVacancyIds[queryId] = mergeSketch(queryVacancyIds[queryId], other.queryVacancyIds[queryId]);
+            queryEmployerIds[queryId] = mergeSketch(queryEmployerIds[queryId], other.queryEmployerIds[queryId]);
+            if (other.querySkills[queryId] != null) {
+                mergeCell(skillsOf(queryId), other.querySkills[queryId]);
+            }
+        }
+        other.cells.forEach((key, cell) -> cells.merge(key, cell, VacancyAnalyticsCube::mergeCell));
+        other.currencyCells.forEach((key, cell) -> currencyCells.merge(key, cell, VacancyAnalyticsCube::mergeCell));
+    }
+
+    /**
+     * Method creates accumulator of every query met from primitive arrays of cube.
+     * Accumulators are created anew on each call and are not updated by further changes of cube.
+     * @return map of query to accumulated analytics data of all vacancies of that query.
+     */
+    public Map<String, VacancyAnalyticsAccumulator> getPerQueryAccumulators() {
+        Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = new HashMap<>();
+        for (int queryId = 0; queryId < queryVacancyCounts.length; queryId++) {
+            if (querySalaryBuckets[queryId] != null) {
+                perQueryAccumulators.put(queries.valueOf(queryId), new VacancyAnalyticsAccumulator(
+                        queryVacancyCounts[queryId], querySalarySums[queryId],
+                        SalarySketch.fromBuckets(querySalaryBuckets[queryId]),
+                        distinctCounts ? copyOf(queryVacancyIds[queryId]) : null,
+                        distinctCounts ? copyOf(queryEmployerIds[queryId]) : null));
+            }
+        }
+        return perQueryAccumulators;
+    }
+
+    /**
+     * @return number of vacancies accumulated into cube.
+     */
+    public long getVacancyCount() {
+        return vacancyCount;
+    }
+
+    /**
+     * @return number of vacancies skipped by analytics.
+     */
+    public long getFilteredOutCount() {
+        return filteredOutCount;
+    }
+
+    /**
+     * Method rolls cube up to all combinations of area, experience and employment being either specific value
+     * or {@link #ALL_VALUES}, including the finest level and per-query level.
+     * @param createdAt date of analytics data.
+     * @return cube rows, up to eight rows per each finest cell.
+     */
+    public List<VacancyAnalyticsCubeRow> rollUp(LocalDate createdAt) {
+        Map<Long, long[]> rolledUp = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            for (int allMask = 0; allMask < 8; allMask++) {
+                long rolledUpKey = pack(queryId(key),
+                        (allMask & 1) == 0 ? areaId(key) : DimensionDictionary.ALL,
+                        (allMask & 2) == 0 ? experienceId(key) : DimensionDictionary.ALL,
+                        (allMask & 4) == 0 ? employmentId(key) : DimensionDictionary.ALL);
+                long[] target = rolledUp.computeIfAbsent(rolledUpKey, k -> new long[2]);
+                target[0] += cell[0];
+                target[1] += cell[1];
+            }
+        });
+        List<VacancyAnalyticsCubeRow> rows = new ArrayList<>(rolledUp.size());
+        rolledUp.forEach((key, cell) -> rows.add(new VacancyAnalyticsCubeRow(createdAt,
+                queries.valueOf(queryId(key)),
+                valueOf(areas, areaId(key)),
+                valueOf(experiences, experienceId(key)),
+                valueOf(employments, employmentId(key)),
+                (int) cell[0],
+                (double) cell[1] / cell[0])));
+        return rows;
+    }
+
+    /**
+     * Method converts currency breakdown to rows, one per each query and currency met.
+     * @param createdAt date of analytics data.
+     * @param baseCurrency currency salaries were converted to.
+     * @return currency breakdown rows.
+     */
+    public List<VacancyAnalyticsCurrencyRow> currencyRows(LocalDate createdAt, Currency baseCurrency) {
+        Currency[] currencies = Currency.values();
+        List<VacancyAnalyticsCurrencyRow> rows = new ArrayList<>(currencyCells.size());
+        currencyCells.forEach((key, cell) -> rows.add(new VacancyAnalyticsCurrencyRow(createdAt,
+                queries.valueOf((int) (key >>> CURRENCY_BITS)),
+                currencies[(int) (key & ((1 << CURRENCY_BITS) - 1))],
+                (int) cell[0],
+                (double) cell[1] / cell[0],
+                baseCurrency,
+                (double) cell[2] / cell[0])));
+        return rows;
+    }
+
+    /**
+     * Method ranks employers of every query, monitored by employer breakdown, by vacancy count and by average salary.
+     * Only employers with at least <code>minVacancies</code> vacancies seen while being monitored are ranked
+     * by average salary, so that employers with single well-paid vacancy do not prevail.
+     * @param createdAt date of analytics data.
+     * @param topK maximum number of employers of each query in each ranking.
+     * @param minVacancies minimum number of vacancies of employer ranked by average salary.
+     * @return employer rows, up to <code>2 * topK</code> rows per query.
+     */
+    public List<VacancyAnalyticsEmployerRow> employerRows(LocalDate createdAt, int topK, int minVacancies) {
+        List<VacancyAnalyticsEmployerRow> rows = new ArrayList<>();
+        for (int queryId = 0; queryId < queryEmployers.length; queryId++) {
+            if (queryEmployers[queryId] == null) {
+                continue;
+            }
+            String query = queries.valueOf(queryId);
+            List<EmployerSpaceSaving.Counter> counters = queryEmployers[queryId].counters();
+            addEmployerRows(rows, createdAt, query, AnalyticsTopMetric.COUNT, counters.stream()
+                    .sorted(Comparator.comparingLong(EmployerSpaceSaving.Counter::count).reversed())
+                    .limit(topK)
+                    .toList());
+            addEmployerRows(rows, createdAt, query, AnalyticsTopMetric.SALARY, counters.stream()
+                    .filter(counter -> counter.observedCount() >= minVacancies)
+                    .sorted(Comparator.comparingDouble(EmployerSpaceSaving.Counter::averageSalary).reversed())
+                    .limit(topK)
+                    .toList());
+        }
+        return rows;
+    }
+
+    /**
+     * Method converts accredited and non-accredited split of employer breakdown to rows,
+     * up to two rows per each query.
+     * @param createdAt date of analytics data.
+     * @return employer accreditation rows.
+     */
+    public List<VacancyAnalyticsEmployerAccreditationRow> employerAccreditationRows(LocalDate createdAt) {
+        List<VacancyAnalyticsEmployerAccreditationRow> rows = new ArrayList<>();
+        for (int queryId = 0; queryId < queryAccreditation.length; queryId++) {
+            long[] accreditation = queryAccreditation[queryId];
+            if (accreditation == null) {
+                continue;
+            }
+            for (int offset = 0; offset < accreditation.length; offset += 2) {
+                if (accreditation[offset] > 0) {
+                    rows.add(new VacancyAnalyticsEmployerAccreditationRow(createdAt, queries.valueOf(queryId),
+                            offset == 0, (int) accreditation[offset],
+                            (double) accreditation[offset + 1] / accreditation[offset]));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Method converts skill breakdown to rows, one per each query and skill mentioned by its vacancies.
+     * Salary lift of skill is relative difference between average salary of vacancies of query mentioning skill
+     * and average salary of the other vacancies of the same query, <code>null</code> if all of them mention it.
+     * @param createdAt date of analytics data.
+     * @return skill breakdown rows.
+     */
+    public List<VacancyAnalyticsSkillRow> skillRows(LocalDate createdAt) {
+        List<VacancyAnalyticsSkillRow> rows = new ArrayList<>();
+        for (int queryId = 0; queryId < querySkills.length; queryId++) {
+            long[] skillCells = querySkills[queryId];
+            if (skillCells == null) {
+                continue;
+            }
+            String query = queries.valueOf(queryId);
+            for (int skill = 0; skill < skills.size(); skill++) {
+                long count = skillCells[2 * skill];
+                if (count == 0) {
+                    continue;
+                }
+                double averageSalary = (double) skillCells[2 * skill + 1] / count;
+                long otherCount = queryVacancyCounts[queryId] - count;
+                Double salaryLift = otherCount == 0 ? null : averageSalary
+                        / ((double) (querySalarySums[queryId] - skillCells[2 * skill + 1]) / otherCount) - 1;
+                rows.add(new VacancyAnalyticsSkillRow(createdAt, query, skills.get(skill), (int) count,
+                        (double) count / queryVacancyCounts[queryId], averageSalary, salaryLift));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return human-readable names of all area, experience and employment values met.
+     */
+    public List<VacancyAnalyticsDimension> getDimensionNames() {
+        List<VacancyAnalyticsDimension> dimensions = new ArrayList<>();
+        for (DimensionDictionary dictionary : List.of(areas, experiences, employments)) {
+            dictionary.getNames().forEach((id, name) ->
+                    dimensions.add(new VacancyAnalyticsDimension(dictionary.getDimension(), id, name)));
+        }
+        return dimensions;
+    }
+
+    private void ensureQueryCapacity(int queryId) {
+        if (queryId < queryVacancyCounts.length) {
+            return;
+        }
+        int capacity = Math.max(queryVacancyCounts.length * 2, queryId + 1);
+        queryVacancyCounts = Arrays.copyOf(queryVacancyCounts, capacity);
+        querySalarySums = Arrays.copyOf(querySalarySums, capacity);
+        querySalaryBuckets = Arrays.copyOf(querySalaryBuckets, capacity);
+        queryEmployers = Arrays.copyOf(queryEmployers, capacity);
+        queryAccreditation = Arrays.copyOf(queryAccreditation, capacity);
+        queryVacancyIds = Arrays.copyOf(queryVacancyIds, capacity);
+        queryEmployerIds = Arrays.copyOf(queryEmployerIds, capacity);
+        querySkills = Arrays.copyOf(querySkills, capacity);
+    }
+
+    private int[] salaryBucketsOf(int queryId) {
+        int[] salaryBuckets = querySalaryBuckets[queryId];
+        if (salaryBuckets == null) {
+            salaryBuckets = new int[SalarySketch.BUCKET_COUNT];
+            querySalaryBuckets[queryId] = salaryBuckets;
+        }
+        return salaryBuckets;
+    }
+
+    private EmployerSpaceSaving employersOf(int queryId) {
+        EmployerSpaceSaving employers = queryEmployers[queryId];
+        if (employers == null) {
+            employers = new EmployerSpaceSaving(employerCapacity);
+            queryEmployers[queryId] = employers;
+        }
+        return employers;
+    }
+
+    private long[] accreditationOf(int queryId) {
+        long[] accreditation = queryAccreditation[queryId];
+        if (accreditation == null) {
+            accreditation = new long[4];
+            queryAccreditation[queryId] = accreditation;
+        }
+        return accreditation;
+    }
+
+    private long[] skillsOf(int queryId) {
+        long[] skillCells = querySkills[queryId];
+        if (skillCells == null) {
+            skillCells = new long[2 * skills.size()];
+            querySkills[queryId] = skillCells;
+        }
+        return skillCells;
+    }
+
+    private static HyperLogLog addHash(HyperLogLog sketch, long hash) {
+        HyperLogLog target = sketch != null ? sketch : new HyperLogLog();
+        target.addHash(hash);
+        return target;
+    }
+
+    private static HyperLogLog mergeSketch(HyperLogLog sketch, HyperLogLog other) {
+        if (other == null) {
+            return sketch;
+        }
+        return (sketch != null ? sketch : new HyperLogLog()).merge(other);
+    }
+
+    private static HyperLogLog copyOf(HyperLogLog sketch) {
+        return sketch != null ? new HyperLogLog().merge(sketch) : new HyperLogLog();
+    }
+
+    private static void addEmployerRows(List<VacancyAnalyticsEmployerRow> rows,
+                                        LocalDate createdAt,
+                                        String query,
+                                        AnalyticsTopMetric ranking,
+                                        List<EmployerSpaceSaving.Counter> ranked) {
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            EmployerSpaceSaving.Counter counter = ranked.get(rank);
+            rows.add(new VacancyAnalyticsEmployerRow(createdAt, query, ranking, rank + 1, counter.employerId(),
+                    counter.employerName(), counter.accredited(), (int) counter.count(), (int) counter.error(),
+                    counter.averageSalary()));
+        }
+    }
+
+    private static long[] mergeCell(long[] target, long[] partial) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += partial[i];
+        }
+        return target;
+    }
+
+    private static long pack(int queryId, int areaId, int experienceId, int employmentId) {
+        return ((long) queryId << QUERY_SHIFT)
+                | ((long) areaId << AREA_SHIFT)
+                | ((long) experienceId << EXPERIENCE_SHIFT)
+                | employmentId;
+    }
+
+    private static int queryId(long key) {
+        return (int) (key >>> QUERY_SHIFT);
+    }
+
+    private static int areaId(long key) {
+        return (int) ((key >>> AREA_SHIFT) & ((1 << AREA_BITS) - 1));
+    }
+
+    private static int experienceId(long key) {
+        return (int) ((key >>> EXPERIENCE_SHIFT) & ((1 << EXPERIENCE_BITS) - 1));
+    }
+
+    private static int employmentId(long key) {
+        return (int) (key & ((1 << EMPLOYMENT_BITS) - 1));
+    }
+
+    private static String valueOf(DimensionDictionary dictionary, int id) {
+        return id == DimensionDictionary.ALL ? ALL_VALUES : dictionary.valueOf(id);
+    }
+
+    private static String idOrUnknown(String id) {
+        return id == null ? UNKNOWN_VALUE : id;
+    }
+}
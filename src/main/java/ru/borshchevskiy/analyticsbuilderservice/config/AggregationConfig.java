@@ -0,0 +1,21 @@
+package ru.borshchevskiy.analyticsbuilderservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class AggregationConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool analyticsAggregationPool(AnalyticsBuilderProperties properties) {
+        return new ForkJoinPool(properties.getAggregationParallelism());
+    }
+
+    @Bean
+    public SkillMatcher skillMatcher(AnalyticsBuilderProperties properties) {
+        return new SkillMatcher(properties.getSkills());
+    }
+}
@@ -0,0 +1,410 @@
+package ru.borshchevskiy.analyticsbuilderservice.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of analytics building process, bound from <code>analytics-builder.*</code> properties.
+ */
+@Slf4j
+@Data
+@ConfigurationProperties(prefix = "analytics-builder")
+public class AnalyticsBuilderProperties {
+
+    /**
+     * Mode in which per-query analytics data is built on each scheduled task.
+     */
+    private BuildMode buildMode = BuildMode.FULL;
+
+    /**
+     * Time in milliseconds build lease of a day is held for since it was taken or last extended. While lease is held
+     * by one instance, builds of the same day triggered on other instances are skipped. Lease is extended every
+     * {@link #buildLeaseHeartbeatMs} milliseconds while build runs and released as soon as build finishes,
+     * so it should only be longer than heartbeat interval, to let other instances take it over soon
+     * if instance holding it dies.
+     */
+    private long buildLeaseTtlMs = 300_000;
+
+    /**
+     * Interval in milliseconds build lease is extended by {@link #buildLeaseTtlMs} at while build runs.
+     */
+    private long buildLeaseHeartbeatMs = 60_000;
+
+    /**
+     * Number of summaries of latest builds kept in memory and exposed by <code>analyticsbuilds</code>
+     * actuator endpoint.
+     */
+    private int buildSummaryHistorySize = 20;
+
+    /**
+     * Number of incremental builds after which next build in {@link BuildMode#INCREMENTAL} mode
+     * recomputes running aggregates from the whole vacancy collection.
+     */
+    private int incrementalFullRebuildEvery = 24;
+
+    /**
+     * Interval in milliseconds between writes of queries changed by vacancy change stream
+     * in {@link BuildMode#CHANGE_STREAM} mode.
+     */
+    private long changeStreamFlushIntervalMs = 5000;
+
+    /**
+     * Time in milliseconds change stream is reopened after in {@link BuildMode#CHANGE_STREAM} mode, if it fails.
+     * Time doubles after each consecutive failure, up to {@link #changeStreamMaxBackoffMs}.
+     */
+    private long changeStreamBackoffMs = 1000;
+
+    /**
+     * Maximum time in milliseconds change stream is reopened after in {@link BuildMode#CHANGE_STREAM} mode.
+     */
+    private long changeStreamMaxBackoffMs = 60_000;
+
+    /**
+     * Number of partitions vacancies are split into by hash of their id in {@link BuildMode#DISTRIBUTED} mode.
+     */
+    private int distributedPartitions = 8;
+
+    /**
+     * Time in milliseconds the coordinating instance waits for results of all partitions
+     * in {@link BuildMode#DISTRIBUTED} mode before build is failed.
+     */
+    private long distributedResultTimeoutMs = 600_000;
+
+    /**
+     * Engine that performs per-query aggregation of vacancies in {@link BuildMode#FULL} mode.
+     */
+    private Engine engine = Engine.JAVA;
+
+    /**
+     * Whether analytics cube by query, area, experience and employment is built and saved along with
+     * per-query analytics data. Cube is built in the same pass over vacancies, only in {@link BuildMode#FULL} mode
+     * with {@link Engine#JAVA} engine.
+     */
+    private boolean cubeEnabled = false;
+
+    /**
+     * Whether salaries in all currencies with known exchange rate are converted to {@link #baseCurrency}
+     * and aggregated, and per-currency breakdown is saved along with per-query analytics data.
+     * If disabled, only salaries in RUR are aggregated. Applied only in {@link BuildMode#FULL} mode
+     * with {@link Engine#JAVA} engine.
+     */
+    private boolean currencyNormalizationEnabled = false;
+
+    /**
+     * Currency salaries are converted to when {@link #currencyNormalizationEnabled}.
+     */
+    private Currency baseCurrency = Currency.RUR;
+
+    /**
+     * Interval in milliseconds between reloads of exchange rates when {@link #currencyNormalizationEnabled}.
+     */
+    private long exchangeRatesReloadIntervalMs = 3_600_000;
+
+    /**
+     * Whether top employers of each query by vacancy count and by average salary, and split of vacancies
+     * of accredited and non-accredited IT employers, are saved along with per-query analytics data.
+     * Applied only in {@link BuildMode#FULL} mode with {@link Engine#JAVA} engine. In {@link AggregationMode#PARALLEL}
+     * mode vacancy counts of employers may differ from {@link AggregationMode#SEQUENTIAL} ones within
+     * the same bound as in {@link #employerSketchCapacity}, and employers of the long tail may differ.
+     */
+    private boolean employerAnalyticsEnabled = false;
+
+    /**
+     * Number of employers of each query saved in each ranking when {@link #employerAnalyticsEnabled}.
+     */
+    private int employerTopK = 10;
+
+    /**
+     * Number of employers of each query monitored during aggregation when {@link #employerAnalyticsEnabled}.
+     * Memory taken by query is fixed by this number, and estimated vacancy count of any employer exceeds its
+     * true count by at most vacancy count of query divided by this number.
+     */
+    private int employerSketchCapacity = 100;
+
+    /**
+     * Minimum number of vacancies of employer ranked by average salary when {@link #employerAnalyticsEnabled}.
+     */
+    private int employerMinVacancies = 3;
+
+    /**
+     * Whether HyperLogLog sketches of distinct vacancy and employer ids of each query are saved with its
+     * per-query analytics data, so that distinct counts over any date range can be estimated by merging sketches.
+     * Sketches take about 4 KB each per query. Applied only in {@link BuildMode#FULL} mode
+     * with {@link Engine#JAVA} engine.
+     */
+    private boolean distinctCountsEnabled = false;
+
+    /**
+     * Whether skills mentioned in requirement and responsibility snippets of vacancies are matched against
+     * {@link #skills}, and vacancy count, share and salary lift of each skill of each query are saved along with
+     * per-query analytics data. Applied only in {@link BuildMode#FULL} mode with {@link Engine#JAVA} engine.
+     */
+    private boolean skillsEnabled = false;
+
+    /**
+     * Dictionary of skills matched when {@link #skillsEnabled}, map of skill name to its aliases.
+     * Skill is matched case-insensitively by its name and by any of its aliases as a whole word.
+     * Configured skills are added to the default ones, names with special chars are configured
+     * in brackets, e.g. <code>analytics-builder.skills.[C++]=cpp</code>.
+     */
+    private Map<String, List<String>> skills = defaultSkills();
+
+    /**
+     * Whether 7-day and 30-day rolling windows of vacancy count and salary, their moving averages
+     * and week-over-week deltas are saved with per-query analytics data of each day.
+     * Windows are slid from windows of the previous day, so only rows of three days are read per build.
+     */
+    private boolean trendsEnabled = false;
+
+    /**
+     * Mode in which vacancies are read from Mongo database during analytics build.
+     */
+    private ReadMode readMode = ReadMode.LIST;
+
+    /**
+     * Number of documents fetched from Mongo cursor per round-trip when {@link ReadMode#STREAM}
+     * or {@link ReadMode#PROJECTION} is used.
+     */
+    private int streamBatchSize = 1000;
+
+    /**
+     * Mode in which vacancies are folded into per-query analytics data when {@link Engine#JAVA} is used.
+     */
+    private AggregationMode aggregationMode = AggregationMode.SEQUENTIAL;
+
+    /**
+     * Number of worker threads of aggregation pool used in {@link AggregationMode#PARALLEL} mode.
+     */
+    private int aggregationParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Mode in which built analytics data is written to analytics database.
+     */
+    private WriteMode writeMode = WriteMode.PER_QUERY;
+
+    /**
+     * Maximum number of rows sent to analytics database in one JDBC batch when {@link WriteMode#BATCH} is used.
+     */
+    private int writeBatchSize = 500;
+
+    /**
+     * Maximum number of queries saved at once in {@link WriteMode#PER_QUERY_CONCURRENT} mode.
+     * If not positive, maximum size of Hikari connection pool is used.
+     */
+    private int writeConcurrency = 0;
+
+    /**
+     * Whether queries are saved on virtual threads in {@link WriteMode#PER_QUERY_CONCURRENT} mode.
+     * Ignored if JVM does not support virtual threads, i.e. is older than 21, platform threads are used instead.
+     */
+    private boolean writeVirtualThreads = true;
+
+    /**
+     * Whether reading vacancies through Mongo cursor, aggregation and batch writing of analytics data
+     * are run as pipeline stages on separate threads, connected by bounded buffers.
+     * Applies to {@link ReadMode#STREAM} and {@link ReadMode#PROJECTION} read modes
+     * and to {@link WriteMode#BATCH} write mode.
+     */
+    private boolean pipelineEnabled = false;
+
+    /**
+     * Number of batches each buffer between pipeline stages holds. Stage producing into full buffer waits
+     * until the next stage takes a batch from it.
+     */
+    private int pipelineBufferBatches = 4;
+
+    /**
+     * Maximum number of analytics rows held in cache of read API. Rarely used results are evicted first.
+     */
+    private long readCacheMaxRows = 100_000;
+
+    /**
+     * Time in milliseconds results of read API are cached for. Cache is invalidated as soon as analytics data
+     * is written by this instance, so this only bounds staleness of data written by other instances.
+     */
+    private long readCacheTtlMs = 600_000;
+
+    /**
+     * Whether per-query analytics data of each date written by build or backfill is also exported
+     * to Apache Arrow IPC file of that date on local disk, for analysis without querying analytics database.
+     * Requires <code>--add-opens=java.base/java.nio=ALL-UNNAMED</code> JVM argument.
+     */
+    private boolean snapshotExportEnabled = false;
+
+    /**
+     * Directory columnar snapshots are exported to, partitioned by date.
+     */
+    private String snapshotExportDirectory = "analytics-snapshots";
+
+    /**
+     * Method warns about settings which make analytics differ from what is expected of them.
+     */
+    @PostConstruct
+    public void validate() {
+        List<String> cubeFeatures = enabledCubeFeatures();
+        if (!cubeFeatures.isEmpty() && (buildMode != BuildMode.FULL || engine != Engine.JAVA)) {
+            log.warn("{} are applied only in FULL build mode with JAVA engine, skipping them in {} build mode "
+                    + "with {} engine and aggregating only salaries in RUR", cubeFeatures, buildMode, engine);
+        }
+        if (employerAnalyticsEnabled && aggregationMode == AggregationMode.PARALLEL) {
+            log.warn("Employer analytics is built in PARALLEL aggregation mode, vacancy counts of employers may "
+                    + "differ from SEQUENTIAL mode by up to 1/{} of vacancy count of query", employerSketchCapacity);
+        }
+    }
+
+    /**
+     * Method lists enabled features collected by analytics cube in the same pass over vacancies.
+     * @return names of properties of enabled features.
+     */
+    private List<String> enabledCubeFeatures() {
+        List<String> features = new ArrayList<>();
+        if (cubeEnabled) {
+            features.add("cube-enabled");
+        }
+        if (currencyNormalizationEnabled) {
+            features.add("currency-normalization-enabled");
+        }
+        if (employerAnalyticsEnabled) {
+            features.add("employer-analytics-enabled");
+        }
+        if (distinctCountsEnabled) {
+            features.add("distinct-counts-enabled");
+        }
+        if (skillsEnabled) {
+            features.add("skills-enabled");
+        }
+        return features;
+    }
+
+    public enum BuildMode {
+        /**
+         * Analytics data is computed from the whole vacancy collection.
+         */
+        FULL,
+        /**
+         * Persisted running aggregates are updated with vacancies inserted, updated or deleted since the previous
+         * build, read from Mongo change stream of vacancy collection, and with vacancies expired since then.
+         * Requires Mongo replica set whose oplog holds changes made since the previous build.
+         */
+        INCREMENTAL,
+        /**
+         * Per-query aggregates are kept in memory and updated from Mongo change stream of vacancy collection
+         * as vacancies are inserted, updated and deleted. Changed queries are written periodically,
+         * scheduled tasks write aggregates of all queries.
+         */
+        CHANGE_STREAM,
+        /**
+         * Instance receiving scheduled task splits vacancy collection into partitions and publishes partition tasks,
+         * which are aggregated by all instances of the service. Partial results are merged and written
+         * by the instance that received scheduled task.
+         */
+        DISTRIBUTED
+    }
+
+    public enum Engine {
+        /**
+         * Vacancies are fetched from Mongo database and aggregated by the service.
+         */
+        JAVA,
+        /**
+         * Vacancies are aggregated by Mongo database with aggregation pipeline,
+         * only one row per query is transferred to the service.
+         */
+        MONGO_AGGREGATION
+    }
+
+    public enum ReadMode {
+        /**
+         * All vacancies are loaded into memory before aggregation starts.
+         */
+        LIST,
+        /**
+         * Vacancies are read through Mongo cursor and aggregated one by one as they arrive.
+         */
+        STREAM,
+        /**
+         * Same as {@link #STREAM}, but only fields required by analytics are fetched from Mongo database.
+         */
+        PROJECTION
+    }
+
+    public enum AggregationMode {
+        /**
+         * Vacancies are folded one by one on the thread running the build.
+         */
+        SEQUENTIAL,
+        /**
+         * Vacancies are split between workers of aggregation pool, partial results are merged afterwards.
+         */
+        PARALLEL
+    }
+
+    public enum WriteMode {
+        /**
+         * Analytics data of each query is looked up and saved separately.
+         */
+        PER_QUERY,
+        /**
+         * Analytics data of each query is looked up and saved separately, at most
+         * {@link #getWriteConcurrency()} queries at once.
+         */
+        PER_QUERY_CONCURRENT,
+        /**
+         * Analytics data of all queries is upserted in JDBC batches within single transaction.
+         * Requires unique key on (<code>query</code>, <code>date</code>) columns of <code>vacancy_analytics</code>
+         * table and MySQL 8.0.19 or newer.
+         */
+        BATCH
+    }
+
+    private static Map<String, List<String>> defaultSkills() {
+        Map<String, List<String>> skills = new LinkedHashMap<>();
+        skills.put("Java", List.of());
+        skills.put("Kotlin", List.of());
+        skills.put("Scala", List.of());
+        skills.put("Python", List.of());
+        skills.put("Go", List.of("golang"));
+        skills.put("JavaScript", List.of("js"));
+        skills.put("TypeScript", List.of("ts"));
+        skills.put("C#", List.of(".net", "dotnet"));
+        skills.put("C++", List.of());
+        skills.put("PHP", List.of());
+        skills.put("Spring", List.of("spring boot", "spring framework"));
+        skills.put("Hibernate", List.of("jpa"));
+        skills.put("SQL", List.of());
+        skills.put("PostgreSQL", List.of("postgres"));
+        skills.put("MySQL", List.of());
+        skills.put("Oracle", List.of());
+        skills.put("MongoDB", List.of("mongo"));
+        skills.put("Redis", List.of());
+        skills.put("ClickHouse", List.of());
+        skills.put("Elasticsearch", List.of("elastic"));
+        skills.put("Kafka", List.of());
+        skills.put("RabbitMQ", List.of("rabbit"));
+        skills.put("Docker", List.of());
+        skills.put("Kubernetes", List.of("k8s"));
+        skills.put("Linux", List.of());
+        skills.put("Git", List.of());
+        skills.put("CI/CD", List.of("jenkins", "gitlab ci"));
+        skills.put("AWS", List.of());
+        skills.put("Microservices", List.of("микросервисы", "микросервисной"));
+        skills.put("REST", List.of("rest api", "restful"));
+        skills.put("gRPC", List.of());
+        skills.put("React", List.of("react.js"));
+        skills.put("Angular", List.of());
+        skills.put("Vue", List.of("vue.js"));
+        skills.put("Django", List.of());
+        skills.put("Airflow", List.of());
+        skills.put("Spark", List.of());
+        skills.put("Hadoop", List.of());
+        return skills;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.borshchevskiy.analyticsbuilderservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AnalyticsPipelineConfig {
+
+    /**
+     * Threads running read and write stages of analytics build pipeline, created on demand.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService analyticsPipelineExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "analytics-pipeline-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package ru.borshchevskiy.analyticsbuilderservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class BuildCoordinatorConfig {
+
+    /**
+     * Single thread running analytics builds, so that builds of this instance never overlap
+     * and task listener is not blocked while build is running.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService analyticsBuildExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "analytics-build"));
+    }
+}
@@ -0,0 +1,20 @@
+package ru.borshchevskiy.analyticsbuilderservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+@Configuration
+public class ConcurrentWriteConfig {
+
+    /**
+     * Executor starting new thread per saved query. Number of threads alive at once is limited by
+     * {@link ru.borshchevskiy.analyticsbuilderservice.service.ConcurrentQueryWriter}.
+     */
+    @Bean
+    public SimpleAsyncTaskExecutor analyticsWriteExecutor(AnalyticsBuilderProperties properties) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("analytics-write-");
+        executor.setVirtualThreads(properties.isWriteVirtualThreads() && Runtime.version().feature() >= 21);
+        return executor;
+    }
+}
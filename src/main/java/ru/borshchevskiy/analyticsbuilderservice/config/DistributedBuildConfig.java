@@ -0,0 +1,29 @@
+package ru.borshchevskiy.analyticsbuilderservice.config;
+
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Queue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Queues of distributed analytics build:
+ * <ul>
+ *     <li>partition tasks queue, shared by all instances of the service, which compete for partition tasks;</li>
+ *     <li>results queue, exclusive to this instance, receiving partial results of builds it coordinates.</li>
+ * </ul>
+ */
+@Configuration
+public class DistributedBuildConfig {
+
+    @Bean
+    public Queue analyticsBuilderPartitionTasksQueue(
+            @Value("${spring.rabbitmq.queues.analytics-builder-partition-tasks-queue}") String queueName) {
+        return new Queue(queueName, true);
+    }
+
+    @Bean
+    public AnonymousQueue analyticsBuilderResultsQueue() {
+        return new AnonymousQueue();
+    }
+}
@@ -0,0 +1,108 @@
+package ru.borshchevskiy.analyticsbuilderservice.controller;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryDistinctCountsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryTrendDto;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsQueryService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Read API of per-query analytics data for dashboards, see {@link VacancyAnalyticsQueryService}.
+ */
+@RestController
+@RequestMapping("/api/v1/analytics")
+public class VacancyAnalyticsController {
+
+    private static final int DEFAULT_TIME_SERIES_DAYS = 30;
+    private static final int DEFAULT_DISTINCT_COUNTS_DAYS = 7;
+
+    private final VacancyAnalyticsQueryService vacancyAnalyticsQueryService;
+
+    public VacancyAnalyticsController(VacancyAnalyticsQueryService vacancyAnalyticsQueryService) {
+        this.vacancyAnalyticsQueryService = vacancyAnalyticsQueryService;
+    }
+
+    /**
+     * @param query query analytics data is read for.
+     * @param from first date of range in ISO format, 30 days before <code>to</code> by default.
+     * @param to last date of range in ISO format, today by default.
+     * @return analytics data of query on every date of range it is present on, ordered by date.
+     */
+    @GetMapping("/queries/{query}")
+    public List<QueryAnalyticsDto> getTimeSeries(
+            @PathVariable String query,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate rangeTo = to != null ? to : LocalDate.now();
+        LocalDate rangeFrom = from != null ? from : rangeTo.minusDays(DEFAULT_TIME_SERIES_DAYS - 1);
+        return vacancyAnalyticsQueryService.getTimeSeries(query, rangeFrom, rangeTo);
+    }
+
+    /**
+     * @param query query distinct counts are estimated for.
+     * @param from first date of range in ISO format, 7 days before <code>to</code> by default.
+     * @param to last date of range in ISO format, today by default.
+     * @return estimated numbers of distinct vacancies and employers of query over range.
+     */
+    @GetMapping("/queries/{query}/distinct")
+    public QueryDistinctCountsDto getDistinctCounts(
+            @PathVariable String query,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate rangeTo = to != null ? to : LocalDate.now();
+        LocalDate rangeFrom = from != null ? from : rangeTo.minusDays(DEFAULT_DISTINCT_COUNTS_DAYS - 1);
+        return vacancyAnalyticsQueryService.getDistinctCounts(query, rangeFrom, rangeTo);
+    }
+
+    /**
+     * @param query query trend is read for.
+     * @param date date in ISO format, the latest date analytics data is present for by default.
+     * @return moving averages and week-over-week deltas of query, 404 if they were not saved for that date.
+     */
+    @GetMapping("/queries/{query}/trend")
+    public ResponseEntity<QueryTrendDto> getTrend(
+            @PathVariable String query,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.of(vacancyAnalyticsQueryService.getTrend(query, date));
+    }
+
+    /**
+     * @param metric metric queries are ranked by.
+     * @param limit maximum number of queries returned.
+     * @param date date in ISO format, the latest date analytics data is present for by default.
+     * @return analytics data of queries with the highest value of metric, in descending order.
+     */
+    @GetMapping("/top")
+    public List<QueryAnalyticsDto> getTop(
+            @RequestParam(defaultValue = "COUNT") AnalyticsTopMetric metric,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return vacancyAnalyticsQueryService.getTop(date, metric, limit);
+    }
+
+    /**
+     * @return analytics data of all queries on the latest date analytics data is present for, ordered by query.
+     */
+    @GetMapping("/latest")
+    public List<QueryAnalyticsDto> getLatest() {
+        return vacancyAnalyticsQueryService.getLatest();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ProblemDetail handleIllegalArgument(IllegalArgumentException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+}
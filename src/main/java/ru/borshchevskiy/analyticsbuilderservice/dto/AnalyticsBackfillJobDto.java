@@ -0,0 +1,29 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * State of backfill of per-query analytics data of past dates, run in background.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsBackfillJobDto {
+    private String jobId;
+    private LocalDate from;
+    private LocalDate to;
+    private AnalyticsBuildStatus status;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    /**
+     * Result of backfill, or <code>null</code> if backfill has not succeeded.
+     */
+    private AnalyticsBackfillResultDto result;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Result of rebuilding per-query analytics data of past dates.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsBackfillResultDto {
+    private LocalDate from;
+    private LocalDate to;
+    private long vacanciesScanned;
+    private long rowsWritten;
+    private long durationMs;
+}
@@ -0,0 +1,41 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.BuildLease;
+
+import java.time.Instant;
+
+/**
+ * State of analytics builds triggered on this instance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsBuildStateDto {
+    private String instanceId;
+    /**
+     * Whether build is running on this instance.
+     */
+    private boolean running;
+    /**
+     * Whether another build is going to be run after the running one.
+     */
+    private boolean pending;
+    private long triggersReceived;
+    /**
+     * Number of triggers merged into already pending build.
+     */
+    private long triggersCoalesced;
+    private long buildsStarted;
+    private String lastBuildKey;
+    private AnalyticsBuildStatus lastStatus;
+    private Instant lastStartedAt;
+    private Instant lastFinishedAt;
+    private String lastError;
+    /**
+     * Lease of current day build, shared by all instances, or <code>null</code> if there is none.
+     */
+    private BuildLease currentLease;
+}
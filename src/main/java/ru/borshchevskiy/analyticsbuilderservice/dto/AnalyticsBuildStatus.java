@@ -0,0 +1,22 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+/**
+ * Status of analytics build.
+ */
+public enum AnalyticsBuildStatus {
+    /**
+     * No build has been run yet.
+     */
+    IDLE,
+    /**
+     * Build is waiting for build executor.
+     */
+    PENDING,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    /**
+     * Build was not run, because build of the same day was running on another instance.
+     */
+    SKIPPED
+}
@@ -0,0 +1,42 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of single analytics build, recorded by
+ * {@link ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsBuildSummaryDto {
+    private Instant startedAt;
+    private Instant finishedAt;
+    private AnalyticsBuilderProperties.BuildMode buildMode;
+    private AnalyticsBuilderProperties.Engine engine;
+    private AnalyticsBuildStatus status;
+    private String error;
+    /**
+     * Map of build stage to total time in milliseconds spent in it, in order stages were entered.
+     */
+    private Map<String, Long> stageDurationsMs = new LinkedHashMap<>();
+    /**
+     * Number of vacancies folded into analytics, <code>null</code> if build mode does not scan vacancies.
+     */
+    private Long vacanciesScanned;
+    /**
+     * Number of vacancies with salary skipped because of salary currency,
+     * <code>null</code> if build mode does not scan vacancies.
+     */
+    private Long vacanciesFilteredOut;
+    private int distinctQueries;
+    private long rowsInserted;
+    private long rowsUpdated;
+}
@@ -0,0 +1,22 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Partial per-query analytics data of single partition of vacancies in distributed analytics build.
+ * If partition could not be aggregated, <code>error</code> holds the reason and <code>accumulators</code>
+ * are empty.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsPartitionResultDto {
+    private String buildId;
+    private int partition;
+    private Map<String, VacancyAnalyticsAccumulatorDto> accumulators;
+    private String error;
+}
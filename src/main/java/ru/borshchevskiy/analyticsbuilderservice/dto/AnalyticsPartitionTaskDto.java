@@ -0,0 +1,19 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Task to aggregate single partition of vacancies in distributed analytics build.
+ * Result is sent to <code>replyTo</code> queue of the instance coordinating the build.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsPartitionTaskDto {
+    private String buildId;
+    private int partition;
+    private int partitions;
+    private String replyTo;
+}
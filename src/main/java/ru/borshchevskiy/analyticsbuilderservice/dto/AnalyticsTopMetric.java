@@ -0,0 +1,15 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+/**
+ * Metric queries are ranked by in top of queries returned by read API.
+ */
+public enum AnalyticsTopMetric {
+    /**
+     * Number of vacancies of query.
+     */
+    COUNT,
+    /**
+     * Average salary of vacancies of query.
+     */
+    SALARY
+}
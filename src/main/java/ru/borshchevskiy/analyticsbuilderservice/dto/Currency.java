@@ -1,5 +1,14 @@
 package ru.borshchevskiy.analyticsbuilderservice.dto;
 
 public enum Currency {
-    RUR
+    RUR,
+    USD,
+    EUR,
+    KZT,
+    BYR,
+    UAH,
+    UZS,
+    AZN,
+    GEL,
+    KGS
 }
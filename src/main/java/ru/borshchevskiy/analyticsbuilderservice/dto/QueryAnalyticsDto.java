@@ -0,0 +1,24 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Analytics data of single query on single date, returned by read API.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryAnalyticsDto {
+    private LocalDate date;
+    private String query;
+    private int vacancyCount;
+    private Double averageSalary;
+    private Double salaryP25;
+    private Double salaryP50;
+    private Double salaryP75;
+    private Double salaryP90;
+}
@@ -0,0 +1,24 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Estimated numbers of distinct vacancies and employers of single query over date range, returned by read API.
+ * Unlike <code>vacancyCountSum</code>, distinct counts do not count vacancy present on several dates more than once.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryDistinctCountsDto {
+    private String query;
+    private LocalDate from;
+    private LocalDate to;
+    private int days;
+    private long vacancyCountSum;
+    private long distinctVacancies;
+    private long distinctEmployers;
+}
@@ -0,0 +1,19 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+
+/**
+ * Result of salary aggregation performed by database for single query and {@link SalarySketch} bucket.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuerySalaryAggregateDto {
+    private String query;
+    private int salaryBucket;
+    private long vacancyCount;
+    private double salarySum;
+}
@@ -0,0 +1,29 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Moving averages over 7 and 30 days ending on single date, and deltas against the same day of the previous week,
+ * of vacancy count and average salary of single query, returned by read API.
+ * Averages of vacancy count are taken over days query has analytics data on, averages of salary are weighted
+ * by vacancy count. Deltas are <code>null</code> if query has no analytics data a week before.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryTrendDto {
+    private LocalDate date;
+    private String query;
+    private int vacancyCount;
+    private Double averageSalary;
+    private Double vacancyCountAvg7d;
+    private Double averageSalary7d;
+    private Double vacancyCountAvg30d;
+    private Double averageSalary30d;
+    private Integer vacancyCountDelta7d;
+    private Double averageSalaryDelta7d;
+}
@@ -0,0 +1,20 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+
+/**
+ * Serializable form of {@link VacancyAnalyticsAccumulator}, salary distribution is held
+ * as {@link SalarySketch#toBytes()}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsAccumulatorDto {
+    private long vacancyCount;
+    private long salarySum;
+    private byte[] salarySketch;
+}
@@ -1,14 +1,36 @@
 package ru.borshchevskiy.analyticsbuilderservice.dto;
 
 import lombok.Data;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.RollingWindow;
 
 @Data
 public class VacancyAnalyticsDto {
     private int vacancyCount;
     private Double averageSalary;
+    private Double salaryP25;
+    private Double salaryP50;
+    private Double salaryP75;
+    private Double salaryP90;
+    private byte[] vacancyIdsSketch;
+    private byte[] employerIdsSketch;
+    private Long salarySum;
+    private RollingWindow window7d;
+    private RollingWindow window30d;
+    private Integer vacancyCountDelta7d;
+    private Double averageSalaryDelta7d;
 
     public VacancyAnalyticsDto(int vacancyCount, Double averageSalary) {
         this.vacancyCount = vacancyCount;
         this.averageSalary = averageSalary;
     }
+
+    public VacancyAnalyticsDto(int vacancyCount, Double averageSalary,
+                               Double salaryP25, Double salaryP50, Double salaryP75, Double salaryP90) {
+        this.vacancyCount = vacancyCount;
+        this.averageSalary = averageSalary;
+        this.salaryP25 = salaryP25;
+        this.salaryP50 = salaryP50;
+        this.salaryP75 = salaryP75;
+        this.salaryP90 = salaryP90;
+    }
 }
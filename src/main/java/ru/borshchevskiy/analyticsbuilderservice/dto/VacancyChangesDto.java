@@ -0,0 +1,24 @@
+package ru.borshchevskiy.analyticsbuilderservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.bson.BsonDocument;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+
+import java.util.Map;
+
+/**
+ * Vacancies changed since given position of vacancy change stream.
+ */
+@Data
+@AllArgsConstructor
+public class VacancyChangesDto {
+    /**
+     * Map of id of changed vacancy to its current state, or to <code>null</code> if vacancy was deleted.
+     */
+    private Map<String, VacancySalaryProjection> vacancies;
+    /**
+     * Resume token of change stream right after the last change read.
+     */
+    private BsonDocument resumeToken;
+}
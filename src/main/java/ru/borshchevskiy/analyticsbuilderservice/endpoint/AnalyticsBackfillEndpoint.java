@@ -0,0 +1,49 @@
+package ru.borshchevskiy.analyticsbuilderservice.endpoint;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillJobDto;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBackfillService;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildCoordinator;
+
+import java.time.LocalDate;
+
+/**
+ * Actuator endpoint <code>/actuator/analyticsbackfill</code> rebuilding per-query analytics data of past dates
+ * in background, see {@link AnalyticsBackfillService#backfill(LocalDate, LocalDate)}
+ * and {@link AnalyticsBuildCoordinator#submitBackfill(LocalDate, LocalDate)}.
+ */
+@Component
+@Endpoint(id = "analyticsbackfill")
+public class AnalyticsBackfillEndpoint {
+
+    private final AnalyticsBuildCoordinator analyticsBuildCoordinator;
+
+    public AnalyticsBackfillEndpoint(AnalyticsBuildCoordinator analyticsBuildCoordinator) {
+        this.analyticsBuildCoordinator = analyticsBuildCoordinator;
+    }
+
+    /**
+     * @param from first day of range in ISO format, e.g. <code>2024-01-01</code>.
+     * @param to last day of range in ISO format.
+     * @return state of submitted backfill, its job id is used to poll
+     * <code>/actuator/analyticsbackfill/{jobId}</code>.
+     */
+    @WriteOperation
+    public AnalyticsBackfillJobDto backfill(String from, String to) {
+        return analyticsBuildCoordinator.submitBackfill(LocalDate.parse(from), LocalDate.parse(to));
+    }
+
+    /**
+     * @param jobId id of backfill job.
+     * @return state of backfill, or <code>null</code> if there is no such backfill among latest ones,
+     * which is rendered as 404 response.
+     */
+    @ReadOperation
+    public AnalyticsBackfillJobDto job(@Selector String jobId) {
+        return analyticsBuildCoordinator.getBackfillJob(jobId).orElse(null);
+    }
+}
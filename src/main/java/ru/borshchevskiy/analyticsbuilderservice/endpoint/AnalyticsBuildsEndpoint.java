@@ -0,0 +1,48 @@
+package ru.borshchevskiy.analyticsbuilderservice.endpoint;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildCoordinator;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint <code>/actuator/analyticsbuilds</code> exposing state of analytics builds of this instance
+ * and summaries of latest builds.
+ */
+@Component
+@Endpoint(id = "analyticsbuilds")
+public class AnalyticsBuildsEndpoint {
+
+    private final AnalyticsBuildCoordinator analyticsBuildCoordinator;
+    private final AnalyticsBuildMetrics analyticsBuildMetrics;
+
+    public AnalyticsBuildsEndpoint(AnalyticsBuildCoordinator analyticsBuildCoordinator,
+                                   AnalyticsBuildMetrics analyticsBuildMetrics) {
+        this.analyticsBuildCoordinator = analyticsBuildCoordinator;
+        this.analyticsBuildMetrics = analyticsBuildMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> builds() {
+        return Map.of("state", analyticsBuildCoordinator.getState(),
+                "summaries", analyticsBuildMetrics.getSummaries());
+    }
+
+    /**
+     * @param selector <code>state</code> or <code>last</code>.
+     * @return build state of this instance, or summary of the latest finished build, or <code>null</code>
+     * if there is none, which is rendered as 404 response.
+     */
+    @ReadOperation
+    public Object build(@Selector String selector) {
+        return switch (selector) {
+            case "state" -> analyticsBuildCoordinator.getState();
+            case "last" -> analyticsBuildMetrics.getLastSummary().orElse(null);
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package ru.borshchevskiy.analyticsbuilderservice.endpoint;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.service.ChangeStreamAnalyticsService;
+
+/**
+ * Health indicator <code>changeStream</code> of vacancy change stream watcher
+ * in {@link AnalyticsBuilderProperties.BuildMode#CHANGE_STREAM} mode.
+ * <p>
+ * Watcher is down if it is stopped or has failed {@link #MAX_CONSECUTIVE_FAILURES} times in a row,
+ * fewer failures are reported in details only. In other build modes state is unknown.
+ */
+@Component
+public class ChangeStreamHealthIndicator extends AbstractHealthIndicator {
+
+    static final int MAX_CONSECUTIVE_FAILURES = 3;
+
+    private final ChangeStreamAnalyticsService changeStreamAnalyticsService;
+    private final AnalyticsBuilderProperties properties;
+
+    public ChangeStreamHealthIndicator(ChangeStreamAnalyticsService changeStreamAnalyticsService,
+                                       AnalyticsBuilderProperties properties) {
+        this.changeStreamAnalyticsService = changeStreamAnalyticsService;
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (properties.getBuildMode() != AnalyticsBuilderProperties.BuildMode.CHANGE_STREAM) {
+            builder.unknown().withDetail("buildMode", properties.getBuildMode());
+            return;
+        }
+        ChangeStreamAnalyticsService.WatcherState state = changeStreamAnalyticsService.getWatcherState();
+        if (!state.running() || state.consecutiveFailures() >= MAX_CONSECUTIVE_FAILURES) {
+            builder.down();
+        } else {
+            builder.up();
+        }
+        builder.withDetail("running", state.running())
+                .withDetail("watching", state.watching())
+                .withDetail("consecutiveFailures", state.consecutiveFailures());
+        if (state.lastFailure() != null) {
+            builder.withDetail("lastFailure", state.lastFailure())
+                    .withDetail("lastFailureAt", state.lastFailureAt());
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package ru.borshchevskiy.analyticsbuilderservice.mapper;
 
 import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.RollingWindow;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryTrendDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsAccumulatorDto;
 import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
 import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
 
@@ -14,6 +20,78 @@ public class VacancyAnalyticsMapper {
         vacancyAnalytics.setQuery(query);
         vacancyAnalytics.setVacancyCount(vacancyAnalyticsDto.getVacancyCount());
         vacancyAnalytics.setAverageSalary(vacancyAnalyticsDto.getAverageSalary());
+        vacancyAnalytics.setSalaryP25(vacancyAnalyticsDto.getSalaryP25());
+        vacancyAnalytics.setSalaryP50(vacancyAnalyticsDto.getSalaryP50());
+        vacancyAnalytics.setSalaryP75(vacancyAnalyticsDto.getSalaryP75());
+        vacancyAnalytics.setSalaryP90(vacancyAnalyticsDto.getSalaryP90());
+        vacancyAnalytics.setVacancyIdsSketch(vacancyAnalyticsDto.getVacancyIdsSketch());
+        vacancyAnalytics.setEmployerIdsSketch(vacancyAnalyticsDto.getEmployerIdsSketch());
+        mapTrendsToEntity(vacancyAnalyticsDto, vacancyAnalytics);
         return vacancyAnalytics;
     }
+
+    /**
+     * Method copies daily salary sum, rolling windows and their moving averages, and week-over-week deltas
+     * from dto to entity. Window columns are set to <code>null</code> if dto holds no windows.
+     */
+    public void mapTrendsToEntity(VacancyAnalyticsDto vacancyAnalyticsDto, VacancyAnalytics vacancyAnalytics) {
+        vacancyAnalytics.setSalarySum(vacancyAnalyticsDto.getSalarySum());
+        RollingWindow window7d = vacancyAnalyticsDto.getWindow7d();
+        vacancyAnalytics.setVacancyCount7d(window7d == null ? null : window7d.vacancyCount());
+        vacancyAnalytics.setSalarySum7d(window7d == null ? null : window7d.salarySum());
+        vacancyAnalytics.setDays7d(window7d == null ? null : window7d.days());
+        vacancyAnalytics.setVacancyCountAvg7d(window7d == null ? null : window7d.averageVacancyCount());
+        vacancyAnalytics.setAverageSalary7d(window7d == null ? null : window7d.averageSalary());
+        RollingWindow window30d = vacancyAnalyticsDto.getWindow30d();
+        vacancyAnalytics.setVacancyCount30d(window30d == null ? null : window30d.vacancyCount());
+        vacancyAnalytics.setSalarySum30d(window30d == null ? null : window30d.salarySum());
+        vacancyAnalytics.setDays30d(window30d == null ? null : window30d.days());
+        vacancyAnalytics.setVacancyCountAvg30d(window30d == null ? null : window30d.averageVacancyCount());
+        vacancyAnalytics.setAverageSalary30d(window30d == null ? null : window30d.averageSalary());
+        vacancyAnalytics.setVacancyCountDelta7d(vacancyAnalyticsDto.getVacancyCountDelta7d());
+        vacancyAnalytics.setAverageSalaryDelta7d(vacancyAnalyticsDto.getAverageSalaryDelta7d());
+    }
+
+    public VacancyAnalyticsDto mapToDto(VacancyAnalyticsAccumulator accumulator) {
+        if (accumulator.getVacancyCount() <= 0) {
+            return new VacancyAnalyticsDto(0, null);
+        }
+        VacancyAnalyticsDto vacancyAnalyticsDto = new VacancyAnalyticsDto((int) accumulator.getVacancyCount(),
+                accumulator.getAverageSalary(),
+                accumulator.getSalaryPercentile(0.25), accumulator.getSalaryPercentile(0.5),
+                accumulator.getSalaryPercentile(0.75), accumulator.getSalaryPercentile(0.9));
+        vacancyAnalyticsDto.setSalarySum(accumulator.getSalarySum());
+        if (accumulator.getVacancyIds() != null) {
+            vacancyAnalyticsDto.setVacancyIdsSketch(accumulator.getVacancyIds().toBytes());
+        }
+        if (accumulator.getEmployerIds() != null) {
+            vacancyAnalyticsDto.setEmployerIdsSketch(accumulator.getEmployerIds().toBytes());
+        }
+        return vacancyAnalyticsDto;
+    }
+
+    public QueryAnalyticsDto mapToQueryAnalyticsDto(VacancyAnalytics vacancyAnalytics) {
+        return new QueryAnalyticsDto(vacancyAnalytics.getCreatedAt(), vacancyAnalytics.getQuery(),
+                vacancyAnalytics.getVacancyCount(), vacancyAnalytics.getAverageSalary(),
+                vacancyAnalytics.getSalaryP25(), vacancyAnalytics.getSalaryP50(),
+                vacancyAnalytics.getSalaryP75(), vacancyAnalytics.getSalaryP90());
+    }
+
+    public QueryTrendDto mapToQueryTrendDto(VacancyAnalytics vacancyAnalytics) {
+        return new QueryTrendDto(vacancyAnalytics.getCreatedAt(), vacancyAnalytics.getQuery(),
+                vacancyAnalytics.getVacancyCount(), vacancyAnalytics.getAverageSalary(),
+                vacancyAnalytics.getVacancyCountAvg7d(), vacancyAnalytics.getAverageSalary7d(),
+                vacancyAnalytics.getVacancyCountAvg30d(), vacancyAnalytics.getAverageSalary30d(),
+                vacancyAnalytics.getVacancyCountDelta7d(), vacancyAnalytics.getAverageSalaryDelta7d());
+    }
+
+    public VacancyAnalyticsAccumulatorDto mapToAccumulatorDto(VacancyAnalyticsAccumulator accumulator) {
+        return new VacancyAnalyticsAccumulatorDto(accumulator.getVacancyCount(), accumulator.getSalarySum(),
+                accumulator.getSalarySketch().toBytes());
+    }
+
+    public VacancyAnalyticsAccumulator mapToAccumulator(VacancyAnalyticsAccumulatorDto accumulatorDto) {
+        return new VacancyAnalyticsAccumulator(accumulatorDto.getVacancyCount(), accumulatorDto.getSalarySum(),
+                SalarySketch.fromBytes(accumulatorDto.getSalarySketch()));
+    }
 }
@@ -0,0 +1,24 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStatus;
+
+import java.time.Instant;
+
+/**
+ * Lease of analytics build of single day, row of <code>analytics_build_lease</code> table.
+ * While lease is not expired, only its owner instance may build analytics of that day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BuildLease {
+    private String buildKey;
+    private String owner;
+    private Instant expiresAt;
+    private AnalyticsBuildStatus status;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
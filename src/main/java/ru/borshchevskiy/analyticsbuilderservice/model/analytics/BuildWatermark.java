@@ -0,0 +1,22 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * High-water mark of incremental analytics build.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BuildWatermark {
+    /**
+     * Resume token of vacancy change stream, in JSON, changes up to which are applied to running aggregates.
+     */
+    private String resumeToken;
+    /**
+     * Number of incremental builds made since the last full rebuild of running aggregates.
+     */
+    private int incrementalBuilds;
+}
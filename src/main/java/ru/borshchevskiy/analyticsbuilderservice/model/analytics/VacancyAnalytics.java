@@ -20,4 +20,42 @@ public class VacancyAnalytics {
     private int vacancyCount;
     @Column("average_salary")
     private Double averageSalary;
+    @Column("salary_p25")
+    private Double salaryP25;
+    @Column("salary_p50")
+    private Double salaryP50;
+    @Column("salary_p75")
+    private Double salaryP75;
+    @Column("salary_p90")
+    private Double salaryP90;
+    @Column("vacancy_ids_sketch")
+    private byte[] vacancyIdsSketch;
+    @Column("employer_ids_sketch")
+    private byte[] employerIdsSketch;
+    @Column("salary_sum")
+    private Long salarySum;
+    @Column("vacancy_count_7d")
+    private Long vacancyCount7d;
+    @Column("salary_sum_7d")
+    private Long salarySum7d;
+    @Column("days_7d")
+    private Integer days7d;
+    @Column("vacancy_count_30d")
+    private Long vacancyCount30d;
+    @Column("salary_sum_30d")
+    private Long salarySum30d;
+    @Column("days_30d")
+    private Integer days30d;
+    @Column("vacancy_count_avg_7d")
+    private Double vacancyCountAvg7d;
+    @Column("average_salary_7d")
+    private Double averageSalary7d;
+    @Column("vacancy_count_avg_30d")
+    private Double vacancyCountAvg30d;
+    @Column("average_salary_30d")
+    private Double averageSalary30d;
+    @Column("vacancy_count_delta_7d")
+    private Integer vacancyCountDelta7d;
+    @Column("average_salary_delta_7d")
+    private Double averageSalaryDelta7d;
 }
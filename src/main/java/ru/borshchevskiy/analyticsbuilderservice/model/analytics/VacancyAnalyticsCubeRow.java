@@ -0,0 +1,26 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Analytics data of vacancies of single query with specified area, experience and employment,
+ * row of <code>vacancy_analytics_cube</code> table.
+ * Dimension value {@value ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsCube#ALL_VALUES}
+ * means that row aggregates all values of that dimension.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsCubeRow {
+    private LocalDate createdAt;
+    private String query;
+    private String areaId;
+    private String experienceId;
+    private String employmentId;
+    private int vacancyCount;
+    private Double averageSalary;
+}
@@ -0,0 +1,25 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+
+import java.time.LocalDate;
+
+/**
+ * Analytics data of vacancies of single query with salary in specified currency,
+ * row of <code>vacancy_analytics_currency</code> table.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsCurrencyRow {
+    private LocalDate createdAt;
+    private String query;
+    private Currency currency;
+    private int vacancyCount;
+    private Double averageSalary;
+    private Currency baseCurrency;
+    private Double averageBaseSalary;
+}
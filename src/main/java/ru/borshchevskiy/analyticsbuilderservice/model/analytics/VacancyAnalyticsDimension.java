@@ -0,0 +1,18 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Human-readable name of dimension value of analytics cube,
+ * row of <code>vacancy_analytics_dimension</code> table.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsDimension {
+    private String dimension;
+    private String id;
+    private String name;
+}
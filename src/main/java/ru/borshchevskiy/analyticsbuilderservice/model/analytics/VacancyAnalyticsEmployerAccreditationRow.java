@@ -0,0 +1,22 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Analytics data of vacancies of single query offered by either accredited or non-accredited IT employers,
+ * row of <code>vacancy_analytics_employer_accreditation</code> table.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsEmployerAccreditationRow {
+    private LocalDate createdAt;
+    private String query;
+    private boolean accredited;
+    private int vacancyCount;
+    private Double averageSalary;
+}
@@ -0,0 +1,29 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
+
+import java.time.LocalDate;
+
+/**
+ * Employer of single query ranked by vacancy count or by average salary,
+ * row of <code>vacancy_analytics_employer</code> table.
+ * Vacancy count is estimated and may exceed true count by at most <code>countError</code>.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsEmployerRow {
+    private LocalDate createdAt;
+    private String query;
+    private AnalyticsTopMetric ranking;
+    private int rank;
+    private String employerId;
+    private String employerName;
+    private boolean accredited;
+    private int vacancyCount;
+    private int countError;
+    private Double averageSalary;
+}
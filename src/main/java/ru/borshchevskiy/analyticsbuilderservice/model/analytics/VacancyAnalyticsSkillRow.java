@@ -0,0 +1,26 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Analytics data of vacancies of single query mentioning single skill,
+ * row of <code>vacancy_analytics_skill</code> table.
+ * Salary lift is relative difference between average salary of vacancies mentioning skill and average salary
+ * of the other vacancies of query, <code>null</code> if all vacancies of query mention skill.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyAnalyticsSkillRow {
+    private LocalDate createdAt;
+    private String query;
+    private String skill;
+    private int vacancyCount;
+    private double vacancyShare;
+    private Double averageSalary;
+    private Double salaryLift;
+}
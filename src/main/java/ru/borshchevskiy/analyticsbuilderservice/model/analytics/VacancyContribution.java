@@ -0,0 +1,30 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Contribution of single vacancy to running aggregates of incremental analytics build.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VacancyContribution {
+    private String vacancyId;
+    /**
+     * Queries whose running aggregates vacancy is counted in.
+     */
+    private Set<String> queries;
+    /**
+     * Salary vacancy is counted with.
+     */
+    private long salary;
+    /**
+     * Time contribution is subtracted at, or <code>null</code> if vacancy is not scheduled for deletion.
+     */
+    private Instant deleteAt;
+}
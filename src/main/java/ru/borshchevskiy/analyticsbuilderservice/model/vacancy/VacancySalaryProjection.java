@@ -0,0 +1,37 @@
+package ru.borshchevskiy.analyticsbuilderservice.model.vacancy;
+
+import lombok.Data;
+
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Slim read model of vacancy document, holding only fields required to build analytics.
+ */
+@Data
+public class VacancySalaryProjection {
+
+    private String id;
+
+    private SalaryEntity salaryEntity;
+
+    private AreaEntity areaEntity;
+
+    private ExperienceEntity experienceEntity;
+
+    private EmploymentEntity employmentEntity;
+
+    private EmployerEntity employerEntity;
+
+    private SnippetEntity snippetEntity;
+
+    private String publishedAt;
+
+    private String createdAt;
+
+    private Boolean archived;
+
+    private Date deleteAt;
+
+    private Set<String> query;
+}
@@ -0,0 +1,137 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.springframework.stereotype.Repository;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Repository of columnar snapshots of per-query analytics data, one file per date, stored on local disk under
+ * {@link AnalyticsBuilderProperties#getSnapshotExportDirectory()} and partitioned by date:
+ * <code>date=2024-05-01/vacancy_analytics.arrow</code>.
+ * <p>
+ * File is in Apache Arrow IPC file format, with single record batch of schema {@link #SCHEMA}: non-nullable
+ * <code>query</code> (utf8) and <code>vacancy_count</code> (int32) columns, followed by nullable float64 salary
+ * columns. It can be read by any Arrow implementation, e.g. <code>pyarrow.ipc.open_file</code>, or as a dataset
+ * partitioned by date directory names. Arrow memory module requires
+ * <code>--add-opens=java.base/java.nio=ALL-UNNAMED</code> JVM argument.
+ * <p>
+ * File is written into temporary file, which then atomically replaces previous snapshot of the same date,
+ * so readers never see partially written file.
+ */
+@Repository
+public class AnalyticsSnapshotRepository {
+
+    public static final String FILE_NAME = "vacancy_analytics.arrow";
+    public static final String QUERY = "query";
+    public static final String VACANCY_COUNT = "vacancy_count";
+    public static final List<String> SALARY_COLUMNS =
+            List.of("average_salary", "salary_p25", "salary_p50", "salary_p75", "salary_p90");
+    public static final Schema SCHEMA = schema();
+
+    private static final List<Function<VacancyAnalytics, Double>> SALARY_GETTERS = List.of(
+            VacancyAnalytics::getAverageSalary, VacancyAnalytics::getSalaryP25, VacancyAnalytics::getSalaryP50,
+            VacancyAnalytics::getSalaryP75, VacancyAnalytics::getSalaryP90);
+
+    private final Path directory;
+
+    public AnalyticsSnapshotRepository(AnalyticsBuilderProperties properties) {
+        this.directory = Path.of(properties.getSnapshotExportDirectory());
+    }
+
+    /**
+     * Method writes snapshot of specified date, replacing existing one.
+     * @param date date of analytics data.
+     * @param analytics analytics data of all queries on that date.
+     * @return path of written file.
+     * @throws UncheckedIOException if file cannot be written.
+     */
+    public Path write(LocalDate date, List<VacancyAnalytics> analytics) {
+        Path partition = partition(date);
+        Path file = partition.resolve(FILE_NAME);
+        try {
+            Files.createDirectories(partition);
+            Path temporaryFile = Files.createTempFile(partition, FILE_NAME, ".tmp");
+            try (BufferAllocator allocator = new RootAllocator();
+                 VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator);
+                 FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING);
+                 ArrowFileWriter writer = new ArrowFileWriter(root, null, channel)) {
+                fill(root, analytics);
+                writer.start();
+                writer.writeBatch();
+                writer.end();
+                channel.force(false);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temporaryFile);
+                throw e;
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write analytics snapshot " + file, e);
+        }
+        return file;
+    }
+
+    private Path partition(LocalDate date) {
+        return directory.resolve("date=" + date);
+    }
+
+    private static void fill(VectorSchemaRoot root, List<VacancyAnalytics> analytics) {
+        root.allocateNew();
+        VarCharVector queries = (VarCharVector) root.getVector(QUERY);
+        IntVector vacancyCounts = (IntVector) root.getVector(VACANCY_COUNT);
+        for (int row = 0; row < analytics.size(); row++) {
+            VacancyAnalytics vacancyAnalytics = analytics.get(row);
+            queries.setSafe(row, vacancyAnalytics.getQuery().getBytes(StandardCharsets.UTF_8));
+            vacancyCounts.setSafe(row, vacancyAnalytics.getVacancyCount());
+        }
+        for (int i = 0; i < SALARY_COLUMNS.size(); i++) {
+            Float8Vector salaries = (Float8Vector) root.getVector(SALARY_COLUMNS.get(i));
+            for (int row = 0; row < analytics.size(); row++) {
+                Double value = SALARY_GETTERS.get(i).apply(analytics.get(row));
+                if (value == null) {
+                    salaries.setNull(row);
+                } else {
+                    salaries.setSafe(row, value);
+                }
+            }
+        }
+        root.setRowCount(analytics.size());
+    }
+
+    private static Schema schema() {
+        List<Field> fields = new ArrayList<>();
+        fields.add(new Field(QUERY, FieldType.notNullable(ArrowType.Utf8.INSTANCE), null));
+        fields.add(new Field(VACANCY_COUNT, FieldType.notNullable(new ArrowType.Int(32, true)), null));
+        for (String column : SALARY_COLUMNS) {
+            fields.add(new Field(column,
+                    FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null));
+        }
+        return new Schema(fields);
+    }
+}
@@ -0,0 +1,100 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStatus;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.BuildLease;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Repository of build leases, stored in <code>analytics_build_lease</code> table, one row per build key.
+ * Each statement either takes or keeps the lease atomically, so at most one instance holds unexpired lease.
+ */
+@Repository
+public class BuildLeaseRepository {
+
+    private static final String INSERT_SQL = """
+            INSERT IGNORE INTO analytics_build_lease (build_key, owner, expires_at, status, started_at)
+            VALUES (?, ?, ?, 'RUNNING', ?)""";
+
+    private static final String TAKE_EXPIRED_SQL = """
+            UPDATE analytics_build_lease
+            SET owner = ?, expires_at = ?, status = 'RUNNING', started_at = ?, finished_at = NULL
+            WHERE build_key = ? AND expires_at <= ?""";
+
+    private static final String RENEW_SQL = """
+            UPDATE analytics_build_lease
+            SET expires_at = ?
+            WHERE build_key = ? AND owner = ? AND status = 'RUNNING'""";
+
+    private static final String RELEASE_SQL = """
+            UPDATE analytics_build_lease
+            SET expires_at = ?, status = ?, finished_at = ?
+            WHERE build_key = ? AND owner = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BuildLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method takes lease of specified build key if there is no lease yet or existing lease is expired.
+     * @param buildKey key of build.
+     * @param owner id of instance taking lease.
+     * @param now current time.
+     * @param expiresAt time lease expires at unless released earlier.
+     * @return <code>true</code> if lease is taken.
+     */
+    public boolean tryAcquire(String buildKey, String owner, Instant now, Instant expiresAt) {
+        if (jdbcTemplate.update(INSERT_SQL, buildKey, owner, Timestamp.from(expiresAt), Timestamp.from(now)) == 1) {
+            return true;
+        }
+        return jdbcTemplate.update(TAKE_EXPIRED_SQL, owner, Timestamp.from(expiresAt), Timestamp.from(now),
+                buildKey, Timestamp.from(now)) == 1;
+    }
+
+    /**
+     * Method extends lease held by specified owner.
+     * @param buildKey key of build.
+     * @param owner id of instance holding lease.
+     * @param expiresAt new time lease expires at unless released earlier.
+     * @return <code>true</code> if lease is still held by owner and is extended.
+     */
+    public boolean renew(String buildKey, String owner, Instant expiresAt) {
+        return jdbcTemplate.update(RENEW_SQL, Timestamp.from(expiresAt), buildKey, owner) == 1;
+    }
+
+    /**
+     * Method releases lease held by specified owner, recording outcome of the build.
+     * @param buildKey key of build.
+     * @param owner id of instance holding lease.
+     * @param now current time.
+     * @param status final status of build.
+     */
+    public void release(String buildKey, String owner, Instant now, AnalyticsBuildStatus status) {
+        jdbcTemplate.update(RELEASE_SQL, Timestamp.from(now), status.name(), Timestamp.from(now), buildKey, owner);
+    }
+
+    public Optional<BuildLease> findByBuildKey(String buildKey) {
+        return jdbcTemplate.query("""
+                                SELECT build_key, owner, expires_at, status, started_at, finished_at
+                                FROM analytics_build_lease WHERE build_key = ?""",
+                        (rs, rowNum) -> new BuildLease(rs.getString("build_key"),
+                                rs.getString("owner"),
+                                rs.getTimestamp("expires_at").toInstant(),
+                                AnalyticsBuildStatus.valueOf(rs.getString("status")),
+                                toInstant(rs.getTimestamp("started_at")),
+                                toInstant(rs.getTimestamp("finished_at"))),
+                        buildKey)
+                .stream()
+                .findFirst();
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.bson.BsonDocument;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository of resume token of vacancy change stream, stored as single row
+ * of <code>vacancy_change_stream_state</code> table.
+ */
+@Repository
+public class ChangeStreamStateRepository {
+
+    private static final String SAVE_RESUME_TOKEN_SQL = """
+            INSERT INTO vacancy_change_stream_state (id, resume_token)
+            VALUES (1, ?) AS new
+            ON DUPLICATE KEY UPDATE resume_token = new.resume_token""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChangeStreamStateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<BsonDocument> findResumeToken() {
+        return jdbcTemplate.query("SELECT resume_token FROM vacancy_change_stream_state WHERE id = 1",
+                        (rs, rowNum) -> BsonDocument.parse(rs.getString("resume_token")))
+                .stream()
+                .findFirst();
+    }
+
+    public void saveResumeToken(BsonDocument resumeToken) {
+        jdbcTemplate.update(SAVE_RESUME_TOKEN_SQL, resumeToken.toJson());
+    }
+}
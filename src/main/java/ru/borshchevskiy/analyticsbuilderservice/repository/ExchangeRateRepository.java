@@ -0,0 +1,41 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Repository of exchange rates of salary currencies, stored in <code>currency_exchange_rate</code> table
+ * as amount of currency per one RUR.
+ */
+@Slf4j
+@Repository
+public class ExchangeRateRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ExchangeRateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method reads all exchange rates. Rates of currencies unknown to the service are skipped.
+     * @return map of currency to amount of that currency per one RUR.
+     */
+    public Map<Currency, Double> findAll() {
+        Map<Currency, Double> rates = new EnumMap<>(Currency.class);
+        jdbcTemplate.query("SELECT currency, rate FROM currency_exchange_rate", rs -> {
+            String code = rs.getString("currency");
+            try {
+                rates.put(Currency.valueOf(code), rs.getDouble("rate"));
+            } catch (IllegalArgumentException e) {
+                log.warn("Skipping exchange rate of unknown currency {}", code);
+            }
+        });
+        return rates;
+    }
+}
@@ -0,0 +1,215 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.BuildWatermark;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyContribution;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Repository of state of incremental analytics build:
+ * <ul>
+ *     <li><code>vacancy_query_aggregate</code> - running per-query vacancy count, salary sum and salary sketch;</li>
+ *     <li><code>vacancy_contribution</code> - queries, salary and deletion time of each vacancy counted
+ *     in running aggregates, see {@link VacancyContribution};</li>
+ *     <li><code>vacancy_analytics_watermark</code> - single row holding {@link BuildWatermark}.</li>
+ * </ul>
+ */
+@Repository
+public class IncrementalAnalyticsRepository {
+
+    private static final String SAVE_AGGREGATE_SQL = """
+            INSERT INTO vacancy_query_aggregate (query, vacancy_count, salary_sum, salary_sketch)
+            VALUES (?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE vacancy_count = new.vacancy_count, salary_sum = new.salary_sum,
+                                    salary_sketch = new.salary_sketch""";
+
+    private static final String SAVE_CONTRIBUTION_SQL = """
+            INSERT INTO vacancy_contribution (vacancy_id, queries, salary, delete_at)
+            VALUES (?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE queries = new.queries, salary = new.salary, delete_at = new.delete_at""";
+
+    private static final String SAVE_WATERMARK_SQL = """
+            INSERT INTO vacancy_analytics_watermark (id, resume_token, incremental_builds)
+            VALUES (1, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE resume_token = new.resume_token, incremental_builds = new.incremental_builds""";
+
+    private static final String QUERY_SEPARATOR = "\n";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IncrementalAnalyticsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<BuildWatermark> findWatermark() {
+        return jdbcTemplate.query(
+                "SELECT resume_token, incremental_builds FROM vacancy_analytics_watermark WHERE id = 1",
+                (rs, rowNum) -> new BuildWatermark(rs.getString("resume_token"), rs.getInt("incremental_builds")))
+                .stream()
+                .findFirst();
+    }
+
+    public void saveWatermark(BuildWatermark watermark) {
+        jdbcTemplate.update(SAVE_WATERMARK_SQL, watermark.getResumeToken(), watermark.getIncrementalBuilds());
+    }
+
+    /**
+     * Method loads running aggregates of all queries with at least one vacancy.
+     * @return map of query to running aggregate.
+     */
+    public Map<String, VacancyAnalyticsAccumulator> findAllAggregates() {
+        Map<String, VacancyAnalyticsAccumulator> aggregates = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT query, vacancy_count, salary_sum, salary_sketch
+                        FROM vacancy_query_aggregate WHERE vacancy_count > 0""",
+                rs -> {
+                    aggregates.put(rs.getString("query"), readAccumulator(rs));
+                });
+        return aggregates;
+    }
+
+    /**
+     * Method adds per-query deltas to running aggregates. Negative deltas subtract vacancies from aggregates,
+     * aggregates left without vacancies are removed.
+     * <p>
+     * Since salary sketches can't be summed by database, affected aggregates are read,
+     * merged with deltas and written back, so method must be called within transaction.
+     * @param deltas map of query to delta.
+     * @param batchSize maximum number of rows sent to database in one batch, or queries looked up in one query.
+     */
+    public void addAggregates(Map<String, VacancyAnalyticsAccumulator> deltas, int batchSize) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Map<String, VacancyAnalyticsAccumulator> aggregates = new HashMap<>();
+        List<String> queries = new ArrayList<>(deltas.keySet());
+        for (int from = 0; from < queries.size(); from += batchSize) {
+            List<String> batch = queries.subList(from, Math.min(from + batchSize, queries.size()));
+            jdbcTemplate.query("SELECT query, vacancy_count, salary_sum, salary_sketch FROM vacancy_query_aggregate " +
+                            "WHERE query IN (" + placeholders(batch.size()) + ") FOR UPDATE",
+                    rs -> {
+                        aggregates.put(rs.getString("query"), readAccumulator(rs));
+                    }, batch.toArray());
+        }
+        deltas.forEach((query, delta) ->
+                aggregates.computeIfAbsent(query, key -> new VacancyAnalyticsAccumulator()).merge(delta));
+        replaceAggregates(aggregates, batchSize);
+    }
+
+    /**
+     * Method overwrites running aggregates of specified queries with new values,
+     * aggregates left without vacancies are removed.
+     * @param aggregates map of query to running aggregate.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     */
+    public void replaceAggregates(Map<String, VacancyAnalyticsAccumulator> aggregates, int batchSize) {
+        jdbcTemplate.batchUpdate(SAVE_AGGREGATE_SQL, aggregates.entrySet(), batchSize, (ps, entry) -> {
+            ps.setString(1, entry.getKey());
+            ps.setLong(2, entry.getValue().getVacancyCount());
+            ps.setLong(3, entry.getValue().getSalarySum());
+            ps.setBytes(4, entry.getValue().getSalarySketch().toBytes());
+        });
+        jdbcTemplate.update("DELETE FROM vacancy_query_aggregate WHERE vacancy_count <= 0");
+    }
+
+    /**
+     * Method loads contributions of specified vacancies, vacancies not counted in running aggregates are skipped.
+     * Contributions are locked until the end of transaction, so method must be called within transaction.
+     * @param vacancyIds ids of vacancies.
+     * @param batchSize maximum number of ids looked up in one query.
+     * @return map of vacancy id to its contribution.
+     */
+    public Map<String, VacancyContribution> findContributions(Collection<String> vacancyIds, int batchSize) {
+        Map<String, VacancyContribution> contributions = new HashMap<>();
+        List<String> ids = new ArrayList<>(vacancyIds);
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            jdbcTemplate.query("SELECT vacancy_id, queries, salary, delete_at FROM vacancy_contribution " +
+                            "WHERE vacancy_id IN (" + placeholders(batch.size()) + ") FOR UPDATE",
+                    rs -> {
+                        VacancyContribution contribution = readContribution(rs);
+                        contributions.put(contribution.getVacancyId(), contribution);
+                    }, batch.toArray());
+        }
+        return contributions;
+    }
+
+    /**
+     * Method saves contributions of vacancies, replacing already saved contributions of the same vacancies.
+     * @param contributions contributions to be saved.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     */
+    public void saveContributions(Collection<VacancyContribution> contributions, int batchSize) {
+        jdbcTemplate.batchUpdate(SAVE_CONTRIBUTION_SQL, contributions, batchSize, (ps, contribution) -> {
+            ps.setString(1, contribution.getVacancyId());
+            ps.setString(2, String.join(QUERY_SEPARATOR, contribution.getQueries()));
+            ps.setLong(3, contribution.getSalary());
+            ps.setTimestamp(4, contribution.getDeleteAt() == null ? null : Timestamp.from(contribution.getDeleteAt()));
+        });
+    }
+
+    /**
+     * Method removes contributions of vacancies no longer counted in running aggregates.
+     * @param vacancyIds ids of vacancies.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     */
+    public void deleteContributions(Collection<String> vacancyIds, int batchSize) {
+        jdbcTemplate.batchUpdate("DELETE FROM vacancy_contribution WHERE vacancy_id = ?", vacancyIds, batchSize,
+                (ps, vacancyId) -> ps.setString(1, vacancyId));
+    }
+
+    /**
+     * Method removes contributions of vacancies to be deleted not later than specified time and returns them.
+     * @param now current time.
+     * @return expired contributions.
+     */
+    public List<VacancyContribution> takeExpiredContributions(Instant now) {
+        Timestamp until = Timestamp.from(now);
+        List<VacancyContribution> expired = jdbcTemplate.query("""
+                        SELECT vacancy_id, queries, salary, delete_at
+                        FROM vacancy_contribution WHERE delete_at <= ? FOR UPDATE""",
+                (rs, rowNum) -> readContribution(rs), until);
+        jdbcTemplate.update("DELETE FROM vacancy_contribution WHERE delete_at <= ?", until);
+        return expired;
+    }
+
+    /**
+     * Method removes all running aggregates and contributions before they are recomputed from scratch.
+     */
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM vacancy_query_aggregate");
+        jdbcTemplate.update("DELETE FROM vacancy_contribution");
+    }
+
+    private static VacancyAnalyticsAccumulator readAccumulator(ResultSet rs) throws SQLException {
+        return new VacancyAnalyticsAccumulator(rs.getLong("vacancy_count"), rs.getLong("salary_sum"),
+                SalarySketch.fromBytes(rs.getBytes("salary_sketch")));
+    }
+
+    private static VacancyContribution readContribution(ResultSet rs) throws SQLException {
+        Timestamp deleteAt = rs.getTimestamp("delete_at");
+        return new VacancyContribution(rs.getString("vacancy_id"),
+                new LinkedHashSet<>(Arrays.asList(rs.getString("queries").split(QUERY_SEPARATOR))),
+                rs.getLong("salary"), deleteAt == null ? null : deleteAt.toInstant());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
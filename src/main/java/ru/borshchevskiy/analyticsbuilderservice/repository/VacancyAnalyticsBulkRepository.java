@@ -0,0 +1,118 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Repository writing {@link VacancyAnalytics} rows in JDBC batches.
+ * Relies on unique key on (<code>query</code>, <code>date</code>) columns of <code>vacancy_analytics</code> table:
+ * without it every write inserts new rows instead of updating existing ones. Refers to inserted values through
+ * row alias (<code>VALUES ... AS new</code>), which requires MySQL 8.0.19 or newer.
+ * Id sketches of existing rows are kept if written rows have none, e.g. rows of backfill
+ * or of builds not reading vacancy ids.
+ */
+@Repository
+public class VacancyAnalyticsBulkRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO vacancy_analytics (date, query, vacancy_count, average_salary,
+                                           salary_p25, salary_p50, salary_p75, salary_p90,
+                                           vacancy_ids_sketch, employer_ids_sketch, salary_sum,
+                                           vacancy_count_7d, salary_sum_7d, days_7d,
+                                           vacancy_count_30d, salary_sum_30d, days_30d,
+                                           vacancy_count_avg_7d, average_salary_7d,
+                                           vacancy_count_avg_30d, average_salary_30d,
+                                           vacancy_count_delta_7d, average_salary_delta_7d)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE vacancy_count = new.vacancy_count, average_salary = new.average_salary,
+                                    salary_p25 = new.salary_p25, salary_p50 = new.salary_p50,
+                                    salary_p75 = new.salary_p75, salary_p90 = new.salary_p90,
+                                    vacancy_ids_sketch = COALESCE(new.vacancy_ids_sketch, vacancy_ids_sketch),
+                                    employer_ids_sketch = COALESCE(new.employer_ids_sketch, employer_ids_sketch),
+                                    salary_sum = new.salary_sum,
+                                    vacancy_count_7d = new.vacancy_count_7d, salary_sum_7d = new.salary_sum_7d,
+                                    days_7d = new.days_7d, vacancy_count_30d = new.vacancy_count_30d,
+                                    salary_sum_30d = new.salary_sum_30d, days_30d = new.days_30d,
+                                    vacancy_count_avg_7d = new.vacancy_count_avg_7d,
+                                    average_salary_7d = new.average_salary_7d,
+                                    vacancy_count_avg_30d = new.vacancy_count_avg_30d,
+                                    average_salary_30d = new.average_salary_30d,
+                                    vacancy_count_delta_7d = new.vacancy_count_delta_7d,
+                                    average_salary_delta_7d = new.average_salary_delta_7d""";
+
+    private static final String FIND_QUERIES_SQL = "SELECT query FROM vacancy_analytics WHERE date = ?";
+    private static final String DELETE_SQL = "DELETE FROM vacancy_analytics WHERE date = ? AND query = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method inserts all analytics rows, updating already existing rows for the same query and date,
+     * in batches of specified size within single transaction.
+     * @param analytics analytics rows to be saved.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     * @return number of batches executed.
+     */
+    @Transactional
+    public int upsertAll(Collection<VacancyAnalytics> analytics, int batchSize) {
+        return jdbcTemplate.batchUpdate(UPSERT_SQL, analytics, batchSize, (ps, row) -> {
+            ps.setDate(1, Date.valueOf(row.getCreatedAt()));
+            ps.setString(2, row.getQuery());
+            ps.setInt(3, row.getVacancyCount());
+            ps.setObject(4, row.getAverageSalary());
+            ps.setObject(5, row.getSalaryP25());
+            ps.setObject(6, row.getSalaryP50());
+            ps.setObject(7, row.getSalaryP75());
+            ps.setObject(8, row.getSalaryP90());
+            ps.setBytes(9, row.getVacancyIdsSketch());
+            ps.setBytes(10, row.getEmployerIdsSketch());
+            ps.setObject(11, row.getSalarySum());
+            ps.setObject(12, row.getVacancyCount7d());
+            ps.setObject(13, row.getSalarySum7d());
+            ps.setObject(14, row.getDays7d());
+            ps.setObject(15, row.getVacancyCount30d());
+            ps.setObject(16, row.getSalarySum30d());
+            ps.setObject(17, row.getDays30d());
+            ps.setObject(18, row.getVacancyCountAvg7d());
+            ps.setObject(19, row.getAverageSalary7d());
+            ps.setObject(20, row.getVacancyCountAvg30d());
+            ps.setObject(21, row.getAverageSalary30d());
+            ps.setObject(22, row.getVacancyCountDelta7d());
+            ps.setObject(23, row.getAverageSalaryDelta7d());
+        }).length;
+    }
+
+    /**
+     * Method deletes analytics rows of specified date of all queries except specified ones,
+     * in batches of specified size within single transaction.
+     * @param createdAt date of analytics data.
+     * @param queries queries whose rows are kept.
+     * @param batchSize maximum number of rows deleted in one batch.
+     * @return number of deleted rows.
+     */
+    @Transactional
+    public int deleteAllExcept(LocalDate createdAt, Set<String> queries, int batchSize) {
+        List<String> stale = jdbcTemplate.queryForList(FIND_QUERIES_SQL, String.class, Date.valueOf(createdAt))
+                .stream()
+                .filter(query -> !queries.contains(query))
+                .toList();
+        if (!stale.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, stale, batchSize, (ps, query) -> {
+                ps.setDate(1, Date.valueOf(createdAt));
+                ps.setString(2, query);
+            });
+        }
+        return stale.size();
+    }
+}
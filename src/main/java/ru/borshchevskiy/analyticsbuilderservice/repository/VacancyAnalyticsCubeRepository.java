@@ -0,0 +1,63 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCubeRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsDimension;
+
+import java.sql.Date;
+import java.util.Collection;
+
+/**
+ * Repository writing analytics cube rows to <code>vacancy_analytics_cube</code> table and names of their dimension
+ * values to <code>vacancy_analytics_dimension</code> table in JDBC batches.
+ */
+@Repository
+public class VacancyAnalyticsCubeRepository {
+
+    private static final String UPSERT_ROW_SQL = """
+            INSERT INTO vacancy_analytics_cube (date, query, area_id, experience_id, employment_id,
+                                                vacancy_count, average_salary)
+            VALUES (?, ?, ?, ?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE vacancy_count = new.vacancy_count, average_salary = new.average_salary""";
+
+    private static final String UPSERT_DIMENSION_SQL = """
+            INSERT INTO vacancy_analytics_dimension (dimension, id, name)
+            VALUES (?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE name = new.name""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsCubeRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method inserts all cube rows and dimension names, updating already existing ones,
+     * in batches of specified size within single transaction.
+     * @param rows cube rows to be saved.
+     * @param dimensions dimension value names to be saved.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     * @return number of batches executed.
+     */
+    @Transactional
+    public int upsertAll(Collection<VacancyAnalyticsCubeRow> rows,
+                         Collection<VacancyAnalyticsDimension> dimensions,
+                         int batchSize) {
+        jdbcTemplate.batchUpdate(UPSERT_DIMENSION_SQL, dimensions, batchSize, (ps, dimension) -> {
+            ps.setString(1, dimension.getDimension());
+            ps.setString(2, dimension.getId());
+            ps.setString(3, dimension.getName());
+        });
+        return jdbcTemplate.batchUpdate(UPSERT_ROW_SQL, rows, batchSize, (ps, row) -> {
+            ps.setDate(1, Date.valueOf(row.getCreatedAt()));
+            ps.setString(2, row.getQuery());
+            ps.setString(3, row.getAreaId());
+            ps.setString(4, row.getExperienceId());
+            ps.setString(5, row.getEmploymentId());
+            ps.setInt(6, row.getVacancyCount());
+            ps.setObject(7, row.getAverageSalary());
+        }).length;
+    }
+}
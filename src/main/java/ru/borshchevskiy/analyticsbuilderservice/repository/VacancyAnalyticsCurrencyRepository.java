@@ -0,0 +1,51 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCurrencyRow;
+
+import java.sql.Date;
+import java.util.Collection;
+
+/**
+ * Repository writing per-currency breakdown of analytics data to <code>vacancy_analytics_currency</code> table
+ * in JDBC batches.
+ */
+@Repository
+public class VacancyAnalyticsCurrencyRepository {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO vacancy_analytics_currency (date, query, currency, vacancy_count, average_salary,
+                                                    base_currency, average_base_salary)
+            VALUES (?, ?, ?, ?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE vacancy_count = new.vacancy_count, average_salary = new.average_salary,
+                                    base_currency = new.base_currency,
+                                    average_base_salary = new.average_base_salary""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsCurrencyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method inserts all rows, updating already existing ones, in batches of specified size
+     * within single transaction.
+     * @param rows rows to be saved.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     * @return number of batches executed.
+     */
+    @Transactional
+    public int upsertAll(Collection<VacancyAnalyticsCurrencyRow> rows, int batchSize) {
+        return jdbcTemplate.batchUpdate(UPSERT_SQL, rows, batchSize, (ps, row) -> {
+            ps.setDate(1, Date.valueOf(row.getCreatedAt()));
+            ps.setString(2, row.getQuery());
+            ps.setString(3, row.getCurrency().name());
+            ps.setInt(4, row.getVacancyCount());
+            ps.setObject(5, row.getAverageSalary());
+            ps.setString(6, row.getBaseCurrency().name());
+            ps.setObject(7, row.getAverageBaseSalary());
+        }).length;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerAccreditationRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerRow;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Repository writing employer breakdown of analytics data to <code>vacancy_analytics_employer</code>
+ * and <code>vacancy_analytics_employer_accreditation</code> tables in JDBC batches.
+ */
+@Repository
+public class VacancyAnalyticsEmployerRepository {
+
+    private static final String DELETE_EMPLOYERS_SQL = "DELETE FROM vacancy_analytics_employer WHERE date = ?";
+    private static final String INSERT_EMPLOYER_SQL = """
+            INSERT INTO vacancy_analytics_employer (date, query, ranking, employer_rank, employer_id, employer_name,
+                                                    accredited, vacancy_count, count_error, average_salary)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+    private static final String UPSERT_ACCREDITATION_SQL = """
+            INSERT INTO vacancy_analytics_employer_accreditation (date, query, accredited, vacancy_count,
+                                                                  average_salary)
+            VALUES (?, ?, ?, ?, ?) AS new
+            ON DUPLICATE KEY UPDATE vacancy_count = new.vacancy_count, average_salary = new.average_salary""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsEmployerRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method replaces employer rankings of specified date and upserts accreditation rows, in batches
+     * of specified size within single transaction. Rankings are replaced rather than upserted, since employers
+     * at the same ranks differ between builds and rankings may become shorter.
+     * @param createdAt date of analytics data.
+     * @param employerRows ranked employers of all queries.
+     * @param accreditationRows accredited and non-accredited split of all queries.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     * @return number of batches executed.
+     */
+    @Transactional
+    public int replaceAll(LocalDate createdAt,
+                          Collection<VacancyAnalyticsEmployerRow> employerRows,
+                          Collection<VacancyAnalyticsEmployerAccreditationRow> accreditationRows,
+                          int batchSize) {
+        jdbcTemplate.update(DELETE_EMPLOYERS_SQL, Date.valueOf(createdAt));
+        int batches = jdbcTemplate.batchUpdate(INSERT_EMPLOYER_SQL, employerRows, batchSize, (ps, row) -> {
+            ps.setDate(1, Date.valueOf(row.getCreatedAt()));
+            ps.setString(2, row.getQuery());
+            ps.setString(3, row.getRanking().name());
+            ps.setInt(4, row.getRank());
+            ps.setString(5, row.getEmployerId());
+            ps.setString(6, row.getEmployerName());
+            ps.setBoolean(7, row.isAccredited());
+            ps.setInt(8, row.getVacancyCount());
+            ps.setInt(9, row.getCountError());
+            ps.setObject(10, row.getAverageSalary());
+        }).length;
+        return batches + jdbcTemplate.batchUpdate(UPSERT_ACCREDITATION_SQL, accreditationRows, batchSize,
+                (ps, row) -> {
+                    ps.setDate(1, Date.valueOf(row.getCreatedAt()));
+                    ps.setString(2, row.getQuery());
+                    ps.setBoolean(3, row.isAccredited());
+                    ps.setInt(4, row.getVacancyCount());
+                    ps.setObject(5, row.getAverageSalary());
+                }).length;
+    }
+}
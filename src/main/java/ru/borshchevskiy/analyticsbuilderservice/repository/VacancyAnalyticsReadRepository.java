@@ -0,0 +1,167 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository reading per-query analytics data from <code>vacancy_analytics</code> table for read API.
+ */
+@Repository
+public class VacancyAnalyticsReadRepository {
+
+    private static final String COLUMNS = """
+            id, date, query, vacancy_count, average_salary, salary_p25, salary_p50, salary_p75, salary_p90""";
+
+    private static final String TIME_SERIES_SQL = "SELECT " + COLUMNS + """
+             FROM vacancy_analytics
+            WHERE query = ? AND date BETWEEN ? AND ?
+            ORDER BY date""";
+
+    private static final String TOP_BY_COUNT_SQL = "SELECT " + COLUMNS + """
+             FROM vacancy_analytics
+            WHERE date = ?
+            ORDER BY vacancy_count DESC, query
+            LIMIT ?""";
+
+    private static final String TOP_BY_SALARY_SQL = "SELECT " + COLUMNS + """
+             FROM vacancy_analytics
+            WHERE date = ? AND average_salary IS NOT NULL
+            ORDER BY average_salary DESC, query
+            LIMIT ?""";
+
+    private static final String BY_DATE_SQL = "SELECT " + COLUMNS + """
+             FROM vacancy_analytics
+            WHERE date = ?
+            ORDER BY query""";
+
+    private static final String ID_SKETCHES_SQL = """
+            SELECT id, date, query, vacancy_count, vacancy_ids_sketch, employer_ids_sketch
+              FROM vacancy_analytics
+             WHERE query = ? AND date BETWEEN ? AND ? AND vacancy_ids_sketch IS NOT NULL
+             ORDER BY date""";
+
+    private static final String TREND_SQL = """
+            SELECT id, date, query, vacancy_count, average_salary, vacancy_count_avg_7d, average_salary_7d,
+                   vacancy_count_avg_30d, average_salary_30d, vacancy_count_delta_7d, average_salary_delta_7d
+              FROM vacancy_analytics
+             WHERE query = ? AND date = ? AND vacancy_count_7d IS NOT NULL""";
+
+    private static final String LATEST_DATE_SQL = "SELECT MAX(date) FROM vacancy_analytics";
+
+    private static final RowMapper<VacancyAnalytics> ROW_MAPPER = (rs, rowNum) -> {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setId(rs.getInt("id"));
+        analytics.setCreatedAt(rs.getDate("date").toLocalDate());
+        analytics.setQuery(rs.getString("query"));
+        analytics.setVacancyCount(rs.getInt("vacancy_count"));
+        analytics.setAverageSalary(rs.getObject("average_salary", Double.class));
+        analytics.setSalaryP25(rs.getObject("salary_p25", Double.class));
+        analytics.setSalaryP50(rs.getObject("salary_p50", Double.class));
+        analytics.setSalaryP75(rs.getObject("salary_p75", Double.class));
+        analytics.setSalaryP90(rs.getObject("salary_p90", Double.class));
+        return analytics;
+    };
+
+    private static final RowMapper<VacancyAnalytics> ID_SKETCHES_ROW_MAPPER = (rs, rowNum) -> {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setId(rs.getInt("id"));
+        analytics.setCreatedAt(rs.getDate("date").toLocalDate());
+        analytics.setQuery(rs.getString("query"));
+        analytics.setVacancyCount(rs.getInt("vacancy_count"));
+        analytics.setVacancyIdsSketch(rs.getBytes("vacancy_ids_sketch"));
+        analytics.setEmployerIdsSketch(rs.getBytes("employer_ids_sketch"));
+        return analytics;
+    };
+
+    private static final RowMapper<VacancyAnalytics> TREND_ROW_MAPPER = (rs, rowNum) -> {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setId(rs.getInt("id"));
+        analytics.setCreatedAt(rs.getDate("date").toLocalDate());
+        analytics.setQuery(rs.getString("query"));
+        analytics.setVacancyCount(rs.getInt("vacancy_count"));
+        analytics.setAverageSalary(rs.getObject("average_salary", Double.class));
+        analytics.setVacancyCountAvg7d(rs.getObject("vacancy_count_avg_7d", Double.class));
+        analytics.setAverageSalary7d(rs.getObject("average_salary_7d", Double.class));
+        analytics.setVacancyCountAvg30d(rs.getObject("vacancy_count_avg_30d", Double.class));
+        analytics.setAverageSalary30d(rs.getObject("average_salary_30d", Double.class));
+        analytics.setVacancyCountDelta7d(rs.getObject("vacancy_count_delta_7d", Integer.class));
+        analytics.setAverageSalaryDelta7d(rs.getObject("average_salary_delta_7d", Double.class));
+        return analytics;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsReadRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param query query analytics data is read for.
+     * @param from first date of range.
+     * @param to last date of range.
+     * @return analytics data of query on every date of range it is present on, ordered by date.
+     */
+    public List<VacancyAnalytics> findTimeSeries(String query, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(TIME_SERIES_SQL, ROW_MAPPER, query, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    /**
+     * @param date date analytics data is read for.
+     * @param metric metric queries are ranked by.
+     * @param limit maximum number of queries returned.
+     * @return analytics data of queries with the highest value of metric on specified date, in descending order.
+     * Queries without salary data are not ranked by salary.
+     */
+    public List<VacancyAnalytics> findTop(LocalDate date, AnalyticsTopMetric metric, int limit) {
+        String sql = switch (metric) {
+            case COUNT -> TOP_BY_COUNT_SQL;
+            case SALARY -> TOP_BY_SALARY_SQL;
+        };
+        return jdbcTemplate.query(sql, ROW_MAPPER, Date.valueOf(date), limit);
+    }
+
+    /**
+     * @param date date analytics data is read for.
+     * @return analytics data of all queries on specified date, ordered by query.
+     */
+    public List<VacancyAnalytics> findAllByDate(LocalDate date) {
+        return jdbcTemplate.query(BY_DATE_SQL, ROW_MAPPER, Date.valueOf(date));
+    }
+
+    /**
+     * @param query query analytics data is read for.
+     * @param from first date of range.
+     * @param to last date of range.
+     * @return vacancy count and sketches of distinct vacancy and employer ids of query on every date of range
+     * sketches are present on, ordered by date. Other columns are not read.
+     */
+    public List<VacancyAnalytics> findIdSketches(String query, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(ID_SKETCHES_SQL, ID_SKETCHES_ROW_MAPPER, query, Date.valueOf(from),
+                Date.valueOf(to));
+    }
+
+    /**
+     * @param query query analytics data is read for.
+     * @param date date analytics data is read for.
+     * @return moving averages and deltas saved with analytics data of query on specified date,
+     * empty if there is no analytics data or it was saved without rolling windows. Other columns are not read.
+     */
+    public Optional<VacancyAnalytics> findTrend(String query, LocalDate date) {
+        return jdbcTemplate.query(TREND_SQL, TREND_ROW_MAPPER, query, Date.valueOf(date)).stream().findFirst();
+    }
+
+    /**
+     * @return the latest date analytics data is present for, empty if there is no analytics data.
+     */
+    public Optional<LocalDate> findLatestDate() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(LATEST_DATE_SQL, LocalDate.class));
+    }
+}
@@ -9,4 +9,6 @@ import java.util.Optional;
 public interface VacancyAnalyticsRepository extends CrudRepository<VacancyAnalytics, Long> {
 
     Optional<VacancyAnalytics> findByQueryAndCreatedAt (String query, LocalDate date);
+
+    long countByCreatedAt(LocalDate date);
 }
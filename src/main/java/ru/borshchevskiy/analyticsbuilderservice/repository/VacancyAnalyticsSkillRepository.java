@@ -0,0 +1,53 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsSkillRow;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Repository writing skill breakdown of analytics data to <code>vacancy_analytics_skill</code> table
+ * in JDBC batches.
+ */
+@Repository
+public class VacancyAnalyticsSkillRepository {
+
+    private static final String DELETE_SKILLS_SQL = "DELETE FROM vacancy_analytics_skill WHERE date = ?";
+    private static final String INSERT_SKILL_SQL = """
+            INSERT INTO vacancy_analytics_skill (date, query, skill, vacancy_count, vacancy_share, average_salary,
+                                                 salary_lift)
+            VALUES (?, ?, ?, ?, ?, ?, ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsSkillRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Method replaces skill rows of specified date, in batches of specified size within single transaction.
+     * Rows are replaced rather than upserted, so that skills no longer mentioned or removed from dictionary
+     * do not remain from previous builds.
+     * @param createdAt date of analytics data.
+     * @param rows skill rows of all queries.
+     * @param batchSize maximum number of rows sent to database in one batch.
+     * @return number of batches executed.
+     */
+    @Transactional
+    public int replaceAll(LocalDate createdAt, Collection<VacancyAnalyticsSkillRow> rows, int batchSize) {
+        jdbcTemplate.update(DELETE_SKILLS_SQL, Date.valueOf(createdAt));
+        return jdbcTemplate.batchUpdate(INSERT_SKILL_SQL, rows, batchSize, (ps, row) -> {
+            ps.setDate(1, Date.valueOf(row.getCreatedAt()));
+            ps.setString(2, row.getQuery());
+            ps.setString(3, row.getSkill());
+            ps.setInt(4, row.getVacancyCount());
+            ps.setDouble(5, row.getVacancyShare());
+            ps.setObject(6, row.getAverageSalary());
+            ps.setObject(7, row.getSalaryLift());
+        }).length;
+    }
+}
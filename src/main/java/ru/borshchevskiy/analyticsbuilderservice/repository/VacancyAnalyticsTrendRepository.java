@@ -0,0 +1,100 @@
+package ru.borshchevskiy.analyticsbuilderservice.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Repository reading rolling windows of per-query analytics data and analytics data of days entering
+ * and leaving them from <code>vacancy_analytics</code> table.
+ * <p>
+ * Salary sum of day is read from <code>salary_sum</code> column, or derived from average salary and vacancy count
+ * for rows written before salary sums were saved, the same way whenever the row is read, so that the same day
+ * is always added to and subtracted from windows with the same salary sum.
+ */
+@Repository
+public class VacancyAnalyticsTrendRepository {
+
+    private static final String DAY_SALARY_SUM = "COALESCE(salary_sum, ROUND(average_salary * vacancy_count), 0)";
+
+    private static final String BY_DATES_SQL = """
+            SELECT date, query, vacancy_count, average_salary, %s AS day_salary_sum,
+                   vacancy_count_7d, salary_sum_7d, days_7d, vacancy_count_30d, salary_sum_30d, days_30d
+              FROM vacancy_analytics
+             WHERE date IN (%%s)""".formatted(DAY_SALARY_SUM);
+
+    private static final String WINDOWS_SQL = """
+            SELECT query,
+                   SUM(CASE WHEN date >= ? THEN vacancy_count ELSE 0 END) AS vacancy_count_7d,
+                   SUM(CASE WHEN date >= ? THEN %1$s ELSE 0 END) AS salary_sum_7d,
+                   SUM(CASE WHEN date >= ? THEN 1 ELSE 0 END) AS days_7d,
+                   SUM(vacancy_count) AS vacancy_count_30d,
+                   SUM(%1$s) AS salary_sum_30d,
+                   COUNT(*) AS days_30d
+              FROM vacancy_analytics
+             WHERE date BETWEEN ? AND ?
+             GROUP BY query""".formatted(DAY_SALARY_SUM);
+
+    private static final RowMapper<VacancyAnalytics> DAY_ROW_MAPPER = (rs, rowNum) -> {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setCreatedAt(rs.getDate("date").toLocalDate());
+        analytics.setQuery(rs.getString("query"));
+        analytics.setVacancyCount(rs.getInt("vacancy_count"));
+        analytics.setAverageSalary(rs.getObject("average_salary", Double.class));
+        analytics.setSalarySum(rs.getLong("day_salary_sum"));
+        mapWindows(rs, analytics);
+        return analytics;
+    };
+
+    private static final RowMapper<VacancyAnalytics> WINDOWS_ROW_MAPPER = (rs, rowNum) -> {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setQuery(rs.getString("query"));
+        mapWindows(rs, analytics);
+        return analytics;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VacancyAnalyticsTrendRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param dates dates analytics data is read for.
+     * @return vacancy count, average salary, salary sum and rolling windows of all queries on specified dates.
+     * Windows are <code>null</code> for rows written without them.
+     */
+    public List<VacancyAnalytics> findAllByDates(List<LocalDate> dates) {
+        String sql = BY_DATES_SQL.formatted(String.join(", ", Collections.nCopies(dates.size(), "?")));
+        return jdbcTemplate.query(sql, DAY_ROW_MAPPER, dates.stream().map(Date::valueOf).toArray());
+    }
+
+    /**
+     * Method sums analytics data of each query over 7 and 30 days ending on specified date from scratch.
+     * @param to the last date of windows.
+     * @return vacancy count, salary sum and number of days of both windows of all queries present
+     * in 30-day window, set as windows of returned rows.
+     */
+    public List<VacancyAnalytics> sumWindows(LocalDate to) {
+        Date weekFrom = Date.valueOf(to.minusDays(6));
+        return jdbcTemplate.query(WINDOWS_SQL, WINDOWS_ROW_MAPPER, weekFrom, weekFrom, weekFrom,
+                Date.valueOf(to.minusDays(29)), Date.valueOf(to));
+    }
+
+    private static void mapWindows(ResultSet rs, VacancyAnalytics analytics) throws SQLException {
+        analytics.setVacancyCount7d(rs.getObject("vacancy_count_7d", Long.class));
+        analytics.setSalarySum7d(rs.getObject("salary_sum_7d", Long.class));
+        analytics.setDays7d(rs.getObject("days_7d", Integer.class));
+        analytics.setVacancyCount30d(rs.getObject("vacancy_count_30d", Long.class));
+        analytics.setSalarySum30d(rs.getObject("salary_sum_30d", Long.class));
+        analytics.setDays30d(rs.getObject("days_30d", Integer.class));
+    }
+}
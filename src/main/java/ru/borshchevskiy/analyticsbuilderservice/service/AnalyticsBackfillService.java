@@ -0,0 +1,232 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillResultDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds per-query analytics data of past dates.
+ * <p>
+ * Vacancy is considered present on every day from the day of its <code>createdAt</code>, inclusive,
+ * to the day of its <code>deleteAt</code>, exclusive, or to the last day of range if it is not scheduled
+ * for deletion. Both days are taken in {@link #ZONE}, the zone daily builds are dated in.
+ * Vacancies without <code>createdAt</code> are considered present since before the first day of range.
+ * Archived vacancies are counted, the same way full build counts every vacancy present in collection,
+ * so that backfilled days match days written by full builds. Only salaries in RUR are aggregated,
+ * vacancies without salary bounds are skipped, see {@link VacancyAnalyticsAggregator#contributes}.
+ */
+@Service
+@Slf4j
+public class AnalyticsBackfillService {
+
+    /**
+     * Zone days of vacancy creation and deletion are taken in, the same zone builds date analytics data in.
+     */
+    public static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final DateTimeFormatter CREATED_AT_FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss[.SSS][XXX][XX]");
+
+    private final VacancyService vacancyService;
+    private final VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+    private final VacancyAnalyticsAggregator vacancyAnalyticsAggregator;
+    private final VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    private final AnalyticsBuilderProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AnalyticsTrendService analyticsTrendService;
+
+    public AnalyticsBackfillService(VacancyService vacancyService,
+                                    VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository,
+                                    VacancyAnalyticsAggregator vacancyAnalyticsAggregator,
+                                    VacancyAnalyticsMapper vacancyAnalyticsMapper,
+                                    AnalyticsBuilderProperties properties,
+                                    ApplicationEventPublisher eventPublisher,
+                                    AnalyticsTrendService analyticsTrendService) {
+        this.vacancyService = vacancyService;
+        this.vacancyAnalyticsBulkRepository = vacancyAnalyticsBulkRepository;
+        this.vacancyAnalyticsAggregator = vacancyAnalyticsAggregator;
+        this.vacancyAnalyticsMapper = vacancyAnalyticsMapper;
+        this.properties = properties;
+        this.eventPublisher = eventPublisher;
+        this.analyticsTrendService = analyticsTrendService;
+    }
+
+    /**
+     * Method rebuilds per-query analytics data of every day of specified range in single sweep over vacancies
+     * present in that range, sorted by <code>createdAt</code>.
+     * <p>
+     * Running per-query accumulators are advanced day by day: vacancies created on the day are added to them,
+     * and contributions of vacancies deleted on the day, recorded under the day of deletion when vacancy
+     * was added, are subtracted from them. Snapshot of running accumulators is taken at the end of each day
+     * and upserted to database in batches of {@link AnalyticsBuilderProperties#getWriteBatchSize()} size,
+     * overwriting existing analytics data of the same query and date. Analytics data of queries without
+     * vacancies on the day is deleted, so that no stale rows are left in range.
+     * If {@link AnalyticsBuilderProperties#isTrendsEnabled()}, rows are written at the end of each day,
+     * so that rolling windows of the next day are slid from windows of the day just written.
+     * Windows saved with days after the range are not updated.
+     * Memory consumption depends on number of queries and number of days vacancies are scheduled for deletion
+     * on, rather than on number of vacancies or days in range.
+     * Once all days are written, {@link VacancyAnalyticsUpdatedEvent} of the range is published.
+     * @param from first day of range.
+     * @param to last day of range, not later than today.
+     * @return result of backfill.
+     * @throws IllegalArgumentException if range is empty or ends in the future.
+     */
+    public AnalyticsBackfillResultDto backfill(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        long startedAt = System.currentTimeMillis();
+        log.debug("Started backfill of analytics from {} to {}", from, to);
+        Sweep sweep = new Sweep(from, to);
+        try (Stream<VacancySalaryProjection> vacancies =
+                     vacancyService.streamActiveBetweenWithSalaryCurrency(Currency.RUR, from, to)) {
+            vacancies.forEach(sweep::add);
+        }
+        sweep.finish();
+        eventPublisher.publishEvent(new VacancyAnalyticsUpdatedEvent(from, to));
+        long durationMs = System.currentTimeMillis() - startedAt;
+        log.debug("Backfilled {} analytics rows and deleted {} stale rows from {} to {} of {} vacancies in {} ms",
+                sweep.rowsWritten, sweep.rowsDeleted, from, to, sweep.vacanciesScanned, durationMs);
+        return new AnalyticsBackfillResultDto(from, to, sweep.vacanciesScanned, sweep.rowsWritten, durationMs);
+    }
+
+    /**
+     * Method checks that range can be backfilled.
+     * @param from first day of range.
+     * @param to last day of range.
+     * @throws IllegalArgumentException if range is empty or ends in the future.
+     */
+    public void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to) || to.isAfter(LocalDate.now(ZONE))) {
+            throw new IllegalArgumentException("Invalid backfill range " + from + " - " + to);
+        }
+    }
+
+    /**
+     * State of single backfill sweep.
+     */
+    private class Sweep {
+        private final LocalDate to;
+        private final Map<String, VacancyAnalyticsAccumulator> running = new HashMap<>();
+        private final NavigableMap<LocalDate, Map<String, VacancyAnalyticsAccumulator>> deletions = new TreeMap<>();
+        private List<VacancyAnalytics> rows = new ArrayList<>();
+        private LocalDate day;
+        private long vacanciesScanned;
+        private long rowsWritten;
+        private long rowsDeleted;
+
+        Sweep(LocalDate from, LocalDate to) {
+            this.day = from;
+            this.to = to;
+        }
+
+        /**
+         * Method adds vacancy to running accumulators, first closing all days before the day it was created on.
+         * Vacancies must be added in order of <code>createdAt</code>. Vacancy created on a day already closed,
+         * which happens if vacancies are created in different offsets, is counted since current day.
+         */
+        void add(VacancySalaryProjection vacancy) {
+            // Archived flag is not read, so archived vacancies are counted
+            if (!VacancyAnalyticsAggregator.contributes(vacancy, Currency.RUR)) {
+                return;
+            }
+            LocalDate createdDay = day;
+            if (vacancy.getCreatedAt() != null) {
+                try {
+                    createdDay = OffsetDateTime.parse(vacancy.getCreatedAt(), CREATED_AT_FORMAT)
+                            .atZoneSameInstant(ZONE)
+                            .toLocalDate();
+                } catch (DateTimeParseException e) {
+                    log.warn("Skipping vacancy {} with malformed createdAt {}",
+                            vacancy.getId(), vacancy.getCreatedAt());
+                    return;
+                }
+            }
+            if (createdDay.isAfter(to)) {
+                return;
+            }
+            while (createdDay.isAfter(day)) {
+                closeDay();
+            }
+            LocalDate deletedDay = vacancy.getDeleteAt() == null ? null
+                    : LocalDate.ofInstant(vacancy.getDeleteAt().toInstant(), ZONE);
+            if (deletedDay != null && !deletedDay.isAfter(day)) {
+                return;
+            }
+            vacancyAnalyticsAggregator.accumulate(running, vacancy.getQuery(), vacancy.getSalaryEntity());
+            if (deletedDay != null && !deletedDay.isAfter(to)) {
+                vacancyAnalyticsAggregator.accumulate(deletions.computeIfAbsent(deletedDay, key -> new HashMap<>()),
+                        vacancy.getQuery(), vacancy.getSalaryEntity());
+            }
+            vacanciesScanned++;
+        }
+
+        /**
+         * Method closes all remaining days of range and writes rows not written yet.
+         */
+        void finish() {
+            while (!day.isAfter(to)) {
+                closeDay();
+            }
+            flush();
+        }
+
+        /**
+         * Method subtracts vacancies deleted on current day, takes snapshot of running accumulators
+         * as analytics data of current day, deletes analytics data of current day of all other queries
+         * and moves to the next day.
+         */
+        private void closeDay() {
+            Map<String, VacancyAnalyticsAccumulator> deleted = deletions.remove(day);
+            if (deleted != null) {
+                deleted.forEach((query, accumulator) -> running.merge(query, accumulator.negated(),
+                        VacancyAnalyticsAccumulator::merge));
+                running.values().removeIf(accumulator -> accumulator.getVacancyCount() == 0);
+            }
+            Map<String, VacancyAnalyticsDto> analytics = new HashMap<>();
+            running.forEach((query, accumulator) ->
+                    analytics.put(query, vacancyAnalyticsMapper.mapToDto(accumulator)));
+            if (properties.isTrendsEnabled()) {
+                analyticsTrendService.applyTrends(day, analytics);
+            }
+            analytics.forEach((query, dto) -> rows.add(vacancyAnalyticsMapper.mapToEntity(dto, query, day)));
+            rowsDeleted += vacancyAnalyticsBulkRepository.deleteAllExcept(day, analytics.keySet(),
+                    properties.getWriteBatchSize());
+            if (rows.size() >= properties.getWriteBatchSize() || properties.isTrendsEnabled()) {
+                flush();
+            }
+            day = day.plusDays(1);
+        }
+
+        private void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            vacancyAnalyticsBulkRepository.upsertAll(rows, properties.getWriteBatchSize());
+            rowsWritten += rows.size();
+            rows = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.CubeOptions;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsCube;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCubeRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCurrencyRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerAccreditationRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsSkillRow;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsCubeRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsCurrencyRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsEmployerRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsSkillRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Saves breakdowns collected by {@link VacancyAnalyticsCube} in addition to per-query analytics data.
+ * <p>
+ * Only breakdowns cube was built to collect, see {@link CubeOptions}, are saved, each timed by
+ * {@link AnalyticsBuildMetrics} as separate stage. Repository of breakdown cube does not collect is not used.
+ */
+@Component
+@Slf4j
+public class AnalyticsBreakdownWriter {
+
+    private final VacancyAnalyticsCubeRepository vacancyAnalyticsCubeRepository;
+    private final VacancyAnalyticsCurrencyRepository vacancyAnalyticsCurrencyRepository;
+    private final VacancyAnalyticsEmployerRepository vacancyAnalyticsEmployerRepository;
+    private final VacancyAnalyticsSkillRepository vacancyAnalyticsSkillRepository;
+    private final AnalyticsBuilderProperties properties;
+    private final AnalyticsBuildMetrics analyticsBuildMetrics;
+
+    public AnalyticsBreakdownWriter(VacancyAnalyticsCubeRepository vacancyAnalyticsCubeRepository,
+                                    VacancyAnalyticsCurrencyRepository vacancyAnalyticsCurrencyRepository,
+                                    VacancyAnalyticsEmployerRepository vacancyAnalyticsEmployerRepository,
+                                    VacancyAnalyticsSkillRepository vacancyAnalyticsSkillRepository,
+                                    AnalyticsBuilderProperties properties,
+                                    AnalyticsBuildMetrics analyticsBuildMetrics) {
+        this.vacancyAnalyticsCubeRepository = vacancyAnalyticsCubeRepository;
+        this.vacancyAnalyticsCurrencyRepository = vacancyAnalyticsCurrencyRepository;
+        this.vacancyAnalyticsEmployerRepository = vacancyAnalyticsEmployerRepository;
+        this.vacancyAnalyticsSkillRepository = vacancyAnalyticsSkillRepository;
+        this.properties = properties;
+        this.analyticsBuildMetrics = analyticsBuildMetrics;
+    }
+
+    /**
+     * Method saves all breakdowns collected by cube.
+     * @param cube cube holding all vacancies.
+     * @param baseCurrency currency salaries were converted to.
+     * @param createdAt date of analytics data.
+     */
+    public void writeAll(VacancyAnalyticsCube cube, Currency baseCurrency, LocalDate createdAt) {
+        CubeOptions options = cube.getOptions();
+        if (options.dimensional()) {
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_SAVE_CUBE,
+                    () -> saveCube(cube, createdAt));
+        }
+        if (options.currencyBreakdown()) {
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_SAVE_CURRENCY_BREAKDOWN,
+                    () -> saveCurrencyBreakdown(cube, baseCurrency, createdAt));
+        }
+        if (options.collectsEmployers()) {
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_SAVE_EMPLOYERS,
+                    () -> saveEmployers(cube, createdAt));
+        }
+        if (options.collectsSkills()) {
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_SAVE_SKILLS,
+                    () -> saveSkills(cube, createdAt));
+        }
+    }
+
+    /**
+     * Method rolls cube up and upserts all its rows, along with names of dimension values, to database.
+     * @param cube cube holding all vacancies.
+     * @param createdAt date of analytics data.
+     */
+    private void saveCube(VacancyAnalyticsCube cube, LocalDate createdAt) {
+        List<VacancyAnalyticsCubeRow> rows = cube.rollUp(createdAt);
+        int batches = vacancyAnalyticsCubeRepository.upsertAll(rows, cube.getDimensionNames(),
+                properties.getWriteBatchSize());
+        log.debug("Analytics cube of {} rows on date {} successfully saved in {} batches.",
+                rows.size(), createdAt, batches);
+    }
+
+    /**
+     * Method saves per-currency breakdown of all vacancies.
+     * @param cube cube holding all vacancies.
+     * @param baseCurrency currency salaries were converted to.
+     * @param createdAt date of analytics data.
+     */
+    private void saveCurrencyBreakdown(VacancyAnalyticsCube cube, Currency baseCurrency, LocalDate createdAt) {
+        List<VacancyAnalyticsCurrencyRow> rows = cube.currencyRows(createdAt, baseCurrency);
+        int batches = vacancyAnalyticsCurrencyRepository.upsertAll(rows, properties.getWriteBatchSize());
+        log.debug("Currency breakdown of {} rows on date {} successfully saved in {} batches.",
+                rows.size(), createdAt, batches);
+    }
+
+    /**
+     * Method saves top employers of each query and split of vacancies of accredited and non-accredited employers.
+     * @param cube cube holding all vacancies.
+     * @param createdAt date of analytics data.
+     */
+    private void saveEmployers(VacancyAnalyticsCube cube, LocalDate createdAt) {
+        List<VacancyAnalyticsEmployerRow> employerRows = cube.employerRows(createdAt, properties.getEmployerTopK(),
+                properties.getEmployerMinVacancies());
+        List<VacancyAnalyticsEmployerAccreditationRow> accreditationRows = cube.employerAccreditationRows(createdAt);
+        int batches = vacancyAnalyticsEmployerRepository.replaceAll(createdAt, employerRows, accreditationRows,
+                properties.getWriteBatchSize());
+        log.debug("Employer analytics of {} rows on date {} successfully saved in {} batches.",
+                employerRows.size() + accreditationRows.size(), createdAt, batches);
+    }
+
+    /**
+     * Method saves vacancy count, share and salary lift of each skill mentioned by vacancies of each query.
+     * @param cube cube holding all vacancies.
+     * @param createdAt date of analytics data.
+     */
+    private void saveSkills(VacancyAnalyticsCube cube, LocalDate createdAt) {
+        List<VacancyAnalyticsSkillRow> rows = cube.skillRows(createdAt);
+        int batches = vacancyAnalyticsSkillRepository.replaceAll(createdAt, rows, properties.getWriteBatchSize());
+        log.debug("Skill breakdown of {} rows on date {} successfully saved in {} batches.",
+                rows.size(), createdAt, batches);
+    }
+}
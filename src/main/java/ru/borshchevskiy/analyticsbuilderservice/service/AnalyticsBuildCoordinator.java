@@ -0,0 +1,322 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillJobDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillResultDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStateDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStatus;
+import ru.borshchevskiy.analyticsbuilderservice.repository.BuildLeaseRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * Runs analytics builds on build triggers, making sure builds never overlap.
+ * <p>
+ * Within instance, builds are run one at a time on build executor. Trigger received while build is running
+ * makes single build pending, which is run right after the running one; all further triggers received
+ * before that are merged into the pending build. Across instances, build of a day is run only by instance
+ * holding build lease of that day, see {@link BuildLeaseRepository}; triggers received by other instances
+ * while lease is held are skipped, since running build already covers them. Lease is extended every
+ * {@link AnalyticsBuilderProperties#getBuildLeaseHeartbeatMs()} milliseconds while build runs, and all rows
+ * written by build are dated with the day of its lease, even if build runs past midnight.
+ * <p>
+ * Backfills of past dates are run on the same build executor, under lease {@link #BACKFILL_BUILD_KEY},
+ * so that they never overlap builds of this instance or backfills of other instances. State of latest
+ * {@link AnalyticsBuilderProperties#getBuildSummaryHistorySize()} backfills is kept by job id.
+ */
+@Service
+@Slf4j
+public class AnalyticsBuildCoordinator {
+
+    public static final String BACKFILL_BUILD_KEY = "analytics-backfill";
+
+    private final VacancyAnalyticsService vacancyAnalyticsService;
+    private final AnalyticsBackfillService analyticsBackfillService;
+    private final BuildLeaseRepository buildLeaseRepository;
+    private final AnalyticsBuilderProperties properties;
+    private final Executor analyticsBuildExecutor;
+    private final TaskScheduler taskScheduler;
+    private final String instanceId =
+            ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+
+    private boolean running;
+    private boolean pending;
+    private long triggersReceived;
+    private long triggersCoalesced;
+    private long buildsStarted;
+    private String lastBuildKey;
+    private AnalyticsBuildStatus lastStatus = AnalyticsBuildStatus.IDLE;
+    private Instant lastStartedAt;
+    private Instant lastFinishedAt;
+    private String lastError;
+    private final Map<String, AnalyticsBackfillJobDto> backfillJobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AnalyticsBackfillJobDto> eldest) {
+            return size() > properties.getBuildSummaryHistorySize();
+        }
+    };
+
+    public AnalyticsBuildCoordinator(VacancyAnalyticsService vacancyAnalyticsService,
+                                     AnalyticsBackfillService analyticsBackfillService,
+                                     BuildLeaseRepository buildLeaseRepository,
+                                     AnalyticsBuilderProperties properties,
+                                     @Qualifier("analyticsBuildExecutor") Executor analyticsBuildExecutor,
+                                     TaskScheduler taskScheduler) {
+        this.vacancyAnalyticsService = vacancyAnalyticsService;
+        this.analyticsBackfillService = analyticsBackfillService;
+        this.buildLeaseRepository = buildLeaseRepository;
+        this.properties = properties;
+        this.analyticsBuildExecutor = analyticsBuildExecutor;
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Method requests analytics build. Build is started on build executor if no build is running,
+     * otherwise it is made pending or merged into already pending build. Method does not wait for build.
+     * @return <code>true</code> if new build is started or made pending,
+     * <code>false</code> if trigger is merged into already pending build.
+     */
+    public boolean trigger() {
+        synchronized (this) {
+            triggersReceived++;
+            if (running) {
+                if (pending) {
+                    triggersCoalesced++;
+                    log.debug("Build is already pending, trigger merged into it");
+                    return false;
+                }
+                pending = true;
+                log.debug("Build is running, next build made pending");
+                return true;
+            }
+            running = true;
+        }
+        analyticsBuildExecutor.execute(this::runBuilds);
+        return true;
+    }
+
+    /**
+     * @return state of builds of this instance, along with current day build lease shared by all instances.
+     */
+    public AnalyticsBuildStateDto getState() {
+        AnalyticsBuildStateDto state;
+        synchronized (this) {
+            state = new AnalyticsBuildStateDto(instanceId, running, pending, triggersReceived, triggersCoalesced,
+                    buildsStarted, lastBuildKey, lastStatus, lastStartedAt, lastFinishedAt, lastError, null);
+        }
+        state.setCurrentLease(buildLeaseRepository.findByBuildKey(buildKey(LocalDate.now())).orElse(null));
+        return state;
+    }
+
+    /**
+     * Method submits backfill of specified range to build executor. Method does not wait for backfill.
+     * @param from first day of range.
+     * @param to last day of range, not later than today.
+     * @return state of submitted backfill, holding its job id.
+     * @throws IllegalArgumentException if range is empty or ends in the future.
+     */
+    public AnalyticsBackfillJobDto submitBackfill(LocalDate from, LocalDate to) {
+        analyticsBackfillService.checkRange(from, to);
+        AnalyticsBackfillJobDto job = new AnalyticsBackfillJobDto(UUID.randomUUID().toString(), from, to,
+                AnalyticsBuildStatus.PENDING, Instant.now(), null, null, null, null);
+        synchronized (this) {
+            backfillJobs.put(job.getJobId(), job);
+        }
+        analyticsBuildExecutor.execute(() -> runBackfill(job.getJobId(), from, to));
+        return copy(job);
+    }
+
+    /**
+     * @param jobId id of backfill job.
+     * @return state of backfill, or empty optional if there is no such backfill among latest ones.
+     */
+    public synchronized Optional<AnalyticsBackfillJobDto> getBackfillJob(String jobId) {
+        return Optional.ofNullable(backfillJobs.get(jobId)).map(AnalyticsBuildCoordinator::copy);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Method runs build, then pending builds one by one until none is pending.
+     */
+    private void runBuilds() {
+        do {
+            try {
+                runBuild();
+            } catch (RuntimeException e) {
+                log.error("Build failed", e);
+            }
+        } while (takePending());
+    }
+
+    private synchronized boolean takePending() {
+        if (pending) {
+            pending = false;
+            return true;
+        }
+        running = false;
+        return false;
+    }
+
+    /**
+     * Method runs single build under build lease of current day, or skips it if lease is held by another instance.
+     * Build failing to take or extend lease is recorded as failed, like build failing itself.
+     */
+    private void runBuild() {
+        LocalDate buildDate = LocalDate.now();
+        String buildKey = buildKey(buildDate);
+        Instant startedAt = Instant.now();
+        AnalyticsBuildStatus status = AnalyticsBuildStatus.FAILED;
+        String error = null;
+        boolean acquired = false;
+        ScheduledFuture<?> heartbeat = null;
+        try {
+            acquired = buildLeaseRepository.tryAcquire(buildKey, instanceId, startedAt,
+                    startedAt.plusMillis(properties.getBuildLeaseTtlMs()));
+            if (!acquired) {
+                log.info("Build {} is running on another instance, skipping", buildKey);
+                status = AnalyticsBuildStatus.SKIPPED;
+                return;
+            }
+            synchronized (this) {
+                buildsStarted++;
+                lastBuildKey = buildKey;
+                lastStatus = AnalyticsBuildStatus.RUNNING;
+                lastStartedAt = startedAt;
+            }
+            heartbeat = startHeartbeat(buildKey);
+            vacancyAnalyticsService.buildAnalytics(buildDate);
+            status = AnalyticsBuildStatus.SUCCEEDED;
+        } catch (RuntimeException e) {
+            log.error("Build {} failed", buildKey, e);
+            error = e.getMessage();
+        } finally {
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+            if (acquired) {
+                releaseLease(buildKey, status);
+            }
+            finish(buildKey, startedAt, status, error);
+        }
+    }
+
+    /**
+     * Method runs single backfill under backfill lease, or skips it if lease is held by another instance.
+     * Backfill failing to take or extend lease is recorded as failed, like backfill failing itself.
+     */
+    private void runBackfill(String jobId, LocalDate from, LocalDate to) {
+        Instant startedAt = Instant.now();
+        AnalyticsBuildStatus status = AnalyticsBuildStatus.FAILED;
+        AnalyticsBackfillResultDto result = null;
+        String error = null;
+        boolean acquired = false;
+        ScheduledFuture<?> heartbeat = null;
+        try {
+            acquired = buildLeaseRepository.tryAcquire(BACKFILL_BUILD_KEY, instanceId, startedAt,
+                    startedAt.plusMillis(properties.getBuildLeaseTtlMs()));
+            if (!acquired) {
+                log.info("Backfill is running on another instance, skipping backfill {}", jobId);
+                status = AnalyticsBuildStatus.SKIPPED;
+                return;
+            }
+            updateBackfillJob(jobId, job -> {
+                job.setStatus(AnalyticsBuildStatus.RUNNING);
+                job.setStartedAt(startedAt);
+            });
+            heartbeat = startHeartbeat(BACKFILL_BUILD_KEY);
+            result = analyticsBackfillService.backfill(from, to);
+            status = AnalyticsBuildStatus.SUCCEEDED;
+        } catch (RuntimeException e) {
+            log.error("Backfill {} failed", jobId, e);
+            error = e.getMessage();
+        } finally {
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+            if (acquired) {
+                releaseLease(BACKFILL_BUILD_KEY, status);
+            }
+            AnalyticsBuildStatus finalStatus = status;
+            AnalyticsBackfillResultDto finalResult = result;
+            String finalError = error;
+            updateBackfillJob(jobId, job -> {
+                job.setStatus(finalStatus);
+                job.setFinishedAt(Instant.now());
+                job.setResult(finalResult);
+                job.setError(finalError);
+            });
+        }
+    }
+
+    private void releaseLease(String buildKey, AnalyticsBuildStatus status) {
+        try {
+            buildLeaseRepository.release(buildKey, instanceId, Instant.now(), status);
+        } catch (RuntimeException e) {
+            log.error("Failed to release lease of build {}, it expires in {} ms",
+                    buildKey, properties.getBuildLeaseTtlMs(), e);
+        }
+    }
+
+    /**
+     * Method schedules extension of lease of specified build every
+     * {@link AnalyticsBuilderProperties#getBuildLeaseHeartbeatMs()} milliseconds.
+     * @return handle cancelling heartbeat.
+     */
+    private ScheduledFuture<?> startHeartbeat(String buildKey) {
+        Duration interval = Duration.ofMillis(properties.getBuildLeaseHeartbeatMs());
+        return taskScheduler.scheduleAtFixedRate(() -> renewLease(buildKey), Instant.now().plus(interval), interval);
+    }
+
+    private void renewLease(String buildKey) {
+        try {
+            if (!buildLeaseRepository.renew(buildKey, instanceId,
+                    Instant.now().plusMillis(properties.getBuildLeaseTtlMs()))) {
+                log.error("Lease of build {} is lost, build may overlap with build of another instance", buildKey);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to extend lease of build {}", buildKey, e);
+        }
+    }
+
+    private synchronized void updateBackfillJob(String jobId, Consumer<AnalyticsBackfillJobDto> update) {
+        AnalyticsBackfillJobDto job = backfillJobs.get(jobId);
+        if (job != null) {
+            update.accept(job);
+        }
+    }
+
+    private synchronized void finish(String buildKey, Instant startedAt, AnalyticsBuildStatus status, String error) {
+        lastBuildKey = buildKey;
+        lastStatus = status;
+        lastStartedAt = startedAt;
+        lastFinishedAt = Instant.now();
+        lastError = error;
+        log.debug("Build {} finished with status {}", buildKey, status);
+    }
+
+    private static String buildKey(LocalDate date) {
+        return "analytics-" + date;
+    }
+
+    private static AnalyticsBackfillJobDto copy(AnalyticsBackfillJobDto job) {
+        return new AnalyticsBackfillJobDto(job.getJobId(), job.getFrom(), job.getTo(), job.getStatus(),
+                job.getSubmittedAt(), job.getStartedAt(), job.getFinishedAt(), job.getResult(), job.getError());
+    }
+}
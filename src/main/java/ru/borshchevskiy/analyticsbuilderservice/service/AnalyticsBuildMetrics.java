@@ -0,0 +1,229 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStatus;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildSummaryDto;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation of analytics builds.
+ * <p>
+ * Each build is timed by <code>analytics.build</code> timer, tagged with build mode and final status,
+ * and each of its stages by <code>analytics.build.stage</code> timer, tagged with stage name.
+ * Gauges <code>analytics.build.vacancies.scanned</code>, <code>analytics.build.vacancies.filtered</code>,
+ * <code>analytics.build.queries</code> and <code>analytics.build.rows</code> hold values of the latest
+ * finished build, counter <code>analytics.build.rows.written</code> accumulates rows written by all builds.
+ * <p>
+ * Besides meters, {@link AnalyticsBuildSummaryDto} of each build is recorded, latest
+ * {@link AnalyticsBuilderProperties#getBuildSummaryHistorySize()} summaries are kept.
+ * Builds of single instance are run one at a time by {@link AnalyticsBuildCoordinator},
+ * so only one build is recorded at a time, while its stages may be recorded from several threads.
+ */
+@Component
+public class AnalyticsBuildMetrics {
+
+    public static final String STAGE_READ = "read";
+    public static final String STAGE_AGGREGATE = "aggregate";
+    public static final String STAGE_SAVE_CUBE = "save_cube";
+    public static final String STAGE_SAVE_CURRENCY_BREAKDOWN = "save_currency_breakdown";
+    public static final String STAGE_SAVE_EMPLOYERS = "save_employers";
+    public static final String STAGE_SAVE_SKILLS = "save_skills";
+    public static final String STAGE_TRENDS = "trends";
+    public static final String STAGE_SAVE_ANALYTICS = "save_analytics";
+
+    private final MeterRegistry meterRegistry;
+    private final AnalyticsBuilderProperties properties;
+    private final AtomicLong lastVacanciesScanned = new AtomicLong();
+    private final AtomicLong lastVacanciesFilteredOut = new AtomicLong();
+    private final AtomicLong lastDistinctQueries = new AtomicLong();
+    private final AtomicLong lastRowsInserted = new AtomicLong();
+    private final AtomicLong lastRowsUpdated = new AtomicLong();
+    private final Counter rowsInserted;
+    private final Counter rowsUpdated;
+    private final Deque<AnalyticsBuildSummaryDto> summaries = new ArrayDeque<>();
+
+    private volatile AnalyticsBuildSummaryDto currentBuild;
+    private volatile Timer.Sample currentSample;
+
+    public AnalyticsBuildMetrics(MeterRegistry meterRegistry, AnalyticsBuilderProperties properties) {
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        Gauge.builder("analytics.build.vacancies.scanned", lastVacanciesScanned, AtomicLong::get)
+                .description("Vacancies folded into analytics by the latest build")
+                .register(meterRegistry);
+        Gauge.builder("analytics.build.vacancies.filtered", lastVacanciesFilteredOut, AtomicLong::get)
+                .description("Vacancies with salary skipped because of salary currency by the latest build")
+                .register(meterRegistry);
+        Gauge.builder("analytics.build.queries", lastDistinctQueries, AtomicLong::get)
+                .description("Distinct queries of the latest build")
+                .register(meterRegistry);
+        Gauge.builder("analytics.build.rows", lastRowsInserted, AtomicLong::get)
+                .tag("operation", "inserted")
+                .description("Analytics rows written by the latest build")
+                .register(meterRegistry);
+        Gauge.builder("analytics.build.rows", lastRowsUpdated, AtomicLong::get)
+                .tag("operation", "updated")
+                .description("Analytics rows written by the latest build")
+                .register(meterRegistry);
+        rowsInserted = Counter.builder("analytics.build.rows.written")
+                .tag("operation", "inserted")
+                .register(meterRegistry);
+        rowsUpdated = Counter.builder("analytics.build.rows.written")
+                .tag("operation", "updated")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Method starts recording of new build.
+     * @param buildMode mode of build.
+     * @param engine aggregation engine of build.
+     */
+    public void startBuild(AnalyticsBuilderProperties.BuildMode buildMode, AnalyticsBuilderProperties.Engine engine) {
+        AnalyticsBuildSummaryDto summary = new AnalyticsBuildSummaryDto();
+        summary.setStartedAt(Instant.now());
+        summary.setBuildMode(buildMode);
+        summary.setEngine(engine);
+        currentSample = Timer.start(meterRegistry);
+        currentBuild = summary;
+    }
+
+    /**
+     * Method times single stage of build, adding its duration to summary of current build, if any.
+     * Stage entered several times, e.g. per-query save, is summed up in summary.
+     * @param stage stage name.
+     * @param action stage itself.
+     * @return result of stage.
+     */
+    public <T> T recordStage(String stage, Supplier<T> action) {
+        long startedAt = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            recordStage(stage, System.nanoTime() - startedAt);
+        }
+    }
+
+    /**
+     * Method records duration of single stage of build measured by caller, e.g. summed up over many
+     * short calls, adding it to summary of current build, if any.
+     * @param stage stage name.
+     * @param durationNanos duration of stage in nanoseconds.
+     */
+    public void recordStage(String stage, long durationNanos) {
+        Timer.builder("analytics.build.stage")
+                .tag("stage", stage)
+                .description("Time spent in stage of analytics build")
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        AnalyticsBuildSummaryDto summary = currentBuild;
+        if (summary != null) {
+            synchronized (summary) {
+                summary.getStageDurationsMs().merge(stage, TimeUnit.NANOSECONDS.toMillis(durationNanos), Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Method times single stage of build, see {@link #recordStage(String, Supplier)}.
+     * @param stage stage name.
+     * @param action stage itself.
+     */
+    public void recordStage(String stage, Runnable action) {
+        recordStage(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void recordVacanciesScanned(long vacancies) {
+        Optional.ofNullable(currentBuild).ifPresent(summary -> summary.setVacanciesScanned(vacancies));
+    }
+
+    public void recordVacanciesFilteredOut(long vacancies) {
+        Optional.ofNullable(currentBuild).ifPresent(summary -> summary.setVacanciesFilteredOut(vacancies));
+    }
+
+    public void recordDistinctQueries(int queries) {
+        Optional.ofNullable(currentBuild).ifPresent(summary -> summary.setDistinctQueries(queries));
+    }
+
+    /**
+     * Method records per-query analytics rows written by build.
+     * @param inserted number of new rows.
+     * @param updated number of overwritten rows.
+     */
+    public void recordRowsWritten(long inserted, long updated) {
+        rowsInserted.increment(inserted);
+        rowsUpdated.increment(updated);
+        Optional.ofNullable(currentBuild).ifPresent(summary -> {
+            synchronized (summary) {
+                summary.setRowsInserted(summary.getRowsInserted() + inserted);
+                summary.setRowsUpdated(summary.getRowsUpdated() + updated);
+            }
+        });
+    }
+
+    /**
+     * Method finishes recording of current build, publishes its values to gauges and keeps its summary.
+     * @param error exception build failed with, or <code>null</code> if build succeeded.
+     */
+    public void finishBuild(Throwable error) {
+        AnalyticsBuildSummaryDto summary = currentBuild;
+        if (summary == null) {
+            return;
+        }
+        summary.setFinishedAt(Instant.now());
+        summary.setStatus(error == null ? AnalyticsBuildStatus.SUCCEEDED : AnalyticsBuildStatus.FAILED);
+        summary.setError(error == null ? null : String.valueOf(error.getMessage()));
+        currentSample.stop(Timer.builder("analytics.build")
+                .tag("mode", summary.getBuildMode().name())
+                .tag("status", summary.getStatus().name())
+                .description("Time spent in analytics build")
+                .register(meterRegistry));
+        lastVacanciesScanned.set(Optional.ofNullable(summary.getVacanciesScanned()).orElse(0L));
+        lastVacanciesFilteredOut.set(Optional.ofNullable(summary.getVacanciesFilteredOut()).orElse(0L));
+        lastDistinctQueries.set(summary.getDistinctQueries());
+        lastRowsInserted.set(summary.getRowsInserted());
+        lastRowsUpdated.set(summary.getRowsUpdated());
+        synchronized (summaries) {
+            summaries.addFirst(summary);
+            while (summaries.size() > properties.getBuildSummaryHistorySize()) {
+                summaries.removeLast();
+            }
+        }
+        currentBuild = null;
+        currentSample = null;
+    }
+
+    /**
+     * @return summaries of latest finished builds, the latest first.
+     */
+    public List<AnalyticsBuildSummaryDto> getSummaries() {
+        synchronized (summaries) {
+            return new ArrayList<>(summaries);
+        }
+    }
+
+    /**
+     * @return summary of the latest finished build, if any.
+     */
+    public Optional<AnalyticsBuildSummaryDto> getLastSummary() {
+        synchronized (summaries) {
+            return Optional.ofNullable(summaries.peekFirst());
+        }
+    }
+}
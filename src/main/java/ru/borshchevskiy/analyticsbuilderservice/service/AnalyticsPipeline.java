@@ -0,0 +1,243 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stages of analytics build pipeline, run on threads of <code>analyticsPipelineExecutor</code> and connected
+ * to the build thread by bounded buffers of {@link AnalyticsBuilderProperties#getPipelineBufferBatches()} batches.
+ * <p>
+ * Read stage drains Mongo cursor ahead of aggregation, so that fetching and decoding of the next documents
+ * overlaps with folding of the previous ones. Write stage upserts batches of analytics rows while the build thread
+ * maps the next ones. Stage which runs ahead waits on full buffer, so slow database throttles the stages before it
+ * and memory taken by batches in flight is bounded.
+ */
+@Component
+@Slf4j
+public class AnalyticsPipeline {
+
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final AnalyticsBuilderProperties properties;
+    private final Executor analyticsPipelineExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+
+    public AnalyticsPipeline(AnalyticsBuilderProperties properties,
+                             @Qualifier("analyticsPipelineExecutor") Executor analyticsPipelineExecutor,
+                             PlatformTransactionManager transactionManager,
+                             VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository) {
+        this.properties = properties;
+        this.analyticsPipelineExecutor = analyticsPipelineExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.vacancyAnalyticsBulkRepository = vacancyAnalyticsBulkRepository;
+    }
+
+    /**
+     * Method starts read stage, consuming source stream on pipeline thread in batches of
+     * {@link AnalyticsBuilderProperties#getStreamBatchSize()} elements.
+     * <p>
+     * Returned stream must be closed by caller. Closing it stops read stage and closes source stream.
+     * @param source stream to be read ahead, e.g. backed by Mongo cursor.
+     * @return stream of the same elements in the same order.
+     */
+    public <T> Stream<T> readAhead(Stream<T> source) {
+        int batchSize = properties.getStreamBatchSize();
+        Channel<T> channel = new Channel<>(properties.getPipelineBufferBatches());
+        CompletableFuture.runAsync(() -> {
+            try (source) {
+                List<T> batch = new ArrayList<>(batchSize);
+                for (Iterator<T> iterator = source.iterator(); iterator.hasNext(); ) {
+                    batch.add(iterator.next());
+                    if (batch.size() == batchSize) {
+                        channel.put(Batch.of(batch));
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                channel.put(Batch.of(batch));
+                channel.put(Batch.end());
+            } catch (ChannelClosedException e) {
+                log.debug("Read stage stopped by consumer");
+            } catch (RuntimeException e) {
+                channel.putQuietly(Batch.failed(e));
+            }
+        }, analyticsPipelineExecutor);
+        Iterator<T> iterator = new Iterator<>() {
+            private Iterator<T> current = List.<T>of().iterator();
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && !finished) {
+                    Batch<T> batch = channel.take();
+                    if (batch.error() != null) {
+                        throw new IllegalStateException("Read stage failed", batch.error());
+                    }
+                    finished = batch.last();
+                    current = batch.elements().iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(channel::close);
+    }
+
+    /**
+     * Method starts write stage and feeds it with analytics rows of specified stream in batches of
+     * {@link AnalyticsBuilderProperties#getWriteBatchSize()} size. Rows are pulled from stream on caller thread,
+     * while write stage upserts previous batches within single transaction, so that either all rows
+     * are saved or none of them.
+     * @param analytics analytics rows, possibly lazily mapped.
+     * @return number of batches executed.
+     */
+    public int upsertAll(Stream<VacancyAnalytics> analytics) {
+        int batchSize = properties.getWriteBatchSize();
+        Channel<VacancyAnalytics> channel = new Channel<>(properties.getPipelineBufferBatches());
+        CompletableFuture<Integer> writer = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    int batches = 0;
+                    for (Batch<VacancyAnalytics> batch = channel.take(); !batch.last(); batch = channel.take()) {
+                        batches += vacancyAnalyticsBulkRepository.upsertAll(batch.elements(), batchSize);
+                    }
+                    return batches;
+                }), analyticsPipelineExecutor);
+        // Writer failure unblocks producer waiting on full buffer
+        writer.whenComplete((batches, error) -> {
+            if (error != null) {
+                channel.close();
+            }
+        });
+        try {
+            List<VacancyAnalytics> batch = new ArrayList<>(batchSize);
+            for (Iterator<VacancyAnalytics> iterator = analytics.iterator(); iterator.hasNext(); ) {
+                batch.add(iterator.next());
+                if (batch.size() == batchSize) {
+                    channel.put(Batch.of(batch));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                channel.put(Batch.of(batch));
+            }
+            channel.put(Batch.end());
+        } catch (ChannelClosedException e) {
+            // Writer failed, its error is rethrown below
+        } catch (RuntimeException e) {
+            // Writer waiting on empty buffer fails and rolls transaction back
+            channel.close();
+            throw e;
+        }
+        try {
+            return writer.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Batch<T>(List<T> elements, boolean last, RuntimeException error) {
+        static <T> Batch<T> of(List<T> elements) {
+            return new Batch<>(elements, false, null);
+        }
+
+        static <T> Batch<T> end() {
+            return new Batch<>(List.of(), true, null);
+        }
+
+        static <T> Batch<T> failed(RuntimeException error) {
+            return new Batch<>(List.of(), true, error);
+        }
+    }
+
+    private static class ChannelClosedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ChannelClosedException() {
+            super("Pipeline stage was stopped");
+        }
+    }
+
+    /**
+     * Bounded buffer between two stages. Once closed by either side, the other side stops waiting on it.
+     */
+    private static class Channel<T> {
+        private final BlockingQueue<Batch<T>> buffer;
+        private volatile boolean closed;
+
+        Channel(int capacity) {
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void put(Batch<T> batch) {
+            try {
+                while (!buffer.offer(batch, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        throw new ChannelClosedException();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ChannelClosedException();
+            }
+        }
+
+        void putQuietly(Batch<T> batch) {
+            try {
+                put(batch);
+            } catch (ChannelClosedException e) {
+                log.debug("Pipeline stage was stopped before batch was taken");
+            }
+        }
+
+        Batch<T> take() {
+            try {
+                Batch<T> batch;
+                while ((batch = buffer.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+                    if (closed) {
+                        throw new ChannelClosedException();
+                    }
+                }
+                return batch;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ChannelClosedException();
+            }
+        }
+
+        void close() {
+            closed = true;
+        }
+    }
+}
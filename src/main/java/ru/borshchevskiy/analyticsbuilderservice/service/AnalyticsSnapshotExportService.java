@@ -0,0 +1,68 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.AnalyticsSnapshotRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsReadRepository;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Exports per-query analytics data of each written date to columnar snapshot file of that date,
+ * see {@link AnalyticsSnapshotRepository}, if {@link AnalyticsBuilderProperties#isSnapshotExportEnabled()}.
+ * <p>
+ * Snapshot is taken from analytics database once written data is committed, so that file holds exactly
+ * the committed rows of the date, whichever build mode or backfill wrote them.
+ */
+@Service
+@Slf4j
+public class AnalyticsSnapshotExportService {
+
+    private final AnalyticsBuilderProperties properties;
+    private final VacancyAnalyticsReadRepository vacancyAnalyticsReadRepository;
+    private final AnalyticsSnapshotRepository analyticsSnapshotRepository;
+
+    public AnalyticsSnapshotExportService(AnalyticsBuilderProperties properties,
+                                          VacancyAnalyticsReadRepository vacancyAnalyticsReadRepository,
+                                          AnalyticsSnapshotRepository analyticsSnapshotRepository) {
+        this.properties = properties;
+        this.vacancyAnalyticsReadRepository = vacancyAnalyticsReadRepository;
+        this.analyticsSnapshotRepository = analyticsSnapshotRepository;
+    }
+
+    /**
+     * Method exports snapshot of every date of updated range. Failure to export is logged and does not fail
+     * the build, since analytics data is already saved to database.
+     * @param event event of analytics data being written.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnalyticsUpdated(VacancyAnalyticsUpdatedEvent event) {
+        if (!properties.isSnapshotExportEnabled()) {
+            return;
+        }
+        for (LocalDate date = event.from(); !date.isAfter(event.to()); date = date.plusDays(1)) {
+            try {
+                export(date);
+            } catch (RuntimeException e) {
+                log.error("Failed to export analytics snapshot of {}", date, e);
+            }
+        }
+    }
+
+    /**
+     * Method writes snapshot of analytics data of all queries on specified date, replacing existing one.
+     * @param date date of analytics data.
+     * @return path of written file.
+     */
+    public Path export(LocalDate date) {
+        List<VacancyAnalytics> analytics = vacancyAnalyticsReadRepository.findAllByDate(date);
+        Path file = analyticsSnapshotRepository.write(date, analytics);
+        log.debug("Exported analytics snapshot of {} queries on {} to {}", analytics.size(), date, file);
+        return file;
+    }
+}
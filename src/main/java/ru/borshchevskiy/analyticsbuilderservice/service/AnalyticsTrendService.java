@@ -0,0 +1,108 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.RollingWindow;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsTrendRepository;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains 7-day and 30-day rolling windows of per-query analytics data, saved along with analytics data
+ * of each day, so that moving averages and week-over-week deltas are read by dashboards from single row.
+ * <p>
+ * Window of each query is slid from window saved with analytics data of the previous day: analytics data
+ * of the new day is added to it and analytics data of the day leaving it is subtracted, so that only rows
+ * of three days are read per build instead of rows of 30 days. Windows of queries without window
+ * on the previous day, e.g. on the first build or after a day without build, are summed from scratch
+ * up to the previous day and then slid the same way.
+ */
+@Service
+@Slf4j
+public class AnalyticsTrendService {
+
+    public static final int WEEK_DAYS = 7;
+    public static final int MONTH_DAYS = 30;
+
+    private final VacancyAnalyticsTrendRepository vacancyAnalyticsTrendRepository;
+
+    public AnalyticsTrendService(VacancyAnalyticsTrendRepository vacancyAnalyticsTrendRepository) {
+        this.vacancyAnalyticsTrendRepository = vacancyAnalyticsTrendRepository;
+    }
+
+    /**
+     * Method sets windows ending on specified date, and deltas of vacancy count and average salary
+     * against the same day of the previous week, to analytics data of every query.
+     * Analytics data of days before specified date must already be saved.
+     * @param createdAt date of analytics data.
+     * @param perQueryVacancyAnalyticsMap map of query to analytics data of specified date.
+     */
+    public void applyTrends(LocalDate createdAt, Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap) {
+        LocalDate previousDay = createdAt.minusDays(1);
+        LocalDate weekLeavingDay = createdAt.minusDays(WEEK_DAYS);
+        LocalDate monthLeavingDay = createdAt.minusDays(MONTH_DAYS);
+        Map<String, VacancyAnalytics> previous = new HashMap<>();
+        Map<String, VacancyAnalytics> weekLeaving = new HashMap<>();
+        Map<String, VacancyAnalytics> monthLeaving = new HashMap<>();
+        for (VacancyAnalytics row : vacancyAnalyticsTrendRepository.findAllByDates(
+                List.of(previousDay, weekLeavingDay, monthLeavingDay))) {
+            if (row.getCreatedAt().equals(previousDay)) {
+                previous.put(row.getQuery(), row);
+            } else if (row.getCreatedAt().equals(weekLeavingDay)) {
+                weekLeaving.put(row.getQuery(), row);
+            } else {
+                monthLeaving.put(row.getQuery(), row);
+            }
+        }
+        Map<String, VacancyAnalytics> summed = null;
+        int slid = 0;
+        for (var entry : perQueryVacancyAnalyticsMap.entrySet()) {
+            String query = entry.getKey();
+            VacancyAnalyticsDto analytics = entry.getValue();
+            VacancyAnalytics previousRow = previous.get(query);
+            if (previousRow != null && previousRow.getVacancyCount7d() != null) {
+                slid++;
+            } else {
+                if (summed == null) {
+                    summed = vacancyAnalyticsTrendRepository.sumWindows(previousDay).stream()
+                            .collect(Collectors.toMap(VacancyAnalytics::getQuery, Function.identity()));
+                }
+                previousRow = summed.get(query);
+            }
+            RollingWindow window7d = previousRow == null ? RollingWindow.EMPTY
+                    : slide(window7d(previousRow), weekLeaving.get(query));
+            RollingWindow window30d = previousRow == null ? RollingWindow.EMPTY
+                    : slide(window30d(previousRow), monthLeaving.get(query));
+            long salarySum = analytics.getSalarySum() == null ? 0 : analytics.getSalarySum();
+            analytics.setWindow7d(window7d.plus(analytics.getVacancyCount(), salarySum));
+            analytics.setWindow30d(window30d.plus(analytics.getVacancyCount(), salarySum));
+            VacancyAnalytics weekAgo = weekLeaving.get(query);
+            analytics.setVacancyCountDelta7d(weekAgo == null ? null
+                    : analytics.getVacancyCount() - weekAgo.getVacancyCount());
+            analytics.setAverageSalaryDelta7d(weekAgo == null || weekAgo.getAverageSalary() == null
+                    || analytics.getAverageSalary() == null ? null
+                    : analytics.getAverageSalary() - weekAgo.getAverageSalary());
+        }
+        log.debug("Rolling windows on date {} slid for {} queries and summed from scratch for {} queries",
+                createdAt, slid, perQueryVacancyAnalyticsMap.size() - slid);
+    }
+
+    private static RollingWindow slide(RollingWindow window, VacancyAnalytics leavingRow) {
+        return leavingRow == null ? window : window.minus(leavingRow.getVacancyCount(), leavingRow.getSalarySum());
+    }
+
+    private static RollingWindow window7d(VacancyAnalytics row) {
+        return new RollingWindow(row.getVacancyCount7d(), row.getSalarySum7d(), row.getDays7d());
+    }
+
+    private static RollingWindow window30d(VacancyAnalytics row) {
+        return new RollingWindow(row.getVacancyCount30d(), row.getSalarySum30d(), row.getDays30d());
+    }
+}
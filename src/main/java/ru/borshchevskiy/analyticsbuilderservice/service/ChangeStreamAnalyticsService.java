@@ -0,0 +1,469 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.FullDocumentBeforeChange;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyContribution;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.ChangeStreamStateRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.IncrementalAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Service maintaining per-query analytics data in real time in
+ * {@link AnalyticsBuilderProperties.BuildMode#CHANGE_STREAM} mode.
+ * <p>
+ * Service watches change stream of vacancy collection and applies each change to in-memory per-query accumulators:
+ * contribution of document before change is subtracted and contribution of document after change is added.
+ * Pre-images of documents are required for updates and deletes, so <code>changeStreamPreAndPostImages</code>
+ * option must be enabled on vacancy collection (MongoDB 6.0+).
+ * <p>
+ * Queries changed since previous flush are written every
+ * {@link AnalyticsBuilderProperties#getChangeStreamFlushIntervalMs()} milliseconds. Their running aggregates,
+ * today's analytics rows and resume token of the last applied change are written in one transaction,
+ * so that after restart the service loads aggregates and resumes change stream right after that change.
+ * If {@link AnalyticsBuilderProperties#isTrendsEnabled()}, rolling windows of today's rows are slid
+ * by {@link AnalyticsTrendService} on each write, so that flush does not overwrite them with empty windows.
+ * Once transaction is committed, {@link VacancyAnalyticsUpdatedEvent} of today is published, so that cached
+ * analytics data is evicted.
+ * If there is no resume token, or change stream can't be resumed from it, aggregates are rebuilt
+ * from the whole collection.
+ * <p>
+ * Watcher reopens change stream after any failure, waiting longer after each consecutive one, up to
+ * {@link AnalyticsBuilderProperties#getChangeStreamMaxBackoffMs()} milliseconds. State of watcher is exposed
+ * by {@link #getWatcherState()}.
+ */
+@Service
+@Slf4j
+public class ChangeStreamAnalyticsService implements SmartLifecycle {
+
+    private static final String VACANCY_COLLECTION = "vacancy";
+    private static final long MAX_AWAIT_MILLIS = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final VacancyService vacancyService;
+    private final VacancyAnalyticsAggregator vacancyAnalyticsAggregator;
+    private final IncrementalAnalyticsRepository incrementalAnalyticsRepository;
+    private final ChangeStreamStateRepository changeStreamStateRepository;
+    private final VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+    private final VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final AnalyticsTrendService analyticsTrendService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AnalyticsBuilderProperties properties;
+
+    private final Object lock = new Object();
+    private final Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = new HashMap<>();
+    private final Set<String> dirtyQueries = new HashSet<>();
+    private BsonDocument lastResumeToken;
+    private long missingImages;
+    /**
+     * Contributions of vacancies counted by the latest rebuild, by vacancy id, kept until change stream
+     * catches up with changes made during rebuild.
+     */
+    private Map<String, VacancyContribution> rebuiltContributions;
+
+    private volatile boolean running;
+    private volatile boolean watching;
+    private volatile int consecutiveFailures;
+    private volatile String lastFailure;
+    private volatile Instant lastFailureAt;
+    private Thread watcherThread;
+
+    public ChangeStreamAnalyticsService(MongoTemplate mongoTemplate,
+                                        VacancyService vacancyService,
+                                        VacancyAnalyticsAggregator vacancyAnalyticsAggregator,
+                                        IncrementalAnalyticsRepository incrementalAnalyticsRepository,
+                                        ChangeStreamStateRepository changeStreamStateRepository,
+                                        VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository,
+                                        VacancyAnalyticsMapper vacancyAnalyticsMapper,
+                                        TransactionTemplate transactionTemplate,
+                                        AnalyticsTrendService analyticsTrendService,
+                                        ApplicationEventPublisher eventPublisher,
+                                        AnalyticsBuilderProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.vacancyService = vacancyService;
+        this.vacancyAnalyticsAggregator = vacancyAnalyticsAggregator;
+        this.incrementalAnalyticsRepository = incrementalAnalyticsRepository;
+        this.changeStreamStateRepository = changeStreamStateRepository;
+        this.vacancyAnalyticsBulkRepository = vacancyAnalyticsBulkRepository;
+        this.vacancyAnalyticsMapper = vacancyAnalyticsMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.analyticsTrendService = analyticsTrendService;
+        this.eventPublisher = eventPublisher;
+        this.properties = properties;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return properties.getBuildMode() == AnalyticsBuilderProperties.BuildMode.CHANGE_STREAM;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        watcherThread = new Thread(this::watch, "vacancy-change-stream");
+        watcherThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (watcherThread != null) {
+            try {
+                watcherThread.join(2 * MAX_AWAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Method returns copy of current in-memory aggregates of all queries with at least one vacancy.
+     * @return map of query to accumulated analytics data.
+     */
+    public Map<String, VacancyAnalyticsAccumulator> currentAggregates() {
+        Map<String, VacancyAnalyticsAccumulator> aggregates = new HashMap<>();
+        synchronized (lock) {
+            perQueryAccumulators.forEach((query, accumulator) -> {
+                if (accumulator.getVacancyCount() > 0) {
+                    aggregates.put(query, copy(accumulator));
+                }
+            });
+        }
+        return aggregates;
+    }
+
+    /**
+     * @return state of change stream watcher.
+     */
+    public WatcherState getWatcherState() {
+        return new WatcherState(running, watching, consecutiveFailures, lastFailure, lastFailureAt);
+    }
+
+    /**
+     * Method applies single change of vacancy collection to in-memory aggregates
+     * and marks affected queries as changed.
+     * <p>
+     * Until change stream catches up after rebuild, change may already be seen by rebuild,
+     * so contribution of vacancy counted by rebuild or by previous change is subtracted instead of pre-image.
+     * @param change change stream event with document pre-image and post-image, if available.
+     */
+    public void applyChange(ChangeStreamDocument<Document> change) {
+        Document before = change.getFullDocumentBeforeChange();
+        Document after = change.getFullDocument();
+        boolean imageMissing = switch (change.getOperationType()) {
+            case UPDATE -> before == null || after == null;
+            case REPLACE, DELETE -> before == null;
+            default -> false;
+        };
+        if (imageMissing) {
+            missingImages++;
+            log.warn("Change {} of vacancy {} has no pre-image or post-image, aggregates may drift until rebuild. " +
+                    "Changes without images so far: {}", change.getOperationType(),
+                    change.getDocumentKey(), missingImages);
+        }
+        synchronized (lock) {
+            if (rebuiltContributions != null && change.getDocumentKey() != null) {
+                String id = VacancyService.idOf(change.getDocumentKey().get("_id"));
+                VacancyContribution rebuilt = rebuiltContributions.remove(id);
+                if (rebuilt != null) {
+                    applyContribution(rebuilt, false);
+                }
+                if (after != null) {
+                    contributionOf(read(after)).ifPresent(contribution -> {
+                        applyContribution(contribution, true);
+                        rebuiltContributions.put(id, contribution);
+                    });
+                }
+            } else {
+                if (before != null) {
+                    contributionOf(read(before)).ifPresent(contribution -> applyContribution(contribution, false));
+                }
+                if (after != null) {
+                    contributionOf(read(after)).ifPresent(contribution -> applyContribution(contribution, true));
+                }
+            }
+            lastResumeToken = change.getResumeToken();
+        }
+    }
+
+    /**
+     * Method marks change stream as caught up with changes made during rebuild, so that following changes
+     * are applied by their pre-images and post-images.
+     */
+    public void onCaughtUp() {
+        synchronized (lock) {
+            rebuiltContributions = null;
+        }
+    }
+
+    /**
+     * Method writes aggregates of queries changed since previous flush, today's analytics rows of these queries
+     * and resume token of the last applied change within single transaction, and publishes
+     * {@link VacancyAnalyticsUpdatedEvent} once it is committed.
+     * If writing fails, queries stay marked as changed and are written on next flush.
+     */
+    @Scheduled(fixedDelayString = "${analytics-builder.change-stream-flush-interval-ms:5000}")
+    public void flush() {
+        Map<String, VacancyAnalyticsAccumulator> changed = new HashMap<>();
+        BsonDocument resumeToken;
+        synchronized (lock) {
+            if (dirtyQueries.isEmpty()) {
+                return;
+            }
+            for (String query : dirtyQueries) {
+                changed.put(query, copy(perQueryAccumulators.get(query)));
+            }
+            dirtyQueries.clear();
+            resumeToken = lastResumeToken;
+        }
+        LocalDate createdAt = LocalDate.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(changed, resumeToken, createdAt));
+            log.debug("Flushed change stream analytics data for {} queries", changed.size());
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                dirtyQueries.addAll(changed.keySet());
+            }
+            log.error("Failed to flush change stream analytics data for {} queries", changed.size(), e);
+            return;
+        }
+        eventPublisher.publishEvent(new VacancyAnalyticsUpdatedEvent(createdAt, createdAt));
+    }
+
+    /**
+     * Method restores or rebuilds aggregates and applies changes of vacancy collection until service is stopped.
+     * If change stream, rebuild or applying of change fails, change stream is reopened from the last applied change
+     * after backoff.
+     */
+    private void watch() {
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor()) {
+                watching = true;
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        applyChange(change);
+                    } else {
+                        onCaughtUp();
+                    }
+                    consecutiveFailures = 0;
+                }
+            } catch (RuntimeException e) {
+                watching = false;
+                consecutiveFailures++;
+                lastFailure = e.toString();
+                lastFailureAt = Instant.now();
+                long backoffMs = Math.min(properties.getChangeStreamMaxBackoffMs(),
+                        properties.getChangeStreamBackoffMs() << Math.min(consecutiveFailures - 1, 20));
+                log.error("Vacancy change stream failed {} times in a row, reopening in {} ms",
+                        consecutiveFailures, backoffMs, e);
+                backoff(backoffMs);
+            }
+        }
+        watching = false;
+    }
+
+    /**
+     * Method waits given time, or until service is stopped.
+     */
+    private void backoff(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        try {
+            while (running && System.currentTimeMillis() < deadline) {
+                Thread.sleep(Math.min(MAX_AWAIT_MILLIS, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Method opens change stream of vacancy collection. If resume token is known, change stream is resumed
+     * right after the last applied change. Otherwise, change stream is opened first and aggregates are rebuilt
+     * from the whole collection after that, so that no change made during rebuild is missed. Changes made during
+     * rebuild are reconciled with contributions counted by rebuild, see {@link #applyChange(ChangeStreamDocument)}.
+     * @return cursor over vacancy collection changes.
+     */
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor() {
+        BsonDocument resumeToken;
+        synchronized (lock) {
+            resumeToken = lastResumeToken;
+        }
+        if (resumeToken == null) {
+            Optional<BsonDocument> persistedToken = changeStreamStateRepository.findResumeToken();
+            if (persistedToken.isPresent()) {
+                resumeToken = persistedToken.get();
+                Map<String, VacancyAnalyticsAccumulator> persistedAggregates =
+                        incrementalAnalyticsRepository.findAllAggregates();
+                synchronized (lock) {
+                    perQueryAccumulators.putAll(persistedAggregates);
+                    lastResumeToken = resumeToken;
+                }
+                log.info("Loaded aggregates of {} queries, resuming vacancy change stream",
+                        persistedAggregates.size());
+            }
+        }
+        if (resumeToken != null) {
+            try {
+                return changeStream().resumeAfter(resumeToken).cursor();
+            } catch (MongoException e) {
+                log.warn("Vacancy change stream can't be resumed, rebuilding aggregates", e);
+            }
+        }
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream().cursor();
+        try {
+            rebuild(cursor.getResumeToken());
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        return cursor;
+    }
+
+    private ChangeStreamIterable<Document> changeStream() {
+        return mongoTemplate.getCollection(VACANCY_COLLECTION).watch()
+                .fullDocument(FullDocument.WHEN_AVAILABLE)
+                .fullDocumentBeforeChange(FullDocumentBeforeChange.WHEN_AVAILABLE)
+                .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method recomputes aggregates from the whole vacancy collection and replaces persisted aggregates with them.
+     * Once replaced, {@link VacancyAnalyticsUpdatedEvent} of today is published.
+     * @param resumeToken resume token of change stream opened before rebuild.
+     */
+    private void rebuild(BsonDocument resumeToken) {
+        Map<String, VacancyAnalyticsAccumulator> aggregates = new HashMap<>();
+        Map<String, VacancyContribution> contributions = new HashMap<>();
+        try (Stream<VacancySalaryProjection> vacancies =
+                     vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR)) {
+            vacancies.forEach(vacancy -> contributionOf(vacancy).ifPresent(contribution -> {
+                vacancyAnalyticsAggregator.accumulate(aggregates, vacancy.getQuery(), vacancy.getSalaryEntity());
+                contributions.put(contribution.getVacancyId(), contribution);
+            }));
+        }
+        LocalDate createdAt = LocalDate.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            incrementalAnalyticsRepository.deleteAll();
+            write(aggregates, resumeToken, createdAt);
+        });
+        synchronized (lock) {
+            perQueryAccumulators.clear();
+            perQueryAccumulators.putAll(aggregates);
+            dirtyQueries.clear();
+            lastResumeToken = resumeToken;
+            rebuiltContributions = contributions;
+        }
+        eventPublisher.publishEvent(new VacancyAnalyticsUpdatedEvent(createdAt, createdAt));
+        log.info("Rebuilt aggregates of {} queries from vacancy collection", aggregates.size());
+    }
+
+    private void write(Map<String, VacancyAnalyticsAccumulator> aggregates, BsonDocument resumeToken,
+                       LocalDate createdAt) {
+        incrementalAnalyticsRepository.replaceAggregates(aggregates, properties.getWriteBatchSize());
+        Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap = new HashMap<>();
+        aggregates.forEach((query, accumulator) ->
+                perQueryVacancyAnalyticsMap.put(query, vacancyAnalyticsMapper.mapToDto(accumulator)));
+        if (properties.isTrendsEnabled()) {
+            analyticsTrendService.applyTrends(createdAt, perQueryVacancyAnalyticsMap);
+        }
+        List<VacancyAnalytics> analytics = new ArrayList<>(aggregates.size());
+        perQueryVacancyAnalyticsMap.forEach((query, analyticsDto) ->
+                analytics.add(vacancyAnalyticsMapper.mapToEntity(analyticsDto, query, createdAt)));
+        vacancyAnalyticsBulkRepository.upsertAll(analytics, properties.getWriteBatchSize());
+        if (resumeToken != null) {
+            changeStreamStateRepository.saveResumeToken(resumeToken);
+        }
+    }
+
+    /**
+     * Method adds or subtracts contribution of single vacancy to aggregates of its queries.
+     * Must be called holding {@link #lock}.
+     */
+    private void applyContribution(VacancyContribution contribution, boolean add) {
+        for (String query : contribution.getQueries()) {
+            VacancyAnalyticsAccumulator accumulator =
+                    perQueryAccumulators.computeIfAbsent(query, q -> new VacancyAnalyticsAccumulator());
+            if (add) {
+                accumulator.add(contribution.getSalary());
+            } else {
+                accumulator.subtract(contribution.getSalary());
+            }
+            dirtyQueries.add(query);
+        }
+    }
+
+    /**
+     * Method returns contribution of vacancy to aggregates, or nothing if vacancy is not counted.
+     */
+    private Optional<VacancyContribution> contributionOf(VacancySalaryProjection vacancy) {
+        if (!VacancyAnalyticsAggregator.contributes(vacancy, Currency.RUR)) {
+            return Optional.empty();
+        }
+        return Optional.of(new VacancyContribution(vacancy.getId(), vacancy.getQuery(),
+                VacancyAnalyticsAggregator.calculateVacancySalary(vacancy.getSalaryEntity()), null));
+    }
+
+    private VacancySalaryProjection read(Document document) {
+        return mongoTemplate.getConverter().read(VacancySalaryProjection.class, document);
+    }
+
+    private static VacancyAnalyticsAccumulator copy(VacancyAnalyticsAccumulator accumulator) {
+        return new VacancyAnalyticsAccumulator().merge(accumulator);
+    }
+
+    /**
+     * State of change stream watcher.
+     * @param running whether service is started.
+     * @param watching whether change stream is open and changes are being applied.
+     * @param consecutiveFailures number of failures of watcher since change stream was last read successfully.
+     * @param lastFailure the latest failure, or <code>null</code> if there was none.
+     * @param lastFailureAt time of the latest failure, or <code>null</code> if there was none.
+     */
+    public record WatcherState(boolean running,
+                               boolean watching,
+                               int consecutiveFailures,
+                               String lastFailure,
+                               Instant lastFailureAt) {
+    }
+}
@@ -0,0 +1,102 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Saves per-query analytics data concurrently in
+ * {@link AnalyticsBuilderProperties.WriteMode#PER_QUERY_CONCURRENT} mode.
+ * <p>
+ * Each query is saved on its own thread of <code>analyticsWriteExecutor</code>, virtual one if supported.
+ * Number of queries being saved at once is limited by semaphore sized to
+ * {@link AnalyticsBuilderProperties#getWriteConcurrency()}, or to maximum size of Hikari connection pool,
+ * so that saving threads never wait for connection inside the pool.
+ */
+@Component
+@Slf4j
+public class ConcurrentQueryWriter {
+
+    private static final int DEFAULT_CONCURRENCY = 10;
+
+    private final AnalyticsBuilderProperties properties;
+    private final DataSource dataSource;
+    private final TaskExecutor analyticsWriteExecutor;
+
+    public ConcurrentQueryWriter(AnalyticsBuilderProperties properties,
+                                 DataSource dataSource,
+                                 @Qualifier("analyticsWriteExecutor") TaskExecutor analyticsWriteExecutor) {
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.analyticsWriteExecutor = analyticsWriteExecutor;
+    }
+
+    /**
+     * Method saves data of every query and waits until all of them are saved.
+     * Once saving of any query fails, saving of queries not started yet is cancelled.
+     * @param perQueryData map of query to data to be saved.
+     * @param writer function saving data of single query.
+     * @throws RuntimeException first exception thrown by <code>writer</code>.
+     */
+    public <V> void writeAll(Map<String, V> perQueryData, BiConsumer<String, V> writer) {
+        int concurrency = getConcurrency();
+        log.debug("Saving {} queries, at most {} at once", perQueryData.size(), concurrency);
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        for (var entry : perQueryData.entrySet()) {
+            permits.acquireUninterruptibly();
+            if (failure.get() != null) {
+                permits.release();
+                break;
+            }
+            try {
+                analyticsWriteExecutor.execute(() -> {
+                    try {
+                        writer.accept(entry.getKey(), entry.getValue());
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                failure.compareAndSet(null, e);
+                break;
+            }
+        }
+        // All permits are free only after the last started save has finished
+        permits.acquireUninterruptibly(concurrency);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * @return {@link AnalyticsBuilderProperties#getWriteConcurrency()} if it is set, otherwise maximum size
+     * of Hikari connection pool.
+     */
+    public int getConcurrency() {
+        if (properties.getWriteConcurrency() > 0) {
+            return properties.getWriteConcurrency();
+        }
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to get connection pool size, using default write concurrency", e);
+        }
+        return DEFAULT_CONCURRENCY;
+    }
+}
@@ -0,0 +1,184 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsPartitionResultDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsPartitionTaskDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsAccumulatorDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Builds per-query analytics data in {@link AnalyticsBuilderProperties.BuildMode#DISTRIBUTED} mode.
+ * <p>
+ * Instance running the build acts as coordinator: it publishes one {@link AnalyticsPartitionTaskDto} per partition
+ * to partition tasks queue, shared by all instances of the service, and waits for partial results on its own
+ * results queue. Any instance, including coordinator, consumes partition tasks, aggregates vacancies of the
+ * partition and replies with partial per-query accumulators. Since merging of accumulators is associative,
+ * merged partial results are identical to results of aggregating the whole collection on single instance.
+ */
+@Service
+@Slf4j
+public class DistributedAnalyticsService {
+
+    private final AmqpTemplate amqpTemplate;
+    private final VacancyService vacancyService;
+    private final VacancyAnalyticsAggregator vacancyAnalyticsAggregator;
+    private final VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    private final AnalyticsBuilderProperties properties;
+    private final String partitionTasksQueue;
+    private final String resultsQueue;
+    private final Map<String, PendingBuild> pendingBuilds = new ConcurrentHashMap<>();
+
+    public DistributedAnalyticsService(
+            AmqpTemplate amqpTemplate,
+            VacancyService vacancyService,
+            VacancyAnalyticsAggregator vacancyAnalyticsAggregator,
+            VacancyAnalyticsMapper vacancyAnalyticsMapper,
+            AnalyticsBuilderProperties properties,
+            @Value("${spring.rabbitmq.queues.analytics-builder-partition-tasks-queue}") String partitionTasksQueue,
+            @Value("#{analyticsBuilderResultsQueue.name}") String resultsQueue) {
+        this.amqpTemplate = amqpTemplate;
+        this.vacancyService = vacancyService;
+        this.vacancyAnalyticsAggregator = vacancyAnalyticsAggregator;
+        this.vacancyAnalyticsMapper = vacancyAnalyticsMapper;
+        this.properties = properties;
+        this.partitionTasksQueue = partitionTasksQueue;
+        this.resultsQueue = resultsQueue;
+    }
+
+    /**
+     * Method publishes tasks for all {@link AnalyticsBuilderProperties#getDistributedPartitions()} partitions
+     * and waits until partial results of all of them are received and merged.
+     * @return map of query to accumulated analytics data of all vacancies.
+     * @throws IllegalStateException if any partition failed or results of all partitions were not received
+     * within {@link AnalyticsBuilderProperties#getDistributedResultTimeoutMs()}.
+     */
+    public Map<String, VacancyAnalyticsAccumulator> buildDistributed() {
+        String buildId = UUID.randomUUID().toString();
+        int partitions = properties.getDistributedPartitions();
+        PendingBuild build = new PendingBuild(partitions);
+        pendingBuilds.put(buildId, build);
+        log.debug("Started distributed build {} of {} partitions", buildId, partitions);
+        try {
+            for (int partition = 0; partition < partitions; partition++) {
+                amqpTemplate.convertAndSend(partitionTasksQueue,
+                        new AnalyticsPartitionTaskDto(buildId, partition, partitions, resultsQueue));
+            }
+            Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators =
+                    build.result.get(properties.getDistributedResultTimeoutMs(), TimeUnit.MILLISECONDS);
+            log.debug("Distributed build {} merged {} queries", buildId, perQueryAccumulators.size());
+            return perQueryAccumulators;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Distributed build " + buildId + " received results of "
+                    + build.receivedPartitions() + " of " + partitions + " partitions in time");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Distributed build " + buildId + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Distributed build " + buildId + " interrupted", e);
+        } finally {
+            pendingBuilds.remove(buildId);
+        }
+    }
+
+    /**
+     * Method aggregates vacancies of single partition and sends partial per-query accumulators to the
+     * coordinating instance. Failure is reported to coordinator rather than rethrown, so that the task
+     * is not redelivered endlessly.
+     * @param task partition task.
+     */
+    @RabbitListener(queues = "${spring.rabbitmq.queues.analytics-builder-partition-tasks-queue}")
+    public void consumePartitionTask(AnalyticsPartitionTaskDto task) {
+        log.debug("Received partition {} of distributed build {}", task.getPartition(), task.getBuildId());
+        AnalyticsPartitionResultDto result;
+        try (Stream<VacancySalaryProjection> vacancies = vacancyService.streamPartitionWithSalaryCurrency(
+                Currency.RUR, task.getPartition(), task.getPartitions())) {
+            Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = vacancyAnalyticsAggregator.aggregate(
+                    vacancies, (accumulators, vacancy) -> vacancyAnalyticsAggregator.accumulate(accumulators,
+                            vacancy.getQuery(), vacancy.getSalaryEntity()));
+            Map<String, VacancyAnalyticsAccumulatorDto> accumulatorDtos = new HashMap<>();
+            perQueryAccumulators.forEach((query, accumulator) ->
+                    accumulatorDtos.put(query, vacancyAnalyticsMapper.mapToAccumulatorDto(accumulator)));
+            result = new AnalyticsPartitionResultDto(task.getBuildId(), task.getPartition(), accumulatorDtos, null);
+        } catch (RuntimeException e) {
+            log.error("Failed to aggregate partition {} of distributed build {}",
+                    task.getPartition(), task.getBuildId(), e);
+            result = new AnalyticsPartitionResultDto(task.getBuildId(), task.getPartition(), Map.of(),
+                    String.valueOf(e.getMessage()));
+        }
+        amqpTemplate.convertAndSend(task.getReplyTo(), result);
+    }
+
+    /**
+     * Method merges partial result of single partition into the pending build it belongs to.
+     * Results of unknown builds, e.g. already timed out, and repeated results of the same partition are ignored.
+     * @param result partial result of partition.
+     */
+    @RabbitListener(queues = "#{analyticsBuilderResultsQueue.name}")
+    public void consumePartitionResult(AnalyticsPartitionResultDto result) {
+        PendingBuild build = pendingBuilds.get(result.getBuildId());
+        if (build == null) {
+            log.warn("Ignoring result of partition {} of unknown distributed build {}",
+                    result.getPartition(), result.getBuildId());
+            return;
+        }
+        if (result.getError() != null) {
+            build.result.completeExceptionally(new IllegalStateException("Partition " + result.getPartition()
+                    + " failed: " + result.getError()));
+            return;
+        }
+        Map<String, VacancyAnalyticsAccumulator> partial = new HashMap<>();
+        result.getAccumulators().forEach((query, accumulatorDto) ->
+                partial.put(query, vacancyAnalyticsMapper.mapToAccumulator(accumulatorDto)));
+        build.merge(result.getPartition(), partial);
+    }
+
+    /**
+     * Partial results of build awaited by coordinator.
+     */
+    private class PendingBuild {
+        private final int partitions;
+        private final BitSet received = new BitSet();
+        private final Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = new HashMap<>();
+        private final CompletableFuture<Map<String, VacancyAnalyticsAccumulator>> result = new CompletableFuture<>();
+
+        PendingBuild(int partitions) {
+            this.partitions = partitions;
+        }
+
+        synchronized void merge(int partition, Map<String, VacancyAnalyticsAccumulator> partial) {
+            if (received.get(partition)) {
+                log.warn("Ignoring repeated result of partition {}", partition);
+                return;
+            }
+            received.set(partition);
+            vacancyAnalyticsAggregator.merge(perQueryAccumulators, partial);
+            if (received.cardinality() == partitions) {
+                result.complete(perQueryAccumulators);
+            }
+        }
+
+        synchronized int receivedPartitions() {
+            return received.cardinality();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.ExchangeRates;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.repository.ExchangeRateRepository;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds current {@link ExchangeRates} snapshot, used to normalize salaries to base currency.
+ * <p>
+ * Snapshot is replaced atomically by periodic reload, builds keep snapshot they took at their start.
+ */
+@Service
+@Slf4j
+public class ExchangeRateService {
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final AnalyticsBuilderProperties properties;
+    private final AtomicReference<ExchangeRates> rates = new AtomicReference<>();
+
+    public ExchangeRateService(ExchangeRateRepository exchangeRateRepository,
+                               AnalyticsBuilderProperties properties) {
+        this.exchangeRateRepository = exchangeRateRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Method returns current snapshot of exchange rates, loading it if it has not been loaded yet.
+     * @return current snapshot.
+     */
+    public ExchangeRates getRates() {
+        ExchangeRates current = rates.get();
+        if (current != null) {
+            return current;
+        }
+        // Loaded outside of atomic update, which may be retried, snapshot published first is shared by all callers
+        ExchangeRates loaded = load();
+        return rates.compareAndSet(null, loaded) ? loaded : rates.get();
+    }
+
+    /**
+     * Method reloads exchange rates and replaces current snapshot with the new one.
+     * If rates cannot be loaded, previous snapshot is kept. Does nothing unless
+     * {@link AnalyticsBuilderProperties#isCurrencyNormalizationEnabled()}.
+     */
+    @Scheduled(fixedDelayString = "${analytics-builder.exchange-rates-reload-interval-ms:3600000}")
+    public void reload() {
+        if (!properties.isCurrencyNormalizationEnabled()) {
+            return;
+        }
+        try {
+            rates.set(load());
+        } catch (DataAccessException | IllegalArgumentException e) {
+            log.warn("Failed to reload exchange rates, keeping rates loaded at {}",
+                    rates.get() == null ? null : rates.get().getLoadedAt(), e);
+        }
+    }
+
+    private ExchangeRates load() {
+        ExchangeRates loaded = ExchangeRates.of(properties.getBaseCurrency(), exchangeRateRepository.findAll(),
+                Instant.now());
+        log.debug("Loaded exchange rates to {} of currencies {}", loaded.getBaseCurrency(), loaded.getCurrencies());
+        return loaded;
+    }
+}
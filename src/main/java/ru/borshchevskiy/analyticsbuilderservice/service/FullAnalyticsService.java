@@ -0,0 +1,289 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.CubeOptions;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.ExchangeRates;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillSet;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsCube;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QuerySalaryAggregateDto;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.AreaEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmployerEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmploymentEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.ExperienceEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SnippetEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Aggregates the whole vacancy collection per query in {@link AnalyticsBuilderProperties.BuildMode#FULL} mode.
+ * <p>
+ * With {@link AnalyticsBuilderProperties.Engine#JAVA} engine vacancies are either loaded into memory as a whole
+ * or read one by one through Mongo cursor, depending on {@link AnalyticsBuilderProperties#getReadMode()},
+ * so that memory consumption depends only on number of queries, and are folded sequentially or in parallel,
+ * depending on {@link AnalyticsBuilderProperties#getAggregationMode()}. If
+ * {@link AnalyticsBuilderProperties#isPipelineEnabled()}, vacancies read through cursor are fetched ahead
+ * of aggregation by {@link AnalyticsPipeline}. With {@link AnalyticsBuilderProperties.Engine#MONGO_AGGREGATION}
+ * engine aggregation is performed by Mongo database and only per-query results are fetched.
+ * <p>
+ * Vacancies are folded into {@link VacancyAnalyticsCube}, which collects breakdowns enabled by properties
+ * in the same pass, see {@link CubeOptions}. If {@link AnalyticsBuilderProperties#isCurrencyNormalizationEnabled()},
+ * vacancies with salary in any currency of current {@link ExchangeRates} snapshot are counted, their salaries
+ * converted to base currency. If {@link AnalyticsBuilderProperties#isSkillsEnabled()}, snippets of vacancies
+ * are scanned for skills by {@link SkillMatcher}. Breakdowns are saved by {@link AnalyticsBreakdownWriter}
+ * before per-query analytics data.
+ */
+@Service
+@Slf4j
+public class FullAnalyticsService {
+
+    private final VacancyService vacancyService;
+    private final AnalyticsBuilderProperties properties;
+    private final VacancyAnalyticsAggregator vacancyAnalyticsAggregator;
+    private final ExchangeRateService exchangeRateService;
+    private final SkillMatcher skillMatcher;
+    private final AnalyticsPipeline analyticsPipeline;
+    private final AnalyticsBuildMetrics analyticsBuildMetrics;
+    private final AnalyticsBreakdownWriter analyticsBreakdownWriter;
+
+    public FullAnalyticsService(VacancyService vacancyService,
+                                AnalyticsBuilderProperties properties,
+                                VacancyAnalyticsAggregator vacancyAnalyticsAggregator,
+                                ExchangeRateService exchangeRateService,
+                                SkillMatcher skillMatcher,
+                                AnalyticsPipeline analyticsPipeline,
+                                AnalyticsBuildMetrics analyticsBuildMetrics,
+                                AnalyticsBreakdownWriter analyticsBreakdownWriter) {
+        this.vacancyService = vacancyService;
+        this.properties = properties;
+        this.vacancyAnalyticsAggregator = vacancyAnalyticsAggregator;
+        this.exchangeRateService = exchangeRateService;
+        this.skillMatcher = skillMatcher;
+        this.analyticsPipeline = analyticsPipeline;
+        this.analyticsBuildMetrics = analyticsBuildMetrics;
+        this.analyticsBreakdownWriter = analyticsBreakdownWriter;
+    }
+
+    /**
+     * Method aggregates the whole vacancy collection per query with configured engine and read mode.
+     * If {@link AnalyticsBuilderProperties.Engine#JAVA} engine is used, vacancies are folded into
+     * {@link VacancyAnalyticsCube}, and breakdowns collected by cube are saved by {@link AnalyticsBreakdownWriter}
+     * before accumulators are returned.
+     * @param createdAt date breakdowns of analytics data are saved with.
+     * @return map of query to accumulated analytics data.
+     */
+    public Map<String, VacancyAnalyticsAccumulator> buildFully(LocalDate createdAt) {
+        return switch (properties.getEngine()) {
+            case JAVA -> {
+                ExchangeRates rates = properties.isCurrencyNormalizationEnabled()
+                        ? exchangeRateService.getRates()
+                        : ExchangeRates.baseOnly(Currency.RUR);
+                VacancyAnalyticsCube cube = switch (properties.getReadMode()) {
+                    case LIST -> aggregateFromList(rates);
+                    case STREAM -> aggregateFromStream(rates);
+                    case PROJECTION -> aggregateFromProjectionStream(rates);
+                };
+                analyticsBuildMetrics.recordVacanciesScanned(cube.getVacancyCount());
+                analyticsBuildMetrics.recordVacanciesFilteredOut(cube.getFilteredOutCount());
+                analyticsBreakdownWriter.writeAll(cube, rates.getBaseCurrency(), createdAt);
+                yield cube.getPerQueryAccumulators();
+            }
+            case MONGO_AGGREGATION -> analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_AGGREGATE,
+                    this::aggregateInDatabase);
+        };
+    }
+
+    /**
+     * Method loads all vacancies with salary into memory and aggregates those with salary in currencies
+     * of exchange rates snapshot per query. Reading and aggregation are timed as separate stages.
+     * @param rates exchange rates snapshot.
+     * @return cube holding accumulated analytics data.
+     */
+    private VacancyAnalyticsCube aggregateFromList(ExchangeRates rates) {
+        List<VacancyEntity> vacancies = analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_READ,
+                vacancyService::findAllWithSalary);
+        log.debug("Found {} vacancies with salary", vacancies.size());
+        return analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_AGGREGATE, () ->
+                aggregateIntoCube(vacancies.stream(), (partial, vacancy) -> accumulate(partial, rates, vacancy)));
+    }
+
+    /**
+     * Method reads vacancies with salary through Mongo cursor and aggregates each of those with salary
+     * in currencies of exchange rates snapshot per query as soon as it is fetched.
+     * @param rates exchange rates snapshot.
+     * @return cube holding accumulated analytics data.
+     */
+    private VacancyAnalyticsCube aggregateFromStream(ExchangeRates rates) {
+        return aggregateFromCursor(vacancyService.streamAllWithSalary(),
+                (partial, vacancy) -> accumulate(partial, rates, vacancy));
+    }
+
+    /**
+     * Method reads only fields required by analytics of vacancies with salary through Mongo cursor
+     * and aggregates each of those with salary in currencies of exchange rates snapshot per query
+     * as soon as it is fetched.
+     * @param rates exchange rates snapshot.
+     * @return cube holding accumulated analytics data.
+     */
+    private VacancyAnalyticsCube aggregateFromProjectionStream(ExchangeRates rates) {
+        return aggregateFromCursor(vacancyService.streamProjectionsWithSalary(),
+                (partial, vacancy) -> accumulate(partial, rates, vacancy.getId(), vacancy.getQuery(),
+                        vacancy.getAreaEntity(), vacancy.getExperienceEntity(), vacancy.getEmploymentEntity(),
+                        vacancy.getEmployerEntity(), vacancy.getSnippetEntity(), vacancy.getSalaryEntity()));
+    }
+
+    /**
+     * Method folds vacancies read through Mongo cursor into cube and closes cursor.
+     * Vacancies are not retained after being accumulated, so time spent in fetching them from cursor is summed up
+     * and recorded as read stage, and the rest of time of the fold as aggregation stage. Vacancies are fetched
+     * concurrently with the fold if {@link AnalyticsBuilderProperties#isPipelineEnabled()} or
+     * in {@link AnalyticsBuilderProperties.AggregationMode#PARALLEL} mode, so aggregation stage is the whole time
+     * of the fold then.
+     * @param cursor stream backed by Mongo cursor.
+     * @param accumulator function folding single vacancy into partial cube.
+     * @return cube holding accumulated analytics data.
+     */
+    private <T> VacancyAnalyticsCube aggregateFromCursor(Stream<T> cursor,
+                                                         BiConsumer<CubePartial, T> accumulator) {
+        TimedIterator<T> reads = new TimedIterator<>(cursor.iterator());
+        long startedAt = System.nanoTime();
+        try (Stream<T> vacancies = readAhead(reads.stream().onClose(cursor::close))) {
+            return aggregateIntoCube(vacancies, accumulator);
+        } finally {
+            long durationNanos = System.nanoTime() - startedAt;
+            long readNanos = reads.getDurationNanos();
+            boolean overlapped = properties.isPipelineEnabled()
+                    || properties.getAggregationMode() == AnalyticsBuilderProperties.AggregationMode.PARALLEL;
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_READ, readNanos);
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_AGGREGATE,
+                    overlapped ? durationNanos : durationNanos - readNanos);
+        }
+    }
+
+    /**
+     * Method starts read stage of {@link AnalyticsPipeline} over vacancies read through Mongo cursor
+     * if {@link AnalyticsBuilderProperties#isPipelineEnabled()}.
+     * @param vacancies stream backed by Mongo cursor.
+     * @return stream of the same vacancies.
+     */
+    private <T> Stream<T> readAhead(Stream<T> vacancies) {
+        return properties.isPipelineEnabled() ? analyticsPipeline.readAhead(vacancies) : vacancies;
+    }
+
+    /**
+     * Method folds vacancies into cube, which collects breakdown by area, experience and employment only if
+     * {@link AnalyticsBuilderProperties#isCubeEnabled()}, breakdown by currency only if
+     * {@link AnalyticsBuilderProperties#isCurrencyNormalizationEnabled()}, breakdown by employer only if
+     * {@link AnalyticsBuilderProperties#isEmployerAnalyticsEnabled()}, distinct counts only if
+     * {@link AnalyticsBuilderProperties#isDistinctCountsEnabled()}, and breakdown by skill only if
+     * {@link AnalyticsBuilderProperties#isSkillsEnabled()}.
+     * In parallel mode all partial cubes share dictionaries, and each worker reuses its own {@link SkillSet}
+     * for all its vacancies.
+     * @param vacancies vacancies to be aggregated.
+     * @param accumulator function folding single vacancy into partial cube.
+     * @return cube holding accumulated analytics data.
+     */
+    private <T> VacancyAnalyticsCube aggregateIntoCube(Stream<T> vacancies,
+                                                       BiConsumer<CubePartial, T> accumulator) {
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(cubeOptions());
+        int skillCount = cube.getOptions().skills().size();
+        return vacancyAnalyticsAggregator.aggregate(vacancies,
+                () -> new CubePartial(cube.emptyCopy(), new SkillSet(skillCount)), accumulator,
+                (partial, other) -> partial.cube().merge(other.cube())).cube();
+    }
+
+    /**
+     * Method sets breakdowns collected by cube from current properties.
+     * @return options of cube.
+     */
+    private CubeOptions cubeOptions() {
+        return new CubeOptions(properties.isCubeEnabled(),
+                properties.isCurrencyNormalizationEnabled(),
+                properties.isEmployerAnalyticsEnabled() ? properties.getEmployerSketchCapacity() : 0,
+                properties.isDistinctCountsEnabled(),
+                properties.isSkillsEnabled() ? skillMatcher.getSkills() : List.of());
+    }
+
+    /**
+     * Method delegates aggregation of vacancies with salary in RUR to Mongo database
+     * and folds per-query and per-salary-bucket sums into accumulators.
+     * @return map of query to accumulated analytics data.
+     */
+    private Map<String, VacancyAnalyticsAccumulator> aggregateInDatabase() {
+        List<QuerySalaryAggregateDto> aggregates = vacancyService.aggregateSalaryByQuery(Currency.RUR);
+        log.debug("Mongo database aggregated vacancies with salary in RUR into {} queries", aggregates.size());
+        Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = new HashMap<>();
+        for (var aggregate : aggregates) {
+            perQueryAccumulators.computeIfAbsent(aggregate.getQuery(), query -> new VacancyAnalyticsAccumulator())
+                    .addBucket(aggregate.getSalaryBucket(), aggregate.getVacancyCount(),
+                            (long) aggregate.getSalarySum());
+        }
+        return perQueryAccumulators;
+    }
+
+    /**
+     * Method accumulates single vacancy into accumulator of every query this vacancy relates to.
+     * @param partial partial cube holding accumulated analytics data.
+     * @param rates exchange rates snapshot.
+     * @param vacancy vacancy to be accumulated.
+     */
+    private void accumulate(CubePartial partial, ExchangeRates rates, VacancyEntity vacancy) {
+        accumulate(partial, rates, vacancy.getId(), vacancy.getQuery(), vacancy.getAreaEntity(),
+                vacancy.getExperienceEntity(), vacancy.getEmploymentEntity(), vacancy.getEmployerEntity(),
+                vacancy.getSnippetEntity(), vacancy.getSalaryEntity());
+    }
+
+    /**
+     * Method converts vacancy salary to base currency and accumulates it into accumulator of every query
+     * this vacancy relates to, as well as into currency, employer and skill breakdowns. Vacancy with salary
+     * in currency not convertible to base currency is only accounted as filtered out.
+     * Skills are matched in requirement and responsibility snippets only if cube collects skill breakdown.
+     */
+    private void accumulate(CubePartial partial,
+                            ExchangeRates rates,
+                            String vacancyId,
+                            Set<String> queries,
+                            AreaEntity area,
+                            ExperienceEntity experience,
+                            EmploymentEntity employment,
+                            EmployerEntity employer,
+                            SnippetEntity snippet,
+                            SalaryEntity salaryEntity) {
+        VacancyAnalyticsCube cube = partial.cube();
+        Currency currency = rates.currencyOf(salaryEntity.getCurrency());
+        if (currency == null) {
+            cube.addFilteredOut();
+            return;
+        }
+        long salary = VacancyAnalyticsAggregator.calculateVacancySalary(salaryEntity);
+        long baseSalary = rates.toBase(salary, currency);
+        SkillSet skills = null;
+        if (snippet != null && cube.getOptions().collectsSkills()) {
+            // Cube does not retain skills of vacancy, so set of worker is reused for all its vacancies
+            skills = partial.vacancySkills();
+            skills.clear();
+            skillMatcher.match(snippet.getRequirement(), skills);
+            skillMatcher.match(snippet.getResponsibility(), skills);
+        }
+        cube.add(vacancyId, queries, area, experience, employment, employer, skills, currency, salary, baseSalary);
+    }
+
+    /**
+     * Cube of vacancies folded by single worker, along with set of skills reused for each of its vacancies.
+     */
+    private record CubePartial(VacancyAnalyticsCube cube, SkillSet vacancySkills) {
+    }
+}
@@ -0,0 +1,175 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import com.mongodb.MongoException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyChangesDto;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.BuildWatermark;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyContribution;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.IncrementalAnalyticsRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class IncrementalAnalyticsService {
+
+    private final VacancyService vacancyService;
+    private final IncrementalAnalyticsRepository incrementalAnalyticsRepository;
+    private final AnalyticsBuilderProperties properties;
+
+    public IncrementalAnalyticsService(VacancyService vacancyService,
+                                       IncrementalAnalyticsRepository incrementalAnalyticsRepository,
+                                       AnalyticsBuilderProperties properties) {
+        this.vacancyService = vacancyService;
+        this.incrementalAnalyticsRepository = incrementalAnalyticsRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Method updates persisted per-query running aggregates and returns their current state.
+     * <p>
+     * Contribution of each vacancy counted in aggregates, i.e. its queries, salary and <code>deleteAt</code>,
+     * is persisted along with aggregates. Vacancies inserted, updated or deleted since the previous build are read
+     * from vacancy change stream, resumed from position saved by that build. Saved contribution of each changed
+     * vacancy is subtracted and contribution of its current state is added, so that vacancies which became
+     * archived are removed, vacancies whose <code>deleteAt</code> changed are rescheduled, and changes already
+     * applied are applied again without counting vacancy twice. Contributions whose <code>deleteAt</code> has come
+     * are subtracted as well, so build time depends on number of changed and expired vacancies rather than
+     * on collection size.
+     * <p>
+     * Aggregates are recomputed from the whole collection if there is no saved position yet, if change stream
+     * can't be resumed from it, or after {@link AnalyticsBuilderProperties#getIncrementalFullRebuildEvery()}
+     * incremental builds. Position of change stream is taken before collection is read,
+     * so that no change made while it is read is missed.
+     * @return map of query to current running aggregate.
+     */
+    @Transactional
+    public Map<String, VacancyAnalyticsAccumulator> buildIncrementally() {
+        Instant now = Instant.now();
+        Optional<BuildWatermark> watermark = incrementalAnalyticsRepository.findWatermark();
+        VacancyChangesDto changes = null;
+        if (watermark.isPresent() && watermark.get().getResumeToken() != null
+                && watermark.get().getIncrementalBuilds() < properties.getIncrementalFullRebuildEvery()) {
+            try {
+                changes = vacancyService.readChangesAfter(BsonDocument.parse(watermark.get().getResumeToken()));
+            } catch (MongoException e) {
+                log.warn("Vacancy change stream can't be resumed, rebuilding running aggregates", e);
+            }
+        }
+        if (changes == null) {
+            rebuild(now);
+        } else {
+            applyChanges(changes.getVacancies(), now);
+            incrementalAnalyticsRepository.saveWatermark(new BuildWatermark(changes.getResumeToken().toJson(),
+                    watermark.get().getIncrementalBuilds() + 1));
+        }
+
+        List<VacancyContribution> expired = incrementalAnalyticsRepository.takeExpiredContributions(now);
+        Map<String, VacancyAnalyticsAccumulator> expiredDeltas = new HashMap<>();
+        expired.forEach(contribution -> subtract(expiredDeltas, contribution));
+        incrementalAnalyticsRepository.addAggregates(expiredDeltas, properties.getWriteBatchSize());
+        log.debug("Subtracted {} expired vacancies of {} queries", expired.size(), expiredDeltas.size());
+        return incrementalAnalyticsRepository.findAllAggregates();
+    }
+
+    /**
+     * Method recomputes running aggregates and contributions from the whole vacancy collection
+     * and saves current position of vacancy change stream, taken before collection is read.
+     */
+    private void rebuild(Instant now) {
+        BsonDocument position = vacancyService.currentChangeStreamPosition();
+        Map<String, VacancyAnalyticsAccumulator> aggregates = new HashMap<>();
+        List<VacancyContribution> contributions = new ArrayList<>();
+        try (Stream<VacancySalaryProjection> vacancies =
+                     vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR)) {
+            vacancies.map(vacancy -> contributionOf(vacancy, now))
+                    .flatMap(Optional::stream)
+                    .forEach(contribution -> {
+                        add(aggregates, contribution);
+                        contributions.add(contribution);
+                    });
+        }
+        log.debug("Rebuilt running aggregates of {} queries from {} vacancies", aggregates.size(),
+                contributions.size());
+        incrementalAnalyticsRepository.deleteAll();
+        incrementalAnalyticsRepository.addAggregates(aggregates, properties.getWriteBatchSize());
+        incrementalAnalyticsRepository.saveContributions(contributions, properties.getWriteBatchSize());
+        incrementalAnalyticsRepository.saveWatermark(new BuildWatermark(position.toJson(), 0));
+    }
+
+    /**
+     * Method replaces saved contributions of changed vacancies with contributions of their current state.
+     * @param vacancies map of id of changed vacancy to its current state, or to <code>null</code> if deleted.
+     */
+    private void applyChanges(Map<String, VacancySalaryProjection> vacancies, Instant now) {
+        int batchSize = properties.getWriteBatchSize();
+        Map<String, VacancyContribution> saved =
+                incrementalAnalyticsRepository.findContributions(vacancies.keySet(), batchSize);
+        Map<String, VacancyAnalyticsAccumulator> deltas = new HashMap<>();
+        List<VacancyContribution> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        vacancies.forEach((id, vacancy) -> {
+            VacancyContribution before = saved.get(id);
+            Optional<VacancyContribution> after =
+                    vacancy == null ? Optional.empty() : contributionOf(vacancy, now);
+            if (after.isPresent() && after.get().equals(before)) {
+                return;
+            }
+            if (before != null) {
+                subtract(deltas, before);
+            }
+            if (after.isPresent()) {
+                add(deltas, after.get());
+                changed.add(after.get());
+            } else if (before != null) {
+                removed.add(id);
+            }
+        });
+        incrementalAnalyticsRepository.addAggregates(deltas, batchSize);
+        incrementalAnalyticsRepository.saveContributions(changed, batchSize);
+        incrementalAnalyticsRepository.deleteContributions(removed, batchSize);
+        log.debug("Applied {} changed vacancies, {} counted and {} removed, to running aggregates of {} queries",
+                vacancies.size(), changed.size(), removed.size(), deltas.size());
+    }
+
+    /**
+     * Method returns contribution of vacancy to running aggregates, or nothing if vacancy is not counted,
+     * including vacancies whose <code>deleteAt</code> has already come.
+     */
+    private Optional<VacancyContribution> contributionOf(VacancySalaryProjection vacancy, Instant now) {
+        if (!VacancyAnalyticsAggregator.contributes(vacancy, Currency.RUR)
+                || vacancy.getDeleteAt() != null && !vacancy.getDeleteAt().toInstant().isAfter(now)) {
+            return Optional.empty();
+        }
+        return Optional.of(new VacancyContribution(vacancy.getId(), vacancy.getQuery(),
+                VacancyAnalyticsAggregator.calculateVacancySalary(vacancy.getSalaryEntity()),
+                vacancy.getDeleteAt() == null ? null : vacancy.getDeleteAt().toInstant()));
+    }
+
+    private static void add(Map<String, VacancyAnalyticsAccumulator> deltas, VacancyContribution contribution) {
+        for (String query : contribution.getQueries()) {
+            deltas.computeIfAbsent(query, key -> new VacancyAnalyticsAccumulator()).add(contribution.getSalary());
+        }
+    }
+
+    private static void subtract(Map<String, VacancyAnalyticsAccumulator> deltas, VacancyContribution contribution) {
+        for (String query : contribution.getQueries()) {
+            deltas.computeIfAbsent(query, key -> new VacancyAnalyticsAccumulator())
+                    .subtract(contribution.getSalary());
+        }
+    }
+}
@@ -10,16 +10,20 @@ import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuilderServiceTaskD
 @Slf4j
 public class TaskListenerService {
 
-    private final VacancyAnalyticsService vacancyAnalyticsService;
+    private final AnalyticsBuildCoordinator analyticsBuildCoordinator;
 
-    public TaskListenerService(VacancyAnalyticsService vacancyAnalyticsService) {
-        this.vacancyAnalyticsService = vacancyAnalyticsService;
+    public TaskListenerService(AnalyticsBuildCoordinator analyticsBuildCoordinator) {
+        this.analyticsBuildCoordinator = analyticsBuildCoordinator;
     }
 
+    /**
+     * Method passes scheduled task to {@link AnalyticsBuildCoordinator} and returns without waiting for build,
+     * so that duplicate tasks queued meanwhile are merged into single pending build.
+     */
     @RabbitListener(queues = "${spring.rabbitmq.queues.analytics-builder-scheduled-tasks-queue}")
     private void consumeTask(AnalyticsBuilderServiceTaskDto scheduledTask) {
         log.debug("Received scheduled task");
-        vacancyAnalyticsService.buildAnalytics();
+        analyticsBuildCoordinator.trigger();
     }
 
 }
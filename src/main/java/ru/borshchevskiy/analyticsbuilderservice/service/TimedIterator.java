@@ -0,0 +1,57 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterator measuring time spent in <code>hasNext</code> and <code>next</code> calls of underlying iterator,
+ * e.g. in fetching and decoding documents of Mongo cursor. Like underlying iterator, it is used by one thread
+ * at a time, so its duration is updated without synchronization.
+ * @param <T> type of elements.
+ */
+class TimedIterator<T> implements Iterator<T> {
+
+    private final Iterator<T> iterator;
+    private volatile long durationNanos;
+
+    TimedIterator(Iterator<T> iterator) {
+        this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        long startedAt = System.nanoTime();
+        try {
+            return iterator.hasNext();
+        } finally {
+            durationNanos += System.nanoTime() - startedAt;
+        }
+    }
+
+    @Override
+    public T next() {
+        long startedAt = System.nanoTime();
+        try {
+            return iterator.next();
+        } finally {
+            durationNanos += System.nanoTime() - startedAt;
+        }
+    }
+
+    /**
+     * @return sequential ordered stream of remaining elements of this iterator.
+     */
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false);
+    }
+
+    /**
+     * @return time spent in underlying iterator so far, in nanoseconds.
+     */
+    long getDurationNanos() {
+        return durationNanos;
+    }
+}
@@ -0,0 +1,188 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.HyperLogLog;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryDistinctCountsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryTrendDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsReadRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Serves per-query analytics data to read API from bounded in-memory cache, backed by analytics database.
+ * <p>
+ * Cache holds at most {@link AnalyticsBuilderProperties#getReadCacheMaxRows()} rows of all cached results
+ * and is invalidated as soon as analytics data written by this instance is committed,
+ * see {@link VacancyAnalyticsUpdatedEvent}. Results are also expired after
+ * {@link AnalyticsBuilderProperties#getReadCacheTtlMs()}, so that data written by other instances is picked up.
+ * Cached results are shared between all callers and must not be modified.
+ * <p>
+ * Distinct counts over date range are estimated by merging {@link HyperLogLog} sketches saved with analytics data
+ * of each date, so that time and memory taken by estimate depend only on number of dates in range.
+ * Moving averages and week-over-week deltas are read from single row saved with rolling windows,
+ * see {@link AnalyticsTrendService}.
+ */
+@Service
+@Slf4j
+public class VacancyAnalyticsQueryService {
+
+    public static final int MAX_TOP_LIMIT = 100;
+
+    private static final Object LATEST_KEY = new Object();
+
+    private final VacancyAnalyticsReadRepository vacancyAnalyticsReadRepository;
+    private final VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    private final Cache<Object, List<?>> cache;
+
+    public VacancyAnalyticsQueryService(VacancyAnalyticsReadRepository vacancyAnalyticsReadRepository,
+                                        VacancyAnalyticsMapper vacancyAnalyticsMapper,
+                                        AnalyticsBuilderProperties properties,
+                                        MeterRegistry meterRegistry) {
+        this.vacancyAnalyticsReadRepository = vacancyAnalyticsReadRepository;
+        this.vacancyAnalyticsMapper = vacancyAnalyticsMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getReadCacheMaxRows())
+                .<Object, List<?>>weigher((key, rows) -> rows.size() + 1)
+                .expireAfterWrite(Duration.ofMillis(properties.getReadCacheTtlMs()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "analytics.read");
+    }
+
+    /**
+     * @param query query analytics data is read for.
+     * @param from first date of range.
+     * @param to last date of range.
+     * @return analytics data of query on every date of range it is present on, ordered by date.
+     * @throws IllegalArgumentException if range is empty.
+     */
+    public List<QueryAnalyticsDto> getTimeSeries(String query, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid range " + from + " - " + to);
+        }
+        return cached(new TimeSeriesKey(query, from, to),
+                () -> vacancyAnalyticsReadRepository.findTimeSeries(query, from, to));
+    }
+
+    /**
+     * @param date date analytics data is read for, the latest date analytics data is present for if <code>null</code>.
+     * @param metric metric queries are ranked by.
+     * @param limit maximum number of queries returned.
+     * @return analytics data of queries with the highest value of metric, in descending order.
+     * @throws IllegalArgumentException if limit is not positive or exceeds {@link #MAX_TOP_LIMIT}.
+     */
+    public List<QueryAnalyticsDto> getTop(LocalDate date, AnalyticsTopMetric metric, int limit) {
+        if (limit <= 0 || limit > MAX_TOP_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_TOP_LIMIT);
+        }
+        return cached(new TopKey(date, metric, limit), () -> {
+            LocalDate topDate = date != null ? date : vacancyAnalyticsReadRepository.findLatestDate().orElse(null);
+            return topDate == null ? List.of() : vacancyAnalyticsReadRepository.findTop(topDate, metric, limit);
+        });
+    }
+
+    /**
+     * @return analytics data of all queries on the latest date analytics data is present for, ordered by query.
+     */
+    public List<QueryAnalyticsDto> getLatest() {
+        return cached(LATEST_KEY, () -> vacancyAnalyticsReadRepository.findLatestDate()
+                .map(vacancyAnalyticsReadRepository::findAllByDate)
+                .orElse(List.of()));
+    }
+
+    /**
+     * @param query query distinct counts are estimated for.
+     * @param from first date of range.
+     * @param to last date of range.
+     * @return estimated numbers of distinct vacancies and employers of query on all dates of range
+     * distinct counts were collected on.
+     * @throws IllegalArgumentException if range is empty.
+     */
+    public QueryDistinctCountsDto getDistinctCounts(String query, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Invalid range " + from + " - " + to);
+        }
+        return (QueryDistinctCountsDto) cache.get(new DistinctCountsKey(query, from, to),
+                key -> List.of(mergeIdSketches(query, from, to))).get(0);
+    }
+
+    /**
+     * @param query query trend is read for.
+     * @param date date trend is read for, the latest date analytics data is present for if <code>null</code>.
+     * @return moving averages and week-over-week deltas of query on specified date,
+     * empty if they were not saved for that date.
+     */
+    public Optional<QueryTrendDto> getTrend(String query, LocalDate date) {
+        return cache.get(new TrendKey(query, date), key -> {
+            LocalDate trendDate = date != null ? date : vacancyAnalyticsReadRepository.findLatestDate().orElse(null);
+            return trendDate == null ? List.of() : vacancyAnalyticsReadRepository.findTrend(query, trendDate)
+                    .map(vacancyAnalyticsMapper::mapToQueryTrendDto)
+                    .stream()
+                    .toList();
+        }).stream().map(QueryTrendDto.class::cast).findFirst();
+    }
+
+    /**
+     * Method invalidates all cached results once analytics data is written and reloads the latest snapshot,
+     * so that the most frequent read is not served from database by all readers at once.
+     * @param event event of analytics data being written.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnalyticsUpdated(VacancyAnalyticsUpdatedEvent event) {
+        log.debug("Analytics data from {} to {} updated, invalidating read cache", event.from(), event.to());
+        cache.invalidateAll();
+        try {
+            getLatest();
+        } catch (RuntimeException e) {
+            log.warn("Failed to reload the latest analytics snapshot into read cache", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<QueryAnalyticsDto> cached(Object key, Supplier<List<VacancyAnalytics>> loader) {
+        return (List<QueryAnalyticsDto>) cache.get(key, k -> loader.get().stream()
+                .map(vacancyAnalyticsMapper::mapToQueryAnalyticsDto)
+                .toList());
+    }
+
+    private QueryDistinctCountsDto mergeIdSketches(String query, LocalDate from, LocalDate to) {
+        List<VacancyAnalytics> days = vacancyAnalyticsReadRepository.findIdSketches(query, from, to);
+        HyperLogLog vacancyIds = new HyperLogLog();
+        HyperLogLog employerIds = new HyperLogLog();
+        long vacancyCountSum = 0;
+        for (VacancyAnalytics day : days) {
+            vacancyIds.merge(HyperLogLog.fromBytes(day.getVacancyIdsSketch()));
+            employerIds.merge(HyperLogLog.fromBytes(day.getEmployerIdsSketch()));
+            vacancyCountSum += day.getVacancyCount();
+        }
+        return new QueryDistinctCountsDto(query, from, to, days.size(), vacancyCountSum, vacancyIds.estimate(),
+                employerIds.estimate());
+    }
+
+    private record TimeSeriesKey(String query, LocalDate from, LocalDate to) {
+    }
+
+    private record DistinctCountsKey(String query, LocalDate from, LocalDate to) {
+    }
+
+    private record TrendKey(String query, LocalDate date) {
+    }
+
+    private record TopKey(LocalDate date, AnalyticsTopMetric metric, int limit) {
+    }
+}
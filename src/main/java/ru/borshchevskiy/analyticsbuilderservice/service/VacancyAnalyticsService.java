@@ -1,16 +1,18 @@
 package ru.borshchevskiy.analyticsbuilderservice.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
 import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
 import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
 import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
-import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
-import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
 import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,49 +22,149 @@ import java.util.Optional;
 @Slf4j
 public class VacancyAnalyticsService {
 
-    private final VacancyService vacancyService;
     private final VacancyAnalyticsRepository vacancyAnalyticsRepository;
+    private final VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
     private final VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    private final AnalyticsBuilderProperties properties;
+    private final FullAnalyticsService fullAnalyticsService;
+    private final IncrementalAnalyticsService incrementalAnalyticsService;
+    private final ChangeStreamAnalyticsService changeStreamAnalyticsService;
+    private final DistributedAnalyticsService distributedAnalyticsService;
+    private final AnalyticsTrendService analyticsTrendService;
+    private final AnalyticsBuildMetrics analyticsBuildMetrics;
+    private final AnalyticsPipeline analyticsPipeline;
+    private final ConcurrentQueryWriter concurrentQueryWriter;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public VacancyAnalyticsService(VacancyService vacancyService,
-                                   VacancyAnalyticsRepository vacancyAnalyticsRepository,
-                                   VacancyAnalyticsMapper vacancyAnalyticsMapper) {
-        this.vacancyService = vacancyService;
+    public VacancyAnalyticsService(VacancyAnalyticsRepository vacancyAnalyticsRepository,
+                                   VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository,
+                                   VacancyAnalyticsMapper vacancyAnalyticsMapper,
+                                   AnalyticsBuilderProperties properties,
+                                   FullAnalyticsService fullAnalyticsService,
+                                   IncrementalAnalyticsService incrementalAnalyticsService,
+                                   ChangeStreamAnalyticsService changeStreamAnalyticsService,
+                                   DistributedAnalyticsService distributedAnalyticsService,
+                                   AnalyticsTrendService analyticsTrendService,
+                                   AnalyticsBuildMetrics analyticsBuildMetrics,
+                                   AnalyticsPipeline analyticsPipeline,
+                                   ConcurrentQueryWriter concurrentQueryWriter,
+                                   ApplicationEventPublisher eventPublisher) {
         this.vacancyAnalyticsRepository = vacancyAnalyticsRepository;
+        this.vacancyAnalyticsBulkRepository = vacancyAnalyticsBulkRepository;
         this.vacancyAnalyticsMapper = vacancyAnalyticsMapper;
+        this.properties = properties;
+        this.fullAnalyticsService = fullAnalyticsService;
+        this.incrementalAnalyticsService = incrementalAnalyticsService;
+        this.changeStreamAnalyticsService = changeStreamAnalyticsService;
+        this.distributedAnalyticsService = distributedAnalyticsService;
+        this.analyticsTrendService = analyticsTrendService;
+        this.analyticsBuildMetrics = analyticsBuildMetrics;
+        this.analyticsPipeline = analyticsPipeline;
+        this.concurrentQueryWriter = concurrentQueryWriter;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
-     * Method builds analytics data per each query that it finds among all vacancies.
+     * Method builds analytics data per each query that it finds among all vacancies, dated today,
+     * see {@link #buildAnalytics(LocalDate)}.
      * <p>
-     * First, method acquires all vacancies with non-null salary and required currency (RUR).
-     * Then, iterating over these vacancies, for every query it finds,
-     * it accumulates analytical data into {@link VacancyAnalyticsDto}.
+     * Per-query accumulators are taken from service of configured {@link AnalyticsBuilderProperties.BuildMode}:
+     * {@link FullAnalyticsService}, {@link IncrementalAnalyticsService}, {@link ChangeStreamAnalyticsService}
+     * or {@link DistributedAnalyticsService}. Each accumulator is converted to {@link VacancyAnalyticsDto} once,
+     * rolling windows are slid by {@link AnalyticsTrendService} if trends are enabled, and analytics data
+     * is saved according to {@link AnalyticsBuilderProperties#getWriteMode()}.
      * <p>
-     * As a result of these operations a <code>perQueryVacancyAnalyticsMap</code> is created,
-     * mapping query to {@link VacancyAnalyticsDto} which holds analytical data on all vacancies related to that query.
-     * <p>
-     * Finally, method calls {@link VacancyAnalyticsService#saveAnalytics(String, VacancyAnalyticsDto)} for each
-     * <code>perQueryVacancyAnalyticsMap</code> entry.
+     * Every stage of build is timed by {@link AnalyticsBuildMetrics}. Once build succeeds,
+     * {@link VacancyAnalyticsUpdatedEvent} is published, so that cached analytics data is invalidated.
      */
     public void buildAnalytics() {
-        log.debug("Started building analytics");
-        List<VacancyEntity> vacancies = vacancyService.findAllWithSalaryCurrency(Currency.RUR);
-        log.debug("Found {} vacancies with salary in RUR", vacancies.size());
+        buildAnalytics(LocalDate.now());
+    }
+
+    /**
+     * Method builds analytics data per each query, see {@link #buildAnalytics()}, and dates all rows written
+     * by build with specified date, so that build running past midnight writes all of its rows
+     * under the day it was started on.
+     * @param createdAt date of analytics data.
+     */
+    public void buildAnalytics(LocalDate createdAt) {
+        log.debug("Started building analytics of {}", createdAt);
+        analyticsBuildMetrics.startBuild(properties.getBuildMode(), properties.getEngine());
+        try {
+            build(createdAt);
+            analyticsBuildMetrics.finishBuild(null);
+            eventPublisher.publishEvent(new VacancyAnalyticsUpdatedEvent(createdAt, createdAt));
+        } catch (RuntimeException e) {
+            analyticsBuildMetrics.finishBuild(e);
+            throw e;
+        }
+    }
+
+    private void build(LocalDate createdAt) {
+        Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = switch (properties.getBuildMode()) {
+            case FULL -> fullAnalyticsService.buildFully(createdAt);
+            case INCREMENTAL -> analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_AGGREGATE,
+                    incrementalAnalyticsService::buildIncrementally);
+            case CHANGE_STREAM -> analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_AGGREGATE,
+                    changeStreamAnalyticsService::currentAggregates);
+            case DISTRIBUTED -> analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_AGGREGATE,
+                    distributedAnalyticsService::buildDistributed);
+        };
         Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap = new HashMap<>();
-        for (var vacancy : vacancies) {
-            for (String query : vacancy.getQuery()) {
-                perQueryVacancyAnalyticsMap.merge(query,
-                        getSingleVacancyAnalytics(vacancy),
-                        this::updateAnalyticsData);
-            }
+        perQueryAccumulators.forEach((query, accumulator) ->
+                perQueryVacancyAnalyticsMap.put(query, vacancyAnalyticsMapper.mapToDto(accumulator)));
+        analyticsBuildMetrics.recordDistinctQueries(perQueryVacancyAnalyticsMap.size());
+        if (properties.isTrendsEnabled()) {
+            analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_TRENDS,
+                    () -> analyticsTrendService.applyTrends(createdAt, perQueryVacancyAnalyticsMap));
         }
         log.debug("Prepared analytics data for queries: {}", perQueryVacancyAnalyticsMap.keySet());
-        for (var entry : perQueryVacancyAnalyticsMap.entrySet()) {
-            saveAnalytics(entry.getKey(), entry.getValue());
+        switch (properties.getWriteMode()) {
+            case PER_QUERY -> {
+                for (var entry : perQueryVacancyAnalyticsMap.entrySet()) {
+                    saveAnalytics(entry.getKey(), entry.getValue(), createdAt);
+                }
+            }
+            case PER_QUERY_CONCURRENT -> concurrentQueryWriter.writeAll(perQueryVacancyAnalyticsMap,
+                    (query, analytics) -> saveAnalytics(query, analytics, createdAt));
+            case BATCH -> saveAllAnalytics(perQueryVacancyAnalyticsMap, createdAt);
         }
     }
 
+    /**
+     * Method creates {@link VacancyAnalytics} objects for all queries and upserts them to database
+     * in batches of {@link AnalyticsBuilderProperties#getWriteBatchSize()} size within single transaction.
+     * Existing analytics data for the same query and date is overwritten with new values.
+     * Numbers of inserted and overwritten rows are derived from number of rows of the date before and after upsert.
+     * If {@link AnalyticsBuilderProperties#isPipelineEnabled()}, rows are mapped lazily and each batch is written
+     * by write stage of {@link AnalyticsPipeline} while the next one is mapped.
+     * @param perQueryVacancyAnalyticsMap map of query to analytics data.
+     * @param createdAt date of analytics data.
+     */
+    public void saveAllAnalytics(Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap,
+                                 LocalDate createdAt) {
+        int rows = perQueryVacancyAnalyticsMap.size();
+        log.debug("Starting saving analytics data for {} queries, on date: {}.", rows, createdAt);
+        analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_SAVE_ANALYTICS, () -> {
+            long rowsBefore = vacancyAnalyticsRepository.countByCreatedAt(createdAt);
+            int batches;
+            if (properties.isPipelineEnabled()) {
+                batches = analyticsPipeline.upsertAll(perQueryVacancyAnalyticsMap.entrySet().stream()
+                        .map(entry -> vacancyAnalyticsMapper.mapToEntity(entry.getValue(), entry.getKey(), createdAt)));
+            } else {
+                List<VacancyAnalytics> analytics = new ArrayList<>(rows);
+                for (var entry : perQueryVacancyAnalyticsMap.entrySet()) {
+                    analytics.add(vacancyAnalyticsMapper.mapToEntity(entry.getValue(), entry.getKey(), createdAt));
+                }
+                batches = vacancyAnalyticsBulkRepository.upsertAll(analytics, properties.getWriteBatchSize());
+            }
+            long inserted = vacancyAnalyticsRepository.countByCreatedAt(createdAt) - rowsBefore;
+            analyticsBuildMetrics.recordRowsWritten(inserted, rows - inserted);
+            log.debug("Analytics data for {} queries on date {} successfully saved in {} batches.",
+                    rows, createdAt, batches);
+        });
+    }
+
     /**
      * Method attempts to create {@link VacancyAnalytics} object from
      * {@link VacancyAnalyticsDto} and save it to database.
@@ -76,7 +178,22 @@ public class VacancyAnalyticsService {
      * @param vacancyAnalyticsDto object, holding analytics data.
      */
     public void saveAnalytics(String query, VacancyAnalyticsDto vacancyAnalyticsDto) {
-        LocalDate createdAt = LocalDate.now();
+        saveAnalytics(query, vacancyAnalyticsDto, LocalDate.now());
+    }
+
+    /**
+     * Method saves analytics data of query on specified date,
+     * see {@link VacancyAnalyticsService#saveAnalytics(String, VacancyAnalyticsDto)}.
+     * @param query query for which analytics data should be stored.
+     * @param vacancyAnalyticsDto object, holding analytics data.
+     * @param createdAt date of analytics data.
+     */
+    public void saveAnalytics(String query, VacancyAnalyticsDto vacancyAnalyticsDto, LocalDate createdAt) {
+        analyticsBuildMetrics.recordStage(AnalyticsBuildMetrics.STAGE_SAVE_ANALYTICS,
+                () -> saveQueryAnalytics(query, vacancyAnalyticsDto, createdAt));
+    }
+
+    private void saveQueryAnalytics(String query, VacancyAnalyticsDto vacancyAnalyticsDto, LocalDate createdAt) {
         log.debug("Starting saving analytics data for query: {}, on date: {}.", query, createdAt);
         Optional<VacancyAnalytics> existingAnalytics =
                 vacancyAnalyticsRepository.findByQueryAndCreatedAt(query, createdAt);
@@ -87,60 +204,29 @@ public class VacancyAnalyticsService {
                             query, createdAt);
                     analytics.setVacancyCount(vacancyAnalyticsDto.getVacancyCount());
                     analytics.setAverageSalary(vacancyAnalyticsDto.getAverageSalary());
+                    analytics.setSalaryP25(vacancyAnalyticsDto.getSalaryP25());
+                    analytics.setSalaryP50(vacancyAnalyticsDto.getSalaryP50());
+                    analytics.setSalaryP75(vacancyAnalyticsDto.getSalaryP75());
+                    analytics.setSalaryP90(vacancyAnalyticsDto.getSalaryP90());
+                    // Sketches are kept unless build has computed them, see VacancyAnalyticsBulkRepository
+                    if (vacancyAnalyticsDto.getVacancyIdsSketch() != null) {
+                        analytics.setVacancyIdsSketch(vacancyAnalyticsDto.getVacancyIdsSketch());
+                    }
+                    if (vacancyAnalyticsDto.getEmployerIdsSketch() != null) {
+                        analytics.setEmployerIdsSketch(vacancyAnalyticsDto.getEmployerIdsSketch());
+                    }
+                    vacancyAnalyticsMapper.mapTrendsToEntity(vacancyAnalyticsDto, analytics);
                     vacancyAnalyticsRepository.save(analytics);
+                    analyticsBuildMetrics.recordRowsWritten(0, 1);
                     log.debug("Analytics for query {} on date {} successfully updated.", query, createdAt);
                 },
                 () -> {
                     VacancyAnalytics vacancyAnalytics =
                             vacancyAnalyticsMapper.mapToEntity(vacancyAnalyticsDto, query, createdAt);
                     vacancyAnalyticsRepository.save(vacancyAnalytics);
+                    analyticsBuildMetrics.recordRowsWritten(1, 0);
                     log.debug("Analytics for query {} on date {} successfully saved.", query, createdAt);
                 }
         );
     }
-
-    /**
-     * Method creates analytics data for single vacancy,
-     * specifying vacancy count as 1 and calculating average salary for this vacancy.
-     * @param vacancy VacancyEntity on which analytics data is created.
-     * @return VacancyAnalyticsDto containing analytics data on single vacancy.
-     */
-    private VacancyAnalyticsDto getSingleVacancyAnalytics(VacancyEntity vacancy) {
-        return new VacancyAnalyticsDto(1, calculateVacancySalary(vacancy.getSalaryEntity()));
-    }
-
-    /**
-     * Method merges <code>newData</code>, which is most commonly analytics data for single vacancy,
-     * with <code>existingData</code> existing analytics data. Updates original <code>existingData</code> object.
-     * Average salary is calculated as cumulative moving average.
-     * @param existingData existing analyticsData.
-     * @param newData new data to be merged to existing.
-     * @return updated <code>existingData</code>.
-     */
-    private VacancyAnalyticsDto updateAnalyticsData(VacancyAnalyticsDto existingData, VacancyAnalyticsDto newData) {
-        int newVacanciesCount = existingData.getVacancyCount() + newData.getVacancyCount();
-        double avgSalary = existingData.getAverageSalary();
-        double salary = newData.getAverageSalary();
-        double newAvgSalary = avgSalary + (salary - avgSalary) / newVacanciesCount;
-        existingData.setVacancyCount(newVacanciesCount);
-        existingData.setAverageSalary(newAvgSalary);
-        return existingData;
-    }
-
-    /**
-     * Method calculates average salary for single vacancy.
-     * If both upper and lower salary limits are specified - calculates average value.
-     * If either upper or lower limit is specified - just takes this value as salary.
-     * @param salary Salary entity specified in vacancy.
-     * @return Double value of average salary calculated.
-     */
-    private Double calculateVacancySalary(SalaryEntity salary) {
-        if (salary.getFrom() != null && salary.getTo() != null) {
-            return (double) ((salary.getFrom() + salary.getTo()) / 2);
-        } else if (salary.getFrom() == null) {
-            return salary.getTo().doubleValue();
-        } else {
-            return salary.getFrom().doubleValue();
-        }
-    }
 }
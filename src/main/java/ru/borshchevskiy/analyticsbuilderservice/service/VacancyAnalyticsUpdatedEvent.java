@@ -0,0 +1,12 @@
+package ru.borshchevskiy.analyticsbuilderservice.service;
+
+import java.time.LocalDate;
+
+/**
+ * Published once per-query analytics data of specified range of dates is written to analytics database.
+ * If published within transaction, listeners are notified after it is committed.
+ * @param from first date written.
+ * @param to last date written.
+ */
+public record VacancyAnalyticsUpdatedEvent(LocalDate from, LocalDate to) {
+}
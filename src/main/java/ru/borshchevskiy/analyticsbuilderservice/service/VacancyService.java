@@ -1,19 +1,56 @@
 package ru.borshchevskiy.analyticsbuilderservice.service;
 
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
 import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QuerySalaryAggregateDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyChangesDto;
 import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
 import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyRepository;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 public class VacancyService {
 
+    private static final String VACANCY_COLLECTION = "vacancy";
+    private static final String SALARY_FROM = "$salaryEntity.from";
+    private static final String SALARY_TO = "$salaryEntity.to";
+    private static final long CHANGE_STREAM_MAX_AWAIT_MILLIS = 1000;
+
     private final VacancyRepository vacancyRepository;
+    private final MongoTemplate mongoTemplate;
+    private final AnalyticsBuilderProperties properties;
 
-    public VacancyService(VacancyRepository vacanciesRepository) {
+    public VacancyService(VacancyRepository vacanciesRepository,
+                          MongoTemplate mongoTemplate,
+                          AnalyticsBuilderProperties properties) {
         this.vacancyRepository = vacanciesRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
     }
 
     public List<VacancyEntity> findAll() {
@@ -30,4 +67,280 @@ public class VacancyService {
                 .filter(vacancy -> vacancy.getSalaryEntity().getCurrency().equals(currency.name()))
                 .toList();
     }
+
+    /**
+     * Method opens Mongo cursor over all vacancies with salary in any currency, so that vacancies with salary
+     * in currency analytics is not built of can be counted in the same pass. Documents are fetched in batches
+     * of {@link AnalyticsBuilderProperties#getStreamBatchSize()} size.
+     * <p>
+     * Returned stream holds open cursor and must be closed by caller.
+     * @return stream of vacancies backed by Mongo cursor.
+     */
+    public Stream<VacancyEntity> streamAllWithSalary() {
+        Query query = new Query(Criteria.where("salaryEntity").ne(null))
+                .cursorBatchSize(properties.getStreamBatchSize());
+        return mongoTemplate.stream(query, VacancyEntity.class);
+    }
+
+    /**
+     * Method opens Mongo cursor over all vacancies with salary in any currency, like {@link #streamAllWithSalary()},
+     * fetching only fields of {@link VacancySalaryProjection}. Area, experience and employment are fetched only
+     * if {@link AnalyticsBuilderProperties#isCubeEnabled()}, employer only
+     * if {@link AnalyticsBuilderProperties#isEmployerAnalyticsEnabled()}, employer id only
+     * if {@link AnalyticsBuilderProperties#isDistinctCountsEnabled()}, and snippet only
+     * if {@link AnalyticsBuilderProperties#isSkillsEnabled()}. Documents are fetched in batches
+     * of {@link AnalyticsBuilderProperties#getStreamBatchSize()} size.
+     * <p>
+     * Returned stream holds open cursor and must be closed by caller.
+     * @return stream of vacancy projections backed by Mongo cursor.
+     */
+    public Stream<VacancySalaryProjection> streamProjectionsWithSalary() {
+        Query query = new Query(Criteria.where("salaryEntity").ne(null))
+                .cursorBatchSize(properties.getStreamBatchSize());
+        query.fields()
+                .include("query")
+                .include("publishedAt")
+                .include("salaryEntity.from")
+                .include("salaryEntity.to")
+                .include("salaryEntity.currency");
+        if (properties.isCubeEnabled()) {
+            query.fields()
+                    .include("areaEntity.id")
+                    .include("areaEntity.name")
+                    .include("experienceEntity.id")
+                    .include("experienceEntity.name")
+                    .include("employmentEntity.id")
+                    .include("employmentEntity.name");
+        }
+        if (properties.isEmployerAnalyticsEnabled()) {
+            query.fields()
+                    .include("employerEntity.id")
+                    .include("employerEntity.name")
+                    .include("employerEntity.accreditedItEmployer");
+        } else if (properties.isDistinctCountsEnabled()) {
+            query.fields().include("employerEntity.id");
+        }
+        if (properties.isSkillsEnabled()) {
+            query.fields()
+                    .include("snippetEntity.requirement")
+                    .include("snippetEntity.responsibility");
+        }
+        return mongoTemplate.stream(query, VacancySalaryProjection.class, VACANCY_COLLECTION);
+    }
+
+    /**
+     * Method opens Mongo cursor over vacancies with salary in specified currency which are not archived,
+     * fetching only fields of {@link VacancySalaryProjection} required to count vacancy and to track its deletion.
+     * <p>
+     * Returned stream holds open cursor and must be closed by caller.
+     * @param currency required salary currency.
+     * @return stream of vacancy projections backed by Mongo cursor.
+     */
+    public Stream<VacancySalaryProjection> streamNotArchivedWithSalaryCurrency(Currency currency) {
+        Criteria criteria = Criteria.where("salaryEntity.currency").is(currency.name())
+                .and("archived").ne(true);
+        Query query = new Query(criteria).cursorBatchSize(properties.getStreamBatchSize());
+        query.fields()
+                .include("query")
+                .include("createdAt")
+                .include("deleteAt")
+                .include("archived")
+                .include("salaryEntity.from")
+                .include("salaryEntity.to")
+                .include("salaryEntity.currency");
+        return mongoTemplate.stream(query, VacancySalaryProjection.class, VACANCY_COLLECTION);
+    }
+
+    /**
+     * Method returns current position of vacancy change stream, so that changes made after this call
+     * can be read later by {@link #readChangesAfter(BsonDocument)}.
+     * @return resume token of change stream opened at current time.
+     */
+    public BsonDocument currentChangeStreamPosition() {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream().cursor()) {
+            return cursor.getResumeToken();
+        }
+    }
+
+    /**
+     * Method reads all changes of vacancy collection made after specified position of change stream
+     * and returns current state of every changed vacancy, looked up when change is read.
+     * Changes are read until change stream has no more changes to return.
+     * @param resumeToken position of change stream, as returned by {@link #currentChangeStreamPosition()}
+     *                    or by previous call of this method.
+     * @return changed vacancies and position of change stream after the last of them.
+     * @throws com.mongodb.MongoException if change stream can't be resumed from specified position,
+     * e.g. because oplog no longer holds it.
+     */
+    public VacancyChangesDto readChangesAfter(BsonDocument resumeToken) {
+        Map<String, VacancySalaryProjection> vacancies = new LinkedHashMap<>();
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor =
+                     changeStream().resumeAfter(resumeToken).cursor()) {
+            ChangeStreamDocument<Document> change;
+            while ((change = cursor.tryNext()) != null) {
+                if (change.getDocumentKey() == null) {
+                    continue;
+                }
+                String id = idOf(change.getDocumentKey().get("_id"));
+                // Deleted vacancy, or vacancy deleted before its update is looked up, has no full document
+                Document document = change.getFullDocument();
+                vacancies.put(id, document == null ? null
+                        : mongoTemplate.getConverter().read(VacancySalaryProjection.class, document));
+            }
+            return new VacancyChangesDto(vacancies, cursor.getResumeToken());
+        }
+    }
+
+    /**
+     * Method opens Mongo cursor over vacancies with salary in specified currency which were present in collection
+     * on any day of specified date range, i.e. were created not later than the last day and are either
+     * not scheduled for deletion or are deleted not earlier than the first day. Archived vacancies and vacancies
+     * without <code>createdAt</code> are returned as well, the same way full build reads them.
+     * Vacancies are sorted by <code>createdAt</code>, ones without it first, sort is allowed to spill to disk.
+     * Only fields of {@link VacancySalaryProjection} required to date vacancy are fetched.
+     * <p>
+     * Since <code>createdAt</code> is compared as string carrying its own offset, vacancies created up to
+     * one day after the last day may be returned as well and must be filtered out by caller.
+     * <p>
+     * Returned stream holds open cursor and must be closed by caller.
+     * @param currency required salary currency.
+     * @param from first day of range.
+     * @param to last day of range.
+     * @return stream of vacancy projections backed by Mongo cursor.
+     */
+    public Stream<VacancySalaryProjection> streamActiveBetweenWithSalaryCurrency(Currency currency,
+                                                                                  LocalDate from,
+                                                                                  LocalDate to) {
+        Criteria criteria = Criteria.where("salaryEntity.currency").is(currency.name())
+                .andOperator(
+                        // createdAt is ISO-8601 string in its own offset, so createdAt of vacancy created
+                        // on or before to in any zone is less than date string of the day after next
+                        new Criteria().orOperator(Criteria.where("createdAt").is(null),
+                                Criteria.where("createdAt").lt(to.plusDays(2).toString())),
+                        new Criteria().orOperator(Criteria.where("deleteAt").is(null),
+                                Criteria.where("deleteAt").gte(Date.from(from.atStartOfDay(ZoneId.systemDefault())
+                                        .toInstant()))));
+        Query query = new Query(criteria)
+                .with(Sort.by("createdAt"))
+                .allowDiskUse(true)
+                .cursorBatchSize(properties.getStreamBatchSize());
+        query.fields()
+                .include("query")
+                .include("createdAt")
+                .include("deleteAt")
+                .include("salaryEntity.from")
+                .include("salaryEntity.to")
+                .include("salaryEntity.currency");
+        return mongoTemplate.stream(query, VacancySalaryProjection.class, VACANCY_COLLECTION);
+    }
+
+    /**
+     * Method opens Mongo cursor over vacancies with salary in specified currency which belong to specified
+     * partition, fetching only queries and salary of {@link VacancySalaryProjection}.
+     * Vacancy belongs to partition <code>abs(hash(_id) mod partitions)</code>, where hash is the one
+     * Mongo database uses for hashed indexes, so partitions are disjoint and cover all vacancies.
+     * Partition filtering is done by database.
+     * <p>
+     * Returned stream holds open cursor and must be closed by caller.
+     * @param currency required salary currency.
+     * @param partition index of partition, from 0 to <code>partitions - 1</code>.
+     * @param partitions total number of partitions.
+     * @return stream of vacancy projections backed by Mongo cursor.
+     */
+    public Stream<VacancySalaryProjection> streamPartitionWithSalaryCurrency(Currency currency,
+                                                                              int partition,
+                                                                              int partitions) {
+        Criteria criteria = Criteria.where("salaryEntity.currency").is(currency.name())
+                .andOperator(Criteria.expr(idPartition(partition, partitions)));
+        Query query = new Query(criteria).cursorBatchSize(properties.getStreamBatchSize());
+        query.fields()
+                .include("query")
+                .include("salaryEntity.from")
+                .include("salaryEntity.to")
+                .include("salaryEntity.currency");
+        return mongoTemplate.stream(query, VacancySalaryProjection.class, VACANCY_COLLECTION);
+    }
+
+    /**
+     * Method aggregates vacancies with salary in specified currency per query by Mongo aggregation pipeline.
+     * <p>
+     * Pipeline matches vacancies by currency, calculates salary of each vacancy the same way
+     * the service does it, as well as {@link SalarySketch} bucket of that salary, unwinds queries and groups
+     * vacancies by query and salary bucket, counting them and summing their salaries.
+     * Vacancies with neither lower nor upper salary limit specified are skipped.
+     * @param currency required salary currency.
+     * @return list of aggregates, one per each query and salary bucket found.
+     */
+    public List<QuerySalaryAggregateDto> aggregateSalaryByQuery(Currency currency) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("salaryEntity.currency").is(currency.name())
+                        .orOperator(Criteria.where("salaryEntity.from").ne(null),
+                                Criteria.where("salaryEntity.to").ne(null))),
+                Aggregation.project("query").and(vacancySalary()).as("salary"),
+                Aggregation.addFields().addFieldWithValue("salaryBucket", salaryBucket()).build(),
+                Aggregation.unwind("query"),
+                Aggregation.group("query", "salaryBucket").count().as("vacancyCount").sum("salary").as("salarySum"),
+                Aggregation.project("query", "salaryBucket", "vacancyCount", "salarySum").andExclude("_id")
+        );
+        return mongoTemplate.aggregate(aggregation, VacancyEntity.class, QuerySalaryAggregateDto.class)
+                .getMappedResults();
+    }
+
+    private ChangeStreamIterable<Document> changeStream() {
+        return mongoTemplate.getCollection(VACANCY_COLLECTION).watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .batchSize(properties.getStreamBatchSize())
+                .maxAwaitTime(CHANGE_STREAM_MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Id of vacancy document as it is mapped to {@link VacancySalaryProjection#getId()}.
+     */
+    static String idOf(BsonValue id) {
+        if (id.isString()) {
+            return id.asString().getValue();
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.toString();
+    }
+
+    /**
+     * Expression checking that vacancy belongs to specified partition by hash of its id.
+     */
+    private AggregationExpression idPartition(int partition, int partitions) {
+        return context -> new Document("$eq", Arrays.asList(
+                new Document("$abs", new Document("$mod", Arrays.asList(
+                        new Document("$toHashedIndexKey", "$_id"), partitions))),
+                partition));
+    }
+
+    /**
+     * Expression calculating salary of single vacancy: truncated mean of both limits if both are present,
+     * otherwise the limit that is present.
+     */
+    private AggregationExpression vacancySalary() {
+        return context -> new Document("$cond", Arrays.asList(
+                new Document("$and", Arrays.asList(
+                        new Document("$gt", Arrays.asList(SALARY_FROM, null)),
+                        new Document("$gt", Arrays.asList(SALARY_TO, null)))),
+                new Document("$trunc", new Document("$divide", Arrays.asList(
+                        new Document("$add", Arrays.asList(SALARY_FROM, SALARY_TO)), 2))),
+                new Document("$ifNull", Arrays.asList(SALARY_FROM, SALARY_TO))));
+    }
+
+    /**
+     * Expression calculating {@link SalarySketch} bucket of vacancy salary,
+     * the same way {@link SalarySketch#bucketOf(long)} does it.
+     */
+    private AggregationExpression salaryBucket() {
+        return context -> new Document("$subtract", Arrays.asList(
+                new Document("$ceil", new Document("$divide", Arrays.asList(
+                        new Document("$ln", new Document("$min", Arrays.asList(
+                                new Document("$max", Arrays.asList("$salary", SalarySketch.MIN_SALARY)),
+                                SalarySketch.MAX_SALARY))),
+                        SalarySketch.LOG_GAMMA))),
+                SalarySketch.MIN_INDEX));
+    }
 }
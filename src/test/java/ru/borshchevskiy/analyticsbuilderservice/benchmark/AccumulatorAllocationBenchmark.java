@@ -0,0 +1,113 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.CubeOptions;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsCube;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-query fold with temporary {@link VacancyAnalyticsDto} allocated for each (vacancy, query) pair
+ * against in-place update of {@link VacancyAnalyticsAccumulator} kept in map keyed by query string,
+ * and against {@link VacancyAnalyticsCube} keeping accumulated data in primitive arrays indexed by query id.
+ * Run with <code>-prof gc</code> to see allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccumulatorAllocationBenchmark {
+
+    @Param({"100000"})
+    private int vacanciesCount;
+
+    private List<VacancyEntity> vacancies;
+
+    private VacancyAnalyticsAggregator aggregator;
+
+    @Setup
+    public void setUp() {
+        vacancies = new SyntheticVacancyGenerator(2, 300, 0.5, false, 42).generate(vacanciesCount);
+        aggregator = new VacancyAnalyticsAggregator(new AnalyticsBuilderProperties(), ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public Map<String, VacancyAnalyticsDto> temporaryDtoMerge() {
+        Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap = new HashMap<>();
+        for (VacancyEntity vacancy : vacancies) {
+            for (String query : vacancy.getQuery()) {
+                perQueryVacancyAnalyticsMap.merge(query,
+                        new VacancyAnalyticsDto(1, calculateBoxedVacancySalary(vacancy.getSalaryEntity())),
+                        AccumulatorAllocationBenchmark::updateAnalyticsData);
+            }
+        }
+        return perQueryVacancyAnalyticsMap;
+    }
+
+    @Benchmark
+    public Map<String, VacancyAnalyticsAccumulator> inPlaceAccumulator() {
+        Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators = new HashMap<>();
+        for (VacancyEntity vacancy : vacancies) {
+            aggregator.accumulate(perQueryAccumulators, vacancy.getQuery(), vacancy.getSalaryEntity());
+        }
+        return perQueryAccumulators;
+    }
+
+    @Benchmark
+    public VacancyAnalyticsCube dictionaryEncodedCube() {
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE);
+        for (VacancyEntity vacancy : vacancies) {
+            long salary = VacancyAnalyticsAggregator.calculateVacancySalary(vacancy.getSalaryEntity());
+            cube.add(null, vacancy.getQuery(), null, null, null, null, null, null, salary, salary);
+        }
+        return cube;
+    }
+
+    /**
+     * Fold step of the former implementation: cumulative moving average over temporary dtos.
+     */
+    private static VacancyAnalyticsDto updateAnalyticsData(VacancyAnalyticsDto existingData,
+                                                           VacancyAnalyticsDto newData) {
+        int newVacanciesCount = existingData.getVacancyCount() + newData.getVacancyCount();
+        double avgSalary = existingData.getAverageSalary();
+        double salary = newData.getAverageSalary();
+        existingData.setVacancyCount(newVacanciesCount);
+        existingData.setAverageSalary(avgSalary + (salary - avgSalary) / newVacanciesCount);
+        return existingData;
+    }
+
+    /**
+     * Salary calculation of the former implementation, returning boxed value.
+     */
+    private static Double calculateBoxedVacancySalary(SalaryEntity salary) {
+        if (salary.getFrom() != null && salary.getTo() != null) {
+            return (double) ((salary.getFrom() + salary.getTo()) / 2);
+        } else if (salary.getFrom() == null) {
+            return salary.getTo().doubleValue();
+        } else {
+            return salary.getFrom().doubleValue();
+        }
+    }
+}
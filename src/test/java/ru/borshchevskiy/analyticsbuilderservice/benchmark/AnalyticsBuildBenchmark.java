@@ -0,0 +1,137 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsSkillRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsSkillRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBreakdownWriter;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics;
+import ru.borshchevskiy.analyticsbuilderservice.service.FullAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks analytics build pipeline on synthetic vacancies without Mongo and MySQL:
+ * <ul>
+ *     <li>per-query aggregation of vacancies alone;</li>
+ *     <li>whole {@link VacancyAnalyticsService#buildAnalytics()} with in-memory repositories
+ *     in each write mode, with and without skills matched in snippets of vacancies.</li>
+ * </ul>
+ * All vacancies have the same snippet, so that cost of skill matching does not depend on data set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBuildBenchmark {
+
+    @Param({"100000"})
+    private int vacanciesCount;
+
+    @Param({"2"})
+    private int queriesPerVacancy;
+
+    @Param({"300"})
+    private int queryCardinality;
+
+    @Param({"0.3"})
+    private double salaryNullRatio;
+
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    private AnalyticsBuilderProperties.AggregationMode aggregationMode;
+
+    @Param({"false", "true"})
+    private boolean skillsEnabled;
+
+    private List<VacancyEntity> vacancies;
+    private AnalyticsBuilderProperties properties;
+    private ForkJoinPool aggregationPool;
+    private VacancyAnalyticsAggregator aggregator;
+    private InMemoryVacancyAnalyticsRepository repository;
+    private VacancyAnalyticsService vacancyAnalyticsService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vacancies = new SyntheticVacancyGenerator(queriesPerVacancy, queryCardinality, salaryNullRatio, false, 42)
+                .generate(vacanciesCount);
+        vacancies.forEach(vacancy -> vacancy.setSnippetEntity(SyntheticVacancyGenerator.generateSnippet()));
+        properties = new AnalyticsBuilderProperties();
+        properties.setAggregationMode(aggregationMode);
+        properties.setSkillsEnabled(skillsEnabled);
+        aggregationPool = new ForkJoinPool(properties.getAggregationParallelism());
+        aggregator = new VacancyAnalyticsAggregator(properties, aggregationPool);
+        repository = new InMemoryVacancyAnalyticsRepository();
+        VacancyService vacancyService = new VacancyService(null, null, properties) {
+            @Override
+            public List<VacancyEntity> findAllWithSalary() {
+                return vacancies;
+            }
+        };
+        AnalyticsBuildMetrics metrics = new AnalyticsBuildMetrics(new SimpleMeterRegistry(), properties);
+        VacancyAnalyticsSkillRepository skillRepository = new VacancyAnalyticsSkillRepository(null) {
+            @Override
+            public int replaceAll(LocalDate createdAt, Collection<VacancyAnalyticsSkillRow> rows, int batchSize) {
+                return 0;
+            }
+        };
+        FullAnalyticsService fullAnalyticsService = new FullAnalyticsService(vacancyService, properties, aggregator,
+                null, new SkillMatcher(properties.getSkills()), null, metrics,
+                new AnalyticsBreakdownWriter(null, null, null, skillRepository, properties, metrics));
+        vacancyAnalyticsService = new VacancyAnalyticsService(repository,
+                new InMemoryVacancyAnalyticsBulkRepository(repository), new VacancyAnalyticsMapper(), properties,
+                fullAnalyticsService, null, null, null, null, metrics, null, null, event -> {
+                });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        aggregationPool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, VacancyAnalyticsAccumulator> aggregate() {
+        return aggregator.aggregate(vacancies.stream(), (perQueryAccumulators, vacancy) ->
+                aggregator.accumulate(perQueryAccumulators, vacancy.getQuery(), vacancy.getSalaryEntity()));
+    }
+
+    @Benchmark
+    public long buildAnalyticsPerQueryWrite() {
+        properties.setWriteMode(AnalyticsBuilderProperties.WriteMode.PER_QUERY);
+        vacancyAnalyticsService.buildAnalytics();
+        return repository.count();
+    }
+
+    @Benchmark
+    public long buildAnalyticsBatchWrite() {
+        properties.setWriteMode(AnalyticsBuilderProperties.WriteMode.BATCH);
+        vacancyAnalyticsService.buildAnalytics();
+        return repository.count();
+    }
+}
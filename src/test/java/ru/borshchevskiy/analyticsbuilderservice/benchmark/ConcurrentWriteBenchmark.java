@@ -0,0 +1,94 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.config.ConcurrentWriteConfig;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics;
+import ru.borshchevskiy.analyticsbuilderservice.service.ConcurrentQueryWriter;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks write phase of analytics build in {@link AnalyticsBuilderProperties.WriteMode#PER_QUERY} mode,
+ * saving queries one by one, against {@link AnalyticsBuilderProperties.WriteMode#PER_QUERY_CONCURRENT} mode.
+ * MySQL database is replaced by in-memory repository spending {@link #roundTripMicros} on every lookup and save,
+ * so that write phase is dominated by waiting for database, as it is with real one.
+ * Virtual threads are used if benchmark is run on JDK 21 or newer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentWriteBenchmark {
+
+    @Param({"300"})
+    private int queryCardinality;
+
+    @Param({"500"})
+    private int roundTripMicros;
+
+    /**
+     * Default maximum size of Hikari connection pool.
+     */
+    @Param({"10"})
+    private int writeConcurrency;
+
+    private Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap;
+    private VacancyAnalyticsService vacancyAnalyticsService;
+    private ConcurrentQueryWriter concurrentQueryWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+        properties.setWriteConcurrency(writeConcurrency);
+        VacancyAnalyticsMapper mapper = new VacancyAnalyticsMapper();
+        perQueryVacancyAnalyticsMap = new HashMap<>();
+        for (int i = 0; i < queryCardinality; i++) {
+            perQueryVacancyAnalyticsMap.put("Query " + i,
+                    mapper.mapToDto(new VacancyAnalyticsAccumulator(100, 100 * 150_000L)));
+        }
+        InMemoryVacancyAnalyticsRepository repository =
+                new InMemoryVacancyAnalyticsRepository(Duration.ofNanos(roundTripMicros * 1_000L));
+        concurrentQueryWriter = new ConcurrentQueryWriter(properties, null,
+                new ConcurrentWriteConfig().analyticsWriteExecutor(properties));
+        vacancyAnalyticsService = new VacancyAnalyticsService(repository,
+                new InMemoryVacancyAnalyticsBulkRepository(repository), mapper, properties, null, null, null, null,
+                null, new AnalyticsBuildMetrics(new SimpleMeterRegistry(), properties), null, concurrentQueryWriter,
+                event -> {
+                });
+    }
+
+    @Benchmark
+    public void saveSequentially() {
+        perQueryVacancyAnalyticsMap.forEach(vacancyAnalyticsService::saveAnalytics);
+    }
+
+    @Benchmark
+    public void saveConcurrently() {
+        LocalDate createdAt = LocalDate.now();
+        concurrentQueryWriter.writeAll(perQueryVacancyAnalyticsMap,
+                (query, analytics) -> vacancyAnalyticsService.saveAnalytics(query, analytics, createdAt));
+    }
+}
@@ -0,0 +1,32 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+
+import java.util.Collection;
+
+/**
+ * In-memory stand-in of {@link VacancyAnalyticsBulkRepository} for benchmarks,
+ * upserting rows into {@link InMemoryVacancyAnalyticsRepository}.
+ */
+public class InMemoryVacancyAnalyticsBulkRepository extends VacancyAnalyticsBulkRepository {
+
+    private final InMemoryVacancyAnalyticsRepository repository;
+
+    public InMemoryVacancyAnalyticsBulkRepository(InMemoryVacancyAnalyticsRepository repository) {
+        super(null);
+        this.repository = repository;
+    }
+
+    @Override
+    public int upsertAll(Collection<VacancyAnalytics> analytics, int batchSize) {
+        for (VacancyAnalytics row : analytics) {
+            repository.findByQueryAndCreatedAt(row.getQuery(), row.getCreatedAt())
+                    .ifPresentOrElse(existing -> {
+                        existing.setVacancyCount(row.getVacancyCount());
+                        existing.setAverageSalary(row.getAverageSalary());
+                    }, () -> repository.save(row));
+        }
+        return (analytics.size() + batchSize - 1) / batchSize;
+    }
+}
@@ -0,0 +1,134 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in of {@link VacancyAnalyticsRepository} for benchmarks, keyed by query and date.
+ * Safe for concurrent use. Optionally emulates database round trip by sleeping in every lookup and save.
+ */
+public class InMemoryVacancyAnalyticsRepository implements VacancyAnalyticsRepository {
+
+    private final Map<String, Map<LocalDate, VacancyAnalytics>> storage = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Duration roundTrip;
+
+    public InMemoryVacancyAnalyticsRepository() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param roundTrip time every lookup and save takes, emulating network round trip to database.
+     */
+    public InMemoryVacancyAnalyticsRepository(Duration roundTrip) {
+        this.roundTrip = roundTrip;
+    }
+
+    @Override
+    public Optional<VacancyAnalytics> findByQueryAndCreatedAt(String query, LocalDate date) {
+        emulateRoundTrip();
+        return Optional.ofNullable(storage.getOrDefault(query, Map.of()).get(date));
+    }
+
+    @Override
+    public long countByCreatedAt(LocalDate date) {
+        return storage.values().stream().filter(byDate -> byDate.containsKey(date)).count();
+    }
+
+    @Override
+    public <S extends VacancyAnalytics> S save(S entity) {
+        emulateRoundTrip();
+        if (entity.getId() == null) {
+            entity.setId(nextId.getAndIncrement());
+        }
+        storage.computeIfAbsent(entity.getQuery(), query -> new ConcurrentHashMap<>())
+                .put(entity.getCreatedAt(), entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends VacancyAnalytics> Iterable<S> saveAll(Iterable<S> entities) {
+        entities.forEach(this::save);
+        return entities;
+    }
+
+    @Override
+    public Optional<VacancyAnalytics> findById(Long id) {
+        return storage.values().stream()
+                .flatMap(byDate -> byDate.values().stream())
+                .filter(analytics -> analytics.getId().longValue() == id)
+                .findFirst();
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public Iterable<VacancyAnalytics> findAll() {
+        List<VacancyAnalytics> all = new ArrayList<>();
+        storage.values().forEach(byDate -> all.addAll(byDate.values()));
+        return all;
+    }
+
+    @Override
+    public Iterable<VacancyAnalytics> findAllById(Iterable<Long> ids) {
+        List<VacancyAnalytics> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return storage.values().stream().mapToLong(Map::size).sum();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        findById(id).ifPresent(this::delete);
+    }
+
+    @Override
+    public void delete(VacancyAnalytics entity) {
+        Map<LocalDate, VacancyAnalytics> byDate = storage.get(entity.getQuery());
+        if (byDate != null) {
+            byDate.remove(entity.getCreatedAt());
+        }
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        ids.forEach(this::deleteById);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends VacancyAnalytics> entities) {
+        entities.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        storage.clear();
+    }
+
+    private void emulateRoundTrip() {
+        if (roundTrip.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(roundTrip.toMillis(), roundTrip.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
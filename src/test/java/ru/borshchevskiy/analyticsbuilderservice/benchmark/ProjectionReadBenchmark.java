@@ -0,0 +1,133 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsSkillRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBreakdownWriter;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics;
+import ru.borshchevskiy.analyticsbuilderservice.service.FullAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares full-entity read of vacancies with projection-only read:
+ * <ul>
+ *     <li>bytes of BSON documents transferred from Mongo database;</li>
+ *     <li>wall time of analytics build in {@link AnalyticsBuilderProperties.ReadMode#STREAM}
+ *     and {@link AnalyticsBuilderProperties.ReadMode#PROJECTION} read modes;</li>
+ *     <li>wall time of analytics build in {@link AnalyticsBuilderProperties.ReadMode#PROJECTION} read mode
+ *     with skills matched in snippets, which are then read too, against the build without skills.</li>
+ * </ul>
+ * Run with <code>mvn test -P benchmark</code>.
+ */
+@Slf4j
+@Tag("benchmark")
+@Testcontainers
+public class ProjectionReadBenchmark {
+
+    private static final int VACANCIES_COUNT = 50_000;
+    private static final int ITERATIONS = 5;
+
+    @Container
+    static MongoDBContainer mongoDBContainer =
+            new MongoDBContainer(DockerImageName.parse("mongo:6.0.6"));
+
+    private static MongoClient mongoClient;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void populate() {
+        mongoClient = MongoClients.create(mongoDBContainer.getConnectionString());
+        mongoTemplate = new MongoTemplate(mongoClient, "vacancies_db");
+        mongoTemplate.insertAll(new SyntheticVacancyGenerator(2, 300, 0.5, true, 42).generate(VACANCIES_COUNT));
+    }
+
+    @AfterAll
+    static void close() {
+        mongoClient.close();
+    }
+
+    @Test
+    void compareFullAndProjectionRead() {
+        MongoCollection<RawBsonDocument> collection = mongoTemplate.getCollection("vacancy")
+                .withDocumentClass(RawBsonDocument.class);
+        Bson filter = Filters.eq("salaryEntity.currency", Currency.RUR.name());
+        Bson projection = Projections.include("query", "publishedAt",
+                "salaryEntity.from", "salaryEntity.to", "salaryEntity.currency");
+
+        long fullBytes = 0;
+        for (RawBsonDocument document : collection.find(filter)) {
+            fullBytes += document.getByteBuffer().remaining();
+        }
+        long projectionBytes = 0;
+        for (RawBsonDocument document : collection.find(filter).projection(projection)) {
+            projectionBytes += document.getByteBuffer().remaining();
+        }
+
+        long fullBuildNanos = measureBuild(AnalyticsBuilderProperties.ReadMode.STREAM, false);
+        long projectionBuildNanos = measureBuild(AnalyticsBuilderProperties.ReadMode.PROJECTION, false);
+        long skillsBuildNanos = measureBuild(AnalyticsBuilderProperties.ReadMode.PROJECTION, true);
+
+        log.info("Full-entity read: {} bytes, build {} ms", fullBytes, fullBuildNanos / 1_000_000);
+        log.info("Projection read: {} bytes, build {} ms", projectionBytes, projectionBuildNanos / 1_000_000);
+        log.info("Projection read with skills: build {} ms, {}x of build without skills",
+                skillsBuildNanos / 1_000_000, String.format("%.2f", (double) skillsBuildNanos / projectionBuildNanos));
+        assertThat(projectionBytes).isLessThan(fullBytes);
+    }
+
+    /**
+     * Runs analytics build several times in specified read mode, with or without skills,
+     * and returns best wall time.
+     */
+    private long measureBuild(AnalyticsBuilderProperties.ReadMode readMode, boolean skillsEnabled) {
+        AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+        properties.setReadMode(readMode);
+        properties.setSkillsEnabled(skillsEnabled);
+        VacancyService vacancyService = new VacancyService(null, mongoTemplate, properties);
+        AnalyticsBuildMetrics metrics = new AnalyticsBuildMetrics(new SimpleMeterRegistry(), properties);
+        FullAnalyticsService fullAnalyticsService = new FullAnalyticsService(vacancyService, properties,
+                new VacancyAnalyticsAggregator(properties, ForkJoinPool.commonPool()), null,
+                new SkillMatcher(properties.getSkills()), null, metrics, new AnalyticsBreakdownWriter(null, null, null,
+                mock(VacancyAnalyticsSkillRepository.class), properties, metrics));
+        VacancyAnalyticsService vacancyAnalyticsService = new VacancyAnalyticsService(
+                mock(VacancyAnalyticsRepository.class), mock(VacancyAnalyticsBulkRepository.class),
+                new VacancyAnalyticsMapper(), properties, fullAnalyticsService, null, null, null, null, metrics, null,
+                null, event -> {
+                });
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            vacancyAnalyticsService.buildAnalytics();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks salary calculation of single vacancy and mapping/saving of per-query analytics
+ * with in-memory repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SalaryAndMappingBenchmark {
+
+    private static final int SALARIES_COUNT = 10_000;
+
+    @Param({"1000"})
+    private int queryCardinality;
+
+    @Param({"0.3"})
+    private double salaryNullRatio;
+
+    private SalaryEntity[] salaries;
+    private Map<String, VacancyAnalyticsAccumulator> perQueryAccumulators;
+    private VacancyAnalyticsMapper mapper;
+    private VacancyAnalyticsService vacancyAnalyticsService;
+
+    @Setup
+    public void setUp() {
+        SyntheticVacancyGenerator generator =
+                new SyntheticVacancyGenerator(1, queryCardinality, salaryNullRatio, false, 42);
+        salaries = new SalaryEntity[SALARIES_COUNT];
+        for (int i = 0; i < SALARIES_COUNT; i++) {
+            salaries[i] = generator.generateSalary();
+        }
+        perQueryAccumulators = new HashMap<>();
+        for (int i = 0; i < queryCardinality; i++) {
+            perQueryAccumulators.put("Query " + i, new VacancyAnalyticsAccumulator(100, 100 * 150_000L));
+        }
+        AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+        InMemoryVacancyAnalyticsRepository repository = new InMemoryVacancyAnalyticsRepository();
+        mapper = new VacancyAnalyticsMapper();
+        vacancyAnalyticsService = new VacancyAnalyticsService(repository,
+                new InMemoryVacancyAnalyticsBulkRepository(repository), mapper, properties, null, null, null, null,
+                null, new AnalyticsBuildMetrics(new SimpleMeterRegistry(), properties), null, null, event -> {
+                });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SALARIES_COUNT)
+    public long calculateVacancySalary() {
+        long sum = 0;
+        for (SalaryEntity salary : salaries) {
+            sum += VacancyAnalyticsAggregator.calculateVacancySalary(salary);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Map<String, VacancyAnalyticsDto> mapToDto() {
+        Map<String, VacancyAnalyticsDto> perQueryVacancyAnalyticsMap = new HashMap<>();
+        perQueryAccumulators.forEach((query, accumulator) ->
+                perQueryVacancyAnalyticsMap.put(query, mapper.mapToDto(accumulator)));
+        return perQueryVacancyAnalyticsMap;
+    }
+
+    @Benchmark
+    public void mapAndSavePerQuery() {
+        perQueryAccumulators.forEach((query, accumulator) ->
+                vacancyAnalyticsService.saveAnalytics(query, mapper.mapToDto(accumulator)));
+    }
+
+    @Benchmark
+    public void mapAndSaveBatch() {
+        vacancyAnalyticsService.saveAllAnalytics(mapToDto(), LocalDate.now());
+    }
+}
@@ -0,0 +1,168 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.CubeOptions;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillSet;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsCube;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SnippetEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Compares folding vacancies into {@link VacancyAnalyticsCube} without skill breakdown against folding them
+ * with skills of requirement and responsibility snippets matched by {@link SkillMatcher} trie,
+ * and by one precompiled regular expression per skill term, as a naive alternative.
+ * Bare scan of every char of snippets is measured as the lower bound of any single-pass matcher.
+ * Snippets are generated from default skill dictionary mixed with filler phrases, so that they vary in length
+ * and in skills mentioned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkillMatcherBenchmark {
+
+    private static final String[] FILLER = {
+            "Опыт коммерческой разработки от 3 лет.", "Понимание принципов ООП и SOLID.",
+            "Участие в code review.", "Взаимодействие с аналитиками и тестировщиками.",
+            "Разработка и поддержка высоконагруженных сервисов.", "Умение писать тесты.",
+            "Английский на уровне чтения технической документации.", "Будет плюсом опыт работы с",
+            "Знание", "Уверенное владение", "и", "или"};
+
+    @Param({"100000"})
+    private int vacanciesCount;
+
+    private List<VacancyEntity> vacancies;
+
+    private SkillMatcher skillMatcher;
+
+    private List<String> skills;
+
+    private Pattern[] termPatterns;
+
+    private int[] termSkills;
+
+    @Setup
+    public void setUp() {
+        Map<String, List<String>> dictionary = new AnalyticsBuilderProperties().getSkills();
+        skillMatcher = new SkillMatcher(dictionary);
+        skills = skillMatcher.getSkills();
+        List<Pattern> patterns = new ArrayList<>();
+        List<Integer> skillsOfPatterns = new ArrayList<>();
+        for (int skill = 0; skill < skills.size(); skill++) {
+            List<String> terms = new ArrayList<>(dictionary.get(skills.get(skill)));
+            terms.add(skills.get(skill));
+            for (String term : terms) {
+                patterns.add(Pattern.compile("(?<![\\p{L}\\p{N}])" + Pattern.quote(term) + "(?![\\p{L}\\p{N}])",
+                        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+                skillsOfPatterns.add(skill);
+            }
+        }
+        termPatterns = patterns.toArray(new Pattern[0]);
+        termSkills = skillsOfPatterns.stream().mapToInt(Integer::intValue).toArray();
+
+        Random random = new Random(42);
+        vacancies = new SyntheticVacancyGenerator(2, 300, 0.5, false, 42).generate(vacanciesCount);
+        for (VacancyEntity vacancy : vacancies) {
+            SnippetEntity snippet = new SnippetEntity();
+            snippet.setRequirement(generateText(random, 8 + random.nextInt(12)));
+            snippet.setResponsibility(generateText(random, 4 + random.nextInt(8)));
+            vacancy.setSnippetEntity(snippet);
+        }
+    }
+
+    @Benchmark
+    public VacancyAnalyticsCube cubeWithoutSkills() {
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE);
+        for (VacancyEntity vacancy : vacancies) {
+            add(cube, vacancy, null);
+        }
+        return cube;
+    }
+
+    @Benchmark
+    public long snippetScan() {
+        long checksum = 0;
+        for (VacancyEntity vacancy : vacancies) {
+            checksum += scan(vacancy.getSnippetEntity().getRequirement());
+            checksum += scan(vacancy.getSnippetEntity().getResponsibility());
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public VacancyAnalyticsCube cubeWithTrieSkills() {
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE.withSkills(skills));
+        SkillSet found = new SkillSet(skills.size());
+        for (VacancyEntity vacancy : vacancies) {
+            found.clear();
+            skillMatcher.match(vacancy.getSnippetEntity().getRequirement(), found);
+            skillMatcher.match(vacancy.getSnippetEntity().getResponsibility(), found);
+            add(cube, vacancy, found);
+        }
+        return cube;
+    }
+
+    @Benchmark
+    public VacancyAnalyticsCube cubeWithRegexPerSkill() {
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE.withSkills(skills));
+        SkillSet found = new SkillSet(skills.size());
+        for (VacancyEntity vacancy : vacancies) {
+            found.clear();
+            for (int term = 0; term < termPatterns.length; term++) {
+                if (!found.contains(termSkills[term])
+                        && (termPatterns[term].matcher(vacancy.getSnippetEntity().getRequirement()).find()
+                        || termPatterns[term].matcher(vacancy.getSnippetEntity().getResponsibility()).find())) {
+                    found.add(termSkills[term]);
+                }
+            }
+            add(cube, vacancy, found);
+        }
+        return cube;
+    }
+
+    private static void add(VacancyAnalyticsCube cube, VacancyEntity vacancy, SkillSet found) {
+        long salary = VacancyAnalyticsAggregator.calculateVacancySalary(vacancy.getSalaryEntity());
+        cube.add(vacancy.getId(), vacancy.getQuery(), null, null, null, null, found, Currency.RUR, salary, salary);
+    }
+
+    private static long scan(String text) {
+        long checksum = 0;
+        for (int i = 0; i < text.length(); i++) {
+            checksum += text.charAt(i);
+        }
+        return checksum;
+    }
+
+    private String generateText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(random.nextInt(3) == 0
+                    ? skills.get(random.nextInt(skills.size())) + ","
+                    : FILLER[random.nextInt(FILLER.length)]).append(' ');
+        }
+        return text.toString();
+    }
+}
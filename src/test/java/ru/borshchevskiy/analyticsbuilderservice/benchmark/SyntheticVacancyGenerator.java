@@ -0,0 +1,141 @@
+package ru.borshchevskiy.analyticsbuilderservice.benchmark;
+
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.AreaEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmployerEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.LogoUrlsEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SnippetEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates reproducible synthetic {@link VacancyEntity} data sets for benchmarks.
+ * <p>
+ * Shape of data set is controlled by:
+ * <ul>
+ *     <li><code>vacanciesCount</code> - number of vacancies generated;</li>
+ *     <li><code>queriesPerVacancy</code> - number of distinct queries each vacancy relates to;</li>
+ *     <li><code>queryCardinality</code> - number of distinct queries in the whole data set;</li>
+ *     <li><code>salaryNullRatio</code> - probability that one of salary limits (lower or upper) is not specified.</li>
+ * </ul>
+ * All vacancies have salary in {@link Currency#RUR}. If <code>fullDocuments</code> is set, vacancies are also
+ * populated with area, employer and snippet data, so that their size is close to real documents.
+ */
+public class SyntheticVacancyGenerator {
+
+    private final int queriesPerVacancy;
+    private final int queryCardinality;
+    private final double salaryNullRatio;
+    private final boolean fullDocuments;
+    private final Random random;
+
+    public SyntheticVacancyGenerator(int queriesPerVacancy,
+                                     int queryCardinality,
+                                     double salaryNullRatio,
+                                     boolean fullDocuments,
+                                     long seed) {
+        if (queriesPerVacancy > queryCardinality) {
+            throw new IllegalArgumentException("Queries per vacancy must not exceed query cardinality");
+        }
+        this.queriesPerVacancy = queriesPerVacancy;
+        this.queryCardinality = queryCardinality;
+        this.salaryNullRatio = salaryNullRatio;
+        this.fullDocuments = fullDocuments;
+        this.random = new Random(seed);
+    }
+
+    public List<VacancyEntity> generate(int vacanciesCount) {
+        List<VacancyEntity> vacancies = new ArrayList<>(vacanciesCount);
+        for (int i = 0; i < vacanciesCount; i++) {
+            vacancies.add(generateVacancy(i));
+        }
+        return vacancies;
+    }
+
+    public VacancyEntity generateVacancy(int index) {
+        VacancyEntity vacancy = new VacancyEntity();
+        vacancy.setId(String.valueOf(index));
+        vacancy.setSalaryEntity(generateSalary());
+        vacancy.setQuery(generateQueries());
+        vacancy.setPublishedAt("2024-05-01T10:00:00+0300");
+        vacancy.setCreatedAt("2024-05-01T10:00:00+0300");
+        vacancy.setArchived(false);
+        if (fullDocuments) {
+            populateDetails(vacancy, index);
+        }
+        return vacancy;
+    }
+
+    public SalaryEntity generateSalary() {
+        SalaryEntity salary = new SalaryEntity();
+        salary.setCurrency(Currency.RUR.name());
+        salary.setGross(random.nextBoolean());
+        int from = 30_000 + random.nextInt(300_000);
+        int to = from + random.nextInt(200_000);
+        if (random.nextDouble() < salaryNullRatio) {
+            if (random.nextBoolean()) {
+                salary.setFrom(from);
+            } else {
+                salary.setTo(to);
+            }
+        } else {
+            salary.setFrom(from);
+            salary.setTo(to);
+        }
+        return salary;
+    }
+
+    /**
+     * @return snippet of typical Java vacancy, mentioning five skills of default skill dictionary.
+     */
+    public static SnippetEntity generateSnippet() {
+        SnippetEntity snippet = new SnippetEntity();
+        snippet.setRequirement("Опыт коммерческой разработки на Java от 3 лет. Знание Spring Boot, Hibernate, "
+                + "PostgreSQL, Kafka. Понимание принципов построения микросервисной архитектуры.");
+        snippet.setResponsibility("Разработка и поддержка высоконагруженных сервисов. Участие в code review. "
+                + "Взаимодействие с аналитиками и тестировщиками.");
+        return snippet;
+    }
+
+    private Set<String> generateQueries() {
+        Set<String> queries = new HashSet<>();
+        while (queries.size() < queriesPerVacancy) {
+            queries.add("Query " + random.nextInt(queryCardinality));
+        }
+        return queries;
+    }
+
+    private void populateDetails(VacancyEntity vacancy, int index) {
+        AreaEntity area = new AreaEntity();
+        area.setId(String.valueOf(random.nextInt(100)));
+        area.setName("Area " + area.getId());
+        area.setUrl("https://api.hh.ru/areas/" + area.getId());
+
+        LogoUrlsEntity logoUrls = new LogoUrlsEntity();
+        logoUrls.setOriginal("https://img.hhcdn.ru/employer-logo-original/" + index + ".png");
+        logoUrls.set_90("https://img.hhcdn.ru/employer-logo/90/" + index + ".png");
+        logoUrls.set_240("https://img.hhcdn.ru/employer-logo/240/" + index + ".png");
+
+        EmployerEntity employer = new EmployerEntity();
+        employer.setId(String.valueOf(random.nextInt(5_000)));
+        employer.setName("Employer " + employer.getId());
+        employer.setUrl("https://api.hh.ru/employers/" + employer.getId());
+        employer.setAlternateUrl("https://hh.ru/employer/" + employer.getId());
+        employer.setVacanciesUrl("https://api.hh.ru/vacancies?employer_id=" + employer.getId());
+        employer.setLogoUrlsEntity(logoUrls);
+        employer.setAccreditedItEmployer(random.nextBoolean());
+        employer.setTrusted(true);
+
+        vacancy.setName("Developer " + index);
+        vacancy.setAlternateUrl("https://hh.ru/vacancy/" + index);
+        vacancy.setAreaEntity(area);
+        vacancy.setEmployerEntity(employer);
+        vacancy.setSnippetEntity(generateSnippet());
+    }
+}
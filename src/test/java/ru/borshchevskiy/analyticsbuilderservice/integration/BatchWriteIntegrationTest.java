@@ -0,0 +1,66 @@
+package ru.borshchevskiy.analyticsbuilderservice.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.HyperLogLog;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = TestRabbitConfig.class, properties = "analytics-builder.write-mode=batch")
+@ActiveProfiles("test")
+public class BatchWriteIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private VacancyAnalyticsService vacancyAnalyticsService;
+
+    @Autowired
+    private VacancyAnalyticsRepository vacancyAnalyticsRepository;
+
+    @Test
+    void testBuildAnalyticsInsertsRowPerQuery() {
+        vacancyAnalyticsService.buildAnalytics();
+
+        assertThat(vacancyAnalyticsRepository.findAll()).hasSize(queries.size())
+                .allMatch(analytics -> analytics.getCreatedAt().equals(LocalDate.now()))
+                .extracting(VacancyAnalytics::getQuery)
+                .hasSameElementsAs(queries);
+    }
+
+    @Test
+    void testSaveAllAnalyticsUpdatesExistingRows() {
+        vacancyAnalyticsService.buildAnalytics();
+        vacancyAnalyticsService.saveAllAnalytics(Map.of("Java", new VacancyAnalyticsDto(10, 500_000d)),
+                LocalDate.now());
+
+        assertThat(vacancyAnalyticsRepository.findAll()).hasSize(queries.size());
+        VacancyAnalytics javaAnalytics = vacancyAnalyticsRepository.findByQueryAndCreatedAt("Java", LocalDate.now())
+                .orElseThrow();
+        assertThat(javaAnalytics.getVacancyCount()).isEqualTo(10);
+        assertThat(javaAnalytics.getAverageSalary()).isEqualTo(500_000d);
+    }
+
+    @Test
+    void testSaveAllAnalyticsKeepsIdSketchesOfExistingRows() {
+        HyperLogLog vacancyIds = new HyperLogLog();
+        vacancyIds.add("vacancy-1");
+        VacancyAnalyticsDto analyticsWithSketch = new VacancyAnalyticsDto(1, 100_000d);
+        analyticsWithSketch.setVacancyIdsSketch(vacancyIds.toBytes());
+        vacancyAnalyticsService.saveAllAnalytics(Map.of("Java", analyticsWithSketch), LocalDate.now());
+        vacancyAnalyticsService.saveAllAnalytics(Map.of("Java", new VacancyAnalyticsDto(2, 150_000d)),
+                LocalDate.now());
+
+        VacancyAnalytics javaAnalytics = vacancyAnalyticsRepository.findByQueryAndCreatedAt("Java", LocalDate.now())
+                .orElseThrow();
+        assertThat(javaAnalytics.getVacancyCount()).isEqualTo(2);
+        assertThat(javaAnalytics.getVacancyIdsSketch()).isEqualTo(vacancyIds.toBytes());
+    }
+}
@@ -0,0 +1,70 @@
+package ru.borshchevskiy.analyticsbuilderservice.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = TestRabbitConfig.class)
+@ActiveProfiles("test")
+public class DistributedBuildIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private VacancyAnalyticsService vacancyAnalyticsService;
+
+    @Autowired
+    private VacancyAnalyticsRepository vacancyAnalyticsRepository;
+
+    @Autowired
+    private AnalyticsBuilderProperties properties;
+
+    private AnalyticsBuilderProperties.BuildMode initialBuildMode;
+
+    @AfterEach
+    public void restoreBuildMode() {
+        if (initialBuildMode != null) {
+            properties.setBuildMode(initialBuildMode);
+        }
+    }
+
+    @Test
+    void testDistributedBuildProducesSameAnalyticsAsFullBuild() {
+        initialBuildMode = properties.getBuildMode();
+
+        properties.setBuildMode(AnalyticsBuilderProperties.BuildMode.FULL);
+        vacancyAnalyticsService.buildAnalytics();
+        Map<String, VacancyAnalytics> fullAnalytics = findAllByQuery();
+        vacancyAnalyticsRepository.deleteAll();
+
+        properties.setBuildMode(AnalyticsBuilderProperties.BuildMode.DISTRIBUTED);
+        properties.setDistributedPartitions(3);
+        vacancyAnalyticsService.buildAnalytics();
+        Map<String, VacancyAnalytics> distributedAnalytics = findAllByQuery();
+
+        assertThat(distributedAnalytics.keySet()).hasSameElementsAs(queries);
+        for (String query : queries) {
+            assertThat(distributedAnalytics.get(query).getVacancyCount())
+                    .isEqualTo(fullAnalytics.get(query).getVacancyCount());
+            assertThat(distributedAnalytics.get(query).getAverageSalary())
+                    .isEqualTo(fullAnalytics.get(query).getAverageSalary());
+            assertThat(distributedAnalytics.get(query).getSalaryP50())
+                    .isEqualTo(fullAnalytics.get(query).getSalaryP50());
+        }
+    }
+
+    private Map<String, VacancyAnalytics> findAllByQuery() {
+        Map<String, VacancyAnalytics> analyticsByQuery = new HashMap<>();
+        vacancyAnalyticsRepository.findAll().forEach(analytics -> analyticsByQuery.put(analytics.getQuery(), analytics));
+        return analyticsByQuery;
+    }
+}
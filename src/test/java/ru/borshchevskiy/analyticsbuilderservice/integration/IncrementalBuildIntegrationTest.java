@@ -0,0 +1,107 @@
+package ru.borshchevskiy.analyticsbuilderservice.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest(classes = TestRabbitConfig.class, properties = "analytics-builder.build-mode=incremental")
+@ActiveProfiles("test")
+public class IncrementalBuildIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private VacancyAnalyticsService vacancyAnalyticsService;
+
+    @Autowired
+    private VacancyAnalyticsRepository vacancyAnalyticsRepository;
+
+    @Autowired
+    private VacancyRepository vacancyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void clearIncrementalState() {
+        jdbcTemplate.update("DELETE FROM vacancy_query_aggregate");
+        jdbcTemplate.update("DELETE FROM vacancy_contribution");
+        jdbcTemplate.update("DELETE FROM vacancy_analytics_watermark");
+    }
+
+    @Test
+    void testIncrementalBuildFoldsOnlyNewVacancies() {
+        vacancyAnalyticsService.buildAnalytics();
+        VacancyAnalytics javaAnalytics = findJavaAnalytics();
+        assertThat(javaAnalytics.getVacancyCount()).isEqualTo(3);
+        assertThat(javaAnalytics.getAverageSalary()).isEqualTo(150_000d);
+
+        // Nothing changed - running aggregates stay the same
+        vacancyAnalyticsService.buildAnalytics();
+        assertThat(findJavaAnalytics().getVacancyCount()).isEqualTo(3);
+
+        SalaryEntity salary350k = new SalaryEntity();
+        salary350k.setCurrency(Currency.RUR.name());
+        salary350k.setFrom(350000);
+        VacancyEntity newJavaVacancy = new VacancyEntity();
+        newJavaVacancy.setSalaryEntity(salary350k);
+        newJavaVacancy.setQuery(Set.of("Java"));
+        newJavaVacancy.setCreatedAt("2024-05-01T10:00:00+0300");
+        vacancyRepository.insert(newJavaVacancy);
+
+        vacancyAnalyticsService.buildAnalytics();
+        javaAnalytics = findJavaAnalytics();
+        assertThat(javaAnalytics.getVacancyCount()).isEqualTo(4);
+        assertThat(javaAnalytics.getAverageSalary()).isEqualTo(200_000d);
+    }
+
+    @Test
+    void testIncrementalBuildSubtractsArchivedVacancies() {
+        vacancyAnalyticsService.buildAnalytics();
+        assertThat(findJavaAnalytics().getVacancyCount()).isEqualTo(3);
+
+        // Vacancy created before the previous build, but inserted after it
+        SalaryEntity salary350k = new SalaryEntity();
+        salary350k.setCurrency(Currency.RUR.name());
+        salary350k.setFrom(350000);
+        VacancyEntity lateJavaVacancy = new VacancyEntity();
+        lateJavaVacancy.setSalaryEntity(salary350k);
+        lateJavaVacancy.setQuery(Set.of("Java"));
+        lateJavaVacancy.setCreatedAt("2020-01-01T10:00:00+0300");
+        lateJavaVacancy = vacancyRepository.insert(lateJavaVacancy);
+        VacancyEntity archivedVacancy = vacancyRepository.findAll().stream()
+                .filter(vacancy -> vacancy.getQuery().equals(Set.of("Java")))
+                .filter(vacancy -> vacancy.getSalaryEntity().getTo() != null)
+                .findFirst()
+                .orElseThrow();
+        archivedVacancy.setArchived(true);
+        vacancyRepository.save(archivedVacancy);
+        lateJavaVacancy.setDeleteAt(new Date(System.currentTimeMillis() + 86_400_000));
+        vacancyRepository.save(lateJavaVacancy);
+
+        vacancyAnalyticsService.buildAnalytics();
+        VacancyAnalytics javaAnalytics = findJavaAnalytics();
+        // 100k and 200k vacancies are left, 150k one is archived and 350k one is added once
+        assertThat(javaAnalytics.getVacancyCount()).isEqualTo(3);
+        assertThat(javaAnalytics.getAverageSalary()).isCloseTo(216_666.67, within(0.01));
+    }
+
+    private VacancyAnalytics findJavaAnalytics() {
+        return vacancyAnalyticsRepository.findByQueryAndCreatedAt("Java", LocalDate.now()).orElseThrow();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.borshchevskiy.analyticsbuilderservice.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = TestRabbitConfig.class)
+@ActiveProfiles("test")
+public class MongoAggregationEngineIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private VacancyAnalyticsService vacancyAnalyticsService;
+
+    @Autowired
+    private VacancyAnalyticsRepository vacancyAnalyticsRepository;
+
+    @Autowired
+    private AnalyticsBuilderProperties properties;
+
+    private AnalyticsBuilderProperties.Engine initialEngine;
+
+    @AfterEach
+    public void restoreEngine() {
+        if (initialEngine != null) {
+            properties.setEngine(initialEngine);
+        }
+    }
+
+    @Test
+    void testMongoAggregationEngineProducesSameAnalyticsAsJavaEngine() {
+        initialEngine = properties.getEngine();
+
+        properties.setEngine(AnalyticsBuilderProperties.Engine.JAVA);
+        vacancyAnalyticsService.buildAnalytics();
+        Map<String, VacancyAnalytics> javaAnalytics = findAllByQuery();
+        vacancyAnalyticsRepository.deleteAll();
+
+        properties.setEngine(AnalyticsBuilderProperties.Engine.MONGO_AGGREGATION);
+        vacancyAnalyticsService.buildAnalytics();
+        Map<String, VacancyAnalytics> mongoAnalytics = findAllByQuery();
+
+        assertThat(javaAnalytics.keySet()).hasSameElementsAs(queries);
+        assertThat(mongoAnalytics.keySet()).hasSameElementsAs(queries);
+        for (String query : queries) {
+            assertThat(mongoAnalytics.get(query).getVacancyCount())
+                    .isEqualTo(javaAnalytics.get(query).getVacancyCount());
+            assertThat(mongoAnalytics.get(query).getAverageSalary())
+                    .isEqualTo(javaAnalytics.get(query).getAverageSalary());
+        }
+    }
+
+    private Map<String, VacancyAnalytics> findAllByQuery() {
+        Map<String, VacancyAnalytics> analyticsByQuery = new HashMap<>();
+        vacancyAnalyticsRepository.findAll().forEach(analytics -> analyticsByQuery.put(analytics.getQuery(), analytics));
+        return analyticsByQuery;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.aggregation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.EmployerSpaceSaving;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmployerSpaceSavingTest {
+
+    @Test
+    @DisplayName("Test add - " +
+            "heavy hitters are monitored and counts overestimate true counts by at most their errors")
+    void testAddHeavyHitters() {
+        //Given
+        Random random = new Random(42);
+        EmployerSpaceSaving summary = new EmployerSpaceSaving(20);
+        Map<String, Long> trueCounts = new HashMap<>();
+        int vacancies = 20_000;
+        for (int i = 0; i < vacancies; i++) {
+            // Every third vacancy belongs to one of five large employers, the rest to long tail of 5000 employers
+            String employerId = i % 3 == 0 ? "large-" + random.nextInt(5) : "small-" + random.nextInt(5_000);
+            trueCounts.merge(employerId, 1L, Long::sum);
+            //When
+            summary.add(employerId, "Employer " + employerId, employerId.startsWith("large"), 100_000);
+        }
+        //Then
+        List<EmployerSpaceSaving.Counter> counters = summary.counters();
+        assertThat(counters).hasSize(20);
+        assertThat(counters).extracting(EmployerSpaceSaving.Counter::employerId)
+                .contains("large-0", "large-1", "large-2", "large-3", "large-4");
+        for (EmployerSpaceSaving.Counter counter : counters) {
+            long trueCount = trueCounts.get(counter.employerId());
+            assertThat(counter.count()).isBetween(trueCount, trueCount + counter.error());
+            assertThat(counter.error()).isLessThanOrEqualTo(vacancies / 20);
+            assertThat(counter.averageSalary()).isEqualTo(100_000d);
+        }
+    }
+
+    @Test
+    @DisplayName("Test add - salaries are accounted only while employer is monitored")
+    void testAddSalaries() {
+        //Given
+        EmployerSpaceSaving summary = new EmployerSpaceSaving(2);
+        //When
+        summary.add("1", "First", true, 100_000);
+        summary.add("1", "First", true, 200_000);
+        summary.add("2", "Second", false, 50_000);
+        // Replaces the second employer, inheriting its count as error
+        summary.add("3", "Third", false, 300_000);
+        //Then
+        assertThat(summary.counters()).containsExactlyInAnyOrder(
+                new EmployerSpaceSaving.Counter("1", "First", true, 2, 0, 300_000, 2),
+                new EmployerSpaceSaving.Counter("3", "Third", false, 2, 1, 300_000, 1));
+    }
+
+    @Test
+    @DisplayName("Test merge - " +
+            "employer monitored by both summaries is summed, by one of them is assumed to have minimal count of other")
+    void testMerge() {
+        //Given
+        EmployerSpaceSaving first = new EmployerSpaceSaving(2);
+        EmployerSpaceSaving second = new EmployerSpaceSaving(2);
+        for (int i = 0; i < 5; i++) {
+            first.add("1", "First", true, 100_000);
+        }
+        first.add("2", "Second", false, 50_000);
+        for (int i = 0; i < 2; i++) {
+            second.add("1", "First", true, 200_000);
+        }
+        for (int i = 0; i < 3; i++) {
+            second.add("3", "Third", false, 300_000);
+        }
+        //When
+        first.merge(second);
+        //Then
+        assertThat(first.counters()).containsExactlyInAnyOrder(
+                new EmployerSpaceSaving.Counter("1", "First", true, 7, 0, 900_000, 7),
+                new EmployerSpaceSaving.Counter("3", "Third", false, 4, 1, 900_000, 3));
+    }
+
+    @Test
+    @DisplayName("Test merge - " +
+            "merged parts monitor the same heavy hitters as sequential summary, with counts within errors of both")
+    void testMergeWithinErrorsOfSequential() {
+        //Given
+        Random random = new Random(42);
+        EmployerSpaceSaving sequential = new EmployerSpaceSaving(20);
+        List<EmployerSpaceSaving> parts = List.of(new EmployerSpaceSaving(20), new EmployerSpaceSaving(20),
+                new EmployerSpaceSaving(20), new EmployerSpaceSaving(20));
+        Map<String, Long> trueCounts = new HashMap<>();
+        int vacancies = 20_000;
+        for (int i = 0; i < vacancies; i++) {
+            String employerId = i % 3 == 0 ? "large-" + random.nextInt(5) : "small-" + random.nextInt(5_000);
+            trueCounts.merge(employerId, 1L, Long::sum);
+            sequential.add(employerId, "Employer " + employerId, false, 100_000);
+            parts.get(i * parts.size() / vacancies).add(employerId, "Employer " + employerId, false, 100_000);
+        }
+        //When
+        EmployerSpaceSaving merged = parts.get(0);
+        parts.subList(1, parts.size()).forEach(merged::merge);
+        //Then
+        Map<String, EmployerSpaceSaving.Counter> sequentialCounters = new HashMap<>();
+        sequential.counters().forEach(counter -> sequentialCounters.put(counter.employerId(), counter));
+        List<EmployerSpaceSaving.Counter> counters = merged.counters();
+        assertThat(counters).hasSize(20);
+        assertThat(counters).extracting(EmployerSpaceSaving.Counter::employerId)
+                .contains("large-0", "large-1", "large-2", "large-3", "large-4");
+        for (EmployerSpaceSaving.Counter counter : counters) {
+            long trueCount = trueCounts.get(counter.employerId());
+            assertThat(counter.count()).isBetween(trueCount, trueCount + counter.error());
+            assertThat(counter.error()).isLessThanOrEqualTo(vacancies / 20);
+            EmployerSpaceSaving.Counter sequentialCounter = sequentialCounters.get(counter.employerId());
+            if (counter.employerId().startsWith("large")) {
+                assertThat(Math.abs(counter.count() - sequentialCounter.count()))
+                        .isLessThanOrEqualTo(Math.max(counter.error(), sequentialCounter.error()));
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.aggregation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.ExchangeRates;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExchangeRatesTest {
+
+    @Test
+    @DisplayName("Test toBase - " +
+            "salaries are converted to base currency, currencies without positive rate are not convertible")
+    void testToBase() {
+        //Given
+        Map<Currency, Double> ratesPerRur = Map.of(Currency.USD, 0.0125, Currency.EUR, 0.01, Currency.KZT, 0d);
+        //When
+        ExchangeRates toRur = ExchangeRates.of(Currency.RUR, ratesPerRur, Instant.now());
+        ExchangeRates toUsd = ExchangeRates.of(Currency.USD, ratesPerRur, Instant.now());
+        //Then
+        assertThat(toRur.getCurrencies()).containsExactlyInAnyOrder(Currency.RUR, Currency.USD, Currency.EUR);
+        assertThat(toRur.toBase(100_000, Currency.RUR)).isEqualTo(100_000);
+        assertThat(toRur.toBase(1_000, Currency.USD)).isEqualTo(80_000);
+        assertThat(toUsd.getCurrencies()).containsExactlyInAnyOrder(Currency.RUR, Currency.USD, Currency.EUR);
+        assertThat(toUsd.toBase(80_000, Currency.RUR)).isEqualTo(1_000);
+        assertThat(toUsd.toBase(1_000, Currency.EUR)).isEqualTo(1_250);
+        assertThat(ExchangeRates.baseOnly(Currency.RUR).getCurrencies()).containsExactly(Currency.RUR);
+        assertThatThrownBy(() -> ExchangeRates.of(Currency.KZT, ratesPerRur, Instant.now()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.aggregation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.HyperLogLog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    @DisplayName("Test estimate - " +
+            "small and large cardinalities are estimated within three standard errors, repeated ids are ignored")
+    void testEstimateAccuracy() {
+        for (int cardinality : new int[]{100, 1_000, 100_000, 1_000_000}) {
+            //Given
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < cardinality; i++) {
+                //When
+                sketch.add(String.valueOf(90_000_000 + i));
+                sketch.add(String.valueOf(90_000_000 + i / 2));
+            }
+            //Then
+            assertThat(sketch.estimate())
+                    .isCloseTo(cardinality, within((long) Math.ceil(3 * HyperLogLog.RELATIVE_ERROR * cardinality)));
+        }
+    }
+
+    @Test
+    @DisplayName("Test merge - " +
+            "merged sketches of overlapping sets are equal to sketch of their union")
+    void testMerge() {
+        //Given
+        HyperLogLog union = new HyperLogLog();
+        HyperLogLog firstWeek = new HyperLogLog();
+        HyperLogLog secondWeek = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            String id = "vacancy-" + i;
+            union.add(id);
+            if (i < 20_000) {
+                firstWeek.add(id);
+            }
+            if (i >= 10_000) {
+                secondWeek.add(id);
+            }
+        }
+        //When
+        HyperLogLog merged = new HyperLogLog().merge(secondWeek).merge(firstWeek);
+        //Then
+        assertThat(merged).isEqualTo(union);
+        assertThat(merged.estimate()).isCloseTo(30_000L, within(1_000L));
+    }
+
+    @Test
+    @DisplayName("Test toBytes and fromBytes - " +
+            "restored sketch is equal to serialized one, unknown format is rejected")
+    void testSerialization() {
+        //Given
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            sketch.add("employer-" + i);
+        }
+        //When
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+        //Then
+        assertThat(restored).isEqualTo(sketch);
+        assertThat(HyperLogLog.fromBytes(null).estimate()).isZero();
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[16]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.aggregation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class SalarySketchTest {
+
+    @Test
+    @DisplayName("Test quantile - " +
+            "estimated percentiles are within relative accuracy of exact nearest-rank percentiles")
+    void testQuantileAccuracy() {
+        //Given
+        Random random = new Random(42);
+        long[] salaries = new long[10_000];
+        SalarySketch sketch = new SalarySketch();
+        for (int i = 0; i < salaries.length; i++) {
+            // Log-normal distribution with a long tail of extreme salaries
+            salaries[i] = Math.round(Math.exp(11.5 + 0.6 * random.nextGaussian()));
+            //When
+            sketch.add(salaries[i]);
+        }
+        //Then
+        Arrays.sort(salaries);
+        for (double quantile : new double[]{0.25, 0.5, 0.75, 0.9}) {
+            long exact = salaries[(int) Math.ceil(quantile * salaries.length) - 1];
+            assertThat(sketch.quantile(quantile))
+                    .isCloseTo(exact, within(exact * SalarySketch.RELATIVE_ACCURACY + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Test merge - " +
+            "merged partial sketches are equal to sketch of all salaries, merging negated sketch removes salaries")
+    void testMerge() {
+        //Given
+        SalarySketch all = new SalarySketch();
+        SalarySketch first = new SalarySketch();
+        SalarySketch second = new SalarySketch();
+        for (long salary = 20_000; salary < 500_000; salary += 7_000) {
+            all.add(salary);
+            (salary % 2 == 0 ? first : second).add(salary);
+        }
+        //When
+        SalarySketch merged = new SalarySketch().merge(second).merge(first);
+        //Then
+        assertThat(merged).isEqualTo(all);
+        assertThat(merged.merge(second.negated())).isEqualTo(first);
+        assertThat(first.merge(first.negated()).quantile(0.5)).isNull();
+    }
+
+    @Test
+    @DisplayName("Test toBytes and fromBytes - " +
+            "restored sketch is equal to serialized one, salaries out of tracked range are clamped")
+    void testSerialization() {
+        //Given
+        SalarySketch sketch = new SalarySketch();
+        sketch.add(0);
+        sketch.add(150_000);
+        sketch.add(150_000);
+        sketch.add(Long.MAX_VALUE);
+        //When
+        SalarySketch restored = SalarySketch.fromBytes(sketch.toBytes());
+        //Then
+        assertThat(restored).isEqualTo(sketch);
+        assertThat(restored.getTotalCount()).isEqualTo(4);
+        assertThat(SalarySketch.fromBytes(null)).isEqualTo(new SalarySketch());
+        assertThat(SalarySketch.bucketOf(0)).isZero();
+        assertThat(SalarySketch.bucketOf(Long.MAX_VALUE)).isEqualTo(SalarySketch.BUCKET_COUNT - 1);
+    }
+}
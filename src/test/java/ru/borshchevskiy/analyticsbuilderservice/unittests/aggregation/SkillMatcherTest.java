@@ -0,0 +1,73 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.aggregation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillSet;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SkillMatcherTest {
+
+    private final SkillMatcher skillMatcher = new SkillMatcher(dictionary());
+
+    @Test
+    @DisplayName("Test match - " +
+            "skills are matched case-insensitively by name and by aliases only as whole words")
+    void testMatchWholeWords() {
+        //When
+        List<String> found = match("Опыт с JAVA 17, знание K8S и Postgres; JavaScript будет плюсом");
+        List<String> notFound = match("ScalaJava, javascripts, going");
+        //Then
+        assertThat(found).containsExactly("Java", "JavaScript", "Kubernetes", "PostgreSQL");
+        assertThat(notFound).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Test match - " +
+            "skills with special chars and skills nested in other skills are matched")
+    void testMatchSpecialCharsAndNestedTerms() {
+        //When
+        List<String> specialChars = match("C++17, C#-разработчик или опыт .NET, но не abc++");
+        List<String> nested = match("PostgreSQL, MySQL и чистый SQL, golang");
+        //Then
+        assertThat(specialChars).containsExactly("C#", "C++");
+        assertThat(nested).containsExactly("Go", "SQL", "PostgreSQL", "MySQL");
+    }
+
+    @Test
+    @DisplayName("Test match with null and empty text - nothing is matched")
+    void testMatchNullText() {
+        //When
+        SkillSet found = new SkillSet(skillMatcher.getSkills().size());
+        skillMatcher.match(null, found);
+        skillMatcher.match("", found);
+        //Then
+        assertThat(found.isEmpty()).isTrue();
+    }
+
+    private List<String> match(String text) {
+        SkillSet found = new SkillSet(skillMatcher.getSkills().size());
+        skillMatcher.match(text, found);
+        return Arrays.stream(found.toSortedArray()).mapToObj(skillMatcher.getSkills()::get).toList();
+    }
+
+    private static Map<String, List<String>> dictionary() {
+        Map<String, List<String>> dictionary = new LinkedHashMap<>();
+        dictionary.put("Java", List.of());
+        dictionary.put("JavaScript", List.of("js"));
+        dictionary.put("Go", List.of("golang"));
+        dictionary.put("C#", List.of(".net"));
+        dictionary.put("C++", List.of());
+        dictionary.put("Kubernetes", List.of("k8s"));
+        dictionary.put("SQL", List.of());
+        dictionary.put("PostgreSQL", List.of("postgres"));
+        dictionary.put("MySQL", List.of());
+        return dictionary;
+    }
+}
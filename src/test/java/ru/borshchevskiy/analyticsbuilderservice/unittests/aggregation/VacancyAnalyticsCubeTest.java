@@ -0,0 +1,165 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.aggregation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.CubeOptions;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsCube;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCubeRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsDimension;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.AreaEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmployerEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmploymentEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.ExperienceEntity;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VacancyAnalyticsCubeTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 1);
+
+    @Test
+    @DisplayName("Test rollUp - " +
+            "cube is rolled up to every combination of specific and all values of area, experience and employment")
+    void testRollUp() {
+        //Given
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE.withDimensional());
+        ExperienceEntity noExperience = experience("noExperience", "Нет опыта");
+        EmploymentEntity fullEmployment = employment("full", "Полная занятость");
+        EmploymentEntity partEmployment = employment("part", "Частичная занятость");
+        //When
+        cube.add(null, Set.of("Java", "Kotlin"), area("1", "Москва"), noExperience, fullEmployment, null, null, null,
+                100_000, 100_000);
+        cube.add(null, Set.of("Java"), area("1", "Москва"), noExperience, partEmployment, null, null, null,
+                200_000, 200_000);
+        cube.add(null, Set.of("Java"), null, null, null, null, null, null, 300_000, 300_000);
+        //Then
+        assertThat(cube.rollUp(DATE))
+                .hasSize(27)
+                .contains(new VacancyAnalyticsCubeRow(DATE, "Java", "1", "noExperience", "full", 1, 100_000d),
+                        new VacancyAnalyticsCubeRow(DATE, "Java", "1", "noExperience", "*", 2, 150_000d),
+                        new VacancyAnalyticsCubeRow(DATE, "Java", "*", "*", "part", 1, 200_000d),
+                        new VacancyAnalyticsCubeRow(DATE, "Java", "unknown", "*", "*", 1, 300_000d),
+                        new VacancyAnalyticsCubeRow(DATE, "Java", "*", "*", "*", 3, 200_000d),
+                        new VacancyAnalyticsCubeRow(DATE, "Kotlin", "*", "*", "*", 1, 100_000d));
+        assertThat(cube.getPerQueryAccumulators().get("Java").getVacancyCount()).isEqualTo(3);
+        assertThat(cube.getDimensionNames()).containsExactlyInAnyOrder(
+                new VacancyAnalyticsDimension("area", "1", "Москва"),
+                new VacancyAnalyticsDimension("experience", "noExperience", "Нет опыта"),
+                new VacancyAnalyticsDimension("employment", "full", "Полная занятость"),
+                new VacancyAnalyticsDimension("employment", "part", "Частичная занятость"));
+    }
+
+    @Test
+    @DisplayName("Test merge - " +
+            "merged partial cubes sharing dictionaries give the same rows as single cube of all vacancies")
+    void testMerge() {
+        //Given
+        Random random = new Random(42);
+        VacancyAnalyticsCube all = new VacancyAnalyticsCube(CubeOptions.NONE.withDimensional());
+        VacancyAnalyticsCube first = new VacancyAnalyticsCube(CubeOptions.NONE.withDimensional());
+        VacancyAnalyticsCube second = first.emptyCopy();
+        for (int i = 0; i < 1_000; i++) {
+            Set<String> queries = Set.of("Query " + random.nextInt(10));
+            AreaEntity area = area(String.valueOf(random.nextInt(30)), null);
+            ExperienceEntity experience = experience("experience" + random.nextInt(4), null);
+            EmploymentEntity employment = employment("employment" + random.nextInt(5), null);
+            long salary = 30_000 + random.nextInt(300_000);
+            all.add(null, queries, area, experience, employment, null, null, null, salary, salary);
+            //When
+            (i % 2 == 0 ? first : second).add(null, queries, area, experience, employment, null, null, null,
+                    salary, salary);
+        }
+        first.merge(second);
+        //Then
+        assertThat(first.rollUp(DATE)).containsExactlyInAnyOrderElementsOf(all.rollUp(DATE));
+        assertThat(first.getPerQueryAccumulators()).isEqualTo(all.getPerQueryAccumulators());
+    }
+
+    @Test
+    @DisplayName("Test getPerQueryAccumulators - " +
+            "accumulators built from dictionary-encoded arrays equal accumulators folded into map by query")
+    void testPerQueryAccumulators() {
+        //Given
+        Random random = new Random(42);
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE.withCurrencyBreakdown());
+        Map<String, VacancyAnalyticsAccumulator> expected = new HashMap<>();
+        for (int i = 0; i < 1_000; i++) {
+            Set<String> queries = Set.of("Query " + random.nextInt(200), "Query " + (200 + random.nextInt(10)));
+            long salary = 30_000 + random.nextInt(300_000);
+            queries.forEach(query -> expected.computeIfAbsent(query, key -> new VacancyAnalyticsAccumulator())
+                    .add(salary));
+            //When
+            cube.add(null, queries, null, null, null, null, null, Currency.RUR, salary, salary);
+        }
+        //Then
+        assertThat(cube.getPerQueryAccumulators()).isEqualTo(expected);
+        assertThat(cube.getVacancyCount()).isEqualTo(1_000);
+        assertThat(cube.currencyRows(DATE, Currency.RUR)).hasSize(expected.size());
+    }
+
+    @Test
+    @DisplayName("Test cube without dimensions - " +
+            "only per-query accumulators are collected")
+    void testNotDimensional() {
+        //Given
+        VacancyAnalyticsCube cube = new VacancyAnalyticsCube(CubeOptions.NONE);
+        //When
+        cube.add(null, Set.of("Java"), area("1", "Москва"), null, null, null, null, null, 100_000, 100_000);
+        //Then
+        assertThat(cube.rollUp(DATE)).isEmpty();
+        assertThat(cube.getDimensionNames()).isEmpty();
+        assertThat(cube.getPerQueryAccumulators().get("Java").getSalarySum()).isEqualTo(100_000);
+    }
+
+    @Test
+    @DisplayName("Test cube with distinct counts - " +
+            "merged partial cubes pass sketches of distinct vacancy and employer ids to accumulators")
+    void testDistinctCounts() {
+        //Given
+        VacancyAnalyticsCube first = new VacancyAnalyticsCube(CubeOptions.NONE.withDistinctCounts());
+        VacancyAnalyticsCube second = first.emptyCopy();
+        //When
+        for (int i = 0; i < 2_000; i++) {
+            EmployerEntity employer = new EmployerEntity();
+            employer.setId(String.valueOf(i % 40));
+            (i % 2 == 0 ? first : second).add(String.valueOf(i), Set.of("Java", "Backend"), null, null, null,
+                    employer, null, Currency.RUR, 100_000, 100_000);
+        }
+        first.merge(second);
+        //Then
+        VacancyAnalyticsAccumulator java = first.getPerQueryAccumulators().get("Java");
+        assertThat(java.getVacancyIds().estimate()).isCloseTo(2_000L, within(100L));
+        assertThat(java.getEmployerIds().estimate()).isCloseTo(40L, within(2L));
+        assertThat(new VacancyAnalyticsCube(CubeOptions.NONE).getPerQueryAccumulators()).isEmpty();
+    }
+
+    private static AreaEntity area(String id, String name) {
+        AreaEntity area = new AreaEntity();
+        area.setId(id);
+        area.setName(name);
+        return area;
+    }
+
+    private static ExperienceEntity experience(String id, String name) {
+        ExperienceEntity experience = new ExperienceEntity();
+        experience.setId(id);
+        experience.setName(name);
+        return experience;
+    }
+
+    private static EmploymentEntity employment(String id, String name) {
+        EmploymentEntity employment = new EmploymentEntity();
+        employment.setId(id);
+        employment.setName(name);
+        return employment;
+    }
+}
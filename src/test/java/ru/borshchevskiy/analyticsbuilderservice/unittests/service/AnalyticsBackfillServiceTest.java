@@ -0,0 +1,180 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillResultDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBackfillService;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsTrendService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsUpdatedEvent;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsBackfillServiceTest {
+    @Mock
+    private VacancyService vacancyService;
+    @Mock
+    private VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private AnalyticsTrendService analyticsTrendService;
+    @Spy
+    private AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    @Spy
+    private VacancyAnalyticsAggregator vacancyAnalyticsAggregator =
+            new VacancyAnalyticsAggregator(properties, ForkJoinPool.commonPool());
+    @Spy
+    private VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    @Captor
+    private ArgumentCaptor<Collection<VacancyAnalytics>> rowsCaptor;
+    @InjectMocks
+    private AnalyticsBackfillService analyticsBackfillService;
+
+    @Test
+    @DisplayName("Test backfill - " +
+            "every day of range gets analytics of vacancies created on or before it and not deleted yet, " +
+            "vacancies without createdAt are present on every day")
+    void testBackfill() {
+        //Given
+        LocalDate from = LocalDate.of(2024, 5, 1);
+        LocalDate to = LocalDate.of(2024, 5, 4);
+        // Sorted by createdAt, as returned by database
+        List<VacancySalaryProjection> vacancies = List.of(
+                vacancy(null, Set.of("Go"), 50_000, null),
+                vacancy("2024-04-20T10:00:00+0300", Set.of("Java"), 100_000, deleteAt(2024, 5, 3)),
+                vacancy("2024-05-02T10:00:00+0300", Set.of("Java", "Kotlin"), 200_000, null),
+                vacancy("2024-05-03T10:00:00+0300", Set.of("Kotlin"), 300_000, deleteAt(2024, 5, 4)),
+                // Returned by database, since createdAt may be on the last day of range in another offset
+                vacancy("2024-05-06T10:00:00+0300", Set.of("Kotlin"), 400_000, null));
+        properties.setWriteBatchSize(3);
+        when(vacancyService.streamActiveBetweenWithSalaryCurrency(Currency.RUR, from, to))
+                .thenReturn(vacancies.stream());
+        //When
+        AnalyticsBackfillResultDto result = analyticsBackfillService.backfill(from, to);
+        //Then
+        verify(vacancyAnalyticsBulkRepository, times(3)).upsertAll(rowsCaptor.capture(), eq(3));
+        assertThat(rowsCaptor.getAllValues().stream().flatMap(Collection::stream).toList())
+                .extracting(VacancyAnalytics::getCreatedAt, VacancyAnalytics::getQuery,
+                        VacancyAnalytics::getVacancyCount, VacancyAnalytics::getAverageSalary)
+                .containsExactlyInAnyOrder(
+                        tuple(from, "Go", 1, 50_000d),
+                        tuple(from.plusDays(1), "Go", 1, 50_000d),
+                        tuple(from.plusDays(2), "Go", 1, 50_000d),
+                        tuple(to, "Go", 1, 50_000d),
+                        tuple(from, "Java", 1, 100_000d),
+                        tuple(from.plusDays(1), "Java", 2, 150_000d),
+                        tuple(from.plusDays(1), "Kotlin", 1, 200_000d),
+                        tuple(from.plusDays(2), "Java", 1, 200_000d),
+                        tuple(from.plusDays(2), "Kotlin", 2, 250_000d),
+                        tuple(to, "Java", 1, 200_000d),
+                        tuple(to, "Kotlin", 1, 200_000d));
+        assertThat(result.getVacanciesScanned()).isEqualTo(4);
+        assertThat(result.getRowsWritten()).isEqualTo(11);
+        verify(eventPublisher, times(1)).publishEvent(new VacancyAnalyticsUpdatedEvent(from, to));
+    }
+
+    @Test
+    @DisplayName("Test backfill with vacancy without salary bounds - vacancy is skipped")
+    void testBackfillSkipsVacancyWithoutSalaryBounds() {
+        //Given
+        LocalDate day = LocalDate.of(2024, 5, 1);
+        VacancySalaryProjection withoutBounds = vacancy("2024-04-20T10:00:00+0300", Set.of("Java"), 0, null);
+        withoutBounds.getSalaryEntity().setFrom(null);
+        List<VacancySalaryProjection> vacancies = List.of(
+                withoutBounds,
+                vacancy("2024-04-21T10:00:00+0300", Set.of("Java"), 100_000, null));
+        when(vacancyService.streamActiveBetweenWithSalaryCurrency(Currency.RUR, day, day))
+                .thenReturn(vacancies.stream());
+        //When
+        AnalyticsBackfillResultDto result = analyticsBackfillService.backfill(day, day);
+        //Then
+        verify(vacancyAnalyticsBulkRepository).upsertAll(rowsCaptor.capture(), anyInt());
+        assertThat(rowsCaptor.getValue())
+                .extracting(VacancyAnalytics::getQuery, VacancyAnalytics::getVacancyCount,
+                        VacancyAnalytics::getAverageSalary)
+                .containsExactly(tuple("Java", 1, 100_000d));
+        assertThat(result.getVacanciesScanned()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Test backfill with query without vacancies on some day - " +
+            "analytics data of that day of such query is deleted")
+    void testBackfillDeletesStaleRows() {
+        //Given
+        LocalDate from = LocalDate.of(2024, 5, 1);
+        LocalDate to = LocalDate.of(2024, 5, 2);
+        List<VacancySalaryProjection> vacancies = List.of(
+                vacancy("2024-04-20T10:00:00+0300", Set.of("Java"), 100_000, null),
+                vacancy("2024-04-21T10:00:00+0300", Set.of("Kotlin"), 200_000, deleteAt(2024, 5, 2)));
+        when(vacancyService.streamActiveBetweenWithSalaryCurrency(Currency.RUR, from, to))
+                .thenReturn(vacancies.stream());
+        //When
+        analyticsBackfillService.backfill(from, to);
+        //Then
+        verify(vacancyAnalyticsBulkRepository).deleteAllExcept(eq(from), eq(Set.of("Java", "Kotlin")), anyInt());
+        verify(vacancyAnalyticsBulkRepository).deleteAllExcept(eq(to), eq(Set.of("Java")), anyInt());
+        verify(vacancyAnalyticsBulkRepository, times(2)).deleteAllExcept(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Test backfill with invalid range - exception is thrown and vacancies are not read")
+    void testBackfillWithInvalidRange() {
+        //When
+        assertThatThrownBy(() -> analyticsBackfillService.backfill(LocalDate.of(2024, 5, 2),
+                LocalDate.of(2024, 5, 1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> analyticsBackfillService.backfill(LocalDate.now(),
+                LocalDate.now().plusDays(1))).isInstanceOf(IllegalArgumentException.class);
+        //Then
+        verifyNoInteractions(vacancyService, vacancyAnalyticsBulkRepository, eventPublisher);
+    }
+
+    private static Date deleteAt(int year, int month, int day) {
+        return Date.from(LocalDateTime.of(year, month, day, 12, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static VacancySalaryProjection vacancy(String createdAt, Set<String> queries, int salaryFrom,
+                                                   Date deleteAt) {
+        SalaryEntity salary = new SalaryEntity();
+        salary.setCurrency(Currency.RUR.name());
+        salary.setFrom(salaryFrom);
+        VacancySalaryProjection vacancy = new VacancySalaryProjection();
+        vacancy.setCreatedAt(createdAt);
+        vacancy.setQuery(queries);
+        vacancy.setSalaryEntity(salary);
+        vacancy.setDeleteAt(deleteAt);
+        return vacancy;
+    }
+}
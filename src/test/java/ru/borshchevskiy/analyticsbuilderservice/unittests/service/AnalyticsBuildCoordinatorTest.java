@@ -0,0 +1,253 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillJobDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBackfillResultDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStateDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStatus;
+import ru.borshchevskiy.analyticsbuilderservice.repository.BuildLeaseRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBackfillService;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildCoordinator;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsBuildCoordinatorTest {
+    @Mock
+    private VacancyAnalyticsService vacancyAnalyticsService;
+    @Mock
+    private AnalyticsBackfillService analyticsBackfillService;
+    @Mock
+    private BuildLeaseRepository buildLeaseRepository;
+    @Mock
+    private TaskScheduler taskScheduler;
+    @Mock
+    private ScheduledFuture<Object> heartbeat;
+
+    private final AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    private final List<Runnable> submittedBuilds = new ArrayList<>();
+    private AnalyticsBuildCoordinator analyticsBuildCoordinator;
+
+    @BeforeEach
+    void setUp() {
+        // Build executor stand-in, builds are run by test one by one
+        analyticsBuildCoordinator = new AnalyticsBuildCoordinator(vacancyAnalyticsService,
+                analyticsBackfillService, buildLeaseRepository, properties, submittedBuilds::add, taskScheduler);
+        lenient().when(buildLeaseRepository.findByBuildKey(anyString())).thenReturn(Optional.empty());
+        lenient().doReturn(heartbeat).when(taskScheduler).scheduleAtFixedRate(any(), any(Instant.class), any());
+    }
+
+    @Test
+    @DisplayName("Test trigger - " +
+            "triggers received while build is running are merged into single pending build")
+    void testTriggerCoalescesDuplicates() {
+        //Given
+        when(buildLeaseRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(true);
+        //When
+        boolean started = analyticsBuildCoordinator.trigger();
+        boolean madePending = analyticsBuildCoordinator.trigger();
+        boolean merged = analyticsBuildCoordinator.trigger();
+        analyticsBuildCoordinator.trigger();
+        AnalyticsBuildStateDto stateBeforeBuild = analyticsBuildCoordinator.getState();
+        submittedBuilds.get(0).run();
+        //Then
+        assertThat(started).isTrue();
+        assertThat(madePending).isTrue();
+        assertThat(merged).isFalse();
+        assertThat(submittedBuilds).hasSize(1);
+        assertThat(stateBeforeBuild.isRunning()).isTrue();
+        assertThat(stateBeforeBuild.isPending()).isTrue();
+        verify(vacancyAnalyticsService, times(2)).buildAnalytics(LocalDate.now());
+        AnalyticsBuildStateDto state = analyticsBuildCoordinator.getState();
+        assertThat(state.isRunning()).isFalse();
+        assertThat(state.isPending()).isFalse();
+        assertThat(state.getTriggersReceived()).isEqualTo(4);
+        assertThat(state.getTriggersCoalesced()).isEqualTo(2);
+        assertThat(state.getBuildsStarted()).isEqualTo(2);
+        assertThat(state.getLastStatus()).isEqualTo(AnalyticsBuildStatus.SUCCEEDED);
+        verify(buildLeaseRepository, times(2)).release(anyString(), eq(analyticsBuildCoordinator.getInstanceId()),
+                any(), eq(AnalyticsBuildStatus.SUCCEEDED));
+    }
+
+    @Test
+    @DisplayName("Test trigger with lease held by another instance - build is skipped")
+    void testTriggerSkipsWhenLeaseHeld() {
+        //Given
+        when(buildLeaseRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(false);
+        //When
+        analyticsBuildCoordinator.trigger();
+        submittedBuilds.get(0).run();
+        //Then
+        verifyNoInteractions(vacancyAnalyticsService);
+        verify(buildLeaseRepository, never()).release(anyString(), anyString(), any(), any());
+        AnalyticsBuildStateDto state = analyticsBuildCoordinator.getState();
+        assertThat(state.getLastStatus()).isEqualTo(AnalyticsBuildStatus.SKIPPED);
+        assertThat(state.getBuildsStarted()).isZero();
+        assertThat(state.isRunning()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Test trigger with failing build - " +
+            "lease is released with failed status and next trigger starts new build")
+    void testTriggerAfterFailedBuild() {
+        //Given
+        when(buildLeaseRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(true);
+        doThrow(new IllegalStateException("Mongo is unavailable")).doNothing()
+                .when(vacancyAnalyticsService).buildAnalytics(any());
+        //When
+        analyticsBuildCoordinator.trigger();
+        submittedBuilds.get(0).run();
+        AnalyticsBuildStateDto failedState = analyticsBuildCoordinator.getState();
+        analyticsBuildCoordinator.trigger();
+        submittedBuilds.get(1).run();
+        //Then
+        assertThat(failedState.getLastStatus()).isEqualTo(AnalyticsBuildStatus.FAILED);
+        assertThat(failedState.getLastError()).isEqualTo("Mongo is unavailable");
+        verify(buildLeaseRepository).release(anyString(), anyString(), any(), eq(AnalyticsBuildStatus.FAILED));
+        assertThat(analyticsBuildCoordinator.getState().getLastStatus()).isEqualTo(AnalyticsBuildStatus.SUCCEEDED);
+    }
+
+    @Test
+    @DisplayName("Test trigger with failing lease database - " +
+            "build is recorded as failed and next trigger starts new build")
+    void testTriggerAfterLeaseFailure() {
+        //Given
+        when(buildLeaseRepository.tryAcquire(anyString(), anyString(), any(), any()))
+                .thenThrow(new IllegalStateException("MySQL is unavailable"))
+                .thenReturn(true);
+        //When
+        analyticsBuildCoordinator.trigger();
+        submittedBuilds.get(0).run();
+        AnalyticsBuildStateDto failedState = analyticsBuildCoordinator.getState();
+        analyticsBuildCoordinator.trigger();
+        submittedBuilds.get(1).run();
+        //Then
+        assertThat(failedState.getLastStatus()).isEqualTo(AnalyticsBuildStatus.FAILED);
+        assertThat(failedState.getLastError()).isEqualTo("MySQL is unavailable");
+        assertThat(failedState.isRunning()).isFalse();
+        verify(vacancyAnalyticsService, times(1)).buildAnalytics(LocalDate.now());
+        verify(buildLeaseRepository, never()).release(anyString(), anyString(), any(),
+                eq(AnalyticsBuildStatus.FAILED));
+        assertThat(analyticsBuildCoordinator.getState().getLastStatus()).isEqualTo(AnalyticsBuildStatus.SUCCEEDED);
+    }
+
+    @Test
+    @DisplayName("Test trigger - " +
+            "lease is extended by heartbeat while build runs and heartbeat is cancelled once lease is released")
+    void testTriggerExtendsLease() {
+        //Given
+        properties.setBuildLeaseTtlMs(300_000);
+        properties.setBuildLeaseHeartbeatMs(60_000);
+        when(buildLeaseRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(true);
+        when(buildLeaseRepository.renew(anyString(), anyString(), any())).thenReturn(true);
+        AtomicReference<Runnable> heartbeatTask = new AtomicReference<>();
+        doAnswer(invocation -> {
+            heartbeatTask.set(invocation.getArgument(0));
+            return heartbeat;
+        }).when(taskScheduler).scheduleAtFixedRate(any(), any(Instant.class), eq(Duration.ofMillis(60_000)));
+        doAnswer(invocation -> {
+            // Heartbeat fires while build runs
+            heartbeatTask.get().run();
+            return null;
+        }).when(vacancyAnalyticsService).buildAnalytics(any());
+        //When
+        analyticsBuildCoordinator.trigger();
+        Instant startedAt = Instant.now();
+        submittedBuilds.get(0).run();
+        //Then
+        String buildKey = "analytics-" + LocalDate.now();
+        ArgumentCaptor<Instant> expiresAt = ArgumentCaptor.forClass(Instant.class);
+        verify(buildLeaseRepository).renew(eq(buildKey), eq(analyticsBuildCoordinator.getInstanceId()),
+                expiresAt.capture());
+        assertThat(expiresAt.getValue()).isAfterOrEqualTo(startedAt.plusMillis(300_000));
+        InOrder inOrder = inOrder(heartbeat, buildLeaseRepository);
+        inOrder.verify(heartbeat).cancel(false);
+        inOrder.verify(buildLeaseRepository).release(eq(buildKey), anyString(), any(),
+                eq(AnalyticsBuildStatus.SUCCEEDED));
+    }
+
+    @Test
+    @DisplayName("Test submitBackfill - " +
+            "backfill is run on build executor under backfill lease and its result is kept by job id")
+    void testSubmitBackfill() {
+        //Given
+        LocalDate from = LocalDate.of(2024, 5, 1);
+        LocalDate to = LocalDate.of(2024, 5, 4);
+        AnalyticsBackfillResultDto result = new AnalyticsBackfillResultDto(from, to, 3, 7, 10);
+        when(buildLeaseRepository.tryAcquire(eq(AnalyticsBuildCoordinator.BACKFILL_BUILD_KEY), anyString(),
+                any(), any())).thenReturn(true);
+        when(analyticsBackfillService.backfill(from, to)).thenReturn(result);
+        //When
+        AnalyticsBackfillJobDto submitted = analyticsBuildCoordinator.submitBackfill(from, to);
+        submittedBuilds.get(0).run();
+        //Then
+        assertThat(submitted.getStatus()).isEqualTo(AnalyticsBuildStatus.PENDING);
+        AnalyticsBackfillJobDto finished = analyticsBuildCoordinator.getBackfillJob(submitted.getJobId())
+                .orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo(AnalyticsBuildStatus.SUCCEEDED);
+        assertThat(finished.getResult()).isEqualTo(result);
+        assertThat(finished.getFinishedAt()).isNotNull();
+        verify(buildLeaseRepository).release(eq(AnalyticsBuildCoordinator.BACKFILL_BUILD_KEY),
+                eq(analyticsBuildCoordinator.getInstanceId()), any(), eq(AnalyticsBuildStatus.SUCCEEDED));
+        assertThat(analyticsBuildCoordinator.getBackfillJob("unknown")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Test submitBackfill with failing lease database - backfill is recorded as failed")
+    void testSubmitBackfillAfterLeaseFailure() {
+        //Given
+        LocalDate from = LocalDate.of(2024, 5, 1);
+        LocalDate to = LocalDate.of(2024, 5, 4);
+        when(buildLeaseRepository.tryAcquire(anyString(), anyString(), any(), any()))
+                .thenThrow(new IllegalStateException("MySQL is unavailable"));
+        //When
+        AnalyticsBackfillJobDto submitted = analyticsBuildCoordinator.submitBackfill(from, to);
+        submittedBuilds.get(0).run();
+        //Then
+        AnalyticsBackfillJobDto finished = analyticsBuildCoordinator.getBackfillJob(submitted.getJobId())
+                .orElseThrow();
+        assertThat(finished.getStatus()).isEqualTo(AnalyticsBuildStatus.FAILED);
+        assertThat(finished.getError()).isEqualTo("MySQL is unavailable");
+        assertThat(finished.getFinishedAt()).isNotNull();
+        verify(analyticsBackfillService, never()).backfill(any(), any());
+    }
+
+    @Test
+    @DisplayName("Test submitBackfill with invalid range - exception is thrown and nothing is submitted")
+    void testSubmitBackfillWithInvalidRange() {
+        //Given
+        LocalDate from = LocalDate.of(2024, 5, 2);
+        LocalDate to = LocalDate.of(2024, 5, 1);
+        doThrow(new IllegalArgumentException("Invalid backfill range"))
+                .when(analyticsBackfillService).checkRange(from, to);
+        //When
+        assertThatThrownBy(() -> analyticsBuildCoordinator.submitBackfill(from, to))
+                .isInstanceOf(IllegalArgumentException.class);
+        //Then
+        assertThat(submittedBuilds).isEmpty();
+    }
+}
@@ -0,0 +1,144 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsPipeline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsPipelineTest {
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private TransactionStatus transactionStatus;
+    @Mock
+    private VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+
+    private final AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private AnalyticsPipeline analyticsPipeline;
+
+    @BeforeEach
+    void setUp() {
+        properties.setStreamBatchSize(10);
+        properties.setWriteBatchSize(10);
+        properties.setPipelineBufferBatches(2);
+        analyticsPipeline = new AnalyticsPipeline(properties, executor, transactionManager,
+                vacancyAnalyticsBulkRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Test readAhead - " +
+            "elements are returned in source order and source is closed once it is drained")
+    void testReadAhead() {
+        //Given
+        AtomicBoolean sourceClosed = new AtomicBoolean();
+        Stream<Integer> source = IntStream.range(0, 1_005).boxed().onClose(() -> sourceClosed.set(true));
+        //When
+        List<Integer> read;
+        try (Stream<Integer> stream = analyticsPipeline.readAhead(source)) {
+            read = stream.toList();
+        }
+        //Then
+        assertThat(read).containsExactlyElementsOf(IntStream.range(0, 1_005).boxed().toList());
+        assertThat(sourceClosed).isTrue();
+    }
+
+    @Test
+    @DisplayName("Test readAhead with failing source - failure is rethrown to consumer")
+    void testReadAheadWithFailingSource() {
+        //Given
+        Stream<Integer> source = IntStream.range(0, 100).boxed().peek(element -> {
+            if (element == 42) {
+                throw new IllegalStateException("Cursor closed");
+            }
+        });
+        //When
+        try (Stream<Integer> stream = analyticsPipeline.readAhead(source)) {
+            //Then
+            assertThatThrownBy(stream::toList).hasRootCauseMessage("Cursor closed");
+        }
+    }
+
+    @Test
+    @DisplayName("Test upsertAll with slow database - " +
+            "all rows are written in one transaction and producer is held back by bounded buffer")
+    void testUpsertAllWithBackpressure() {
+        //Given
+        AtomicInteger produced = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<String> writtenQueries = new ArrayList<>();
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(vacancyAnalyticsBulkRepository.upsertAll(any(), anyInt())).thenAnswer(invocation -> {
+            Collection<VacancyAnalytics> batch = invocation.getArgument(0);
+            maxInFlight.accumulateAndGet(produced.get() - written.get(), Math::max);
+            Thread.sleep(5);
+            batch.forEach(row -> writtenQueries.add(row.getQuery()));
+            written.addAndGet(batch.size());
+            return 1;
+        });
+        Stream<VacancyAnalytics> analytics = IntStream.range(0, 205).mapToObj(i -> {
+            produced.incrementAndGet();
+            VacancyAnalytics row = new VacancyAnalytics();
+            row.setQuery("Query " + i);
+            return row;
+        });
+        //When
+        int batches = analyticsPipeline.upsertAll(analytics);
+        //Then
+        assertThat(batches).isEqualTo(21);
+        assertThat(writtenQueries).hasSize(205).startsWith("Query 0", "Query 1").endsWith("Query 204");
+        // Batches in buffer, batch being written and batch being filled by producer
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo((2 + 2) * 10);
+        verify(transactionManager, times(1)).commit(transactionStatus);
+    }
+
+    @Test
+    @DisplayName("Test upsertAll with failing database - failure is rethrown and transaction is rolled back")
+    void testUpsertAllWithFailingWriter() {
+        //Given
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(vacancyAnalyticsBulkRepository.upsertAll(any(), anyInt()))
+                .thenReturn(1)
+                .thenThrow(new IllegalStateException("Deadlock found"));
+        Stream<VacancyAnalytics> analytics = Stream.generate(VacancyAnalytics::new).limit(1_000);
+        //When
+        assertThatThrownBy(() -> analyticsPipeline.upsertAll(analytics))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Deadlock found");
+        //Then
+        verify(transactionManager, times(1)).rollback(transactionStatus);
+        verify(transactionManager, never()).commit(any());
+    }
+}
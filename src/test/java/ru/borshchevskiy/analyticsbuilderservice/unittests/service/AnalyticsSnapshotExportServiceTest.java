@@ -0,0 +1,154 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.AnalyticsSnapshotRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsReadRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsSnapshotExportService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsUpdatedEvent;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsSnapshotExportServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 1);
+
+    @Mock
+    private VacancyAnalyticsReadRepository vacancyAnalyticsReadRepository;
+    @TempDir
+    private Path directory;
+
+    private final AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    private AnalyticsSnapshotRepository analyticsSnapshotRepository;
+    private AnalyticsSnapshotExportService analyticsSnapshotExportService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setSnapshotExportEnabled(true);
+        properties.setSnapshotExportDirectory(directory.toString());
+        analyticsSnapshotRepository = new AnalyticsSnapshotRepository(properties);
+        analyticsSnapshotExportService = new AnalyticsSnapshotExportService(properties,
+                vacancyAnalyticsReadRepository, analyticsSnapshotRepository);
+    }
+
+    @Test
+    @DisplayName("Test onAnalyticsUpdated - " +
+            "snapshot of every date of range is written to date partition and read back unchanged")
+    void testOnAnalyticsUpdated() throws Exception {
+        //Given
+        List<VacancyAnalytics> firstDay = List.of(
+                analytics(DATE, "Java", 10, 150_000d, 100_000d),
+                analytics(DATE, "Программист 1С", 3, null, null));
+        List<VacancyAnalytics> secondDay = List.of(analytics(DATE.plusDays(1), "Java", 12, 160_000d, 110_000d));
+        when(vacancyAnalyticsReadRepository.findAllByDate(DATE)).thenReturn(firstDay);
+        when(vacancyAnalyticsReadRepository.findAllByDate(DATE.plusDays(1))).thenReturn(secondDay);
+        //When
+        analyticsSnapshotExportService.onAnalyticsUpdated(new VacancyAnalyticsUpdatedEvent(DATE, DATE.plusDays(1)));
+        //Then
+        assertThat(directory.resolve("date=2024-05-01").resolve("vacancy_analytics.arrow")).isRegularFile();
+        assertThat(read(DATE)).isEqualTo(firstDay);
+        assertThat(read(DATE.plusDays(1))).isEqualTo(secondDay);
+        assertThat(file(DATE.plusDays(2))).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Test export - existing snapshot of the same date is replaced and no temporary files are left")
+    void testExportReplacesSnapshot() throws Exception {
+        //Given
+        when(vacancyAnalyticsReadRepository.findAllByDate(DATE))
+                .thenReturn(List.of(analytics(DATE, "Java", 10, 150_000d, 100_000d)))
+                .thenReturn(List.of());
+        //When
+        analyticsSnapshotExportService.export(DATE);
+        Path file = analyticsSnapshotExportService.export(DATE);
+        //Then
+        assertThat(read(DATE)).isEmpty();
+        try (var files = Files.list(file.getParent())) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Test onAnalyticsUpdated with export disabled - analytics data is not read")
+    void testOnAnalyticsUpdatedDisabled() {
+        //Given
+        properties.setSnapshotExportEnabled(false);
+        //When
+        analyticsSnapshotExportService.onAnalyticsUpdated(new VacancyAnalyticsUpdatedEvent(DATE, DATE));
+        //Then
+        verifyNoInteractions(vacancyAnalyticsReadRepository);
+        assertThat(file(DATE)).doesNotExist();
+    }
+
+    private Path file(LocalDate date) {
+        return directory.resolve("date=" + date).resolve(AnalyticsSnapshotRepository.FILE_NAME);
+    }
+
+    /**
+     * Method reads snapshot with Arrow file reader.
+     */
+    private List<VacancyAnalytics> read(LocalDate date) throws IOException {
+        List<VacancyAnalytics> analytics = new ArrayList<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             FileChannel channel = FileChannel.open(file(date), StandardOpenOption.READ);
+             ArrowFileReader reader = new ArrowFileReader(channel, allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertThat(root.getSchema()).isEqualTo(AnalyticsSnapshotRepository.SCHEMA);
+            while (reader.loadNextBatch()) {
+                for (int row = 0; row < root.getRowCount(); row++) {
+                    VacancyAnalytics vacancyAnalytics = new VacancyAnalytics();
+                    vacancyAnalytics.setCreatedAt(date);
+                    vacancyAnalytics.setQuery(root.getVector(AnalyticsSnapshotRepository.QUERY).getObject(row)
+                            .toString());
+                    vacancyAnalytics.setVacancyCount(
+                            (Integer) root.getVector(AnalyticsSnapshotRepository.VACANCY_COUNT).getObject(row));
+                    List<Double> salaries = new ArrayList<>();
+                    for (String column : AnalyticsSnapshotRepository.SALARY_COLUMNS) {
+                        salaries.add((Double) root.getVector(column).getObject(row));
+                    }
+                    vacancyAnalytics.setAverageSalary(salaries.get(0));
+                    vacancyAnalytics.setSalaryP25(salaries.get(1));
+                    vacancyAnalytics.setSalaryP50(salaries.get(2));
+                    vacancyAnalytics.setSalaryP75(salaries.get(3));
+                    vacancyAnalytics.setSalaryP90(salaries.get(4));
+                    analytics.add(vacancyAnalytics);
+                }
+            }
+        }
+        return analytics;
+    }
+
+    private static VacancyAnalytics analytics(LocalDate date, String query, int vacancyCount,
+                                              Double averageSalary, Double salaryP25) {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setCreatedAt(date);
+        analytics.setQuery(query);
+        analytics.setVacancyCount(vacancyCount);
+        analytics.setAverageSalary(averageSalary);
+        analytics.setSalaryP25(salaryP25);
+        analytics.setSalaryP50(averageSalary);
+        return analytics;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.RollingWindow;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsTrendRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsTrendService;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsTrendServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 1);
+
+    @Mock
+    private VacancyAnalyticsTrendRepository vacancyAnalyticsTrendRepository;
+    @InjectMocks
+    private AnalyticsTrendService analyticsTrendService;
+
+    private final VacancyAnalyticsMapper vacancyAnalyticsMapper = new VacancyAnalyticsMapper();
+
+    @Test
+    @DisplayName("Test applyTrends - " +
+            "windows of the previous day are slid by the new day and days leaving them, deltas are set")
+    void testApplyTrendsSlidesPreviousWindows() {
+        //Given
+        VacancyAnalytics previousDay = row(DATE.minusDays(1), 5, 500_000);
+        previousDay.setVacancyCount7d(10L);
+        previousDay.setSalarySum7d(1_000_000L);
+        previousDay.setDays7d(5);
+        previousDay.setVacancyCount30d(40L);
+        previousDay.setSalarySum30d(4_000_000L);
+        previousDay.setDays30d(20);
+        when(vacancyAnalyticsTrendRepository.findAllByDates(
+                List.of(DATE.minusDays(1), DATE.minusDays(7), DATE.minusDays(30)))).thenReturn(List.of(
+                previousDay, row(DATE.minusDays(7), 3, 300_000), row(DATE.minusDays(30), 2, 180_000)));
+        VacancyAnalyticsDto analytics = dto(4, 600_000);
+        //When
+        analyticsTrendService.applyTrends(DATE, Map.of("Java", analytics));
+        //Then
+        assertThat(analytics.getWindow7d()).isEqualTo(new RollingWindow(11, 1_300_000, 5));
+        assertThat(analytics.getWindow30d()).isEqualTo(new RollingWindow(42, 4_420_000, 20));
+        assertThat(analytics.getVacancyCountDelta7d()).isEqualTo(1);
+        assertThat(analytics.getAverageSalaryDelta7d()).isEqualTo(50_000d);
+        verify(vacancyAnalyticsTrendRepository, never()).sumWindows(any());
+    }
+
+    @Test
+    @DisplayName("Test applyTrends over 90 days with gaps - " +
+            "slid windows are equal to windows summed from scratch, which are summed only when chain is broken")
+    void testApplyTrendsDoesNotDrift() {
+        //Given
+        Map<LocalDate, Map<String, VacancyAnalytics>> table = new TreeMap<>();
+        when(vacancyAnalyticsTrendRepository.findAllByDates(anyList())).thenAnswer(invocation -> {
+            List<LocalDate> dates = invocation.getArgument(0);
+            return dates.stream()
+                    .flatMap(date -> table.getOrDefault(date, Map.of()).values().stream())
+                    .toList();
+        });
+        when(vacancyAnalyticsTrendRepository.sumWindows(any()))
+                .thenAnswer(invocation -> sumWindows(table, invocation.getArgument(0)));
+        Random random = new Random(42);
+        //When
+        for (int day = 0; day < 90; day++) {
+            LocalDate date = DATE.plusDays(day);
+            Map<String, VacancyAnalyticsDto> analytics = new HashMap<>();
+            analytics.put("Java", dto(100 + random.nextInt(50), 20_000_000L + random.nextInt(10_000_000)));
+            analytics.put("Python", dto(random.nextInt(3), random.nextInt(3) * 150_000L));
+            if (day % 20 != 10) {
+                analytics.put("Kotlin", dto(10 + random.nextInt(10), 2_000_000L + random.nextInt(1_000_000)));
+            }
+            analyticsTrendService.applyTrends(date, analytics);
+            analytics.forEach((query, dto) -> {
+                VacancyAnalytics row = vacancyAnalyticsMapper.mapToEntity(dto, query, date);
+                // Salary sum of day without vacancies is read as zero
+                row.setSalarySum(dto.getSalarySum() == null ? 0 : dto.getSalarySum());
+                table.computeIfAbsent(date, key -> new HashMap<>()).put(query, row);
+            });
+        }
+        //Then
+        for (var day : table.entrySet()) {
+            for (VacancyAnalytics row : day.getValue().values()) {
+                VacancyAnalytics summed = sumWindows(table, day.getKey()).stream()
+                        .filter(window -> window.getQuery().equals(row.getQuery()))
+                        .findFirst()
+                        .orElseThrow();
+                assertThat(row.getVacancyCount7d()).isEqualTo(summed.getVacancyCount7d());
+                assertThat(row.getSalarySum7d()).isEqualTo(summed.getSalarySum7d());
+                assertThat(row.getDays7d()).isEqualTo(summed.getDays7d());
+                assertThat(row.getVacancyCount30d()).isEqualTo(summed.getVacancyCount30d());
+                assertThat(row.getSalarySum30d()).isEqualTo(summed.getSalarySum30d());
+                assertThat(row.getDays30d()).isEqualTo(summed.getDays30d());
+            }
+        }
+        // The first day and each day after Kotlin is missing
+        verify(vacancyAnalyticsTrendRepository, times(5)).sumWindows(any());
+    }
+
+    private static List<VacancyAnalytics> sumWindows(Map<LocalDate, Map<String, VacancyAnalytics>> table,
+                                                     LocalDate to) {
+        Map<String, VacancyAnalytics> windows = new HashMap<>();
+        for (int day = 0; day < AnalyticsTrendService.MONTH_DAYS; day++) {
+            boolean inWeek = day < AnalyticsTrendService.WEEK_DAYS;
+            table.getOrDefault(to.minusDays(day), Map.of()).forEach((query, row) -> {
+                VacancyAnalytics window = windows.computeIfAbsent(query, key -> {
+                    VacancyAnalytics empty = new VacancyAnalytics();
+                    empty.setQuery(key);
+                    empty.setVacancyCount7d(0L);
+                    empty.setSalarySum7d(0L);
+                    empty.setDays7d(0);
+                    empty.setVacancyCount30d(0L);
+                    empty.setSalarySum30d(0L);
+                    empty.setDays30d(0);
+                    return empty;
+                });
+                if (inWeek) {
+                    window.setVacancyCount7d(window.getVacancyCount7d() + row.getVacancyCount());
+                    window.setSalarySum7d(window.getSalarySum7d() + row.getSalarySum());
+                    window.setDays7d(window.getDays7d() + 1);
+                }
+                window.setVacancyCount30d(window.getVacancyCount30d() + row.getVacancyCount());
+                window.setSalarySum30d(window.getSalarySum30d() + row.getSalarySum());
+                window.setDays30d(window.getDays30d() + 1);
+            });
+        }
+        return List.copyOf(windows.values());
+    }
+
+    private static VacancyAnalytics row(LocalDate date, int vacancyCount, long salarySum) {
+        VacancyAnalytics row = new VacancyAnalytics();
+        row.setCreatedAt(date);
+        row.setQuery("Java");
+        row.setVacancyCount(vacancyCount);
+        row.setSalarySum(salarySum);
+        row.setAverageSalary((double) salarySum / vacancyCount);
+        return row;
+    }
+
+    private static VacancyAnalyticsDto dto(int vacancyCount, long salarySum) {
+        VacancyAnalyticsDto dto = new VacancyAnalyticsDto(vacancyCount,
+                vacancyCount == 0 ? null : (double) salarySum / vacancyCount);
+        dto.setSalarySum(vacancyCount == 0 ? null : salarySum);
+        return dto;
+    }
+}
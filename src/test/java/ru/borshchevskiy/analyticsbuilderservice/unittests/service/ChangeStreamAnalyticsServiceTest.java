@@ -0,0 +1,333 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.RollingWindow;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.ChangeStreamStateRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.IncrementalAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsTrendService;
+import ru.borshchevskiy.analyticsbuilderservice.service.ChangeStreamAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsUpdatedEvent;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeStreamAnalyticsServiceTest {
+    @Mock
+    private MongoTemplate mongoTemplate;
+    @Mock
+    private VacancyService vacancyService;
+    @Mock
+    private IncrementalAnalyticsRepository incrementalAnalyticsRepository;
+    @Mock
+    private ChangeStreamStateRepository changeStreamStateRepository;
+    @Mock
+    private VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private AnalyticsTrendService analyticsTrendService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private MongoCollection<Document> vacancyCollection;
+    @Mock(answer = Answers.RETURNS_SELF)
+    private ChangeStreamIterable<Document> changeStream;
+    @Mock
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    @Spy
+    private VacancyAnalyticsMapper vacancyAnalyticsMapper;
+    @Spy
+    private AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    @Spy
+    private VacancyAnalyticsAggregator vacancyAnalyticsAggregator =
+            new VacancyAnalyticsAggregator(properties, ForkJoinPool.commonPool());
+    @Captor
+    private ArgumentCaptor<Collection<VacancyAnalytics>> analyticsCaptor;
+    @InjectMocks
+    private ChangeStreamAnalyticsService changeStreamAnalyticsService;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(mongoTemplate.getConverter())
+                .thenReturn(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext()));
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Test applyChange - " +
+            "inserted vacancies are added, pre-images of updated and deleted vacancies are subtracted")
+    void testApplyChange() {
+        //Given
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        Document javaKotlinVacancy = vacancy("2", List.of("Java", "Kotlin"), 200_000, "RUR", false);
+        Document archivedJavaKotlinVacancy = vacancy("2", List.of("Java", "Kotlin"), 200_000, "RUR", true);
+        Document usdVacancy = vacancy("3", List.of("Java"), 5_000, "USD", false);
+        //When
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t1", null, javaVacancy));
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t2", null, javaKotlinVacancy));
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t3", null, usdVacancy));
+        changeStreamAnalyticsService.applyChange(
+                change(OperationType.UPDATE, "t4", javaKotlinVacancy, archivedJavaKotlinVacancy));
+        //Then
+        assertThat(changeStreamAnalyticsService.currentAggregates())
+                .isEqualTo(Map.of("Java", accumulator(100_000)));
+        //When
+        changeStreamAnalyticsService.applyChange(change(OperationType.DELETE, "t5", javaVacancy, null));
+        //Then
+        assertThat(changeStreamAnalyticsService.currentAggregates()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Test flush - " +
+            "only changed queries are written together with resume token of the last applied change")
+    void testFlush() {
+        //Given
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        Document kotlinVacancy = vacancy("2", List.of("Kotlin"), 200_000, "RUR", false);
+        //When
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t1", null, javaVacancy));
+        changeStreamAnalyticsService.flush();
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t2", null, kotlinVacancy));
+        changeStreamAnalyticsService.flush();
+        changeStreamAnalyticsService.flush();
+        //Then
+        verify(incrementalAnalyticsRepository)
+                .replaceAggregates(eq(Map.of("Java", accumulator(100_000))), anyInt());
+        verify(incrementalAnalyticsRepository)
+                .replaceAggregates(eq(Map.of("Kotlin", accumulator(200_000))), anyInt());
+        verify(vacancyAnalyticsBulkRepository, times(2)).upsertAll(anyCollection(), anyInt());
+        verify(changeStreamStateRepository).saveResumeToken(token("t1"));
+        verify(changeStreamStateRepository).saveResumeToken(token("t2"));
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+    }
+
+    @Test
+    @DisplayName("Test flush with write failure - " +
+            "changed queries are kept and written on next flush")
+    void testFlushRetriesAfterFailure() {
+        //Given
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        //When
+        when(vacancyAnalyticsBulkRepository.upsertAll(anyCollection(), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(1);
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t1", null, javaVacancy));
+        changeStreamAnalyticsService.flush();
+        changeStreamAnalyticsService.flush();
+        //Then
+        verify(incrementalAnalyticsRepository, times(2))
+                .replaceAggregates(eq(Map.of("Java", accumulator(100_000))), anyInt());
+        verify(changeStreamStateRepository, times(1)).saveResumeToken(token("t1"));
+    }
+
+    @Test
+    @DisplayName("Test flush - " +
+            "event of today's analytics data is published only after changed queries are written")
+    void testFlushPublishesEvent() {
+        //Given
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        LocalDate today = LocalDate.now();
+        //When
+        when(vacancyAnalyticsBulkRepository.upsertAll(anyCollection(), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(1);
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t1", null, javaVacancy));
+        changeStreamAnalyticsService.flush();
+        //Then
+        verify(eventPublisher, never()).publishEvent(any());
+        //When
+        changeStreamAnalyticsService.flush();
+        changeStreamAnalyticsService.flush();
+        //Then
+        InOrder inOrder = inOrder(transactionTemplate, eventPublisher);
+        inOrder.verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        inOrder.verify(eventPublisher).publishEvent(new VacancyAnalyticsUpdatedEvent(today, today));
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("Test flush with trends enabled - " +
+            "rolling windows and deltas of today's rows are written instead of being overwritten with empty values")
+    void testFlushWithTrends() {
+        //Given
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        properties.setTrendsEnabled(true);
+        doAnswer(invocation -> {
+            VacancyAnalyticsDto analytics = invocation.<Map<String, VacancyAnalyticsDto>>getArgument(1).get("Java");
+            analytics.setWindow7d(new RollingWindow(7, 700_000, 7));
+            analytics.setWindow30d(new RollingWindow(30, 3_000_000, 30));
+            analytics.setVacancyCountDelta7d(0);
+            analytics.setAverageSalaryDelta7d(0.0);
+            return null;
+        }).when(analyticsTrendService).applyTrends(any(), any());
+        //When
+        changeStreamAnalyticsService.applyChange(change(OperationType.INSERT, "t1", null, javaVacancy));
+        changeStreamAnalyticsService.flush();
+        //Then
+        verify(analyticsTrendService).applyTrends(eq(LocalDate.now()), any());
+        verify(vacancyAnalyticsBulkRepository).upsertAll(analyticsCaptor.capture(), anyInt());
+        assertThat(analyticsCaptor.getValue()).singleElement().satisfies(row -> {
+            assertThat(row.getQuery()).isEqualTo("Java");
+            assertThat(row.getVacancyCount()).isEqualTo(1);
+            assertThat(row.getVacancyCount7d()).isEqualTo(7);
+            assertThat(row.getSalarySum7d()).isEqualTo(700_000);
+            assertThat(row.getDays30d()).isEqualTo(30);
+            assertThat(row.getAverageSalary30d()).isEqualTo(100_000.0);
+            assertThat(row.getVacancyCountDelta7d()).isZero();
+        });
+    }
+
+    @Test
+    @DisplayName("Test watch with changes made during rebuild - " +
+            "vacancies already counted by rebuild are not counted twice")
+    void testWatchDeduplicatesChangesMadeDuringRebuild() {
+        //Given
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        Document raisedJavaVacancy = vacancy("1", List.of("Java"), 150_000, "RUR", false);
+        Document kotlinVacancy = vacancy("2", List.of("Kotlin"), 200_000, "RUR", false);
+        Document archivedKotlinVacancy = vacancy("2", List.of("Kotlin"), 200_000, "RUR", true);
+        mockChangeStream();
+        when(changeStreamStateRepository.findResumeToken()).thenReturn(Optional.empty());
+        when(vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR))
+                .thenAnswer(invocation -> Stream.of(projection(raisedJavaVacancy)));
+        when(cursor.getResumeToken()).thenReturn(token("t0"));
+        // Vacancy 1 was inserted and updated during rebuild, rebuild has seen its latest state
+        when(cursor.tryNext())
+                .thenReturn(change(OperationType.INSERT, "t1", null, javaVacancy))
+                .thenReturn(change(OperationType.UPDATE, "t2", null, raisedJavaVacancy))
+                .thenReturn(change(OperationType.INSERT, "t3", null, kotlinVacancy))
+                .thenReturn(null)
+                .thenReturn(change(OperationType.UPDATE, "t4", kotlinVacancy, archivedKotlinVacancy))
+                .thenReturn(null);
+        //When
+        changeStreamAnalyticsService.start();
+        verify(cursor, timeout(5_000).atLeast(6)).tryNext();
+        changeStreamAnalyticsService.stop();
+        //Then
+        assertThat(changeStreamAnalyticsService.currentAggregates())
+                .isEqualTo(Map.of("Java", accumulator(150_000)));
+        verify(changeStreamStateRepository).saveResumeToken(token("t0"));
+    }
+
+    @Test
+    @DisplayName("Test watch with rebuild failure - " +
+            "cursor is closed, failure is exposed in watcher state and change stream is reopened after backoff")
+    void testWatchRecoversAfterFailure() {
+        //Given
+        properties.setChangeStreamBackoffMs(1);
+        Document javaVacancy = vacancy("1", List.of("Java"), 100_000, "RUR", false);
+        mockChangeStream();
+        when(changeStreamStateRepository.findResumeToken()).thenReturn(Optional.empty());
+        when(vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR))
+                .thenAnswer(invocation -> Stream.of(projection(javaVacancy)));
+        when(cursor.getResumeToken()).thenReturn(token("t0"));
+        when(vacancyAnalyticsBulkRepository.upsertAll(anyCollection(), anyInt()))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+                .thenReturn(1);
+        //When
+        changeStreamAnalyticsService.start();
+        verify(cursor, timeout(5_000).atLeastOnce()).tryNext();
+        ChangeStreamAnalyticsService.WatcherState state = changeStreamAnalyticsService.getWatcherState();
+        changeStreamAnalyticsService.stop();
+        //Then
+        verify(cursor, atLeastOnce()).close();
+        verify(incrementalAnalyticsRepository, times(2)).deleteAll();
+        assertThat(state.running()).isTrue();
+        assertThat(state.lastFailure()).contains("Connection refused");
+        assertThat(state.lastFailureAt()).isNotNull();
+        assertThat(changeStreamAnalyticsService.currentAggregates())
+                .isEqualTo(Map.of("Java", accumulator(100_000)));
+    }
+
+    private void mockChangeStream() {
+        when(mongoTemplate.getCollection("vacancy")).thenReturn(vacancyCollection);
+        when(vacancyCollection.watch()).thenReturn(changeStream);
+        when(changeStream.cursor()).thenReturn(cursor);
+    }
+
+    private VacancySalaryProjection projection(Document vacancy) {
+        return mongoTemplate.getConverter().read(VacancySalaryProjection.class, vacancy);
+    }
+
+    private static Document vacancy(String id, List<String> queries, int salaryFrom, String currency,
+                                    boolean archived) {
+        return new Document("_id", id)
+                .append("query", queries)
+                .append("archived", archived)
+                .append("salaryEntity", new Document("from", salaryFrom).append("currency", currency));
+    }
+
+    private static ChangeStreamDocument<Document> change(OperationType operationType, String resumeToken,
+                                                         Document before, Document after) {
+        Document document = after != null ? after : before;
+        BsonDocument documentKey = new BsonDocument("_id", new BsonString(document.getString("_id")));
+        return new ChangeStreamDocument<>(operationType.getValue(), token(resumeToken), null, null,
+                after, before, documentKey, null, null, null, null, null, null, null);
+    }
+
+    private static BsonDocument token(String value) {
+        return new BsonDocument("_data", new BsonString(value));
+    }
+
+    private static VacancyAnalyticsAccumulator accumulator(long... salaries) {
+        VacancyAnalyticsAccumulator accumulator = new VacancyAnalyticsAccumulator();
+        for (long salary : salaries) {
+            accumulator.add(salary);
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.service.ConcurrentQueryWriter;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrentQueryWriterTest {
+
+    private final AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    private ConcurrentQueryWriter concurrentQueryWriter;
+
+    @BeforeEach
+    void setUp() {
+        properties.setWriteConcurrency(4);
+        concurrentQueryWriter = new ConcurrentQueryWriter(properties, null,
+                new SimpleAsyncTaskExecutor("analytics-write-test-"));
+    }
+
+    @Test
+    @DisplayName("Test writeAll - " +
+            "every query is saved and number of queries saved at once does not exceed write concurrency")
+    void testWriteAll() {
+        //Given
+        Map<String, Integer> perQueryData = IntStream.range(0, 100).boxed()
+                .collect(Collectors.toMap(i -> "Query " + i, Function.identity()));
+        Set<String> savedQueries = ConcurrentHashMap.newKeySet();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        //When
+        concurrentQueryWriter.writeAll(perQueryData, (query, data) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            savedQueries.add(query);
+            inFlight.decrementAndGet();
+        });
+        //Then
+        assertThat(savedQueries).containsExactlyInAnyOrderElementsOf(perQueryData.keySet());
+        assertThat(maxInFlight.get()).isBetween(1, 4);
+    }
+
+    @Test
+    @DisplayName("Test writeAll with failing save - " +
+            "failure is rethrown after started saves finish and remaining queries are not saved")
+    void testWriteAllWithFailingSave() {
+        //Given
+        properties.setWriteConcurrency(1);
+        Map<String, Integer> perQueryData = IntStream.range(0, 100).boxed()
+                .collect(Collectors.toMap(i -> "Query " + i, Function.identity()));
+        AtomicInteger saved = new AtomicInteger();
+        //When
+        assertThatThrownBy(() -> concurrentQueryWriter.writeAll(perQueryData, (query, data) -> {
+            if (saved.incrementAndGet() == 10) {
+                throw new IllegalStateException("Deadlock found");
+            }
+        }))
+                //Then
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Deadlock found");
+        assertThat(saved.get()).isEqualTo(10);
+    }
+
+    @Test
+    @DisplayName("Test getConcurrency without write concurrency and Hikari pool - default concurrency is used")
+    void testGetConcurrencyDefault() {
+        //Given
+        properties.setWriteConcurrency(0);
+        //When
+        int concurrency = concurrentQueryWriter.getConcurrency();
+        //Then
+        assertThat(concurrency).isEqualTo(10);
+    }
+}
@@ -0,0 +1,155 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.AmqpTemplate;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsPartitionResultDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsPartitionTaskDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.service.DistributedAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DistributedAnalyticsServiceTest {
+
+    private static final String PARTITION_TASKS_QUEUE = "analytics-builder-partition-tasks-queue";
+    private static final int PARTITIONS = 4;
+
+    @Mock
+    private AmqpTemplate amqpTemplate;
+    @Mock
+    private VacancyService vacancyService;
+
+    private final AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    private final VacancyAnalyticsAggregator vacancyAnalyticsAggregator =
+            new VacancyAnalyticsAggregator(properties, ForkJoinPool.commonPool());
+    private final VacancyAnalyticsMapper vacancyAnalyticsMapper = new VacancyAnalyticsMapper();
+    private final List<List<VacancySalaryProjection>> partitions = new ArrayList<>();
+    private final Map<String, DistributedAnalyticsService> instancesByResultsQueue = new HashMap<>();
+    private final List<DistributedAnalyticsService> instances = new ArrayList<>();
+    private int nextWorker;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            List<VacancySalaryProjection> vacancies = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                vacancies.add(vacancy(Set.of("Query " + random.nextInt(5)), 30_000 + random.nextInt(300_000)));
+            }
+            partitions.add(vacancies);
+        }
+        properties.setDistributedPartitions(PARTITIONS);
+        properties.setDistributedResultTimeoutMs(1_000);
+        // Three instances of the service sharing vacancy collection and broker stand-in
+        for (int i = 0; i < 3; i++) {
+            String resultsQueue = "results-" + i;
+            DistributedAnalyticsService instance = new DistributedAnalyticsService(amqpTemplate, vacancyService,
+                    vacancyAnalyticsAggregator, vacancyAnalyticsMapper, properties, PARTITION_TASKS_QUEUE,
+                    resultsQueue);
+            instances.add(instance);
+            instancesByResultsQueue.put(resultsQueue, instance);
+        }
+        lenient().when(vacancyService.streamPartitionWithSalaryCurrency(eq(Currency.RUR), anyInt(), eq(PARTITIONS)))
+                .thenAnswer(invocation -> partitions.get(invocation.<Integer>getArgument(1)).stream());
+    }
+
+    @Test
+    @DisplayName("Test buildDistributed - " +
+            "partitions consumed by different instances are merged into analytics of all vacancies")
+    void testBuildDistributed() {
+        //Given
+        Map<String, VacancyAnalyticsAccumulator> expected = vacancyAnalyticsAggregator.aggregate(
+                partitions.stream().flatMap(List::stream), (accumulators, vacancy) ->
+                        vacancyAnalyticsAggregator.accumulate(accumulators, vacancy.getQuery(),
+                                vacancy.getSalaryEntity()));
+        //When
+        routeMessages(Set.of());
+        Map<String, VacancyAnalyticsAccumulator> actual = instances.get(0).buildDistributed();
+        //Then
+        assertThat(actual).isEqualTo(expected);
+        verify(vacancyService, times(PARTITIONS)).streamPartitionWithSalaryCurrency(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Test buildDistributed with lost partition - build fails after timeout")
+    void testBuildDistributedTimeout() {
+        //When
+        routeMessages(Set.of(2));
+        //Then
+        assertThatThrownBy(() -> instances.get(0).buildDistributed())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("3 of 4 partitions");
+    }
+
+    @Test
+    @DisplayName("Test buildDistributed with failed partition - build fails without waiting for timeout")
+    void testBuildDistributedFailedPartition() {
+        //Given
+        properties.setDistributedResultTimeoutMs(60_000);
+        when(vacancyService.streamPartitionWithSalaryCurrency(Currency.RUR, 1, PARTITIONS))
+                .thenThrow(new IllegalStateException("Cursor not found"));
+        //When
+        routeMessages(Set.of());
+        //Then
+        assertThatThrownBy(() -> instances.get(0).buildDistributed())
+                .isInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Partition 1 failed: Cursor not found");
+    }
+
+    /**
+     * Broker stand-in: partition tasks are delivered to instances in turn, results are delivered
+     * to instance owning results queue. Tasks of specified partitions are lost.
+     */
+    private void routeMessages(Set<Integer> lostPartitions) {
+        doAnswer(invocation -> {
+            String queue = invocation.getArgument(0);
+            Object message = invocation.getArgument(1);
+            if (queue.equals(PARTITION_TASKS_QUEUE)) {
+                AnalyticsPartitionTaskDto task = (AnalyticsPartitionTaskDto) message;
+                if (!lostPartitions.contains(task.getPartition())) {
+                    instances.get(nextWorker++ % instances.size()).consumePartitionTask(task);
+                }
+            } else {
+                instancesByResultsQueue.get(queue).consumePartitionResult((AnalyticsPartitionResultDto) message);
+            }
+            return null;
+        }).when(amqpTemplate).convertAndSend(anyString(), any(Object.class));
+    }
+
+    private static VacancySalaryProjection vacancy(Set<String> queries, int salaryFrom) {
+        SalaryEntity salary = new SalaryEntity();
+        salary.setCurrency(Currency.RUR.name());
+        salary.setFrom(salaryFrom);
+        VacancySalaryProjection vacancy = new VacancySalaryProjection();
+        vacancy.setQuery(queries);
+        vacancy.setSalaryEntity(salary);
+        return vacancy;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.ExchangeRates;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.repository.ExchangeRateRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.ExchangeRateService;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRateServiceTest {
+    @Mock
+    private ExchangeRateRepository exchangeRateRepository;
+    @Spy
+    private AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    @InjectMocks
+    private ExchangeRateService exchangeRateService;
+
+    @Test
+    @DisplayName("Test reload - " +
+            "snapshot taken before reload is unchanged, new snapshot replaces it, failed reload keeps it")
+    void testReload() {
+        //Given
+        properties.setCurrencyNormalizationEnabled(true);
+        when(exchangeRateRepository.findAll())
+                .thenReturn(Map.of(Currency.USD, 0.01))
+                .thenReturn(Map.of(Currency.USD, 0.0125))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        //When
+        ExchangeRates first = exchangeRateService.getRates();
+        exchangeRateService.reload();
+        ExchangeRates second = exchangeRateService.getRates();
+        exchangeRateService.reload();
+        //Then
+        assertThat(first.toBase(1_000, Currency.USD)).isEqualTo(100_000);
+        assertThat(second.toBase(1_000, Currency.USD)).isEqualTo(80_000);
+        assertThat(exchangeRateService.getRates()).isSameAs(second);
+        verify(exchangeRateRepository, times(3)).findAll();
+    }
+
+    @Test
+    @DisplayName("Test reload with currency normalization disabled - rates are not loaded")
+    void testReloadDisabled() {
+        //When
+        exchangeRateService.reload();
+        //Then
+        verifyNoInteractions(exchangeRateRepository);
+    }
+}
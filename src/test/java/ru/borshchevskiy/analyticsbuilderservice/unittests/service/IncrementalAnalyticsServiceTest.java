@@ -0,0 +1,184 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import com.mongodb.MongoCommandException;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyChangesDto;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.BuildWatermark;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyContribution;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.IncrementalAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.IncrementalAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IncrementalAnalyticsServiceTest {
+    @Mock
+    private VacancyService vacancyService;
+    @Mock
+    private IncrementalAnalyticsRepository incrementalAnalyticsRepository;
+    @Spy
+    private AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    @InjectMocks
+    private IncrementalAnalyticsService incrementalAnalyticsService;
+
+    @Test
+    @DisplayName("Test buildIncrementally without watermark - " +
+            "running aggregates and contributions are rebuilt from all vacancies and change stream position is saved")
+    void testBuildIncrementallyWithoutWatermark() {
+        //Given
+        VacancySalaryProjection javaVacancy = vacancy("1", Set.of("Java"), 100_000, null);
+        VacancySalaryProjection javaKotlinVacancy = vacancy("2", Set.of("Java", "Kotlin"), 200_000, null);
+        //When
+        when(incrementalAnalyticsRepository.findWatermark()).thenReturn(Optional.empty());
+        when(vacancyService.currentChangeStreamPosition()).thenReturn(token("t1"));
+        when(vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR))
+                .thenReturn(Stream.of(javaVacancy, javaKotlinVacancy));
+        incrementalAnalyticsService.buildIncrementally();
+        //Then
+        verify(incrementalAnalyticsRepository).deleteAll();
+        verify(incrementalAnalyticsRepository).addAggregates(eq(Map.of(
+                "Java", accumulator(100_000, 200_000),
+                "Kotlin", accumulator(200_000))), anyInt());
+        verify(incrementalAnalyticsRepository).saveContributions(eq(List.of(
+                new VacancyContribution("1", Set.of("Java"), 100_000, null),
+                new VacancyContribution("2", Set.of("Java", "Kotlin"), 200_000, null))), anyInt());
+        verify(incrementalAnalyticsRepository).saveWatermark(new BuildWatermark(token("t1").toJson(), 0));
+        verify(vacancyService, never()).readChangesAfter(any());
+    }
+
+    @Test
+    @DisplayName("Test buildIncrementally with watermark - " +
+            "contributions of changed vacancies are replaced and expired contributions subtracted")
+    void testBuildIncrementallyWithWatermark() {
+        //Given
+        Instant deleteAt = Instant.now().plus(3, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+        Instant postponedDeleteAt = deleteAt.plus(7, ChronoUnit.DAYS);
+        VacancySalaryProjection newJavaVacancy = vacancy("1", Set.of("Java"), 150_000, deleteAt);
+        VacancySalaryProjection archivedJavaVacancy = vacancy("2", Set.of("Java"), 200_000, null);
+        archivedJavaVacancy.setArchived(true);
+        VacancySalaryProjection postponedKotlinVacancy = vacancy("3", Set.of("Kotlin"), 300_000, postponedDeleteAt);
+        VacancySalaryProjection alreadyCountedVacancy = vacancy("4", Set.of("Go"), 250_000, null);
+        Map<String, VacancySalaryProjection> changed = new HashMap<>();
+        changed.put("1", newJavaVacancy);
+        changed.put("2", archivedJavaVacancy);
+        changed.put("3", postponedKotlinVacancy);
+        changed.put("4", alreadyCountedVacancy);
+        changed.put("5", null);
+        //When
+        when(incrementalAnalyticsRepository.findWatermark())
+                .thenReturn(Optional.of(new BuildWatermark(token("t1").toJson(), 3)));
+        when(vacancyService.readChangesAfter(token("t1"))).thenReturn(new VacancyChangesDto(changed, token("t2")));
+        when(incrementalAnalyticsRepository.findContributions(eq(changed.keySet()), anyInt())).thenReturn(Map.of(
+                "2", new VacancyContribution("2", Set.of("Java"), 200_000, null),
+                "3", new VacancyContribution("3", Set.of("Kotlin"), 300_000, deleteAt),
+                "4", new VacancyContribution("4", Set.of("Go"), 250_000, null),
+                "5", new VacancyContribution("5", Set.of("Python"), 50_000, null)));
+        when(incrementalAnalyticsRepository.takeExpiredContributions(any()))
+                .thenReturn(List.of(new VacancyContribution("6", Set.of("Kotlin"), 100_000, Instant.now())));
+        incrementalAnalyticsService.buildIncrementally();
+        //Then
+        VacancyAnalyticsAccumulator javaDelta = accumulator(150_000);
+        javaDelta.subtract(200_000);
+        VacancyAnalyticsAccumulator kotlinDelta = accumulator(300_000);
+        kotlinDelta.subtract(300_000);
+        VacancyAnalyticsAccumulator pythonDelta = new VacancyAnalyticsAccumulator();
+        pythonDelta.subtract(50_000);
+        VacancyAnalyticsAccumulator expiredKotlinDelta = new VacancyAnalyticsAccumulator();
+        expiredKotlinDelta.subtract(100_000);
+        verify(incrementalAnalyticsRepository, never()).deleteAll();
+        verify(incrementalAnalyticsRepository).addAggregates(
+                eq(Map.of("Java", javaDelta, "Kotlin", kotlinDelta, "Python", pythonDelta)), anyInt());
+        verify(incrementalAnalyticsRepository).saveContributions(argThat(contributions ->
+                Set.copyOf(contributions).equals(Set.of(
+                        new VacancyContribution("1", Set.of("Java"), 150_000, deleteAt),
+                        new VacancyContribution("3", Set.of("Kotlin"), 300_000, postponedDeleteAt)))), anyInt());
+        verify(incrementalAnalyticsRepository).deleteContributions(argThat(ids ->
+                Set.copyOf(ids).equals(Set.of("2", "5"))), anyInt());
+        verify(incrementalAnalyticsRepository).addAggregates(eq(Map.of("Kotlin", expiredKotlinDelta)), anyInt());
+        verify(incrementalAnalyticsRepository).saveWatermark(new BuildWatermark(token("t2").toJson(), 4));
+    }
+
+    @Test
+    @DisplayName("Test buildIncrementally with change stream position lost - " +
+            "running aggregates are rebuilt from all vacancies")
+    void testBuildIncrementallyWithLostPosition() {
+        //When
+        when(incrementalAnalyticsRepository.findWatermark())
+                .thenReturn(Optional.of(new BuildWatermark(token("t1").toJson(), 3)));
+        when(vacancyService.readChangesAfter(token("t1"))).thenThrow(mock(MongoCommandException.class));
+        when(vacancyService.currentChangeStreamPosition()).thenReturn(token("t2"));
+        when(vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR)).thenReturn(Stream.empty());
+        incrementalAnalyticsService.buildIncrementally();
+        //Then
+        verify(incrementalAnalyticsRepository).deleteAll();
+        verify(incrementalAnalyticsRepository).saveWatermark(new BuildWatermark(token("t2").toJson(), 0));
+    }
+
+    @Test
+    @DisplayName("Test buildIncrementally after configured number of incremental builds - " +
+            "running aggregates are rebuilt from all vacancies")
+    void testBuildIncrementallyFullRebuildIsDue() {
+        //When
+        properties.setIncrementalFullRebuildEvery(3);
+        when(incrementalAnalyticsRepository.findWatermark())
+                .thenReturn(Optional.of(new BuildWatermark(token("t1").toJson(), 3)));
+        when(vacancyService.currentChangeStreamPosition()).thenReturn(token("t2"));
+        when(vacancyService.streamNotArchivedWithSalaryCurrency(Currency.RUR)).thenReturn(Stream.empty());
+        incrementalAnalyticsService.buildIncrementally();
+        //Then
+        verify(incrementalAnalyticsRepository).deleteAll();
+        verify(vacancyService, never()).readChangesAfter(any());
+        verify(incrementalAnalyticsRepository).saveWatermark(new BuildWatermark(token("t2").toJson(), 0));
+    }
+
+    private VacancySalaryProjection vacancy(String id, Set<String> queries, int salaryFrom, Instant deleteAt) {
+        SalaryEntity salary = new SalaryEntity();
+        salary.setCurrency(Currency.RUR.name());
+        salary.setFrom(salaryFrom);
+        VacancySalaryProjection vacancy = new VacancySalaryProjection();
+        vacancy.setId(id);
+        vacancy.setQuery(queries);
+        vacancy.setSalaryEntity(salary);
+        vacancy.setDeleteAt(deleteAt == null ? null : Date.from(deleteAt));
+        return vacancy;
+    }
+
+    private static BsonDocument token(String value) {
+        return new BsonDocument("_data", new BsonString(value));
+    }
+
+    private static VacancyAnalyticsAccumulator accumulator(long... salaries) {
+        VacancyAnalyticsAccumulator accumulator = new VacancyAnalyticsAccumulator();
+        for (long salary : salaries) {
+            accumulator.add(salary);
+        }
+        return accumulator;
+    }
+}
@@ -0,0 +1,172 @@
+package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.HyperLogLog;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryAnalyticsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryDistinctCountsDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QueryTrendDto;
+import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsReadRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsQueryService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsUpdatedEvent;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VacancyAnalyticsQueryServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 5, 1);
+
+    @Mock
+    private VacancyAnalyticsReadRepository vacancyAnalyticsReadRepository;
+
+    private final AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    private VacancyAnalyticsQueryService vacancyAnalyticsQueryService;
+
+    @BeforeEach
+    void setUp() {
+        vacancyAnalyticsQueryService = new VacancyAnalyticsQueryService(vacancyAnalyticsReadRepository,
+                new VacancyAnalyticsMapper(), properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    @DisplayName("Test getTimeSeries - " +
+            "repeated read is served from cache and reads after analytics update go to database")
+    void testGetTimeSeries() {
+        //Given
+        when(vacancyAnalyticsReadRepository.findTimeSeries("Java", DATE, DATE.plusDays(1)))
+                .thenReturn(List.of(analytics(DATE, "Java", 10, 150_000d)))
+                .thenReturn(List.of(analytics(DATE, "Java", 10, 150_000d),
+                        analytics(DATE.plusDays(1), "Java", 12, 160_000d)));
+        //When
+        List<QueryAnalyticsDto> first = vacancyAnalyticsQueryService.getTimeSeries("Java", DATE, DATE.plusDays(1));
+        List<QueryAnalyticsDto> cached = vacancyAnalyticsQueryService.getTimeSeries("Java", DATE, DATE.plusDays(1));
+        vacancyAnalyticsQueryService.onAnalyticsUpdated(new VacancyAnalyticsUpdatedEvent(DATE, DATE.plusDays(1)));
+        List<QueryAnalyticsDto> updated = vacancyAnalyticsQueryService.getTimeSeries("Java", DATE, DATE.plusDays(1));
+        //Then
+        assertThat(first).containsExactly(new QueryAnalyticsDto(DATE, "Java", 10, 150_000d, null, null, null, null));
+        assertThat(cached).isSameAs(first);
+        assertThat(updated).extracting(QueryAnalyticsDto::getVacancyCount).containsExactly(10, 12);
+        verify(vacancyAnalyticsReadRepository, times(2)).findTimeSeries("Java", DATE, DATE.plusDays(1));
+    }
+
+    @Test
+    @DisplayName("Test getTop without date - top of the latest date is read once and cached by metric and limit")
+    void testGetTop() {
+        //Given
+        when(vacancyAnalyticsReadRepository.findLatestDate()).thenReturn(Optional.of(DATE));
+        when(vacancyAnalyticsReadRepository.findTop(DATE, AnalyticsTopMetric.SALARY, 2))
+                .thenReturn(List.of(analytics(DATE, "Go", 3, 250_000d), analytics(DATE, "Java", 10, 150_000d)));
+        //When
+        vacancyAnalyticsQueryService.getTop(null, AnalyticsTopMetric.SALARY, 2);
+        List<QueryAnalyticsDto> top = vacancyAnalyticsQueryService.getTop(null, AnalyticsTopMetric.SALARY, 2);
+        //Then
+        assertThat(top).extracting(QueryAnalyticsDto::getQuery).containsExactly("Go", "Java");
+        verify(vacancyAnalyticsReadRepository, times(1)).findTop(DATE, AnalyticsTopMetric.SALARY, 2);
+        assertThatThrownBy(() -> vacancyAnalyticsQueryService.getTop(DATE, AnalyticsTopMetric.COUNT, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> vacancyAnalyticsQueryService.getTop(DATE, AnalyticsTopMetric.COUNT,
+                VacancyAnalyticsQueryService.MAX_TOP_LIMIT + 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Test onAnalyticsUpdated - the latest snapshot is reloaded into cache")
+    void testOnAnalyticsUpdated() {
+        //Given
+        when(vacancyAnalyticsReadRepository.findLatestDate()).thenReturn(Optional.of(DATE));
+        when(vacancyAnalyticsReadRepository.findAllByDate(DATE))
+                .thenReturn(List.of(analytics(DATE, "Java", 10, 150_000d)));
+        //When
+        vacancyAnalyticsQueryService.onAnalyticsUpdated(new VacancyAnalyticsUpdatedEvent(DATE, DATE));
+        List<QueryAnalyticsDto> latest = vacancyAnalyticsQueryService.getLatest();
+        //Then
+        assertThat(latest).extracting(QueryAnalyticsDto::getQuery).containsExactly("Java");
+        verify(vacancyAnalyticsReadRepository, times(1)).findAllByDate(DATE);
+    }
+
+    @Test
+    @DisplayName("Test getDistinctCounts - " +
+            "vacancies and employers present on several dates are counted once over range")
+    void testGetDistinctCounts() {
+        //Given
+        List<VacancyAnalytics> days = new ArrayList<>();
+        for (int day = 0; day < 7; day++) {
+            // Each day 1000 vacancies, 900 of them carried over from the previous day, of 50 employers
+            HyperLogLog vacancyIds = new HyperLogLog();
+            HyperLogLog employerIds = new HyperLogLog();
+            for (int i = day * 100; i < day * 100 + 1_000; i++) {
+                vacancyIds.add("vacancy-" + i);
+                employerIds.add("employer-" + i % 50);
+            }
+            VacancyAnalytics analytics = analytics(DATE.plusDays(day), "Java", 1_000, 150_000d);
+            analytics.setVacancyIdsSketch(vacancyIds.toBytes());
+            analytics.setEmployerIdsSketch(employerIds.toBytes());
+            days.add(analytics);
+        }
+        when(vacancyAnalyticsReadRepository.findIdSketches("Java", DATE, DATE.plusDays(6))).thenReturn(days);
+        //When
+        QueryDistinctCountsDto distinctCounts =
+                vacancyAnalyticsQueryService.getDistinctCounts("Java", DATE, DATE.plusDays(6));
+        vacancyAnalyticsQueryService.getDistinctCounts("Java", DATE, DATE.plusDays(6));
+        //Then
+        assertThat(distinctCounts.getDays()).isEqualTo(7);
+        assertThat(distinctCounts.getVacancyCountSum()).isEqualTo(7_000);
+        assertThat(distinctCounts.getDistinctVacancies()).isCloseTo(1_600L, within(80L));
+        assertThat(distinctCounts.getDistinctEmployers()).isCloseTo(50L, within(3L));
+        verify(vacancyAnalyticsReadRepository, times(1)).findIdSketches("Java", DATE, DATE.plusDays(6));
+        assertThatThrownBy(() -> vacancyAnalyticsQueryService.getDistinctCounts("Java", DATE, DATE.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Test getTrend without date - " +
+            "trend of the latest date is read from stored windows and query without windows has no trend")
+    void testGetTrend() {
+        //Given
+        VacancyAnalytics analytics = analytics(DATE, "Java", 12, 160_000d);
+        analytics.setVacancyCountAvg7d(10d);
+        analytics.setAverageSalary7d(150_000d);
+        analytics.setVacancyCountAvg30d(9.5);
+        analytics.setAverageSalary30d(145_000d);
+        analytics.setVacancyCountDelta7d(2);
+        analytics.setAverageSalaryDelta7d(10_000d);
+        when(vacancyAnalyticsReadRepository.findLatestDate()).thenReturn(Optional.of(DATE));
+        when(vacancyAnalyticsReadRepository.findTrend("Java", DATE)).thenReturn(Optional.of(analytics));
+        when(vacancyAnalyticsReadRepository.findTrend("Go", DATE)).thenReturn(Optional.empty());
+        //When
+        vacancyAnalyticsQueryService.getTrend("Java", null);
+        Optional<QueryTrendDto> trend = vacancyAnalyticsQueryService.getTrend("Java", null);
+        Optional<QueryTrendDto> missing = vacancyAnalyticsQueryService.getTrend("Go", DATE);
+        //Then
+        assertThat(trend).contains(new QueryTrendDto(DATE, "Java", 12, 160_000d, 10d, 150_000d, 9.5, 145_000d,
+                2, 10_000d));
+        assertThat(missing).isEmpty();
+        verify(vacancyAnalyticsReadRepository, times(1)).findTrend("Java", DATE);
+    }
+
+    private static VacancyAnalytics analytics(LocalDate date, String query, int vacancyCount, Double averageSalary) {
+        VacancyAnalytics analytics = new VacancyAnalytics();
+        analytics.setCreatedAt(date);
+        analytics.setQuery(query);
+        analytics.setVacancyCount(vacancyCount);
+        analytics.setAverageSalary(averageSalary);
+        return analytics;
+    }
+}
@@ -1,27 +1,78 @@
 package ru.borshchevskiy.analyticsbuilderservice.unittests.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.ExchangeRates;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SalarySketch;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.SkillMatcher;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAccumulator;
+import ru.borshchevskiy.analyticsbuilderservice.aggregation.VacancyAnalyticsAggregator;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildStatus;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsBuildSummaryDto;
+import ru.borshchevskiy.analyticsbuilderservice.dto.AnalyticsTopMetric;
 import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QuerySalaryAggregateDto;
 import ru.borshchevskiy.analyticsbuilderservice.dto.VacancyAnalyticsDto;
 import ru.borshchevskiy.analyticsbuilderservice.mapper.VacancyAnalyticsMapper;
 import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalytics;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCubeRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsCurrencyRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerAccreditationRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsEmployerRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.analytics.VacancyAnalyticsSkillRow;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.AreaEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.EmployerEntity;
 import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SnippetEntity;
 import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsBulkRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsCubeRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsCurrencyRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsEmployerRepository;
 import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsRepository;
+import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyAnalyticsSkillRepository;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBreakdownWriter;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsBuildMetrics;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsPipeline;
+import ru.borshchevskiy.analyticsbuilderservice.service.AnalyticsTrendService;
+import ru.borshchevskiy.analyticsbuilderservice.service.ChangeStreamAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.ConcurrentQueryWriter;
+import ru.borshchevskiy.analyticsbuilderservice.service.DistributedAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.ExchangeRateService;
+import ru.borshchevskiy.analyticsbuilderservice.service.FullAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.IncrementalAnalyticsService;
 import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsService;
+import ru.borshchevskiy.analyticsbuilderservice.service.VacancyAnalyticsUpdatedEvent;
 import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,16 +81,78 @@ class VacancyAnalyticsServiceTest {
     private VacancyService vacancyService;
     @Mock
     private VacancyAnalyticsRepository vacancyAnalyticsRepository;
+    @Mock
+    private VacancyAnalyticsBulkRepository vacancyAnalyticsBulkRepository;
+    @Mock
+    private IncrementalAnalyticsService incrementalAnalyticsService;
+    @Mock
+    private ChangeStreamAnalyticsService changeStreamAnalyticsService;
+    @Mock
+    private VacancyAnalyticsCubeRepository vacancyAnalyticsCubeRepository;
+    @Mock
+    private ExchangeRateService exchangeRateService;
+    @Mock
+    private VacancyAnalyticsCurrencyRepository vacancyAnalyticsCurrencyRepository;
+    @Mock
+    private VacancyAnalyticsEmployerRepository vacancyAnalyticsEmployerRepository;
+    @Mock
+    private VacancyAnalyticsSkillRepository vacancyAnalyticsSkillRepository;
+    @Mock
+    private DistributedAnalyticsService distributedAnalyticsService;
+    @Mock
+    private AnalyticsTrendService analyticsTrendService;
+    @Mock
+    private AnalyticsPipeline analyticsPipeline;
+    @Mock
+    private ConcurrentQueryWriter concurrentQueryWriter;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
     @Spy
     private VacancyAnalyticsMapper vacancyAnalyticsMapper;
-    @InjectMocks
     @Spy
+    private AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+    @Spy
+    private SkillMatcher skillMatcher = new SkillMatcher(properties.getSkills());
+    @Spy
+    private VacancyAnalyticsAggregator vacancyAnalyticsAggregator =
+            new VacancyAnalyticsAggregator(properties, new ForkJoinPool(4));
+    @Spy
+    private AnalyticsBuildMetrics analyticsBuildMetrics =
+            new AnalyticsBuildMetrics(new SimpleMeterRegistry(), properties);
+    @Captor
+    private ArgumentCaptor<List<VacancyAnalytics>> analyticsCaptor;
+    @Captor
+    private ArgumentCaptor<List<VacancyAnalyticsCubeRow>> cubeRowsCaptor;
+    @Captor
+    private ArgumentCaptor<List<VacancyAnalyticsCurrencyRow>> currencyRowsCaptor;
+    @Captor
+    private ArgumentCaptor<List<VacancyAnalyticsEmployerRow>> employerRowsCaptor;
+    @Captor
+    private ArgumentCaptor<List<VacancyAnalyticsEmployerAccreditationRow>> accreditationRowsCaptor;
+    @Captor
+    private ArgumentCaptor<List<VacancyAnalyticsSkillRow>> skillRowsCaptor;
     private VacancyAnalyticsService vacancyAnalyticsService;
 
-    @Test
+    @BeforeEach
+    void setUp() {
+        AnalyticsBreakdownWriter analyticsBreakdownWriter = new AnalyticsBreakdownWriter(vacancyAnalyticsCubeRepository,
+                vacancyAnalyticsCurrencyRepository, vacancyAnalyticsEmployerRepository, vacancyAnalyticsSkillRepository,
+                properties, analyticsBuildMetrics);
+        FullAnalyticsService fullAnalyticsService = new FullAnalyticsService(vacancyService, properties,
+                vacancyAnalyticsAggregator, exchangeRateService, skillMatcher, analyticsPipeline, analyticsBuildMetrics,
+                analyticsBreakdownWriter);
+        vacancyAnalyticsService = spy(new VacancyAnalyticsService(vacancyAnalyticsRepository,
+                vacancyAnalyticsBulkRepository, vacancyAnalyticsMapper, properties, fullAnalyticsService,
+                incrementalAnalyticsService, changeStreamAnalyticsService, distributedAnalyticsService,
+                analyticsTrendService, analyticsBuildMetrics, analyticsPipeline, concurrentQueryWriter,
+                eventPublisher));
+    }
+
+    @ParameterizedTest
+    @EnumSource(AnalyticsBuilderProperties.Engine.class)
     @DisplayName("Test buildAnalytics - " +
             "saveAnalytics() method called expected number of times with correctly built analytics dtos")
-    void testBuildAnalytics() {
+    void testBuildAnalytics(AnalyticsBuilderProperties.Engine engine) {
         //Given
         VacancyEntity vacancyJavaPythonWith100k = new VacancyEntity();
         VacancyEntity vacancyJavaWith150k = new VacancyEntity();
@@ -79,20 +192,117 @@ class VacancyAnalyticsServiceTest {
                 vacancyJavaWith150k,
                 vacancyJavaKotlinWith200k);
 
-        VacancyAnalyticsDto javaAnalytics = new VacancyAnalyticsDto(3, 150_000d);
-        VacancyAnalyticsDto pythonAnalytics = new VacancyAnalyticsDto(1, 100_000d);
-        VacancyAnalyticsDto kotlinAnalytics = new VacancyAnalyticsDto(1, 200_000d);
+        // Percentiles are representative values of salary sketch buckets holding 100k, 150k and 200k salaries
+        VacancyAnalyticsDto javaAnalytics =
+                new VacancyAnalyticsDto(3, 150_000d, 99_741d, 148_798d, 200_859d, 200_859d);
+        VacancyAnalyticsDto pythonAnalytics =
+                new VacancyAnalyticsDto(1, 100_000d, 99_741d, 99_741d, 99_741d, 99_741d);
+        VacancyAnalyticsDto kotlinAnalytics =
+                new VacancyAnalyticsDto(1, 200_000d, 200_859d, 200_859d, 200_859d, 200_859d);
+        javaAnalytics.setSalarySum(450_000L);
+        pythonAnalytics.setSalarySum(100_000L);
+        kotlinAnalytics.setSalarySum(200_000L);
+        // Per-query and per-salary-bucket rows Mongo aggregation pipeline produces for the same vacancies
+        List<QuerySalaryAggregateDto> fromDatabaseAggregation = List.of(
+                new QuerySalaryAggregateDto(javaQuery, SalarySketch.bucketOf(100_000), 1, 100_000d),
+                new QuerySalaryAggregateDto(javaQuery, SalarySketch.bucketOf(150_000), 1, 150_000d),
+                new QuerySalaryAggregateDto(javaQuery, SalarySketch.bucketOf(200_000), 1, 200_000d),
+                new QuerySalaryAggregateDto(pythonQuery, SalarySketch.bucketOf(100_000), 1, 100_000d),
+                new QuerySalaryAggregateDto(kotlinQuery, SalarySketch.bucketOf(200_000), 1, 200_000d));
         //When
-        when(vacancyService.findAllWithSalaryCurrency(Currency.RUR)).thenReturn(fromRepositoryList);
+        properties.setEngine(engine);
+        switch (engine) {
+            case JAVA -> when(vacancyService.findAllWithSalary()).thenReturn(fromRepositoryList);
+            case MONGO_AGGREGATION -> when(vacancyService.aggregateSalaryByQuery(Currency.RUR))
+                    .thenReturn(fromDatabaseAggregation);
+        }
         vacancyAnalyticsService.buildAnalytics();
         //Then
         verify(vacancyAnalyticsService, times(1))
-                .saveAnalytics(eq(javaQuery), eq(javaAnalytics));
+                .saveAnalytics(eq(javaQuery), eq(javaAnalytics), eq(LocalDate.now()));
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq(pythonQuery), eq(pythonAnalytics), eq(LocalDate.now()));
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq(kotlinQuery), eq(kotlinAnalytics), eq(LocalDate.now()));
+        verify(eventPublisher, times(1))
+                .publishEvent(new VacancyAnalyticsUpdatedEvent(LocalDate.now(), LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics in STREAM read mode - " +
+            "vacancies are read through stream, reading is timed as separate stage " +
+            "and saveAnalytics() called with correctly built analytics dtos")
+    void testBuildAnalyticsInStreamMode() {
+        //Given
+        VacancyEntity vacancyJavaPythonWith100k = new VacancyEntity();
+        VacancyEntity vacancyJavaWith300k = new VacancyEntity();
+
+        SalaryEntity salary100k = new SalaryEntity();
+        salary100k.setCurrency(Currency.RUR.name());
+        salary100k.setFrom(100000);
+
+        SalaryEntity salary300k = new SalaryEntity();
+        salary300k.setCurrency(Currency.RUR.name());
+        salary300k.setTo(300000);
+
+        String javaQuery = "Java";
+        String pythonQuery = "Python";
+
+        vacancyJavaPythonWith100k.setSalaryEntity(salary100k);
+        vacancyJavaPythonWith100k.setQuery(Set.of(javaQuery, pythonQuery));
+
+        vacancyJavaWith300k.setSalaryEntity(salary300k);
+        vacancyJavaWith300k.setQuery(Set.of(javaQuery));
+
+        VacancyAnalyticsDto javaAnalytics =
+                new VacancyAnalyticsDto(2, 200_000d, 99_741d, 99_741d, 299_650d, 299_650d);
+        VacancyAnalyticsDto pythonAnalytics =
+                new VacancyAnalyticsDto(1, 100_000d, 99_741d, 99_741d, 99_741d, 99_741d);
+        javaAnalytics.setSalarySum(400_000L);
+        pythonAnalytics.setSalarySum(100_000L);
+        //When
+        properties.setReadMode(AnalyticsBuilderProperties.ReadMode.STREAM);
+        when(vacancyService.streamAllWithSalary())
+                .thenReturn(Stream.of(vacancyJavaPythonWith100k, vacancyJavaWith300k));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyService, never()).findAllWithSalary();
+        assertThat(analyticsBuildMetrics.getLastSummary().orElseThrow().getStageDurationsMs())
+                .containsKeys(AnalyticsBuildMetrics.STAGE_READ, AnalyticsBuildMetrics.STAGE_AGGREGATE);
         verify(vacancyAnalyticsService, times(1))
-                .saveAnalytics(eq(pythonQuery), eq(pythonAnalytics));
+                .saveAnalytics(eq(javaQuery), eq(javaAnalytics), eq(LocalDate.now()));
         verify(vacancyAnalyticsService, times(1))
-                .saveAnalytics(eq(kotlinQuery), eq(kotlinAnalytics));
+                .saveAnalytics(eq(pythonQuery), eq(pythonAnalytics), eq(LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics in PROJECTION read mode - " +
+            "vacancy projections are read through stream and saveAnalytics() called with correctly built analytics dtos")
+    void testBuildAnalyticsInProjectionMode() {
+        //Given
+        SalaryEntity salary150k = new SalaryEntity();
+        salary150k.setCurrency(Currency.RUR.name());
+        salary150k.setFrom(100000);
+        salary150k.setTo(200000);
+
+        VacancySalaryProjection vacancyJavaKotlinWith150k = new VacancySalaryProjection();
+        vacancyJavaKotlinWith150k.setSalaryEntity(salary150k);
+        vacancyJavaKotlinWith150k.setQuery(Set.of("Java", "Kotlin"));
 
+        VacancyAnalyticsDto expectedAnalytics =
+                new VacancyAnalyticsDto(1, 150_000d, 148_798d, 148_798d, 148_798d, 148_798d);
+        expectedAnalytics.setSalarySum(150_000L);
+        //When
+        properties.setReadMode(AnalyticsBuilderProperties.ReadMode.PROJECTION);
+        when(vacancyService.streamProjectionsWithSalary())
+                .thenReturn(Stream.of(vacancyJavaKotlinWith150k));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyService, never()).streamAllWithSalary();
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq("Java"), eq(expectedAnalytics), eq(LocalDate.now()));
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq("Kotlin"), eq(expectedAnalytics), eq(LocalDate.now()));
     }
 
     @Test
@@ -151,4 +361,396 @@ class VacancyAnalyticsServiceTest {
         //Then
         verify(vacancyAnalyticsRepository, times(1)).save(eq(expectedAnalytics));
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Test buildAnalytics in BATCH write mode - " +
+            "all analytics saved with single bulk repository call and no per-query lookups")
+    void testBuildAnalyticsInBatchWriteMode() {
+        //Given
+        LocalDate date = LocalDate.now();
+        SalaryEntity salary100k = new SalaryEntity();
+        salary100k.setCurrency(Currency.RUR.name());
+        salary100k.setFrom(100000);
+
+        VacancyEntity vacancyJavaPythonWith100k = new VacancyEntity();
+        vacancyJavaPythonWith100k.setSalaryEntity(salary100k);
+        vacancyJavaPythonWith100k.setQuery(Set.of("Java", "Python"));
+
+        VacancyAnalytics expectedJavaAnalytics = new VacancyAnalytics();
+        expectedJavaAnalytics.setCreatedAt(date);
+        expectedJavaAnalytics.setQuery("Java");
+        expectedJavaAnalytics.setVacancyCount(1);
+        expectedJavaAnalytics.setAverageSalary(100_000d);
+        expectedJavaAnalytics.setSalaryP25(99_741d);
+        expectedJavaAnalytics.setSalaryP50(99_741d);
+        expectedJavaAnalytics.setSalaryP75(99_741d);
+        expectedJavaAnalytics.setSalaryP90(99_741d);
+        expectedJavaAnalytics.setSalarySum(100_000L);
+
+        VacancyAnalytics expectedPythonAnalytics = new VacancyAnalytics();
+        expectedPythonAnalytics.setCreatedAt(date);
+        expectedPythonAnalytics.setQuery("Python");
+        expectedPythonAnalytics.setVacancyCount(1);
+        expectedPythonAnalytics.setAverageSalary(100_000d);
+        expectedPythonAnalytics.setSalaryP25(99_741d);
+        expectedPythonAnalytics.setSalaryP50(99_741d);
+        expectedPythonAnalytics.setSalaryP75(99_741d);
+        expectedPythonAnalytics.setSalaryP90(99_741d);
+        expectedPythonAnalytics.setSalarySum(100_000L);
+        //When
+        properties.setWriteMode(AnalyticsBuilderProperties.WriteMode.BATCH);
+        properties.setWriteBatchSize(100);
+        when(vacancyService.findAllWithSalary()).thenReturn(List.of(vacancyJavaPythonWith100k));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyAnalyticsBulkRepository, times(1)).upsertAll(analyticsCaptor.capture(), eq(100));
+        assertThat(analyticsCaptor.getValue())
+                .containsExactlyInAnyOrder(expectedJavaAnalytics, expectedPythonAnalytics);
+        verify(vacancyAnalyticsService, never()).saveAnalytics(any(), any(), any());
+        verify(vacancyAnalyticsRepository, never()).findByQueryAndCreatedAt(any(), any());
+        verify(vacancyAnalyticsRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics with pipeline enabled - " +
+            "vacancies are read ahead by read stage and analytics rows are handed to write stage")
+    void testBuildAnalyticsWithPipeline() {
+        //Given
+        SalaryEntity salary100k = new SalaryEntity();
+        salary100k.setCurrency(Currency.RUR.name());
+        salary100k.setFrom(100000);
+        VacancySalaryProjection vacancyJavaPythonWith100k = new VacancySalaryProjection();
+        vacancyJavaPythonWith100k.setSalaryEntity(salary100k);
+        vacancyJavaPythonWith100k.setQuery(Set.of("Java", "Python"));
+        Stream<VacancySalaryProjection> cursor = Stream.of(vacancyJavaPythonWith100k);
+        List<VacancyAnalytics> written = new ArrayList<>();
+        properties.setPipelineEnabled(true);
+        properties.setReadMode(AnalyticsBuilderProperties.ReadMode.PROJECTION);
+        properties.setWriteMode(AnalyticsBuilderProperties.WriteMode.BATCH);
+        when(vacancyService.streamProjectionsWithSalary()).thenReturn(cursor);
+        when(analyticsPipeline.readAhead(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(analyticsPipeline.upsertAll(any())).thenAnswer(invocation -> {
+            Stream<VacancyAnalytics> rows = invocation.getArgument(0);
+            rows.forEach(written::add);
+            return 1;
+        });
+        //When
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        assertThat(written).extracting(VacancyAnalytics::getQuery).containsExactlyInAnyOrder("Java", "Python");
+        verifyNoInteractions(vacancyAnalyticsBulkRepository);
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics metrics - " +
+            "summary of build holds stage durations, scanned and filtered vacancies, inserted and updated rows")
+    void testBuildAnalyticsRecordsSummary() {
+        //Given
+        SalaryEntity salary100k = new SalaryEntity();
+        salary100k.setCurrency(Currency.RUR.name());
+        salary100k.setFrom(100000);
+        VacancyEntity vacancyJavaPythonWith100k = new VacancyEntity();
+        vacancyJavaPythonWith100k.setSalaryEntity(salary100k);
+        vacancyJavaPythonWith100k.setQuery(Set.of("Java", "Python"));
+        // Salaries in USD without exchange rates and without currency are filtered out in the same pass
+        SalaryEntity salary2kUsd = new SalaryEntity();
+        salary2kUsd.setCurrency(Currency.USD.name());
+        salary2kUsd.setFrom(2_000);
+        VacancyEntity vacancyJavaWith2kUsd = new VacancyEntity();
+        vacancyJavaWith2kUsd.setSalaryEntity(salary2kUsd);
+        vacancyJavaWith2kUsd.setQuery(Set.of("Java"));
+        VacancyEntity vacancyJavaWithoutCurrency = new VacancyEntity();
+        vacancyJavaWithoutCurrency.setSalaryEntity(new SalaryEntity());
+        vacancyJavaWithoutCurrency.setQuery(Set.of("Java"));
+        properties.setWriteMode(AnalyticsBuilderProperties.WriteMode.BATCH);
+        when(vacancyService.findAllWithSalary())
+                .thenReturn(List.of(vacancyJavaPythonWith100k, vacancyJavaWith2kUsd, vacancyJavaWithoutCurrency));
+        // "Java" row of the day already exists, "Python" row is new
+        when(vacancyAnalyticsRepository.countByCreatedAt(LocalDate.now())).thenReturn(1L, 2L);
+        //When
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        AnalyticsBuildSummaryDto summary = analyticsBuildMetrics.getLastSummary().orElseThrow();
+        assertThat(summary.getStatus()).isEqualTo(AnalyticsBuildStatus.SUCCEEDED);
+        assertThat(summary.getStageDurationsMs()).containsOnlyKeys(AnalyticsBuildMetrics.STAGE_READ,
+                AnalyticsBuildMetrics.STAGE_AGGREGATE, AnalyticsBuildMetrics.STAGE_SAVE_ANALYTICS);
+        assertThat(summary.getVacanciesScanned()).isEqualTo(1);
+        assertThat(summary.getVacanciesFilteredOut()).isEqualTo(2);
+        assertThat(summary.getDistinctQueries()).isEqualTo(2);
+        assertThat(summary.getRowsInserted()).isEqualTo(1);
+        assertThat(summary.getRowsUpdated()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics metrics with failing build - " +
+            "summary of failed build is recorded and exception is rethrown")
+    void testBuildAnalyticsRecordsFailedSummary() {
+        //Given
+        properties.setBuildMode(AnalyticsBuilderProperties.BuildMode.INCREMENTAL);
+        when(incrementalAnalyticsService.buildIncrementally()).thenThrow(new IllegalStateException("No watermark"));
+        //When
+        assertThatThrownBy(() -> vacancyAnalyticsService.buildAnalytics())
+                .isInstanceOf(IllegalStateException.class);
+        //Then
+        AnalyticsBuildSummaryDto summary = analyticsBuildMetrics.getLastSummary().orElseThrow();
+        assertThat(summary.getStatus()).isEqualTo(AnalyticsBuildStatus.FAILED);
+        assertThat(summary.getError()).isEqualTo("No watermark");
+        assertThat(summary.getVacanciesScanned()).isNull();
+        assertThat(summary.getStageDurationsMs()).containsOnlyKeys(AnalyticsBuildMetrics.STAGE_AGGREGATE);
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics in PARALLEL aggregation mode - " +
+            "saved analytics are identical to analytics built in SEQUENTIAL mode")
+    void testBuildAnalyticsInParallelModeMatchesSequentialMode() {
+        //Given
+        Random random = new Random(42);
+        List<VacancyEntity> vacancies = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            SalaryEntity salary = new SalaryEntity();
+            salary.setCurrency(Currency.RUR.name());
+            salary.setFrom(random.nextBoolean() ? 30_000 + random.nextInt(300_000) : null);
+            salary.setTo(salary.getFrom() == null || random.nextBoolean() ? 330_000 + random.nextInt(300_000) : null);
+            VacancyEntity vacancy = new VacancyEntity();
+            vacancy.setSalaryEntity(salary);
+            vacancy.setQuery(Set.of("Query " + random.nextInt(50), "Other query " + random.nextInt(50)));
+            vacancies.add(vacancy);
+        }
+        when(vacancyService.findAllWithSalary()).thenReturn(vacancies);
+        properties.setWriteMode(AnalyticsBuilderProperties.WriteMode.BATCH);
+        //When
+        properties.setAggregationMode(AnalyticsBuilderProperties.AggregationMode.SEQUENTIAL);
+        vacancyAnalyticsService.buildAnalytics();
+        properties.setAggregationMode(AnalyticsBuilderProperties.AggregationMode.PARALLEL);
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyAnalyticsBulkRepository, times(2)).upsertAll(analyticsCaptor.capture(), anyInt());
+        List<VacancyAnalytics> sequentialAnalytics = analyticsCaptor.getAllValues().get(0);
+        List<VacancyAnalytics> parallelAnalytics = analyticsCaptor.getAllValues().get(1);
+        assertThat(sequentialAnalytics).hasSize(100);
+        assertThat(parallelAnalytics).containsExactlyInAnyOrderElementsOf(sequentialAnalytics);
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics in INCREMENTAL build mode - " +
+            "running aggregates are saved and vacancy collection is not scanned")
+    void testBuildAnalyticsInIncrementalMode() {
+        //When
+        properties.setBuildMode(AnalyticsBuilderProperties.BuildMode.INCREMENTAL);
+        when(incrementalAnalyticsService.buildIncrementally())
+                .thenReturn(Map.of("Java", new VacancyAnalyticsAccumulator(4, 600_000)));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verifyNoInteractions(vacancyService);
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq("Java"), eq(withSalarySum(new VacancyAnalyticsDto(4, 150_000d), 600_000L)),
+                        eq(LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics in CHANGE_STREAM build mode - " +
+            "aggregates maintained from change stream are saved and vacancy collection is not scanned")
+    void testBuildAnalyticsInChangeStreamMode() {
+        //When
+        properties.setBuildMode(AnalyticsBuilderProperties.BuildMode.CHANGE_STREAM);
+        when(changeStreamAnalyticsService.currentAggregates())
+                .thenReturn(Map.of("Java", new VacancyAnalyticsAccumulator(2, 300_000)));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verifyNoInteractions(vacancyService, incrementalAnalyticsService);
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq("Java"), eq(withSalarySum(new VacancyAnalyticsDto(2, 150_000d), 300_000L)),
+                        eq(LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics in DISTRIBUTED build mode - " +
+            "merged partial results of all partitions are saved by coordinating instance")
+    void testBuildAnalyticsInDistributedMode() {
+        //When
+        properties.setBuildMode(AnalyticsBuilderProperties.BuildMode.DISTRIBUTED);
+        when(distributedAnalyticsService.buildDistributed())
+                .thenReturn(Map.of("Java", new VacancyAnalyticsAccumulator(2, 300_000)));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verifyNoInteractions(vacancyService, incrementalAnalyticsService, changeStreamAnalyticsService);
+        verify(vacancyAnalyticsService, times(1))
+                .saveAnalytics(eq("Java"), eq(withSalarySum(new VacancyAnalyticsDto(2, 150_000d), 300_000L)),
+                        eq(LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics with cube enabled - " +
+            "cube rolled up from the same pass is saved and per-query analytics are unchanged")
+    void testBuildAnalyticsWithCube() {
+        //Given
+        LocalDate date = LocalDate.now();
+        SalaryEntity salary100k = new SalaryEntity();
+        salary100k.setCurrency(Currency.RUR.name());
+        salary100k.setFrom(100000);
+        SalaryEntity salary200k = new SalaryEntity();
+        salary200k.setCurrency(Currency.RUR.name());
+        salary200k.setFrom(200000);
+
+        AreaEntity moscow = new AreaEntity();
+        moscow.setId("1");
+        moscow.setName("Москва");
+        AreaEntity saintPetersburg = new AreaEntity();
+        saintPetersburg.setId("2");
+        saintPetersburg.setName("Санкт-Петербург");
+
+        VacancyEntity javaVacancyInMoscow = new VacancyEntity();
+        javaVacancyInMoscow.setSalaryEntity(salary100k);
+        javaVacancyInMoscow.setQuery(Set.of("Java"));
+        javaVacancyInMoscow.setAreaEntity(moscow);
+        VacancyEntity javaVacancyInSaintPetersburg = new VacancyEntity();
+        javaVacancyInSaintPetersburg.setSalaryEntity(salary200k);
+        javaVacancyInSaintPetersburg.setQuery(Set.of("Java"));
+        javaVacancyInSaintPetersburg.setAreaEntity(saintPetersburg);
+        //When
+        properties.setCubeEnabled(true);
+        when(vacancyService.findAllWithSalary())
+                .thenReturn(List.of(javaVacancyInMoscow, javaVacancyInSaintPetersburg));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyAnalyticsCubeRepository, times(1)).upsertAll(cubeRowsCaptor.capture(), any(), anyInt());
+        assertThat(cubeRowsCaptor.getValue())
+                .hasSize(12)
+                .contains(new VacancyAnalyticsCubeRow(date, "Java", "1", "unknown", "unknown", 1, 100_000d),
+                        new VacancyAnalyticsCubeRow(date, "Java", "2", "*", "*", 1, 200_000d),
+                        new VacancyAnalyticsCubeRow(date, "Java", "*", "unknown", "*", 2, 150_000d),
+                        new VacancyAnalyticsCubeRow(date, "Java", "*", "*", "*", 2, 150_000d));
+        verify(vacancyAnalyticsService, times(1)).saveAnalytics(eq("Java"),
+                eq(withSalarySum(new VacancyAnalyticsDto(2, 150_000d, 99_741d, 99_741d, 200_859d, 200_859d),
+                        300_000L)), eq(LocalDate.now()));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics with currency normalization - " +
+            "vacancies in all currencies with known rate are read, salaries are converted to base currency " +
+            "and per-currency breakdown is saved")
+    void testBuildAnalyticsWithCurrencyNormalization() {
+        //Given
+        LocalDate date = LocalDate.now();
+        SalaryEntity salary100kRur = new SalaryEntity();
+        salary100kRur.setCurrency(Currency.RUR.name());
+        salary100kRur.setFrom(100_000);
+        SalaryEntity salary2kUsd = new SalaryEntity();
+        salary2kUsd.setCurrency(Currency.USD.name());
+        salary2kUsd.setFrom(2_000);
+
+        VacancyEntity javaVacancyInRur = new VacancyEntity();
+        javaVacancyInRur.setSalaryEntity(salary100kRur);
+        javaVacancyInRur.setQuery(Set.of("Java"));
+        VacancyEntity javaVacancyInUsd = new VacancyEntity();
+        javaVacancyInUsd.setSalaryEntity(salary2kUsd);
+        javaVacancyInUsd.setQuery(Set.of("Java"));
+        // 0.01 USD per one RUR
+        ExchangeRates rates = ExchangeRates.of(Currency.RUR, Map.of(Currency.USD, 0.01), Instant.now());
+        //When
+        properties.setCurrencyNormalizationEnabled(true);
+        when(exchangeRateService.getRates()).thenReturn(rates);
+        when(vacancyService.findAllWithSalary())
+                .thenReturn(List.of(javaVacancyInRur, javaVacancyInUsd));
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyAnalyticsCurrencyRepository, times(1)).upsertAll(currencyRowsCaptor.capture(), anyInt());
+        assertThat(currencyRowsCaptor.getValue()).containsExactlyInAnyOrder(
+                new VacancyAnalyticsCurrencyRow(date, "Java", Currency.RUR, 1, 100_000d, Currency.RUR, 100_000d),
+                new VacancyAnalyticsCurrencyRow(date, "Java", Currency.USD, 1, 2_000d, Currency.RUR, 200_000d));
+        verify(vacancyAnalyticsService, times(1)).saveAnalytics(eq("Java"),
+                eq(withSalarySum(new VacancyAnalyticsDto(2, 150_000d, 99_741d, 99_741d, 200_859d, 200_859d),
+                        300_000L)), eq(LocalDate.now()));
+        verifyNoInteractions(vacancyAnalyticsCubeRepository);
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics with employer analytics - " +
+            "top employers by vacancy count and by average salary and accreditation split are saved")
+    void testBuildAnalyticsWithEmployerAnalytics() {
+        //Given
+        LocalDate date = LocalDate.now();
+        EmployerEntity accreditedEmployer = new EmployerEntity();
+        accreditedEmployer.setId("1");
+        accreditedEmployer.setName("Accredited");
+        accreditedEmployer.setAccreditedItEmployer(true);
+        EmployerEntity otherEmployer = new EmployerEntity();
+        otherEmployer.setId("2");
+        otherEmployer.setName("Other");
+        otherEmployer.setAccreditedItEmployer(false);
+        List<VacancyEntity> vacancies = new ArrayList<>();
+        for (long salary : new long[]{100_000, 200_000, 300_000}) {
+            vacancies.add(javaVacancy(accreditedEmployer, salary));
+        }
+        vacancies.add(javaVacancy(otherEmployer, 400_000));
+        //When
+        properties.setEmployerAnalyticsEnabled(true);
+        properties.setEmployerMinVacancies(1);
+        when(vacancyService.findAllWithSalary()).thenReturn(vacancies);
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyAnalyticsEmployerRepository, times(1)).replaceAll(eq(date), employerRowsCaptor.capture(),
+                accreditationRowsCaptor.capture(), anyInt());
+        assertThat(employerRowsCaptor.getValue()).containsExactly(
+                new VacancyAnalyticsEmployerRow(date, "Java", AnalyticsTopMetric.COUNT, 1, "1", "Accredited", true,
+                        3, 0, 200_000d),
+                new VacancyAnalyticsEmployerRow(date, "Java", AnalyticsTopMetric.COUNT, 2, "2", "Other", false,
+                        1, 0, 400_000d),
+                new VacancyAnalyticsEmployerRow(date, "Java", AnalyticsTopMetric.SALARY, 1, "2", "Other", false,
+                        1, 0, 400_000d),
+                new VacancyAnalyticsEmployerRow(date, "Java", AnalyticsTopMetric.SALARY, 2, "1", "Accredited", true,
+                        3, 0, 200_000d));
+        assertThat(accreditationRowsCaptor.getValue()).containsExactly(
+                new VacancyAnalyticsEmployerAccreditationRow(date, "Java", true, 3, 200_000d),
+                new VacancyAnalyticsEmployerAccreditationRow(date, "Java", false, 1, 400_000d));
+    }
+
+    @Test
+    @DisplayName("Test buildAnalytics with skills - " +
+            "skills mentioned in snippets are saved with their share and salary lift")
+    void testBuildAnalyticsWithSkills() {
+        //Given
+        LocalDate date = LocalDate.now();
+        List<VacancyEntity> vacancies = List.of(
+                javaVacancyWithRequirement("Опыт работы с Kafka и Spring Boot", 300_000),
+                javaVacancyWithRequirement("Kafka, Docker", 200_000),
+                javaVacancyWithRequirement("Знание Spring", 100_000),
+                javaVacancyWithRequirement(null, 200_000));
+        //When
+        properties.setSkillsEnabled(true);
+        when(vacancyService.findAllWithSalary()).thenReturn(vacancies);
+        vacancyAnalyticsService.buildAnalytics();
+        //Then
+        verify(vacancyAnalyticsSkillRepository, times(1)).replaceAll(eq(date), skillRowsCaptor.capture(), anyInt());
+        assertThat(skillRowsCaptor.getValue()).containsExactly(
+                new VacancyAnalyticsSkillRow(date, "Java", "Spring", 2, 0.5, 200_000d, 0d),
+                new VacancyAnalyticsSkillRow(date, "Java", "Kafka", 2, 0.5, 250_000d, 250_000d / 150_000d - 1),
+                new VacancyAnalyticsSkillRow(date, "Java", "Docker", 1, 0.25, 200_000d, 0d));
+    }
+
+    private static VacancyAnalyticsDto withSalarySum(VacancyAnalyticsDto analytics, long salarySum) {
+        analytics.setSalarySum(salarySum);
+        return analytics;
+    }
+
+    private static VacancyEntity javaVacancyWithRequirement(String requirement, long salary) {
+        VacancyEntity vacancy = javaVacancy(null, salary);
+        if (requirement != null) {
+            SnippetEntity snippet = new SnippetEntity();
+            snippet.setRequirement(requirement);
+            vacancy.setSnippetEntity(snippet);
+        }
+        return vacancy;
+    }
+
+    private static VacancyEntity javaVacancy(EmployerEntity employer, long salary) {
+        SalaryEntity salaryEntity = new SalaryEntity();
+        salaryEntity.setCurrency(Currency.RUR.name());
+        salaryEntity.setFrom((int) salary);
+        VacancyEntity vacancy = new VacancyEntity();
+        vacancy.setSalaryEntity(salaryEntity);
+        vacancy.setQuery(Set.of("Java"));
+        vacancy.setEmployerEntity(employer);
+        return vacancy;
+    }
+}
@@ -5,17 +5,31 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoExpression;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import ru.borshchevskiy.analyticsbuilderservice.config.AnalyticsBuilderProperties;
 import ru.borshchevskiy.analyticsbuilderservice.dto.Currency;
+import ru.borshchevskiy.analyticsbuilderservice.dto.QuerySalaryAggregateDto;
 import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.SalaryEntity;
 import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancyEntity;
+import ru.borshchevskiy.analyticsbuilderservice.model.vacancy.VacancySalaryProjection;
 import ru.borshchevskiy.analyticsbuilderservice.repository.VacancyRepository;
 import ru.borshchevskiy.analyticsbuilderservice.service.VacancyService;
 
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 class VacancyServiceTest {
@@ -23,6 +37,12 @@ class VacancyServiceTest {
     @Mock
     VacancyRepository vacancyRepository;
 
+    @Mock
+    MongoTemplate mongoTemplate;
+
+    @Spy
+    AnalyticsBuilderProperties properties = new AnalyticsBuilderProperties();
+
     @InjectMocks
     VacancyService vacancyService;
 
@@ -60,4 +80,81 @@ class VacancyServiceTest {
         assertThat(actualList).containsAll(expectedList);
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Test streamAllWithSalary() - " +
+            "vacancies with salary in any currency are requested with cursor batch size")
+    public void testStreamAllWithSalary() {
+        //Given
+        properties.setStreamBatchSize(500);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        //When
+        vacancyService.streamAllWithSalary();
+        //Then
+        verify(mongoTemplate).stream(queryCaptor.capture(), eq(VacancyEntity.class));
+        Query query = queryCaptor.getValue();
+        assertThat(query.getQueryObject().get("salaryEntity")).isEqualTo(new Document("$ne", null));
+        assertThat(query.getMeta().getCursorBatchSize()).isEqualTo(500);
+    }
+
+    @Test
+    @DisplayName("Test streamProjectionsWithSalary() - " +
+            "only fields required by analytics are requested from database")
+    public void testStreamProjectionsWithSalary() {
+        //Given
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        //When
+        vacancyService.streamProjectionsWithSalary();
+        //Then
+        verify(mongoTemplate).stream(queryCaptor.capture(), eq(VacancySalaryProjection.class), eq("vacancy"));
+        Query query = queryCaptor.getValue();
+        assertThat(query.getQueryObject().get("salaryEntity")).isEqualTo(new Document("$ne", null));
+        assertThat(query.getFieldsObject().keySet()).containsExactlyInAnyOrder("query", "publishedAt",
+                "salaryEntity.from", "salaryEntity.to", "salaryEntity.currency");
+        assertThat(query.getMeta().getCursorBatchSize()).isEqualTo(properties.getStreamBatchSize());
+    }
+
+    @Test
+    @DisplayName("Test streamPartitionWithSalaryCurrency(Currency.RUR, 2, 8) - " +
+            "partition of vacancy id hash is filtered by database")
+    public void testStreamPartitionWithSalaryCurrency() {
+        //Given
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        //When
+        vacancyService.streamPartitionWithSalaryCurrency(Currency.RUR, 2, 8);
+        //Then
+        verify(mongoTemplate).stream(queryCaptor.capture(), eq(VacancySalaryProjection.class), eq("vacancy"));
+        Document queryObject = queryCaptor.getValue().getQueryObject();
+        assertThat(queryObject.get("salaryEntity.currency")).isEqualTo(Currency.RUR.name());
+        MongoExpression partitionExpression =
+                (MongoExpression) queryObject.getList("$and", Document.class).get(0).get("$expr");
+        assertThat(partitionExpression.toDocument().toJson()).contains("{\"$toHashedIndexKey\": \"$_id\"}");
+        assertThat(queryCaptor.getValue().getFieldsObject().keySet()).containsExactlyInAnyOrder("query",
+                "salaryEntity.from", "salaryEntity.to", "salaryEntity.currency");
+    }
+
+    @Test
+    @DisplayName("Test aggregateSalaryByQuery(Currency.RUR) - " +
+            "pipeline matches currency, unwinds queries and groups by query and salary bucket")
+    public void testAggregateSalaryByQuery() {
+        //Given
+        ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+        List<QuerySalaryAggregateDto> expectedList = List.of(new QuerySalaryAggregateDto("Java", 250, 2, 300_000d));
+        //When
+        doReturn(new AggregationResults<>(expectedList, new Document()))
+                .when(mongoTemplate).aggregate(any(Aggregation.class), eq(VacancyEntity.class),
+                        eq(QuerySalaryAggregateDto.class));
+
+        List<QuerySalaryAggregateDto> actualList = vacancyService.aggregateSalaryByQuery(Currency.RUR);
+        //Then
+        verify(mongoTemplate).aggregate(aggregationCaptor.capture(), eq(VacancyEntity.class),
+                eq(QuerySalaryAggregateDto.class));
+        List<Document> pipeline = aggregationCaptor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertThat(pipeline).extracting(stage -> stage.keySet().iterator().next())
+                .containsExactly("$match", "$project", "$addFields", "$unwind", "$group", "$project");
+        assertThat(pipeline.get(0).get("$match", Document.class).get("salaryEntity.currency"))
+                .isEqualTo(Currency.RUR.name());
+        assertThat(pipeline.get(4).get("$group", Document.class).get("_id"))
+                .isEqualTo(new Document("query", "$query").append("salaryBucket", "$salaryBucket"));
+        assertThat(actualList).isEqualTo(expectedList);
+    }
+}
@@ -3,5 +3,132 @@ create table if not exists vacancy_analytics (
     date date,
     query varchar(255),
     vacancy_count bigint,
-    average_salary decimal(10,2)
+    average_salary decimal(10,2),
+    salary_p25 decimal(10,2),
+    salary_p50 decimal(10,2),
+    salary_p75 decimal(10,2),
+    salary_p90 decimal(10,2),
+    vacancy_ids_sketch blob,
+    employer_ids_sketch blob,
+    salary_sum bigint,
+    vacancy_count_7d bigint,
+    salary_sum_7d bigint,
+    days_7d int,
+    vacancy_count_30d bigint,
+    salary_sum_30d bigint,
+    days_30d int,
+    vacancy_count_avg_7d decimal(12,2),
+    average_salary_7d decimal(10,2),
+    vacancy_count_avg_30d decimal(12,2),
+    average_salary_30d decimal(10,2),
+    vacancy_count_delta_7d bigint,
+    average_salary_delta_7d decimal(10,2),
+    unique key uk_vacancy_analytics_query_date (query, date)
+    );
+create table if not exists vacancy_query_aggregate (
+    query varchar(255) primary key,
+    vacancy_count bigint not null,
+    salary_sum bigint not null,
+    salary_sketch blob
+    );
+
+create table if not exists vacancy_contribution (
+    vacancy_id varchar(64) primary key,
+    queries text not null,
+    salary bigint not null,
+    delete_at datetime(3),
+    index idx_vacancy_contribution_delete_at (delete_at)
+    );
+
+create table if not exists vacancy_analytics_watermark (
+    id int primary key,
+    resume_token text,
+    incremental_builds int not null
+    );
+
+create table if not exists vacancy_change_stream_state (
+    id int primary key,
+    resume_token text not null
+    );
+
+create table if not exists vacancy_analytics_cube (
+    id bigint auto_increment primary key,
+    date date not null,
+    query varchar(255) not null,
+    area_id varchar(64) not null,
+    experience_id varchar(64) not null,
+    employment_id varchar(64) not null,
+    vacancy_count bigint,
+    average_salary decimal(10,2),
+    unique key uk_vacancy_analytics_cube (date, query, area_id, experience_id, employment_id)
+    );
+
+create table if not exists vacancy_analytics_dimension (
+    dimension varchar(32),
+    id varchar(64),
+    name varchar(255),
+    primary key (dimension, id)
+    );
+
+create table if not exists currency_exchange_rate (
+    currency varchar(3) primary key,
+    rate decimal(20,10) not null
+    );
+
+create table if not exists vacancy_analytics_currency (
+    id bigint auto_increment primary key,
+    date date not null,
+    query varchar(255) not null,
+    currency varchar(3) not null,
+    vacancy_count bigint,
+    average_salary decimal(12,2),
+    base_currency varchar(3) not null,
+    average_base_salary decimal(12,2),
+    unique key uk_vacancy_analytics_currency (date, query, currency)
+    );
+
+create table if not exists analytics_build_lease (
+    build_key varchar(64) primary key,
+    owner varchar(255) not null,
+    expires_at datetime(3) not null,
+    status varchar(16) not null,
+    started_at datetime(3),
+    finished_at datetime(3)
+    );
+
+create table if not exists vacancy_analytics_employer (
+    id bigint auto_increment primary key,
+    date date not null,
+    query varchar(255) not null,
+    ranking varchar(16) not null,
+    employer_rank int not null,
+    employer_id varchar(64) not null,
+    employer_name varchar(255),
+    accredited boolean not null,
+    vacancy_count bigint,
+    count_error bigint,
+    average_salary decimal(12,2),
+    unique key uk_vacancy_analytics_employer (date, query, ranking, employer_rank)
+    );
+
+create table if not exists vacancy_analytics_employer_accreditation (
+    id bigint auto_increment primary key,
+    date date not null,
+    query varchar(255) not null,
+    accredited boolean not null,
+    vacancy_count bigint,
+    average_salary decimal(12,2),
+    unique key uk_vacancy_analytics_employer_accreditation (date, query, accredited)
+    );
+
+create table if not exists vacancy_analytics_skill (
+    id bigint auto_increment primary key,
+    date date not null,
+    query varchar(255) not null,
+    skill varchar(64) not null,
+    vacancy_count bigint,
+    vacancy_share decimal(7,6),
+    average_salary decimal(12,2),
+    salary_lift decimal(9,6),
+    unique key uk_vacancy_analytics_skill (date, query, skill)
     );
\ No newline at end of file